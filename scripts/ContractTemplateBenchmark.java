@@ -0,0 +1,265 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.models.Product;
+import com.mai.siarsp.models.RequestForDelivery;
+import com.mai.siarsp.models.RequestedProduct;
+import com.mai.siarsp.models.Supplier;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сравнение генерации договора поставки: прежний путь (XWPF-разбор шаблона на каждый запрос)
+ * и {@code RequestForDeliveryDocumentService.generateContract} поверх скомпилированного {@link DocxTemplate}.
+ * <p>
+ * Заявка: поставщик со спецсимволами в названии и N позиций (по умолчанию 30). Перед замером текст
+ * обоих документов сверяется через XWPFWordExtractor. Замер: 200 прогревочных и 500 измеряемых генераций
+ * на каждый вариант, два круга; выводятся время и выделенная потоком память на документ.
+ * <p>
+ * Класс компилируется в пакет сервиса поверх собранных классов (classpath зависимостей — из ~/.m2
+ * или {@code mvn dependency:build-classpath}); запуск из корня проекта:
+ * <pre>
+ *     mvn -B -q compile
+ *     mvn -B -q dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *     javac -proc:none -cp target/classes:$(cat target/cp.txt) -d target/contract-benchmark scripts/ContractTemplateBenchmark.java
+ *     java -cp target/classes:target/contract-benchmark:$(cat target/cp.txt) com.mai.siarsp.service.general.ContractTemplateBenchmark 30
+ * </pre>
+ */
+public final class ContractTemplateBenchmark {
+
+    private static final String TEMPLATE_DIR = "src/main/resources/wordTemplates";
+    private static final int WARMUP = 200;
+    private static final int RUNS = 500;
+
+    private interface Generator {
+        byte[] generate(RequestForDelivery request) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        Field templatePath = RequestForDeliveryDocumentService.class.getDeclaredField("templatePath");
+        templatePath.setAccessible(true);
+        templatePath.set(null, TEMPLATE_DIR);
+
+        RequestForDelivery request = request(items);
+        Generator legacy = Legacy::generateContract;
+        Generator compiled = r -> RequestForDeliveryDocumentService.generateContract(r).content();
+
+        String legacyText = text(legacy.generate(request));
+        String compiledText = text(compiled.generate(request));
+        if (!legacyText.equals(compiledText)) {
+            throw new IllegalStateException("Текст документов различается");
+        }
+        System.out.printf("позиций %d, текст совпадает (%d символов)%n", items, compiledText.length());
+
+        for (int round = 0; round < 2; round++) {
+            measure("XWPF на каждый запрос", legacy, request);
+            measure("скомпилированный шаблон", compiled, request);
+        }
+    }
+
+    private static RequestForDelivery request(int items) {
+        Supplier supplier = new Supplier();
+        supplier.setName("ООО <Ромашка> & Co");
+        supplier.setInn("7701234567");
+        supplier.setKpp("770101001");
+        supplier.setOgrn("1027700000000");
+        supplier.setAddress("Москва");
+        supplier.setBank("Сбер");
+        supplier.setBik("044525225");
+        supplier.setPaymentAccount("40702810000000000001");
+        supplier.setContactInfo("+7 495 000-00-00");
+        supplier.setDirectorLastName("Иванов");
+        supplier.setDirectorFirstName("Иван");
+        supplier.setDirectorPatronymicName("Иванович");
+
+        RequestForDelivery request = new RequestForDelivery();
+        request.setId(42L);
+        request.setSupplier(supplier);
+        request.setDeliveryCost(new BigDecimal("1500"));
+        List<RequestedProduct> products = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Product product = new Product();
+            product.setName("Товар " + i);
+            RequestedProduct requested = new RequestedProduct();
+            requested.setProduct(product);
+            requested.setUnit("шт");
+            requested.setQuantity(10 + i);
+            requested.setPurchasePrice(new BigDecimal("12.50"));
+            products.add(requested);
+        }
+        request.setRequestedProducts(products);
+        return request;
+    }
+
+    private static void measure(String name, Generator generator, RequestForDelivery request) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            generator.generate(request);
+        }
+        long threadId = Thread.currentThread().threadId();
+        long allocatedStart = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            generator.generate(request);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedStart;
+        System.out.printf("%-26s %8.2f мс/документ %10.2f МБ/документ%n",
+                name, elapsed / 1e6 / RUNS, allocated / 1e6 / RUNS);
+    }
+
+    private static String text(byte[] content) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(content));
+             XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
+            return extractor.getText();
+        }
+    }
+
+    /** Прежняя реализация generateContract: разбор шаблона и замена текста в дереве XWPF на каждый запрос. */
+    private static final class Legacy {
+
+        private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+        static byte[] generateContract(RequestForDelivery request) throws Exception {
+            try (FileInputStream fis = new FileInputStream(TEMPLATE_DIR + "/DocRequestForDelivery.docx");
+                 XWPFDocument document = new XWPFDocument(fis)) {
+                Supplier supplier = request.getSupplier();
+                for (XWPFParagraph paragraph : document.getParagraphs()) {
+                    replacePlaceholders(paragraph, supplier, request);
+                }
+                for (XWPFTable table : document.getTables()) {
+                    processTable(table, supplier, request, request.getRequestedProducts());
+                }
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                document.write(baos);
+                return baos.toByteArray();
+            }
+        }
+
+        private static void processTable(XWPFTable table, Supplier supplier, RequestForDelivery request,
+                                         List<RequestedProduct> products) {
+            int templateRowIndex = -1;
+            for (int i = 0; i < table.getNumberOfRows(); i++) {
+                if (rowText(table.getRow(i)).contains("Number")) {
+                    templateRowIndex = i;
+                    break;
+                }
+            }
+            if (templateRowIndex >= 0) {
+                CTRow ctTemplateRow = table.getRow(templateRowIndex).getCtRow();
+                for (int i = products.size() - 1; i >= 0; i--) {
+                    RequestedProduct rp = products.get(i);
+                    XWPFTableRow newRow = new XWPFTableRow((CTRow) ctTemplateRow.copy(), table);
+                    for (XWPFTableCell cell : newRow.getTableCells()) {
+                        for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                            String text = fullText(paragraph);
+                            if (text.isEmpty()) {
+                                continue;
+                            }
+                            text = text.replace("Number", String.valueOf(i + 1))
+                                    .replace("ProductName", rp.getProduct().getName())
+                                    .replace("SupplyUnit", rp.getUnit() != null ? rp.getUnit() : "")
+                                    .replace("SupplyQuantity", String.valueOf(rp.getQuantity()))
+                                    .replace("SupplyPurchasePrice", decimal(rp.getPurchasePrice()))
+                                    .replace("SupplyGetTotalPrice", decimal(rp.getTotalPrice()));
+                            setFullText(paragraph, text);
+                        }
+                    }
+                    table.addRow(newRow, templateRowIndex + 1);
+                }
+                table.removeRow(templateRowIndex);
+            }
+            for (XWPFTableRow row : table.getRows()) {
+                for (XWPFTableCell cell : row.getTableCells()) {
+                    for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                        replacePlaceholders(paragraph, supplier, request);
+                    }
+                }
+            }
+        }
+
+        private static void replacePlaceholders(XWPFParagraph paragraph, Supplier supplier, RequestForDelivery request) {
+            String text = fullText(paragraph);
+            if (text.isEmpty()) {
+                return;
+            }
+            String original = text;
+            text = replace(text, "dd.MM.yyy", LocalDate.now().format(DATE_FMT));
+            text = replace(text, "getFullName", supplier.getFullName());
+            text = replace(text, "SupplierGetDirectorShortName", supplier.getDirectorShortName());
+            text = replace(text, "name", supplier.getName());
+            text = replace(text, "id", String.valueOf(request.getId()));
+            text = replace(text, "address", supplier.getAddress());
+            text = replace(text, "inn", supplier.getInn());
+            text = replace(text, "kpp", supplier.getKpp());
+            text = replace(text, "ogrn", supplier.getOgrn());
+            text = replace(text, "paymentAccount", supplier.getPaymentAccount());
+            text = replace(text, "bank", supplier.getBank());
+            text = replace(text, "bik", supplier.getBik());
+            text = replace(text, "contactInfo", supplier.getContactInfo());
+            text = replace(text, "RequestForDeliveryGetTotalCost", decimal(request.getTotalCost()));
+            text = replace(text, "RequestForDeliveryDeliveryCost", decimal(request.getDeliveryCost()));
+            if (!text.equals(original)) {
+                setFullText(paragraph, text);
+            }
+        }
+
+        private static String replace(String text, String placeholder, String value) {
+            return text.contains(placeholder) ? text.replace(placeholder, value != null ? value : "") : text;
+        }
+
+        private static String fullText(XWPFParagraph paragraph) {
+            StringBuilder sb = new StringBuilder();
+            for (XWPFRun run : paragraph.getRuns()) {
+                String text = run.getText(0);
+                if (text != null) {
+                    sb.append(text);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static void setFullText(XWPFParagraph paragraph, String text) {
+            List<XWPFRun> runs = paragraph.getRuns();
+            if (runs.isEmpty()) {
+                return;
+            }
+            runs.get(0).setText(text, 0);
+            for (int i = 1; i < runs.size(); i++) {
+                runs.get(i).setText("", 0);
+            }
+        }
+
+        private static String rowText(XWPFTableRow row) {
+            StringBuilder sb = new StringBuilder();
+            for (XWPFTableCell cell : row.getTableCells()) {
+                for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                    sb.append(fullText(paragraph));
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String decimal(BigDecimal value) {
+            return value == null ? "0.00" : value.setScale(2, RoundingMode.HALF_UP).toPlainString();
+        }
+    }
+}
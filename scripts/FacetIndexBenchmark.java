@@ -0,0 +1,128 @@
+package com.mai.siarsp.service.general;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Замер времени фасетного запроса над {@link IdBitmap} на синтетическом каталоге.
+ * <p>
+ * Каталог: N товаров, 50 категорий, 2 типа склада, 10 числовых атрибутов по 20 интервалов шкалы.
+ * Один запрос повторяет работу {@code ProductFacetIndex.query}: объединения внутри выбранных фасетов,
+ * их пересечение, счётчики всех значений всех фасетов относительно отбора и выдача первых 100 000 id.
+ * Перед замером результат сверяется с прямым перебором.
+ * <p>
+ * IdBitmap закрыт пакетом, поэтому класс компилируется в тот же пакет поверх собранных классов:
+ * <pre>
+ *     mvn -B -q compile
+ *     javac -cp target/classes -d target/facet-benchmark scripts/FacetIndexBenchmark.java
+ *     java -cp target/classes:target/facet-benchmark com.mai.siarsp.service.general.FacetIndexBenchmark 1000000
+ * </pre>
+ */
+public final class FacetIndexBenchmark {
+
+    private static final int CATEGORIES = 50;
+    private static final int ATTRIBUTES = 10;
+    private static final int BUCKETS = 20;
+    private static final int WARMUP = 50;
+    private static final int RUNS = 200;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(1);
+
+        IdBitmap all = new IdBitmap();
+        IdBitmap[] categories = bitmaps(CATEGORIES);
+        IdBitmap[] warehouseTypes = bitmaps(2);
+        IdBitmap[][] attributes = new IdBitmap[ATTRIBUTES][];
+        for (int a = 0; a < ATTRIBUTES; a++) {
+            attributes[a] = bitmaps(BUCKETS);
+        }
+        int[] category = new int[size + 1];
+        int[] warehouseType = new int[size + 1];
+        int[] attribute2 = new int[size + 1];
+        long buildStart = System.nanoTime();
+        for (int id = 1; id <= size; id++) {
+            all.add(id);
+            category[id] = random.nextInt(CATEGORIES);
+            categories[category[id]].add(id);
+            warehouseType[id] = random.nextInt(10) == 0 ? 1 : 0;
+            warehouseTypes[warehouseType[id]].add(id);
+            for (int a = 0; a < ATTRIBUTES; a++) {
+                int bucket = (int) Math.min(BUCKETS - 1, Math.abs(random.nextGaussian() * 5));
+                attributes[a][bucket].add(id);
+                if (a == 2) {
+                    attribute2[id] = bucket;
+                }
+            }
+        }
+        System.out.printf("товаров %d, сборка %.0f мс%n", size, (System.nanoTime() - buildStart) / 1e6);
+
+        int expected = 0;
+        for (int id = 1; id <= size; id++) {
+            if ((category[id] == 3 || category[id] == 7) && warehouseType[id] == 1
+                    && (attribute2[id] == 1 || attribute2[id] == 4)) {
+                expected++;
+            }
+        }
+        int actual = query(all, categories, warehouseTypes, attributes).cardinality();
+        if (actual != expected) {
+            throw new IllegalStateException("Отбор " + actual + ", перебор " + expected);
+        }
+
+        long checksum = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            checksum += counts(all, categories, warehouseTypes, attributes);
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            checksum += counts(all, categories, warehouseTypes, attributes);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.printf("отобрано %d; запрос: медиана %.2f мс, p95 %.2f мс, максимум %.2f мс (контроль %d)%n",
+                actual, times[RUNS / 2] / 1e6, times[RUNS * 95 / 100] / 1e6, times[RUNS - 1] / 1e6, checksum);
+    }
+
+    private static IdBitmap[] bitmaps(int count) {
+        IdBitmap[] bitmaps = new IdBitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new IdBitmap();
+        }
+        return bitmaps;
+    }
+
+    /** Категория 3 или 7, второй тип склада, атрибут 2 в интервале 1 или 4. */
+    private static IdBitmap query(IdBitmap all, IdBitmap[] categories, IdBitmap[] warehouseTypes,
+                                  IdBitmap[][] attributes) {
+        return categories[3].or(categories[7]).and(warehouseTypes[1])
+                .and(attributes[2][1].or(attributes[2][4])).and(all);
+    }
+
+    /**
+     * Один ответ контроллера: отбор, счётчики каждого значения каждого фасета (для выбранного фасета —
+     * относительно отбора по остальным) и первые 100 000 id.
+     */
+    private static long counts(IdBitmap all, IdBitmap[] categories, IdBitmap[] warehouseTypes,
+                               IdBitmap[][] attributes) {
+        IdBitmap category = categories[3].or(categories[7]);
+        IdBitmap warehouseType = warehouseTypes[1];
+        IdBitmap attribute = attributes[2][1].or(attributes[2][4]);
+        IdBitmap result = category.and(warehouseType).and(attribute);
+        long sum = sum(categories, warehouseType.and(attribute)) + sum(warehouseTypes, category.and(attribute));
+        for (int a = 0; a < ATTRIBUTES; a++) {
+            sum += sum(attributes[a], a == 2 ? category.and(warehouseType) : result);
+        }
+        List<Long> ids = result.toList(100_000);
+        return sum + ids.size() + all.andCardinality(result);
+    }
+
+    private static long sum(IdBitmap[] values, IdBitmap base) {
+        long sum = 0;
+        for (IdBitmap value : values) {
+            sum += value.andCardinality(base);
+        }
+        return sum;
+    }
+}
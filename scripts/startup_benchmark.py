@@ -0,0 +1,80 @@
+"""Замер времени старта SIARSP до первого успешного HTTP-ответа (time-to-first-request).
+
+Запускает собранный jar N раз, после каждого запуска опрашивает URL до первого ответа
+с кодом < 500 и выводит время по каждому прогону, медиану и максимум.
+
+Использование:
+    mvn -B -DskipTests package
+    python scripts/startup_benchmark.py --runs 5 --url http://localhost:8080/employee/login
+
+Перед замером нужна доступная БД с настройками из application.properties. Результат стоит
+сравнивать между коммитами на одном стенде: рост медианы означает, что на путь загрузки
+снова попала работа, которую следует вынести в StartupTask.
+"""
+import argparse
+import glob
+import statistics
+import subprocess
+import sys
+import time
+import urllib.error
+import urllib.request
+from pathlib import Path
+
+ROOT = Path(__file__).resolve().parents[1]
+
+
+def find_jar() -> str:
+    jars = [j for j in glob.glob(str(ROOT / "target" / "SIARSP-*.jar")) if not j.endswith(".original")]
+    if not jars:
+        sys.exit("Не найден target/SIARSP-*.jar — сначала выполните mvn -B -DskipTests package")
+    return jars[0]
+
+
+def wait_first_response(url: str, process: subprocess.Popen, timeout: float) -> float:
+    started = time.monotonic()
+    while time.monotonic() - started < timeout:
+        if process.poll() is not None:
+            sys.exit(f"Приложение завершилось с кодом {process.returncode} до первого ответа")
+        try:
+            with urllib.request.urlopen(url, timeout=2) as response:
+                if response.status < 500:
+                    return time.monotonic() - started
+        except urllib.error.HTTPError as e:
+            if e.code < 500:
+                return time.monotonic() - started
+        except (urllib.error.URLError, ConnectionError, TimeoutError):
+            pass
+        time.sleep(0.05)
+    sys.exit(f"Нет ответа от {url} за {timeout} с")
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--runs", type=int, default=3)
+    parser.add_argument("--url", default="http://localhost:8080/employee/login")
+    parser.add_argument("--timeout", type=float, default=180.0)
+    parser.add_argument("--java", default="java")
+    args = parser.parse_args()
+
+    jar = find_jar()
+    results = []
+    for run in range(1, args.runs + 1):
+        process = subprocess.Popen([args.java, "-jar", jar], cwd=ROOT,
+                                   stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+        try:
+            elapsed = wait_first_response(args.url, process, args.timeout)
+        finally:
+            process.terminate()
+            try:
+                process.wait(timeout=30)
+            except subprocess.TimeoutExpired:
+                process.kill()
+        results.append(elapsed)
+        print(f"Прогон {run}: первый ответ через {elapsed * 1000:.0f} мс")
+
+    print(f"Медиана: {statistics.median(results) * 1000:.0f} мс, максимум: {max(results) * 1000:.0f} мс")
+
+
+if __name__ == "__main__":
+    main()
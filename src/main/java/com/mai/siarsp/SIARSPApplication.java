@@ -2,8 +2,10 @@ package com.mai.siarsp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SIARSPApplication {
 
 	public static void main(String[] args) {
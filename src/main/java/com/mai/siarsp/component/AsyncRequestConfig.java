@@ -0,0 +1,30 @@
+package com.mai.siarsp.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Тайм-аут асинхронных ответов Spring MVC.
+ * <p>
+ * Выгрузки XLSX и пакет документов за день отдаются через {@code StreamingResponseBody}: тело пишется
+ * в отдельном потоке после выхода из контроллера. Без явного значения действует тайм-аут контейнера
+ * сервлетов (у Tomcat — 30 секунд), и длинная выгрузка по медленной связи обрывается на середине файла.
+ * Поэтому тайм-аут задаётся здесь: {@code siarsp.web.async-timeout-ms}, по умолчанию 30 минут.
+ * SSE-уведомления задают свой тайм-аут в SseEmitter и от этой настройки не зависят.
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer {
+
+    private final long asyncTimeoutMs;
+
+    public AsyncRequestConfig(@Value("${siarsp.web.async-timeout-ms:1800000}") long asyncTimeoutMs) {
+        this.asyncTimeoutMs = asyncTimeoutMs;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeoutMs);
+    }
+}
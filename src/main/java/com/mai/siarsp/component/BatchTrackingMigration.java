@@ -3,9 +3,14 @@ package com.mai.siarsp.component;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  * Однократная миграция при переходе на партионный учёт (FEFO).
@@ -18,12 +23,19 @@ import org.springframework.transaction.annotation.Transactional;
  * WriteOffAct очищаются — менеджер заново оформит приёмки. Stock-счётчики на Product обнуляются.
  * <p>
  * Маркер выполнения хранится в служебной таблице {@code t_migration_marker}.
+ * <p>
+ * Миграция очищает таблицы, в которые пишут рабочие запросы, поэтому выполняется на пути загрузки
+ * ({@code @PostConstruct}), до готовности узла, а не фоновой {@link StartupTask}. Узлы, стартующие
+ * одновременно, сериализуются именованной блокировкой MySQL: маркер перепроверяется под блокировкой,
+ * и миграцию выполняет только первый узел.
  */
 @Component
 @Slf4j
 public class BatchTrackingMigration {
 
     private static final String MARKER = "BATCH_TRACKING_V1";
+    private static final String LOCK_NAME = "siarsp_migration_" + MARKER;
+    private static final int LOCK_WAIT_SECONDS = 600;
 
     private final JdbcTemplate jdbc;
 
@@ -32,7 +44,6 @@ public class BatchTrackingMigration {
     }
 
     @PostConstruct
-    @Transactional
     public void runIfNeeded() {
         try {
             jdbc.execute("CREATE TABLE IF NOT EXISTS t_migration_marker (" +
@@ -42,19 +53,60 @@ public class BatchTrackingMigration {
             log.warn("Не удалось создать t_migration_marker: {}", e.getMessage());
             return;
         }
+        if (isMarked()) {
+            return;
+        }
+
+        try {
+            jdbc.execute((ConnectionCallback<Void>) connection -> {
+                if (!acquireLock(connection)) {
+                    throw new IllegalStateException("Не дождались блокировки миграции " + MARKER
+                            + " за " + LOCK_WAIT_SECONDS + " с");
+                }
+                try {
+                    if (!isMarked()) {
+                        migrate();
+                    }
+                } finally {
+                    releaseLock(connection);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Не удалось выполнить миграцию {}: {}", MARKER, e.getMessage());
+        }
+    }
 
-        Integer count;
+    private boolean isMarked() {
         try {
-            count = jdbc.queryForObject(
+            Integer count = jdbc.queryForObject(
                     "SELECT COUNT(*) FROM t_migration_marker WHERE name = ?",
                     Integer.class, MARKER);
+            return count != null && count > 0;
         } catch (DataAccessException e) {
             log.warn("Не удалось проверить маркер миграции: {}", e.getMessage());
-            return;
+            return true;
         }
-        if (count != null && count > 0) {
-            return;
+    }
+
+    private static boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_WAIT_SECONDS);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
         }
+    }
+
+    private static void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    private void migrate() {
 
         log.info("Запуск миграции на партионный учёт ({}): чистим Supply/Delivery/ZoneProduct/WriteOffAct " +
                 "и атрибут «Срок годности»", MARKER);
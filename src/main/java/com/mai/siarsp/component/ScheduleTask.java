@@ -1,35 +1,29 @@
 package com.mai.siarsp.component;
 
 import com.mai.siarsp.enumeration.EquipmentStatus;
-import com.mai.siarsp.enumeration.WriteOffActStatus;
-import com.mai.siarsp.enumeration.WriteOffReason;
-import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.models.Product;
-import com.mai.siarsp.models.Warehouse;
 import com.mai.siarsp.models.WarehouseEquipment;
-import com.mai.siarsp.models.WriteOffAct;
-import com.mai.siarsp.models.ZoneProduct;
-import com.mai.siarsp.repo.EmployeeRepository;
 import com.mai.siarsp.repo.ProductRepository;
 import com.mai.siarsp.repo.WarehouseEquipmentRepository;
-import com.mai.siarsp.repo.WriteOffActRepository;
-import com.mai.siarsp.repo.ZoneProductRepository;
+import com.mai.siarsp.service.employee.NotificationRetentionService;
 import com.mai.siarsp.service.employee.NotificationService;
 import com.mai.siarsp.service.employee.WriteOffActService;
-import com.mai.siarsp.service.general.ProductExpirationService;
+import com.mai.siarsp.service.general.DailyFactService;
+import com.mai.siarsp.service.general.ExpiredSupplyWriteOffService;
+import com.mai.siarsp.service.general.ExpiryRiskForecastService;
+import com.mai.siarsp.service.general.JobCoordinationService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 @Component
 @Slf4j
@@ -38,55 +32,121 @@ public class ScheduleTask {
     private static final String MANAGER_ROLE = "ROLE_EMPLOYEE_MANAGER";
     private static final String ROLE_EMPLOYEE_WAREHOUSE_MANAGER = "ROLE_EMPLOYEE_WAREHOUSE_MANAGER";
 
+    /** Имена задач в таблице аренды: ровно один узел кластера выполняет каждый запуск. */
+    public static final String JOB_EQUIPMENT_EXPIRATION = "checkEquipmentExpiration";
+    public static final String JOB_PRODUCT_EXPIRATION = "checkProductExpiration";
+    public static final String JOB_EXPIRY_RISK_FORECAST = "forecastExpiryRisk";
+    public static final String JOB_NOTIFICATION_RETENTION = "archiveNotifications";
+    public static final String JOB_DAILY_FACTS_BACKFILL = "backfillDailyFacts";
+    public static final String JOB_DAILY_FACTS_RECONCILE = "reconcileDailyFacts";
+    /** Сколько последних дней дневных агрегатов пересчитывается ночной сверкой. */
+    private static final int DAILY_FACTS_RECONCILE_DAYS = 35;
+    /** Вид сводного уведомления о сроках службы оборудования. */
+    private static final String DIGEST_EQUIPMENT_EXPIRATION = "EQUIPMENT_EXPIRATION";
+    private static final Duration JOB_LEASE_TTL = Duration.ofMinutes(2);
+    private static final Duration JOB_MIN_HOLD = Duration.ofMinutes(10);
+
     private final WarehouseEquipmentRepository warehouseEquipmentRepository;
     private final ProductRepository productRepository;
-    private final ZoneProductRepository zoneProductRepository;
-    private final WriteOffActRepository writeOffActRepository;
-    private final EmployeeRepository employeeRepository;
     private final NotificationService notificationService;
-    private final ProductExpirationService productExpirationService;
     private final WriteOffActService writeOffActService;
+    private final ExpiredSupplyWriteOffService expiredSupplyWriteOffService;
+    private final JobCoordinationService jobCoordinationService;
+    private final ExpiryRiskForecastService expiryRiskForecastService;
+    private final NotificationRetentionService notificationRetentionService;
+    private final DailyFactService dailyFactService;
 
     public ScheduleTask(WarehouseEquipmentRepository warehouseEquipmentRepository,
                         ProductRepository productRepository,
-                        ZoneProductRepository zoneProductRepository,
-                        WriteOffActRepository writeOffActRepository,
-                        EmployeeRepository employeeRepository,
                         NotificationService notificationService,
-                        ProductExpirationService productExpirationService,
-                        WriteOffActService writeOffActService) {
+                        WriteOffActService writeOffActService,
+                        ExpiredSupplyWriteOffService expiredSupplyWriteOffService,
+                        JobCoordinationService jobCoordinationService,
+                        ExpiryRiskForecastService expiryRiskForecastService,
+                        NotificationRetentionService notificationRetentionService,
+                        DailyFactService dailyFactService) {
         this.warehouseEquipmentRepository = warehouseEquipmentRepository;
         this.productRepository = productRepository;
-        this.zoneProductRepository = zoneProductRepository;
-        this.writeOffActRepository = writeOffActRepository;
-        this.employeeRepository = employeeRepository;
         this.notificationService = notificationService;
-        this.productExpirationService = productExpirationService;
         this.writeOffActService = writeOffActService;
+        this.expiredSupplyWriteOffService = expiredSupplyWriteOffService;
+        this.jobCoordinationService = jobCoordinationService;
+        this.expiryRiskForecastService = expiryRiskForecastService;
+        this.notificationRetentionService = notificationRetentionService;
+        this.dailyFactService = dailyFactService;
     }
 
+    /**
+     * При старте проверки догоняют пропущенный ежедневный запуск: если сегодня задача уже
+     * успешно отработала на каком-либо узле, повторно её не выполняем. Запускается в фоне
+     * после готовности приложения, после миграций.
+     */
     @Bean
-    public ApplicationRunner applicationRunner() {
-        return args -> {
-            checkEquipmentExpiration();
-            checkProductExpiration();
-        };
+    public StartupTask expirationChecksStartupTask() {
+        return new StartupTask("expirationChecks", 100, Duration.ofMinutes(30), () -> {
+            LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+            if (!jobCoordinationService.hasSucceededSince(JOB_EQUIPMENT_EXPIRATION, startOfDay)) {
+                checkEquipmentExpiration();
+            }
+            if (!jobCoordinationService.hasSucceededSince(JOB_PRODUCT_EXPIRATION, startOfDay)) {
+                checkProductExpiration();
+            }
+        });
+    }
+
+    /**
+     * Первичное заполнение дневных агрегатов по всей истории — один раз на кластер.
+     */
+    @Bean
+    public StartupTask dailyFactsBackfillStartupTask() {
+        return new StartupTask("dailyFactsBackfill", 20, Duration.ofHours(2), () -> {
+            if (!jobCoordinationService.hasSucceededSince(JOB_DAILY_FACTS_BACKFILL, LocalDateTime.of(2000, 1, 1, 0, 0))) {
+                jobCoordinationService.runExclusively(JOB_DAILY_FACTS_BACKFILL, JOB_LEASE_TTL, JOB_MIN_HOLD,
+                        () -> dailyFactService.backfill(LocalDate.now()));
+            }
+        });
+    }
+
+    /**
+     * Ночная сверка дневных агрегатов за последние дни: исправляет расхождения, если исходные
+     * строки менялись в обход инкрементального пополнения.
+     */
+    @Scheduled(cron = "0 45 2 * * ?")
+    public void reconcileDailyFacts() {
+        jobCoordinationService.runExclusively(JOB_DAILY_FACTS_RECONCILE, JOB_LEASE_TTL, JOB_MIN_HOLD, () -> {
+            LocalDate today = LocalDate.now();
+            dailyFactService.rebuild(today.minusDays(DAILY_FACTS_RECONCILE_DAYS), today);
+        });
     }
 
     @Scheduled(cron = "0 0 0 * * ?")
     public void cleanUpDirectories() {
     }
 
+    /**
+     * Ночной перенос старых прочитанных и скрытых уведомлений в архив.
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void archiveNotifications() {
+        jobCoordinationService.runExclusively(JOB_NOTIFICATION_RETENTION, JOB_LEASE_TTL, JOB_MIN_HOLD,
+                () -> notificationRetentionService.archiveExpired(LocalDate.now()));
+    }
+
     @Scheduled(cron = "0 0 8 * * ?")
     public void checkEquipmentExpiration() {
+        jobCoordinationService.runExclusively(JOB_EQUIPMENT_EXPIRATION, JOB_LEASE_TTL, JOB_MIN_HOLD,
+                this::runEquipmentExpirationCheck);
+    }
 
+    private void runEquipmentExpirationCheck() {
         log.info("Запуск проверки сроков службы оборудования склада");
 
         List<WarehouseEquipment> activeEquipment =
                 warehouseEquipmentRepository.findByStatusNot(EquipmentStatus.WRITTEN_OFF);
 
         LocalDate today = LocalDate.now();
-        int notifiedCount = 0;
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+        List<String> lines = new ArrayList<>();
 
         for (WarehouseEquipment eq : activeEquipment) {
             LocalDate expDate = eq.getExpirationDate();
@@ -96,62 +156,65 @@ public class ScheduleTask {
 
             long daysLeft = ChronoUnit.DAYS.between(today, expDate);
             String warehouseName = eq.getWarehouse() != null ? eq.getWarehouse().getName() : "—";
-            String text = null;
+            // Строки сводки не содержат счётчика дней: повтор той же строки на следующий день
+            // не дублируется в непрочитанной сводке, а новая строка появляется только при смене порога
+            String item = "«" + eq.getName() + "» (склад: " + warehouseName + ", до " + expDate.format(dateFormatter) + ")";
 
             if (daysLeft < 0) {
-                text = "⚠️ Срок службы истёк: «" + eq.getName() + "» (склад: " + warehouseName
-                        + "). Дата окончания: " + expDate.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")) + ". Статус: "
-                        + eq.getStatus().getDisplayName() + ".";
+                lines.add("⚠️ Срок службы истёк: " + item + ". Статус: " + eq.getStatus().getDisplayName() + ".");
             } else if (daysLeft <= 7) {
-                text = "⚠️ Срок службы заканчивается через " + daysLeft + " дн.: «"
-                        + eq.getName() + "» (склад: " + warehouseName + ", до " + expDate.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")) + ").";
+                lines.add("⚠️ Срок службы заканчивается в течение недели: " + item + ".");
             } else if (daysLeft <= 30) {
-                text = "ℹ️ Срок службы заканчивается через месяц (" + daysLeft + " дн.): «"
-                        + eq.getName() + "» (склад: " + warehouseName + ", до " + expDate.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")) + ").";
-            }
-
-            if (text != null) {
-                notificationService.notifyByRole(MANAGER_ROLE, text);
-                notificationService.notifyByRole(ROLE_EMPLOYEE_WAREHOUSE_MANAGER, text);
-                notifiedCount++;
+                lines.add("ℹ️ Срок службы заканчивается в течение месяца: " + item + ".");
             }
         }
+        notificationService.notifyDigest(List.of(MANAGER_ROLE, ROLE_EMPLOYEE_WAREHOUSE_MANAGER),
+                DIGEST_EQUIPMENT_EXPIRATION, "⚠️ Сроки службы оборудования", lines);
 
-        log.info("Проверка сроков завершена. Отправлено уведомлений по {} единицам оборудования", notifiedCount);
+        log.info("Проверка сроков завершена. В сводку уведомлений попало {} единиц оборудования", lines.size());
     }
 
     /**
      * Проверка сроков годности товаров.
-     * Выполняется при старте приложения и ежедневно в 08:00.
+     * Выполняется при старте приложения и ежедневно в 08:00 (на одном узле кластера).
      *
-     * Группы оповещений:
-     * - истёк срок годности
-     * - срок истекает через 1 день
-     * - срок истекает в ближайшие 2 недели
-     * - срок истекает в ближайший месяц
+     * Просроченные партии списываются порциями через {@link ExpiredSupplyWriteOffService}:
+     * каждая порция фиксируется отдельно, поэтому большой объём просрочки не держит одну
+     * многоминутную транзакцию, а прерванный запуск продолжается с места остановки.
      */
-    @Transactional
     @Scheduled(cron = "0 0 8 * * ?")
     public void checkProductExpiration() {
+        jobCoordinationService.runExclusively(JOB_PRODUCT_EXPIRATION, JOB_LEASE_TTL, JOB_MIN_HOLD,
+                this::runProductExpirationCheck);
+    }
+
+    private void runProductExpirationCheck() {
         log.info("Запуск проверки сроков годности партий");
 
-        LocalDate today = LocalDate.now();
-        // Партии, у которых есть остатки в зонах и срок уже истёк
-        List<com.mai.siarsp.models.Supply> expired = productExpirationService.findExpiredSuppliesOnStock(today);
-        int actsCreated = 0;
-        for (com.mai.siarsp.models.Supply supply : expired) {
-            Product product = supply.getProduct();
-            LocalDate expirationDate = supply.getExpirationDate();
-            String text = "🚨 Просрочена партия товара «" + product.getName() + "» (артикул "
-                    + product.getArticle() + ", срок до " + expirationDate + "). Будет автоматически списана.";
+        ExpiredSupplyWriteOffService.AutoWriteOffResult result =
+                expiredSupplyWriteOffService.writeOffExpired(LocalDate.now());
+
+        log.info("Проверка сроков годности завершена. Просроченных партий: {}, автосозданных актов: {}, порций: {}",
+                result.expiredLots(), result.actsCreated(), result.chunks());
+    }
+
+    /**
+     * Прогноз просрочки: партии, которые при текущей скорости продаж не успеют уйти до истечения срока.
+     * Выполняется после автосписания, чтобы уже списанные партии не попадали в прогноз.
+     */
+    @Scheduled(cron = "0 30 8 * * ?")
+    public void forecastExpiryRisk() {
+        jobCoordinationService.runExclusively(JOB_EXPIRY_RISK_FORECAST, JOB_LEASE_TTL, JOB_MIN_HOLD,
+                this::runExpiryRiskForecast);
+    }
+
+    private void runExpiryRiskForecast() {
+        ExpiryRiskForecastService.ForecastResult result = expiryRiskForecastService.recalculate(LocalDate.now());
+        if (result.riskyLots() > 0) {
+            String text = "📉 Прогноз просрочки: " + result.riskyLots() + " парт. не успеют продаться до истечения срока."
+                    + " Ожидаемые потери по закупочной цене: " + result.totalWasteCost() + " руб.";
             notificationService.notifyByRole(MANAGER_ROLE, text);
-            notificationService.notifyByRole(ROLE_EMPLOYEE_WAREHOUSE_MANAGER, text);
-            if (createAutomaticWriteOffAct(product, expirationDate, supply)) {
-                actsCreated++;
-            }
         }
-        log.info("Проверка сроков годности завершена. Просроченных партий: {}, автосозданных актов: {}",
-                expired.size(), actsCreated);
     }
 
     private String buildExpirationNotification(Product product, LocalDate expirationDate, long daysLeft) {
@@ -175,81 +238,4 @@ public class ScheduleTask {
         }
         return null;
     }
-
-    private boolean createAutomaticWriteOffAct(Product product, LocalDate expirationDate,
-                                                com.mai.siarsp.models.Supply supply) {
-        // Дубль для той же партии не создаём
-        boolean pendingExists = writeOffActRepository.existsByProductIdAndReasonAndStatus(
-                product.getId(), WriteOffReason.EXPIRED, WriteOffActStatus.PENDING_DIRECTOR
-        );
-        if (pendingExists) {
-            return false;
-        }
-
-        Optional<Employee> responsibleOpt = findResponsibleForAutoWriteOff();
-        if (responsibleOpt.isEmpty()) {
-            log.warn("Не найден сотрудник для автосоздания акта списания просрочки по партии id={}", supply.getId());
-            return false;
-        }
-
-        Employee responsible = responsibleOpt.get();
-        // Берём ZoneProduct'ы конкретной партии — сумма количеств = подлежит списанию,
-        // склад берём от первой найденной зоны.
-        List<ZoneProduct> partyZones = zoneProductRepository.findByProductId(product.getId()).stream()
-                .filter(zp -> zp.getSupply() != null && zp.getSupply().equals(supply))
-                .toList();
-        int qtyToWriteOff = partyZones.stream().mapToInt(ZoneProduct::getQuantity).sum();
-        if (qtyToWriteOff <= 0) {
-            return false;
-        }
-        Optional<Warehouse> warehouseOpt = partyZones.stream()
-                .filter(zp -> zp.getZone() != null && zp.getZone().getShelf() != null
-                        && zp.getZone().getShelf().getWarehouse() != null)
-                .map(zp -> zp.getZone().getShelf().getWarehouse())
-                .findFirst();
-
-        String actNumber = "AUTO-WR-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE)
-                + "-" + product.getId() + "-S" + supply.getId();
-
-        WriteOffAct act = new WriteOffAct(
-                actNumber,
-                product,
-                qtyToWriteOff,
-                WriteOffReason.EXPIRED,
-                responsible
-        );
-
-        act.setStatus(WriteOffActStatus.PENDING_DIRECTOR);
-        act.setComment("Автоматическое списание просроченной партии. Срок годности истёк "
-                + expirationDate.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")) + ".");
-        warehouseOpt.ifPresent(act::setWarehouse);
-        act.setSupply(supply);
-        // Стоимость по фактической закупочной цене этой партии
-        java.math.BigDecimal price = supply.getPurchasePrice();
-        if (price != null) {
-            act.setTotalCost(price.multiply(java.math.BigDecimal.valueOf(qtyToWriteOff)));
-        }
-
-        writeOffActRepository.save(act);
-
-        String text = "📄 Автоматически создан акт списания " + actNumber
-                + " для товара «" + product.getName() + "» (просрочка). Требуется подпись руководителя.";
-        notificationService.notifyByRole(MANAGER_ROLE, text);
-        notificationService.notifyByRole(ROLE_EMPLOYEE_WAREHOUSE_MANAGER, text);
-        return true;
-    }
-
-    private Optional<Employee> findResponsibleForAutoWriteOff() {
-        List<Employee> warehouseManagers = employeeRepository.findAllByRoleName(ROLE_EMPLOYEE_WAREHOUSE_MANAGER);
-        if (!warehouseManagers.isEmpty()) {
-            return Optional.of(warehouseManagers.get(0));
-        }
-
-        List<Employee> managers = employeeRepository.findAllByRoleName(MANAGER_ROLE);
-        if (!managers.isEmpty()) {
-            return Optional.of(managers.get(0));
-        }
-
-        return Optional.empty();
-    }
 }
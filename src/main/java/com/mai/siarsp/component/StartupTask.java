@@ -0,0 +1,19 @@
+package com.mai.siarsp.component;
+
+import java.time.Duration;
+
+/**
+ * Задача, выполняемая в фоне после готовности приложения (см. {@link StartupTaskOrchestrator}).
+ * <p>
+ * Регистрируется как бин. Задачи выполняются последовательно по возрастанию order; задача,
+ * не уложившаяся в timeout, прерывается, и оркестратор переходит к следующей после её завершения.
+ * Работа, которая должна закончиться до приёма запросов (например, разрушающие миграции),
+ * сюда не относится — она остаётся на пути загрузки.
+ *
+ * @param name    имя для логов и страницы статуса
+ * @param order   порядок запуска (меньше — раньше)
+ * @param timeout предельное время выполнения
+ * @param action  тело задачи
+ */
+public record StartupTask(String name, int order, Duration timeout, Runnable action) {
+}
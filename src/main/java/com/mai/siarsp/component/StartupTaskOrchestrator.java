@@ -0,0 +1,148 @@
+package com.mai.siarsp.component;
+
+import com.mai.siarsp.enumeration.StartupTaskState;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Запуск стартовых задач вне пути загрузки.
+ * <p>
+ * Проверки и миграции, которые раньше выполнялись в {@code @PostConstruct} и {@code ApplicationRunner}
+ * и задерживали готовность приложения, регистрируются как {@link StartupTask} и запускаются после
+ * {@link ApplicationReadyEvent} в отдельном потоке: по порядку, каждая — со своим таймаутом.
+ * Задача, превысившая таймаут, прерывается; следующая стартует только после её фактического
+ * завершения (JDBC-вызовы на прерывание не реагируют), чтобы задачи не выполнялись одновременно.
+ * Состояние задач и время готовности приложения доступны через {@link #getStatus()}.
+ */
+@Component
+@Slf4j
+public class StartupTaskOrchestrator {
+
+    private final List<StartupTask> tasks;
+    private final Map<String, TaskStatus> statuses = new LinkedHashMap<>();
+    private final ExecutorService taskExecutor;
+    private final ExecutorService orchestratorExecutor;
+    private volatile long readyAfterMs = -1;
+
+    public StartupTaskOrchestrator(List<StartupTask> tasks) {
+        this.tasks = tasks.stream()
+                .sorted(Comparator.comparingInt(StartupTask::order))
+                .toList();
+        for (StartupTask task : this.tasks) {
+            statuses.put(task.name(), new TaskStatus(task.name(), task.order(), StartupTaskState.PENDING,
+                    null, null, null));
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.taskExecutor = Executors.newThreadPerTaskExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "startup-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.orchestratorExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "startup-orchestrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public record TaskStatus(String name, int order, StartupTaskState state,
+                             LocalDateTime startedAt, Long durationMs, String error) {
+    }
+
+    public record StartupStatus(long readyAfterMs, List<TaskStatus> tasks) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        readyAfterMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("Приложение готово принимать запросы через {} мс после старта JVM. Фоновых стартовых задач: {}",
+                readyAfterMs, tasks.size());
+        orchestratorExecutor.submit(this::runAll);
+    }
+
+    public synchronized StartupStatus getStatus() {
+        return new StartupStatus(readyAfterMs, new ArrayList<>(statuses.values()));
+    }
+
+    private void runAll() {
+        for (StartupTask task : tasks) {
+            LocalDateTime startedAt = LocalDateTime.now();
+            updateStatus(task, StartupTaskState.RUNNING, startedAt, null, null);
+            log.info("Стартовая задача '{}' запущена (таймаут {} с)", task.name(), task.timeout().toSeconds());
+
+            long startNanos = System.nanoTime();
+            CountDownLatch finished = new CountDownLatch(1);
+            Future<?> future = taskExecutor.submit(() -> {
+                try {
+                    task.action().run();
+                } finally {
+                    finished.countDown();
+                }
+            });
+            StartupTaskState state;
+            String error = null;
+            try {
+                future.get(task.timeout().toMillis(), TimeUnit.MILLISECONDS);
+                state = StartupTaskState.DONE;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                state = StartupTaskState.TIMED_OUT;
+                error = "Задача не уложилась в " + task.timeout().toSeconds() + " с";
+            } catch (ExecutionException e) {
+                state = StartupTaskState.FAILED;
+                error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                log.error("Стартовая задача '{}' завершилась с ошибкой: {}", task.name(), error, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                updateStatus(task, StartupTaskState.FAILED, startedAt, null, "Прервано при остановке приложения");
+                return;
+            }
+
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            updateStatus(task, state, startedAt, durationMs, error);
+            if (state == StartupTaskState.TIMED_OUT) {
+                log.warn("Стартовая задача '{}' прервана по таймауту через {} мс, ждём её завершения",
+                        task.name(), durationMs);
+                try {
+                    finished.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                log.info("Стартовая задача '{}' завершена за {} мс со статусом {}", task.name(), durationMs, state);
+            }
+        }
+    }
+
+    private synchronized void updateStatus(StartupTask task, StartupTaskState state,
+                                           LocalDateTime startedAt, Long durationMs, String error) {
+        statuses.put(task.name(), new TaskStatus(task.name(), task.order(), state, startedAt, durationMs, error));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        orchestratorExecutor.shutdownNow();
+        taskExecutor.shutdownNow();
+    }
+}
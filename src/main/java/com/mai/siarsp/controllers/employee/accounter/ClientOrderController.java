@@ -3,25 +3,26 @@ package com.mai.siarsp.controllers.employee.accounter;
 import java.nio.charset.StandardCharsets;
 import com.mai.siarsp.dto.ApiResponse;
 import com.mai.siarsp.dto.CommercialOfferImportResult;
+import com.mai.siarsp.dto.ImportProgress;
+import com.mai.siarsp.dto.ProductSuggestion;
 import com.mai.siarsp.enumeration.ClientOrderStatus;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.models.*;
 import com.mai.siarsp.models.AcceptanceAct;
 import com.mai.siarsp.models.ClientOrder;
 import com.mai.siarsp.repo.ClientRepository;
-import com.mai.siarsp.repo.ProductRepository;
-import com.mai.siarsp.repo.RequestForDeliveryRepository;
 import com.mai.siarsp.service.employee.ClientOrderService;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
 import com.mai.siarsp.service.general.CommercialOfferImportService;
-import com.mai.siarsp.service.general.ReportDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
+import com.mai.siarsp.service.general.ProductSearchIndex;
 import com.mai.siarsp.service.general.ContractService;
-import com.mai.siarsp.service.general.TTNDocumentService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -29,6 +30,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
@@ -44,30 +46,34 @@ public class ClientOrderController {
     private final ClientOrderService clientOrderService;
     private final DeliveryTaskService deliveryTaskService;
     private final ClientRepository clientRepository;
-    private final ProductRepository productRepository;
-    private final RequestForDeliveryRepository requestForDeliveryRepository;
+    private final ProductSearchIndex productSearchIndex;
     private final CommercialOfferImportService commercialOfferImportService;
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
 
     public ClientOrderController(ClientOrderService clientOrderService,
                                  DeliveryTaskService deliveryTaskService,
                                  ClientRepository clientRepository,
-                                 ProductRepository productRepository,
-                                 RequestForDeliveryRepository requestForDeliveryRepository,
-                                 CommercialOfferImportService commercialOfferImportService) {
+                                 ProductSearchIndex productSearchIndex,
+                                 CommercialOfferImportService commercialOfferImportService,
+                                 ListExportService listExportService,
+                                 DocumentCacheService documentCacheService) {
         this.clientOrderService = clientOrderService;
         this.deliveryTaskService = deliveryTaskService;
         this.clientRepository = clientRepository;
-        this.productRepository = productRepository;
-        this.requestForDeliveryRepository = requestForDeliveryRepository;
+        this.productSearchIndex = productSearchIndex;
         this.commercialOfferImportService = commercialOfferImportService;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
     }
 
     @PostMapping("/importProducts")
     @org.springframework.web.bind.annotation.ResponseBody
     public ResponseEntity<ApiResponse<CommercialOfferImportResult>> importProducts(
-            @org.springframework.web.bind.annotation.RequestParam("file") org.springframework.web.multipart.MultipartFile file) {
+            @org.springframework.web.bind.annotation.RequestParam("file") org.springframework.web.multipart.MultipartFile file,
+            @RequestParam(value = "importId", required = false) String importId) {
         try {
-            CommercialOfferImportResult result = commercialOfferImportService.parse(file);
+            CommercialOfferImportResult result = commercialOfferImportService.parse(file, importId);
             return ResponseEntity.ok(ApiResponse.ok(result, "OK"));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
@@ -77,6 +83,14 @@ public class ClientOrderController {
         }
     }
 
+    @GetMapping("/importProducts/progress/{importId}")
+    @ResponseBody
+    public ResponseEntity<ApiResponse<ImportProgress>> importProgress(@PathVariable String importId) {
+        return commercialOfferImportService.getProgress(importId)
+                .map(progress -> ResponseEntity.ok(ApiResponse.ok(progress, "OK")))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error("Импорт не найден.")));
+    }
+
     @GetMapping("/allClientOrders")
     public String allClientOrders(Model model) {
         model.addAttribute("orders", clientOrderService.getAllOrders());
@@ -84,6 +98,13 @@ public class ClientOrderController {
         return "employee/accounter/clientOrders/allClientOrders";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.ORDERS))
+                .body(outputStream -> listExportService.export(ExportType.ORDERS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsClientOrder/{id}")
     public String detailsClientOrder(@PathVariable Long id, Model model) {
@@ -106,7 +127,7 @@ public class ClientOrderController {
                 .sorted(Comparator.comparing(Client::getOrganizationName))
                 .collect(Collectors.toList());
 
-        List<Map<String, Object>> productsList = buildProductsList();
+        List<Map<String, Object>> productsList = buildProductsList(List.of());
 
         model.addAttribute("clients", clients);
         model.addAttribute("productsList", productsList);
@@ -160,7 +181,9 @@ public class ClientOrderController {
             return "redirect:/employee/accounter/clientOrders/detailsClientOrder/" + id;
         }
 
-        List<Map<String, Object>> productsList = buildProductsList();
+        List<Map<String, Object>> productsList = buildProductsList(order.getOrderedProducts().stream()
+                .map(op -> op.getProduct().getId())
+                .toList());
 
         List<Map<String, Object>> orderProducts = new ArrayList<>();
         for (var op : order.getOrderedProducts()) {
@@ -281,24 +304,20 @@ public class ClientOrderController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadTTN/{orderId}")
-    public ResponseEntity<byte[]> downloadTTN(@PathVariable Long orderId) throws IOException {
+    public ResponseEntity<Resource> downloadTTN(@PathVariable Long orderId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<ClientOrder> optOrder = clientOrderService.getOrderById(orderId);
         if (optOrder.isEmpty() || optOrder.get().getDeliveryTask() == null
                 || optOrder.get().getDeliveryTask().getTtn() == null) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = TTNDocumentService.generateDocument(
-                optOrder.get().getDeliveryTask().getTtn());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveTtn(optOrder.get().getDeliveryTask().getTtn(), ifNoneMatch);
     }
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{orderId}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long orderId) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long orderId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<ClientOrder> optOrder = clientOrderService.getOrderById(orderId);
         if (optOrder.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -307,49 +326,28 @@ public class ClientOrderController {
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(optAct.get(), ifNoneMatch);
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ ==========
 
     /**
-     * Формирует список товаров для JS в форме создания/редактирования.
-     * Включает среднее время поставки по каждому товару.
+     * Формирует список товаров для JS в форме создания/редактирования: только переданные товары
+     * (позиции редактируемого заказа) с текущими остатками и средним временем поставки.
+     * Остальные товары форма подгружает по мере ввода через /employee/general/products/typeahead.
      */
-    private List<Map<String, Object>> buildProductsList() {
-        List<Product> products = productRepository.findAll();
-
-        Map<Long, Double> avgDeliveryMap = new HashMap<>();
-        try {
-            List<Object[]> avgData = requestForDeliveryRepository.findAverageDeliveryDaysByProduct();
-            for (Object[] row : avgData) {
-                Long productId = ((Number) row[0]).longValue();
-                Double avgDays = row[1] != null ? ((Number) row[1]).doubleValue() : null;
-                if (avgDays != null) {
-                    avgDeliveryMap.put(productId, avgDays);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Не удалось загрузить среднее время поставки: {}", e.getMessage());
-        }
-
+    private List<Map<String, Object>> buildProductsList(Collection<Long> productIds) {
         List<Map<String, Object>> result = new ArrayList<>();
-        for (Product p : products) {
+        for (ProductSuggestion p : productSearchIndex.describe(productIds)) {
             Map<String, Object> map = new HashMap<>();
-            map.put("id", p.getId());
-            map.put("name", p.getName());
-            map.put("article", p.getArticle());
-            map.put("availableQuantity", p.getAvailableQuantity());
-            map.put("stockQuantity", p.getStockQuantity());
-            map.put("avgDeliveryDays", avgDeliveryMap.getOrDefault(p.getId(), 0.0));
+            map.put("id", p.id());
+            map.put("name", p.name());
+            map.put("article", p.article());
+            map.put("availableQuantity", p.availableQuantity());
+            map.put("stockQuantity", p.stockQuantity());
+            map.put("avgDeliveryDays", p.avgDeliveryDays());
             result.add(map);
         }
-        result.sort(Comparator.comparing(m -> (String) m.get("name")));
         return result;
     }
 }
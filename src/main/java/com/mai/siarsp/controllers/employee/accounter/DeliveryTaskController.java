@@ -1,26 +1,37 @@
 package com.mai.siarsp.controllers.employee.accounter;
 
 import java.nio.charset.StandardCharsets;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.models.AcceptanceAct;
 import com.mai.siarsp.models.DeliveryTask;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
 import com.mai.siarsp.service.general.ContractService;
-import com.mai.siarsp.service.general.ReportDocumentService;
-import com.mai.siarsp.service.general.TTNDocumentService;
+import com.mai.siarsp.service.general.DocumentBundleService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.FlashMap;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
 
 @Controller("accounterDeliveryTaskController")
@@ -29,9 +40,18 @@ import java.util.Optional;
 public class DeliveryTaskController {
 
     private final DeliveryTaskService deliveryTaskService;
-
-    public DeliveryTaskController(DeliveryTaskService deliveryTaskService) {
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
+    private final DocumentBundleService documentBundleService;
+
+    public DeliveryTaskController(DeliveryTaskService deliveryTaskService,
+                                  ListExportService listExportService,
+                                  DocumentCacheService documentCacheService,
+                                  DocumentBundleService documentBundleService) {
         this.deliveryTaskService = deliveryTaskService;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
+        this.documentBundleService = documentBundleService;
     }
 
     @GetMapping("/allDeliveryTasks")
@@ -40,6 +60,52 @@ public class DeliveryTaskController {
         return "employee/accounter/deliveryTasks/allDeliveryTasks";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.DELIVERY_TASKS))
+                .body(outputStream -> listExportService.export(ExportType.DELIVERY_TASKS, outputStream));
+    }
+
+    /**
+     * ZIP со всеми ТТН и актами приёма-передачи за день (по плановому началу) или по выбранным задачам.
+     * Если задач нет или их слишком много — возврат к списку задач с сообщением.
+     */
+    @GetMapping("/documentsBundle")
+    public ResponseEntity<StreamingResponseBody> downloadDocumentsBundle(@RequestParam(required = false) LocalDate date,
+                                                                         @RequestParam(required = false) List<Long> taskIds,
+                                                                         HttpServletRequest request,
+                                                                         HttpServletResponse response) {
+        boolean selected = taskIds != null && !taskIds.isEmpty();
+        LocalDate day = date != null ? date : LocalDate.now();
+        // повторный id дал бы в архиве одинаковые имена записей
+        List<Long> ids = selected ? taskIds.stream().distinct().toList() : documentBundleService.findTaskIdsForDate(day);
+        if (ids.isEmpty()) {
+            return redirectToTasks(request, response, "Нет задач на поставку за "
+                    + day.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")) + " — документов для скачивания нет.");
+        }
+        if (ids.size() > DocumentBundleService.MAX_TASKS) {
+            return redirectToTasks(request, response, "Слишком много задач для одного архива: " + ids.size()
+                    + " (не более " + DocumentBundleService.MAX_TASKS + ").");
+        }
+        String fileName = "Документы_" + (selected ? "выбранные" : day.toString()) + ".zip";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build());
+        return ResponseEntity.ok().headers(headers).body(outputStream -> documentBundleService.writeBundle(ids, outputStream));
+    }
+
+    /** Редирект к списку задач с flash-сообщением об ошибке (RedirectAttributes с ResponseEntity не работают). */
+    private static ResponseEntity<StreamingResponseBody> redirectToTasks(HttpServletRequest request,
+                                                                          HttpServletResponse response,
+                                                                          String errorMessage) {
+        String location = "/employee/accounter/deliveryTasks/allDeliveryTasks";
+        FlashMap flashMap = RequestContextUtils.getOutputFlashMap(request);
+        flashMap.put("errorMessage", errorMessage);
+        RequestContextUtils.saveOutputFlashMap(location, request, response);
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(location)).build();
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsDeliveryTask/{id}")
     public String detailsDeliveryTask(@PathVariable Long id, Model model) {
@@ -150,22 +216,19 @@ public class DeliveryTaskController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadTTN/{taskId}")
-    public ResponseEntity<byte[]> downloadTTN(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadTTN(@PathVariable Long taskId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getTtn() == null) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = TTNDocumentService.generateDocument(optTask.get().getTtn());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveTtn(optTask.get().getTtn(), ifNoneMatch);
     }
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{taskId}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long taskId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getClientOrder() == null) {
             return ResponseEntity.notFound().build();
@@ -175,11 +238,6 @@ public class DeliveryTaskController {
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(optAct.get(), ifNoneMatch);
     }
 }
@@ -1,24 +1,25 @@
 package com.mai.siarsp.controllers.employee.accounter;
 
 import com.mai.siarsp.dto.WriteOffActDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.models.WriteOffAct;
 import com.mai.siarsp.service.employee.WriteOffActService;
-import com.mai.siarsp.service.general.ReportDocumentService;
-import com.mai.siarsp.service.general.WriteOffActDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.ContentDisposition;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,9 +33,13 @@ import java.util.Optional;
 public class WriteOffActController {
 
     private final WriteOffActService writeOffActService;
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
 
-    public WriteOffActController(WriteOffActService writeOffActService) {
+    public WriteOffActController(WriteOffActService writeOffActService, ListExportService listExportService, DocumentCacheService documentCacheService) {
         this.writeOffActService = writeOffActService;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
     }
 
     @GetMapping("/allWriteOffActs")
@@ -44,6 +49,13 @@ public class WriteOffActController {
         return "employee/accounter/writeOffActs/allWriteOffActs";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.WRITE_OFF_ACTS))
+                .body(outputStream -> listExportService.export(ExportType.WRITE_OFF_ACTS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsWriteOffAct/{id}")
     public String detailsWriteOffAct(@PathVariable Long id, Model model) {
@@ -57,17 +69,12 @@ public class WriteOffActController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadWriteOffAct/{id}")
-    public ResponseEntity<byte[]> downloadWriteOffAct(@PathVariable Long id) throws IOException {
+    public ResponseEntity<Resource> downloadWriteOffAct(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<WriteOffAct> optAct = writeOffActService.getActById(id);
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = WriteOffActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment()
-                .filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveWriteOffAct(optAct.get(), ifNoneMatch);
     }
 }
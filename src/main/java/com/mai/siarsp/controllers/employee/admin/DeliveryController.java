@@ -1,21 +1,28 @@
 package com.mai.siarsp.controllers.employee.admin;
 
 import com.mai.siarsp.dto.DeliveryDTO;
+import com.mai.siarsp.dto.DeliveryNoteImportResult;
 import com.mai.siarsp.dto.SupplyDTO;
 import com.mai.siarsp.dto.SupplyInputDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.enumeration.RequestStatus;
 import com.mai.siarsp.mapper.DeliveryMapper;
 import com.mai.siarsp.mapper.RequestForDeliveryMapper;
 import com.mai.siarsp.models.Delivery;
 import com.mai.siarsp.models.RequestForDelivery;
 import com.mai.siarsp.models.RequestedProduct;
+import com.mai.siarsp.service.employee.warehouseManager.DeliveryNoteImportService;
 import com.mai.siarsp.service.employee.warehouseManager.DeliveryService;
+import com.mai.siarsp.service.general.ListExportService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
@@ -38,10 +45,16 @@ import java.util.stream.Collectors;
 public class DeliveryController {
 
     private final DeliveryService deliveryService;
+    private final ListExportService listExportService;
+    private final DeliveryNoteImportService deliveryNoteImportService;
 
     public DeliveryController(
-            @Qualifier("warehouseManagerDeliveryService") DeliveryService deliveryService) {
+            @Qualifier("warehouseManagerDeliveryService") DeliveryService deliveryService,
+            ListExportService listExportService,
+            DeliveryNoteImportService deliveryNoteImportService) {
         this.deliveryService = deliveryService;
+        this.listExportService = listExportService;
+        this.deliveryNoteImportService = deliveryNoteImportService;
     }
 
     @GetMapping("/allDeliveries")
@@ -50,6 +63,13 @@ public class DeliveryController {
         return "employee/admin/deliveries/allDeliveries";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.SUPPLIES))
+                .body(outputStream -> listExportService.export(ExportType.SUPPLIES, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/addDelivery")
     public String addDelivery(Model model) {
@@ -135,6 +155,34 @@ public class DeliveryController {
         return "redirect:/employee/admin/deliveries/allDeliveries";
     }
 
+    /**
+     * Приёмка по электронной накладной поставщика (xlsx/csv) вместо ручного заполнения формы.
+     */
+    @PostMapping("/importDeliveryNote")
+    public String importDeliveryNote(@RequestParam Long requestId,
+                                     @RequestParam("file") MultipartFile file,
+                                     RedirectAttributes redirectAttributes) {
+        DeliveryNoteImportResult result;
+        try {
+            result = deliveryNoteImportService.importDeliveryNote(requestId, file);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("deliveryError", e.getMessage());
+            return "redirect:/employee/admin/deliveries/addDeliveryFromRequest/" + requestId;
+        }
+
+        if (!result.success()) {
+            redirectAttributes.addFlashAttribute("deliveryError",
+                    "Накладная не принята. Исправьте ошибки и загрузите файл снова.");
+            redirectAttributes.addFlashAttribute("importErrors", result.errors());
+            return "redirect:/employee/admin/deliveries/addDeliveryFromRequest/" + requestId;
+        }
+
+        redirectAttributes.addFlashAttribute("successMessage",
+                "Поставка оформлена по накладной: строк " + result.lineCount() + ", партий " + result.supplyCount()
+                        + (result.hasDeficit() ? ", имеются недопоставки." : "."));
+        return "redirect:/employee/admin/deliveries/allDeliveries";
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsDelivery/{id}")
     public String detailsDelivery(@PathVariable Long id, Model model,
@@ -5,6 +5,7 @@ import com.mai.siarsp.dto.EmployeeDTO;
 import com.mai.siarsp.mapper.EmployeeMapper;
 import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.service.employee.EmployeeService;
+import com.mai.siarsp.service.employee.RoleService;
 import com.mai.siarsp.service.general.ContractService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
@@ -29,9 +30,11 @@ import java.util.Map;
 public class EmployeeController {
 
     private final EmployeeService employeeService;
+    private final RoleService roleService;
 
-    public EmployeeController(EmployeeService employeeService) {
+    public EmployeeController(EmployeeService employeeService, RoleService roleService) {
         this.employeeService = employeeService;
+        this.roleService = roleService;
     }
 
     @GetMapping("/employee/admin/employees/check-username")
@@ -53,7 +56,7 @@ public class EmployeeController {
 
     @GetMapping("/employee/admin/employees/addEmployee")
     public String addEmployee(Model model) {
-        model.addAttribute("allRoles", employeeService.getRoleRepository().findByNameStartingWith("ROLE_EMPLOYEE"));
+        model.addAttribute("allRoles", roleService.getEmployeeRoles());
         return "/employee/admin/employees/addEmployee";
     }
 
@@ -71,7 +74,7 @@ public class EmployeeController {
         if (!employeeService.saveEmployee(employee, inputRole, inputSpecialization, inputQualification,
                 inputSalary, hiringOrderFile)) {
             model.addAttribute("usernameError", "Ошибка при сохранении.");
-            model.addAttribute("allRoles", employeeService.getRoleRepository().findByNameStartingWith("ROLE_EMPLOYEE"));
+            model.addAttribute("allRoles", roleService.getEmployeeRoles());
             return "employee/admin/employees/addEmployee";
         } else {
             return "redirect:/employee/admin/employees/detailsEmployee/" + employee.getId();
@@ -97,7 +100,7 @@ public class EmployeeController {
         }
         Employee employee = employeeService.getEmployeeRepository().findById(id).get();
         EmployeeDTO employeeDTO = EmployeeMapper.INSTANCE.toDTO(employee);
-        model.addAttribute("allRoles", employeeService.getRoleRepository().findByNameStartingWith("ROLE_EMPLOYEE"));
+        model.addAttribute("allRoles", roleService.getEmployeeRoles());
         model.addAttribute("employeeDTO", employeeDTO);
         return "employee/admin/employees/editEmployee";
     }
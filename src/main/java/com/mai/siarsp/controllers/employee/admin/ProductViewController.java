@@ -1,20 +1,24 @@
 package com.mai.siarsp.controllers.employee.admin;
 
 import com.mai.siarsp.dto.ProductDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.mapper.ProductMapper;
 import com.mai.siarsp.models.Product;
 import com.mai.siarsp.repo.OrderedProductRepository;
 import com.mai.siarsp.repo.ProductRepository;
 import com.mai.siarsp.repo.SupplyRepository;
 import com.mai.siarsp.repo.WriteOffActRepository;
+import com.mai.siarsp.service.general.ListExportService;
 import com.mai.siarsp.service.general.ProductPriceAggregateService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Comparator;
 import java.util.Optional;
@@ -34,17 +38,20 @@ public class ProductViewController {
     private final OrderedProductRepository orderedProductRepository;
     private final WriteOffActRepository writeOffActRepository;
     private final ProductPriceAggregateService priceAggregateService;
+    private final ListExportService listExportService;
 
     public ProductViewController(ProductRepository productRepository,
                                  SupplyRepository supplyRepository,
                                  OrderedProductRepository orderedProductRepository,
                                  WriteOffActRepository writeOffActRepository,
-                                 ProductPriceAggregateService priceAggregateService) {
+                                 ProductPriceAggregateService priceAggregateService,
+                                 ListExportService listExportService) {
         this.productRepository = productRepository;
         this.supplyRepository = supplyRepository;
         this.orderedProductRepository = orderedProductRepository;
         this.writeOffActRepository = writeOffActRepository;
         this.priceAggregateService = priceAggregateService;
+        this.listExportService = listExportService;
     }
 
     @Transactional(readOnly = true)
@@ -57,6 +64,13 @@ public class ProductViewController {
         return "employee/admin/products/allProducts";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.PRODUCTS))
+                .body(outputStream -> listExportService.export(ExportType.PRODUCTS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsProduct/{id}")
     public String detailsProduct(@PathVariable(value = "id") long id, Model model) {
@@ -0,0 +1,44 @@
+package com.mai.siarsp.controllers.employee.admin;
+
+import com.mai.siarsp.component.StartupTaskOrchestrator;
+import com.mai.siarsp.service.general.ReferenceDataCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.util.List;
+
+/**
+ * Служебные эндпоинты администратора о состоянии приложения.
+ *
+ * Доступ: только администратор
+ * URL-префикс: /employee/admin/system/
+ */
+@Controller
+public class SystemStatusController {
+
+    private final StartupTaskOrchestrator startupTaskOrchestrator;
+    private final ReferenceDataCache referenceDataCache;
+
+    public SystemStatusController(StartupTaskOrchestrator startupTaskOrchestrator,
+                                  ReferenceDataCache referenceDataCache) {
+        this.startupTaskOrchestrator = startupTaskOrchestrator;
+        this.referenceDataCache = referenceDataCache;
+    }
+
+    /**
+     * AJAX-эндпоинт: время готовности приложения и состояние фоновых стартовых задач
+     */
+    @GetMapping("/employee/admin/system/startupStatus")
+    public ResponseEntity<StartupTaskOrchestrator.StartupStatus> startupStatus() {
+        return ResponseEntity.ok(startupTaskOrchestrator.getStatus());
+    }
+
+    /**
+     * AJAX-эндпоинт: размер, попадания, промахи и вытеснения по областям кэша справочных данных
+     */
+    @GetMapping("/employee/admin/system/cacheStats")
+    public ResponseEntity<List<ReferenceDataCache.CacheStats>> cacheStats() {
+        return ResponseEntity.ok(referenceDataCache.getStats());
+    }
+}
@@ -8,15 +8,12 @@ import com.mai.siarsp.models.ClientOrder;
 import com.mai.siarsp.models.DeliveryTask;
 import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
 import com.mai.siarsp.service.general.ContractService;
-import com.mai.siarsp.service.general.ReportDocumentService;
-import com.mai.siarsp.service.general.TTNDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -35,9 +32,11 @@ import java.util.Optional;
 public class DeliveryTaskController {
 
     private final DeliveryTaskService deliveryTaskService;
+    private final DocumentCacheService documentCacheService;
 
-    public DeliveryTaskController(DeliveryTaskService deliveryTaskService) {
+    public DeliveryTaskController(DeliveryTaskService deliveryTaskService, DocumentCacheService documentCacheService) {
         this.deliveryTaskService = deliveryTaskService;
+        this.documentCacheService = documentCacheService;
     }
 
     @GetMapping("/myDeliveryTasks")
@@ -207,22 +206,19 @@ public class DeliveryTaskController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadTTN/{taskId}")
-    public ResponseEntity<byte[]> downloadTTN(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadTTN(@PathVariable Long taskId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getTtn() == null) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = TTNDocumentService.generateDocument(optTask.get().getTtn());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveTtn(optTask.get().getTtn(), ifNoneMatch);
     }
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{taskId}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long taskId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getClientOrder() == null) {
             return ResponseEntity.notFound().build();
@@ -232,11 +228,6 @@ public class DeliveryTaskController {
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(optAct.get(), ifNoneMatch);
     }
 }
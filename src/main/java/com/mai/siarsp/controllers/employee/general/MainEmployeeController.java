@@ -2,19 +2,23 @@ package com.mai.siarsp.controllers.employee.general;
 
 import com.mai.siarsp.dto.EmployeeDTO;
 import com.mai.siarsp.service.employee.EmployeeService;
+import com.mai.siarsp.service.employee.RoleService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
 public class MainEmployeeController {
 
     private final EmployeeService employeeService;
+    private final RoleService roleService;
 
-    public MainEmployeeController(EmployeeService employeeService) {
+    public MainEmployeeController(EmployeeService employeeService, RoleService roleService) {
         this.employeeService = employeeService;
+        this.roleService = roleService;
     }
 
     @GetMapping("/employee/login")
@@ -52,10 +56,21 @@ public class MainEmployeeController {
         EmployeeDTO currentEmployeeDTO = employeeService.getAuthenticationEmployeeDTO();
         if (currentEmployeeDTO != null){
             model.addAttribute("currentEmployee", currentEmployeeDTO);
-            String strRoleName = employeeService.getRoleRepository().findByName(currentEmployeeDTO.getRoleName()).orElseThrow().getDescription();
+            String strRoleName = roleService.getRoleByName(currentEmployeeDTO.getRoleName()).orElseThrow().getDescription();
             model.addAttribute("strRoleName", strRoleName);
         }
         return "employee/general/profile";
     }
 
+    @PostMapping("/employee/profile/notification-email")
+    public String changeNotificationEmail(@RequestParam(required = false) String notificationEmail,
+                                          RedirectAttributes redirectAttributes) {
+        if (employeeService.changeNotificationEmail(notificationEmail)) {
+            redirectAttributes.addFlashAttribute("successMessage", "Настройки e-mail уведомлений сохранены.");
+        } else {
+            redirectAttributes.addFlashAttribute("errorMessage", "Некорректный адрес e-mail.");
+        }
+        return "redirect:/employee/profile";
+    }
+
 }
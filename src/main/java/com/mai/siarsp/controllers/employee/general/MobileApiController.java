@@ -11,6 +11,7 @@ import com.mai.siarsp.repo.WriteOffActRepository;
 import com.mai.siarsp.service.employee.ClientOrderService;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
 import com.mai.siarsp.service.employee.EmployeeService;
+import com.mai.siarsp.service.employee.NotificationService;
 import com.mai.siarsp.service.employee.manager.ClientService;
 import com.mai.siarsp.service.employee.manager.ProductService;
 import com.mai.siarsp.service.employee.manager.SupplierService;
@@ -20,10 +21,12 @@ import com.mai.siarsp.models.OrderedProduct;
 import com.mai.siarsp.models.Supply;
 import com.mai.siarsp.models.WriteOffAct;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +56,7 @@ public class MobileApiController {
     private final SupplyRepository supplyRepository;
     private final OrderedProductRepository orderedProductRepository;
     private final WriteOffActRepository writeOffActRepository;
+    private final NotificationService notificationService;
 
     public MobileApiController(EmployeeService employeeService,
                                ClientService clientService,
@@ -66,7 +70,8 @@ public class MobileApiController {
                                AcceptanceActRepository acceptanceActRepository,
                                SupplyRepository supplyRepository,
                                OrderedProductRepository orderedProductRepository,
-                               WriteOffActRepository writeOffActRepository) {
+                               WriteOffActRepository writeOffActRepository,
+                               NotificationService notificationService) {
         this.employeeService = employeeService;
         this.clientService = clientService;
         this.supplierService = supplierService;
@@ -80,6 +85,7 @@ public class MobileApiController {
         this.supplyRepository = supplyRepository;
         this.orderedProductRepository = orderedProductRepository;
         this.writeOffActRepository = writeOffActRepository;
+        this.notificationService = notificationService;
     }
 
     // ========== ПРОФИЛЬ ==========
@@ -94,6 +100,26 @@ public class MobileApiController {
         return ResponseEntity.ok(dto);
     }
 
+    // ========== УВЕДОМЛЕНИЯ ==========
+
+    /**
+     * Количество непрочитанных уведомлений (из кэша счётчиков)
+     * Доступ: все авторизованные сотрудники
+     */
+    @GetMapping("/notifications/unreadCount")
+    public ResponseEntity<Long> getUnreadCount(@AuthenticationPrincipal Employee currentUser) {
+        return ResponseEntity.ok(notificationService.getUnreadCount(currentUser.getId()));
+    }
+
+    /**
+     * SSE-поток новых уведомлений (события unread и notification) вместо периодического опроса
+     * Доступ: все авторизованные сотрудники
+     */
+    @GetMapping(value = "/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(@AuthenticationPrincipal Employee currentUser) {
+        return notificationService.subscribe(currentUser.getId());
+    }
+
     // ========== КЛИЕНТЫ ==========
 
     /**
@@ -180,7 +206,7 @@ public class MobileApiController {
      */
     @GetMapping("/warehouses")
     public ResponseEntity<List<WarehouseDTO>> getWarehouses() {
-        List<WarehouseDTO> warehouses = WarehouseMapper.INSTANCE.toDTOList(warehouseService.getAllWarehouses());
+        List<WarehouseDTO> warehouses = WarehouseMapper.INSTANCE.toDTOList(warehouseService.getAllWarehousesWithShelves());
         return ResponseEntity.ok(warehouses);
     }
 
@@ -3,17 +3,21 @@ package com.mai.siarsp.controllers.employee.general;
 import com.mai.siarsp.dto.EmployeeDTO;
 import com.mai.siarsp.dto.NotificationDTO;
 import com.mai.siarsp.enumeration.NotificationStatus;
+import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.service.employee.EmployeeService;
 import com.mai.siarsp.service.employee.NotificationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * Контроллер для управления уведомлениями сотрудников
@@ -23,6 +27,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
  * - Отметку уведомления как прочитанного
  * - Отметку всех уведомлений как прочитанных
  * - AJAX-эндпоинт для получения количества непрочитанных (badge в header)
+ * - SSE-поток новых уведомлений и счётчика непрочитанных
+ * - Архив старых уведомлений (только просмотр)
  *
  * Доступ: все авторизованные сотрудники
  * URL-префикс: /employee/notifications/
@@ -80,6 +86,29 @@ public class NotificationController {
         return "employee/general/allNotifications";
     }
 
+    /**
+     * Архив: прочитанные и скрытые уведомления старше срока хранения, перенесённые фоновой задачей
+     */
+    @GetMapping("/employee/notifications/archive")
+    public String archivedNotifications(
+            @AuthenticationPrincipal Employee currentEmployee,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String search,
+            Model model) {
+        if (size < 1) size = 20;
+        if (size > 100) size = 100;
+
+        Page<NotificationDTO> notifications = notificationService.getArchivedNotifications(
+                currentEmployee.getId(), search, PageRequest.of(page, size));
+
+        model.addAttribute("notifications", notifications);
+        model.addAttribute("currentPage", page);
+        model.addAttribute("pageSize", size);
+        model.addAttribute("searchFilter", search != null ? search : "");
+        return "employee/general/archivedNotifications";
+    }
+
     /**
      * Отмечает уведомление как прочитанное и возвращает на страницу уведомлений
      */
@@ -113,15 +142,23 @@ public class NotificationController {
 
     /**
      * AJAX-эндпоинт: возвращает количество непрочитанных уведомлений
-     * Используется для badge в header
+     * Используется для badge в header. Счётчик берётся из кэша, сотрудник — из сессии
      */
     @GetMapping("/employee/notifications/unreadCount")
     @ResponseBody
-    public Long unreadCount() {
-        EmployeeDTO currentEmployee = employeeService.getAuthenticationEmployeeDTO();
+    public Long unreadCount(@AuthenticationPrincipal Employee currentEmployee) {
         if (currentEmployee == null) {
             return 0L;
         }
         return notificationService.getUnreadCount(currentEmployee.getId());
     }
+
+    /**
+     * SSE-поток: событие unread при подключении и изменении счётчика, notification — при новом уведомлении
+     */
+    @GetMapping(value = "/employee/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter stream(@AuthenticationPrincipal Employee currentEmployee) {
+        return notificationService.subscribe(currentEmployee.getId());
+    }
 }
@@ -7,8 +7,10 @@ import com.mai.siarsp.models.ProductCategory;
 import com.mai.siarsp.repo.ProductAttributeValueRepository;
 import com.mai.siarsp.repo.ProductCategoryRepository;
 import com.mai.siarsp.repo.ProductRepository;
+import com.mai.siarsp.service.general.ProductReadModelService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MultiValueMap;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -21,6 +23,7 @@ import java.util.*;
  * Используется на страницах товаров для:
  * - Модального окна просмотра характеристик в списке товаров
  * - Динамической загрузки полей атрибутов при выборе категории (add/edit)
+ * - Отбора товаров категории по значениям атрибутов
  *
  * Доступен для ROLE_EMPLOYEE_MANAGER и ROLE_EMPLOYEE_WAREHOUSE_MANAGER
  */
@@ -30,13 +33,16 @@ public class ProductAttributeValueController {
     private final ProductRepository productRepository;
     private final ProductCategoryRepository productCategoryRepository;
     private final ProductAttributeValueRepository productAttributeValueRepository;
+    private final ProductReadModelService productReadModelService;
 
     public ProductAttributeValueController(ProductRepository productRepository,
                                            ProductCategoryRepository productCategoryRepository,
-                                           ProductAttributeValueRepository productAttributeValueRepository) {
+                                           ProductAttributeValueRepository productAttributeValueRepository,
+                                           ProductReadModelService productReadModelService) {
         this.productRepository = productRepository;
         this.productCategoryRepository = productCategoryRepository;
         this.productAttributeValueRepository = productAttributeValueRepository;
+        this.productReadModelService = productReadModelService;
     }
 
     /**
@@ -120,4 +126,42 @@ public class ProductAttributeValueController {
 
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * Отбирает товары категории по значениям атрибутов через типизированную модель характеристик.
+     * Условия передаются параллельными параметрами attributeId / value / min / max (по одному набору на атрибут):
+     * для чисел и дат — диапазон включительно или точное value, для текста — value без учёта регистра.
+     * Параметры читаются как MultiValueMap, чтобы «1,5» не делилось по запятой.
+     *
+     * @return JSON {ready, productIds}; ready=false, пока модель собирается после старта
+     */
+    @GetMapping("/employee/general/productAttributeValues/filter")
+    public ResponseEntity<Map<String, Object>> filterProducts(@RequestParam Long categoryId,
+                                                              @RequestParam MultiValueMap<String, String> params) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", productReadModelService.isReady());
+        if (!productReadModelService.isReady()) {
+            result.put("productIds", Collections.emptyList());
+            return ResponseEntity.ok(result);
+        }
+
+        List<String> attributeIds = params.getOrDefault("attributeId", List.of());
+        List<ProductReadModelService.AttributeFilter> filters = new ArrayList<>();
+        try {
+            for (int i = 0; i < attributeIds.size(); i++) {
+                filters.add(new ProductReadModelService.AttributeFilter(Long.parseLong(attributeIds.get(i)),
+                        valueAt(params, "value", i), valueAt(params, "min", i), valueAt(params, "max", i)));
+            }
+            result.put("productIds", productReadModelService.findProductIds(categoryId, filters));
+        } catch (IllegalArgumentException e) {
+            result.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    private static String valueAt(MultiValueMap<String, String> params, String name, int index) {
+        List<String> values = params.get(name);
+        return values != null && index < values.size() ? values.get(index) : null;
+    }
 }
@@ -0,0 +1,71 @@
+package com.mai.siarsp.controllers.employee.general;
+
+import com.mai.siarsp.service.general.ProductFacetIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST-контроллер фасетного отбора товаров (список товаров заведующего складом и др.)
+ *
+ * Отбор и счётчики считаются по индексу в памяти. Доступен всем сотрудникам.
+ */
+@Controller
+public class ProductFacetController {
+
+    private final ProductFacetIndex productFacetIndex;
+
+    public ProductFacetController(ProductFacetIndex productFacetIndex) {
+        this.productFacetIndex = productFacetIndex;
+    }
+
+    /**
+     * Товары по выбранным значениям фасетов и количество товаров по каждому значению
+     *
+     * @param params filter=&lt;ключ фасета&gt;:&lt;ключ значения&gt; (повторяется; внутри фасета — ИЛИ, между фасетами — И)
+     *               limit — сколько id товаров вернуть (по умолчанию 1000)
+     *               и ids — id товаров через запятую, среди которых вести отбор (строки страницы; удобнее POST)
+     * @return JSON {ready, total, productIds, unindexedIds,
+     *         facets: [{key, title, unit, values: [{key, label, count, selected}]}]}
+     */
+    @RequestMapping(value = "/employee/general/products/facets", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<ProductFacetIndex.FacetQueryResult> facets(@RequestParam MultiValueMap<String, String> params) {
+        Map<String, List<String>> selected = new LinkedHashMap<>();
+        for (String filter : params.getOrDefault("filter", List.of())) {
+            int separator = filter.indexOf(':');
+            if (separator > 0) {
+                selected.computeIfAbsent(filter.substring(0, separator), key -> new ArrayList<>())
+                        .add(filter.substring(separator + 1));
+            }
+        }
+        int limit = 1000;
+        List<Long> candidates = null;
+        try {
+            String limitParam = params.getFirst("limit");
+            if (limitParam != null) {
+                limit = Integer.parseInt(limitParam.trim());
+            }
+            if (params.containsKey("ids")) {
+                candidates = new ArrayList<>();
+                for (String ids : params.get("ids")) {
+                    for (String id : ids.split(",")) {
+                        if (!id.isBlank()) {
+                            candidates.add(Long.parseLong(id.trim()));
+                        }
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(productFacetIndex.query(selected, limit, candidates));
+    }
+}
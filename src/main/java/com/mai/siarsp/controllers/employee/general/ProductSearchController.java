@@ -0,0 +1,49 @@
+package com.mai.siarsp.controllers.employee.general;
+
+import com.mai.siarsp.dto.ProductSuggestion;
+import com.mai.siarsp.service.general.ProductSearchIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+/**
+ * REST-контроллер подсказок при выборе товара (формы заказа клиента и др.)
+ *
+ * Поиск идёт по индексу в памяти, доступное количество — текущее из БД.
+ * Доступен всем сотрудникам.
+ */
+@Controller
+public class ProductSearchController {
+
+    private final ProductSearchIndex productSearchIndex;
+
+    public ProductSearchController(ProductSearchIndex productSearchIndex) {
+        this.productSearchIndex = productSearchIndex;
+    }
+
+    /**
+     * Первые совпадения по названию или артикулу
+     *
+     * @param q     начало слов названия или артикула
+     * @param limit сколько подсказок вернуть (не более 50)
+     * @return JSON список {id, name, article, availableQuantity, stockQuantity, avgDeliveryDays}
+     */
+    @GetMapping("/employee/general/products/typeahead")
+    public ResponseEntity<List<ProductSuggestion>> typeahead(@RequestParam(defaultValue = "") String q,
+                                                             @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productSearchIndex.suggest(q, limit));
+    }
+
+    /**
+     * Те же данные для известных товаров — строки импортированного коммерческого предложения
+     *
+     * @param ids ID товаров
+     */
+    @GetMapping("/employee/general/products/typeahead/byIds")
+    public ResponseEntity<List<ProductSuggestion>> byIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(productSearchIndex.describe(ids));
+    }
+}
@@ -1,14 +1,11 @@
 package com.mai.siarsp.controllers.employee.manager;
 
-import java.nio.charset.StandardCharsets;
 import com.mai.siarsp.models.AcceptanceAct;
 import com.mai.siarsp.service.employee.AcceptanceActService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
-import com.mai.siarsp.service.general.ReportDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.ContentDisposition;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,9 +23,11 @@ public class AcceptanceActController {
 
     private static final String ROLE_PATH = "manager";
     private final AcceptanceActService acceptanceActService;
+    private final DocumentCacheService documentCacheService;
 
-    public AcceptanceActController(AcceptanceActService acceptanceActService) {
+    public AcceptanceActController(AcceptanceActService acceptanceActService, DocumentCacheService documentCacheService) {
         this.acceptanceActService = acceptanceActService;
+        this.documentCacheService = documentCacheService;
     }
 
     @Transactional(readOnly = true)
@@ -68,16 +67,12 @@ public class AcceptanceActController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{id}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long id) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long id,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<AcceptanceAct> opt = acceptanceActService.getActById(id);
         if (opt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(opt.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(opt.get(), ifNoneMatch);
     }
 }
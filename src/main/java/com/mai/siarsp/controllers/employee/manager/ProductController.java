@@ -2,6 +2,7 @@ package com.mai.siarsp.controllers.employee.manager;
 
 import com.mai.siarsp.dto.ProductCategoryDTO;
 import com.mai.siarsp.dto.ProductDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.enumeration.WarehouseType;
 import com.mai.siarsp.mapper.ProductMapper;
 import com.mai.siarsp.models.Product;
@@ -10,6 +11,8 @@ import com.mai.siarsp.repo.OrderedProductRepository;
 import com.mai.siarsp.repo.SupplyRepository;
 import com.mai.siarsp.repo.WriteOffActRepository;
 import com.mai.siarsp.service.employee.manager.ProductService;
+import com.mai.siarsp.service.general.ListExportService;
+import com.mai.siarsp.service.general.ProductCatalogImportService;
 import com.mai.siarsp.service.general.ProductPriceAggregateService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +21,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.Comparator;
@@ -35,17 +39,23 @@ public class ProductController {
     private final OrderedProductRepository orderedProductRepository;
     private final WriteOffActRepository writeOffActRepository;
     private final ProductPriceAggregateService priceAggregateService;
+    private final ListExportService listExportService;
+    private final ProductCatalogImportService catalogImportService;
 
     public ProductController(ProductService productService,
                              SupplyRepository supplyRepository,
                              OrderedProductRepository orderedProductRepository,
                              WriteOffActRepository writeOffActRepository,
-                             ProductPriceAggregateService priceAggregateService) {
+                             ProductPriceAggregateService priceAggregateService,
+                             ListExportService listExportService,
+                             ProductCatalogImportService catalogImportService) {
         this.productService = productService;
         this.supplyRepository = supplyRepository;
         this.orderedProductRepository = orderedProductRepository;
         this.writeOffActRepository = writeOffActRepository;
         this.priceAggregateService = priceAggregateService;
+        this.listExportService = listExportService;
+        this.catalogImportService = catalogImportService;
     }
 
     @GetMapping("/employee/manager/products/check-article")
@@ -66,6 +76,28 @@ public class ProductController {
         return "employee/manager/products/allProducts";
     }
 
+    @GetMapping("/employee/manager/products/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.PRODUCTS))
+                .body(outputStream -> listExportService.export(ExportType.PRODUCTS, outputStream));
+    }
+
+    @GetMapping("/employee/manager/products/importProducts")
+    public String importProducts() {
+        return "employee/manager/products/importProducts";
+    }
+
+    @PostMapping("/employee/manager/products/importProducts")
+    public String importProducts(@RequestParam("file") MultipartFile file, Model model) {
+        try {
+            model.addAttribute("result", catalogImportService.importCatalog(file));
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("importError", e.getMessage());
+        }
+        return "employee/manager/products/importProducts";
+    }
+
     @GetMapping("/employee/manager/products/addProduct")
     public String addProduct(Model model) {
         model.addAttribute("warehouseTypes", WarehouseType.values());
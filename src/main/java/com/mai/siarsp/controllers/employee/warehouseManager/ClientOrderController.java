@@ -3,26 +3,26 @@ package com.mai.siarsp.controllers.employee.warehouseManager;
 import java.nio.charset.StandardCharsets;
 import com.mai.siarsp.dto.ClientOrderDTO;
 import com.mai.siarsp.enumeration.ClientOrderStatus;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.mapper.ClientOrderMapper;
 import com.mai.siarsp.models.AcceptanceAct;
 import com.mai.siarsp.models.ClientOrder;
 import com.mai.siarsp.models.TTN;
 import com.mai.siarsp.service.employee.ClientOrderService;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
-import com.mai.siarsp.service.general.ReportDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
 import com.mai.siarsp.service.general.ContractService;
-import com.mai.siarsp.service.general.TTNDocumentService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
@@ -46,11 +46,17 @@ public class ClientOrderController {
 
     private final ClientOrderService clientOrderService;
     private final DeliveryTaskService deliveryTaskService;
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
 
     public ClientOrderController(ClientOrderService clientOrderService,
-                                 DeliveryTaskService deliveryTaskService) {
+                                 DeliveryTaskService deliveryTaskService,
+                                 ListExportService listExportService,
+                                 DocumentCacheService documentCacheService) {
         this.clientOrderService = clientOrderService;
         this.deliveryTaskService = deliveryTaskService;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
     }
 
     @GetMapping("/allClientOrders")
@@ -60,6 +66,13 @@ public class ClientOrderController {
         return "employee/warehouseManager/clientOrders/allClientOrders";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.ORDERS))
+                .body(outputStream -> listExportService.export(ExportType.ORDERS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/detailsClientOrder/{id}")
     public String detailsClientOrder(@PathVariable Long id, Model model) {
@@ -225,24 +238,20 @@ public class ClientOrderController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadTTN/{orderId}")
-    public ResponseEntity<byte[]> downloadTTN(@PathVariable Long orderId) throws IOException {
+    public ResponseEntity<Resource> downloadTTN(@PathVariable Long orderId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<ClientOrder> optOrder = clientOrderService.getOrderById(orderId);
         if (optOrder.isEmpty() || optOrder.get().getDeliveryTask() == null
                 || optOrder.get().getDeliveryTask().getTtn() == null) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = TTNDocumentService.generateDocument(
-                optOrder.get().getDeliveryTask().getTtn());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveTtn(optOrder.get().getDeliveryTask().getTtn(), ifNoneMatch);
     }
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{orderId}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long orderId) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long orderId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<ClientOrder> optOrder = clientOrderService.getOrderById(orderId);
         if (optOrder.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -251,11 +260,6 @@ public class ClientOrderController {
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(optAct.get(), ifNoneMatch);
     }
 }
@@ -1,8 +1,10 @@
 package com.mai.siarsp.controllers.employee.warehouseManager;
 
 import com.mai.siarsp.dto.DeliveryDTO;
+import com.mai.siarsp.dto.DeliveryNoteImportResult;
 import com.mai.siarsp.dto.SupplyDTO;
 import com.mai.siarsp.dto.SupplyInputDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.enumeration.RequestStatus;
 import com.mai.siarsp.mapper.DeliveryMapper;
 import com.mai.siarsp.mapper.RequestForDeliveryMapper;
@@ -10,13 +12,18 @@ import com.mai.siarsp.mapper.SupplyMapper;
 import com.mai.siarsp.models.Delivery;
 import com.mai.siarsp.models.RequestForDelivery;
 import com.mai.siarsp.models.RequestedProduct;
+import com.mai.siarsp.service.employee.warehouseManager.DeliveryNoteImportService;
 import com.mai.siarsp.service.employee.warehouseManager.DeliveryService;
+import com.mai.siarsp.service.general.ListExportService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
@@ -43,10 +50,16 @@ import java.util.stream.Collectors;
 public class DeliveryController {
 
     private final DeliveryService deliveryService;
+    private final ListExportService listExportService;
+    private final DeliveryNoteImportService deliveryNoteImportService;
 
     public DeliveryController(
-            @Qualifier("warehouseManagerDeliveryService") DeliveryService deliveryService) {
+            @Qualifier("warehouseManagerDeliveryService") DeliveryService deliveryService,
+            ListExportService listExportService,
+            DeliveryNoteImportService deliveryNoteImportService) {
         this.deliveryService = deliveryService;
+        this.listExportService = listExportService;
+        this.deliveryNoteImportService = deliveryNoteImportService;
     }
 
     /**
@@ -58,6 +71,13 @@ public class DeliveryController {
         return "employee/warehouseManager/deliveries/allDeliveries";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.SUPPLIES))
+                .body(outputStream -> listExportService.export(ExportType.SUPPLIES, outputStream));
+    }
+
     /**
      * Шаг 1: выбор согласованной заявки для оформления поставки.
      */
@@ -155,6 +175,34 @@ public class DeliveryController {
         return "redirect:/employee/warehouseManager/deliveries/allDeliveries";
     }
 
+    /**
+     * Приёмка по электронной накладной поставщика (xlsx/csv) вместо ручного заполнения формы.
+     */
+    @PostMapping("/importDeliveryNote")
+    public String importDeliveryNote(@RequestParam Long requestId,
+                                     @RequestParam("file") MultipartFile file,
+                                     RedirectAttributes redirectAttributes) {
+        DeliveryNoteImportResult result;
+        try {
+            result = deliveryNoteImportService.importDeliveryNote(requestId, file);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("deliveryError", e.getMessage());
+            return "redirect:/employee/warehouseManager/deliveries/addDeliveryFromRequest/" + requestId;
+        }
+
+        if (!result.success()) {
+            redirectAttributes.addFlashAttribute("deliveryError",
+                    "Накладная не принята. Исправьте ошибки и загрузите файл снова.");
+            redirectAttributes.addFlashAttribute("importErrors", result.errors());
+            return "redirect:/employee/warehouseManager/deliveries/addDeliveryFromRequest/" + requestId;
+        }
+
+        redirectAttributes.addFlashAttribute("successMessage",
+                "Поставка оформлена по накладной: строк " + result.lineCount() + ", партий " + result.supplyCount()
+                        + (result.hasDeficit() ? ", имеются недопоставки." : "."));
+        return "redirect:/employee/warehouseManager/deliveries/allDeliveries";
+    }
+
     /**
      * Просмотр деталей поставки.
      */
@@ -1,6 +1,7 @@
 package com.mai.siarsp.controllers.employee.warehouseManager;
 
 import java.nio.charset.StandardCharsets;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.enumeration.RoutePointType;
 import com.mai.siarsp.models.AcceptanceAct;
 import com.mai.siarsp.models.ClientOrder;
@@ -9,21 +10,20 @@ import com.mai.siarsp.models.Warehouse;
 import com.mai.siarsp.repo.WarehouseRepository;
 import com.mai.siarsp.service.employee.ClientOrderService;
 import com.mai.siarsp.service.employee.DeliveryTaskService;
-import com.mai.siarsp.service.general.AcceptanceActDocumentService;
 import com.mai.siarsp.service.general.ContractService;
-import com.mai.siarsp.service.general.ReportDocumentService;
-import com.mai.siarsp.service.general.TTNDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
@@ -40,13 +40,19 @@ public class DeliveryTaskController {
     private final DeliveryTaskService deliveryTaskService;
     private final ClientOrderService clientOrderService;
     private final WarehouseRepository warehouseRepository;
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
 
     public DeliveryTaskController(DeliveryTaskService deliveryTaskService,
                                   ClientOrderService clientOrderService,
-                                  WarehouseRepository warehouseRepository) {
+                                  WarehouseRepository warehouseRepository,
+                                  ListExportService listExportService,
+                                  DocumentCacheService documentCacheService) {
         this.deliveryTaskService = deliveryTaskService;
         this.clientOrderService = clientOrderService;
         this.warehouseRepository = warehouseRepository;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
     }
 
     @GetMapping("/allDeliveryTasks")
@@ -55,6 +61,13 @@ public class DeliveryTaskController {
         return "employee/warehouseManager/deliveryTasks/allDeliveryTasks";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.DELIVERY_TASKS))
+                .body(outputStream -> listExportService.export(ExportType.DELIVERY_TASKS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/createDeliveryTask/{orderId}")
     public String createDeliveryTaskForm(@PathVariable Long orderId, Model model) {
@@ -209,22 +222,19 @@ public class DeliveryTaskController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadTTN/{taskId}")
-    public ResponseEntity<byte[]> downloadTTN(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadTTN(@PathVariable Long taskId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getTtn() == null) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = TTNDocumentService.generateDocument(optTask.get().getTtn());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveTtn(optTask.get().getTtn(), ifNoneMatch);
     }
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadAcceptanceAct/{taskId}")
-    public ResponseEntity<byte[]> downloadAcceptanceAct(@PathVariable Long taskId) throws IOException {
+    public ResponseEntity<Resource> downloadAcceptanceAct(@PathVariable Long taskId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<DeliveryTask> optTask = deliveryTaskService.getTaskById(taskId);
         if (optTask.isEmpty() || optTask.get().getClientOrder() == null) {
             return ResponseEntity.notFound().build();
@@ -234,11 +244,6 @@ public class DeliveryTaskController {
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = AcceptanceActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveAcceptanceAct(optAct.get(), ifNoneMatch);
     }
 }
@@ -1,26 +1,36 @@
 package com.mai.siarsp.controllers.employee.warehouseManager;
 
 import java.nio.charset.StandardCharsets;
-import com.mai.siarsp.service.general.ReportDocumentService;
+import com.mai.siarsp.enumeration.ReportType;
+import com.mai.siarsp.models.Employee;
+import com.mai.siarsp.service.general.ReportJobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDate;
+import java.util.Map;
 
 @Controller("warehouseManagerReportController")
 @RequestMapping("/employee/warehouseManager/reports")
 public class ReportController {
 
-    private final ReportDocumentService reportDocumentService;
+    private final ReportJobService reportJobService;
 
-    public ReportController(ReportDocumentService reportDocumentService) {
-        this.reportDocumentService = reportDocumentService;
+    public ReportController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
     }
 
     @GetMapping
@@ -33,46 +43,65 @@ public class ReportController {
     public String expiringProductsRedirect() {
         return "redirect:/employee/warehouseManager/reports";
     }
-    @GetMapping("/download/orders")
-    public ResponseEntity<byte[]> downloadOrdersReport(@RequestParam(required = false) LocalDate startDate,
-                                                       @RequestParam(required = false) LocalDate endDate) {
-        return buildResponse(reportDocumentService.generateOrdersReport(resolveStartDate(startDate, endDate),
-                resolveEndDate(startDate, endDate)));
+    /**
+     * Прежние ссылки на скачивание: ставят задание и возвращают на страницу отчётов, которая его отслеживает
+     */
+    @GetMapping("/download/{slug}")
+    public String downloadReport(@PathVariable String slug,
+                                 @RequestParam(required = false) LocalDate startDate,
+                                 @RequestParam(required = false) LocalDate endDate,
+                                 @AuthenticationPrincipal Employee currentEmployee,
+                                 RedirectAttributes redirectAttributes) {
+        ReportType type = "expiring-products".equals(slug) ? ReportType.EXPIRATION : ReportType.fromSlug(slug);
+        if (type == null) {
+            return "redirect:/employee/warehouseManager/reports";
+        }
+        try {
+            ReportJobService.JobStatus job = reportJobService.submit(currentEmployee.getId(), type,
+                    resolveStartDate(startDate, endDate), resolveEndDate(startDate, endDate));
+            return "redirect:/employee/warehouseManager/reports?job=" + job.id();
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("reportErrorMessage", e.getMessage());
+            return "redirect:/employee/warehouseManager/reports";
+        }
     }
 
-    @GetMapping("/download/warehouse")
-    public ResponseEntity<byte[]> downloadWarehouseReport(@RequestParam(required = false) LocalDate startDate,
-                                                          @RequestParam(required = false) LocalDate endDate) {
-        return buildResponse(reportDocumentService.generateStockReport(resolveStartDate(startDate, endDate),
-                resolveEndDate(startDate, endDate)));
+    /**
+     * AJAX-эндпоинт: постановка отчёта в очередь формирования
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitReportJob(@RequestParam ReportType type,
+                                             @RequestParam(required = false) LocalDate startDate,
+                                             @RequestParam(required = false) LocalDate endDate,
+                                             @AuthenticationPrincipal Employee currentEmployee) {
+        try {
+            return ResponseEntity.ok(reportJobService.submit(currentEmployee.getId(), type,
+                    resolveStartDate(startDate, endDate), resolveEndDate(startDate, endDate)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
     }
 
-    @GetMapping("/download/statistics")
-    public ResponseEntity<byte[]> downloadStatisticsReport(@RequestParam(required = false) LocalDate startDate,
-                                                           @RequestParam(required = false) LocalDate endDate) {
-        return buildResponse(reportDocumentService.generateStatisticsReport(resolveStartDate(startDate, endDate),
-                resolveEndDate(startDate, endDate)));
+    /**
+     * AJAX-эндпоинт: состояние задания
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ReportJobService.JobStatus> reportJobStatus(@PathVariable String id,
+                                                                      @AuthenticationPrincipal Employee currentEmployee) {
+        return ResponseEntity.of(reportJobService.getStatus(id, currentEmployee.getId()));
     }
 
-    @GetMapping("/download/expiring-products")
-    public ResponseEntity<byte[]> downloadExpirationReport(@RequestParam(required = false) LocalDate startDate,
-                                                           @RequestParam(required = false) LocalDate endDate) {
-        return buildResponse(reportDocumentService.generateExpirationReport(resolveStartDate(startDate, endDate),
-                resolveEndDate(startDate, endDate)));
-    }
-
-    @GetMapping("/download/supplies")
-    public ResponseEntity<byte[]> downloadSuppliesReport(@RequestParam(required = false) LocalDate startDate,
-                                                          @RequestParam(required = false) LocalDate endDate) {
-        return buildResponse(reportDocumentService.generateSuppliesReport(resolveStartDate(startDate, endDate),
-                resolveEndDate(startDate, endDate)));
-    }
-
-    private ResponseEntity<byte[]> buildResponse(ReportDocumentService.ReportFile reportFile) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment().filename(reportFile.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(reportFile.content());
+    @GetMapping("/jobs/{id}/download")
+    public ResponseEntity<Resource> downloadReportJob(@PathVariable String id,
+                                                      @AuthenticationPrincipal Employee currentEmployee) {
+        return reportJobService.getArtifact(id, currentEmployee.getId())
+                .map(artifact -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
+                    headers.setContentDisposition(ContentDisposition.attachment().filename(artifact.fileName(), StandardCharsets.UTF_8).build());
+                    return ResponseEntity.ok().headers(headers).<Resource>body(new FileSystemResource(artifact.file()));
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     private LocalDate resolveStartDate(LocalDate startDate, LocalDate endDate) {
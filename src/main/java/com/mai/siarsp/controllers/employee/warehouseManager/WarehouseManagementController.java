@@ -10,11 +10,16 @@ import com.mai.siarsp.repo.SupplyRepository;
 import com.mai.siarsp.repo.WarehouseRepository;
 import com.mai.siarsp.repo.ZoneProductRepository;
 import com.mai.siarsp.service.employee.warehouseManager.WarehouseManagementService;
+import com.mai.siarsp.service.general.ProductReadModelService;
+import com.mai.siarsp.service.general.ProductSearchIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.core.Authentication;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
@@ -38,22 +43,33 @@ public class WarehouseManagementController {
     private final ProductRepository productRepository;
     private final ZoneProductRepository zoneProductRepository;
     private final SupplyRepository supplyRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ProductSearchIndex productSearchIndex;
 
     public WarehouseManagementController(
             @Qualifier("warehouseManagementService") WarehouseManagementService managementService,
             WarehouseRepository warehouseRepository,
             ProductRepository productRepository,
             ZoneProductRepository zoneProductRepository,
-            SupplyRepository supplyRepository) {
+            SupplyRepository supplyRepository,
+            ProductReadModelService productReadModelService,
+            ProductSearchIndex productSearchIndex) {
         this.managementService = managementService;
         this.warehouseRepository = warehouseRepository;
         this.productRepository = productRepository;
         this.zoneProductRepository = zoneProductRepository;
         this.supplyRepository = supplyRepository;
+        this.productReadModelService = productReadModelService;
+        this.productSearchIndex = productSearchIndex;
     }
 
     // ========== РАЗМЕЩЕНИЕ ТОВАРА ==========
 
+    /**
+     * Страница размещения: товары с остатком в буфере. Поиск идёт по поисковому индексу товаров — каждое
+     * слово запроса должно быть началом слова названия или артикула (а не произвольной подстрокой названия,
+     * как раньше); пока индекс не собран — по подстроке названия в БД.
+     */
     @Transactional(readOnly = true)
     @GetMapping("/employee/warehouseManager/warehouse-management/place-product")
     public String placeProductPage(
@@ -63,10 +79,15 @@ public class WarehouseManagementController {
             Model model) {
 
         Page<Product> products;
-        if (search != null && !search.isBlank()) {
-            products = productRepository
-                    .findByNameContainingIgnoreCaseAndQuantityForStockGreaterThan(search, 0,
-                            PageRequest.of(page, size));
+        if (search != null && !search.isBlank() && productSearchIndex.isReady()) {
+            // отбор по остатку буфера применяется в индексе до ограничения числа совпадений
+            Set<Long> bufferIds = new HashSet<>(productRepository.findIdsByQuantityForStockGreaterThan(0));
+            List<Long> matchedIds = bufferIds.isEmpty() ? List.of()
+                    : productSearchIndex.searchIds(search, bufferIds.size(), bufferIds::contains);
+            products = pageOf(matchedIds, PageRequest.of(page, size));
+        } else if (search != null && !search.isBlank()) {
+            products = productRepository.findByNameContainingIgnoreCaseAndQuantityForStockGreaterThan(search, 0,
+                    PageRequest.of(page, size, Sort.by("name")));
         } else {
             products = productRepository
                     .findByQuantityForStockGreaterThan(0, PageRequest.of(page, size));
@@ -75,15 +96,34 @@ public class WarehouseManagementController {
         List<Product> negativeStockProducts = productRepository.findByQuantityForStockLessThan(0);
         List<Warehouse> warehouses = warehouseRepository.findAll();
 
-        // Pre-compute габариты упаковки пока JPA-транзакция ещё открыта
-        // (attributeValues — lazy collection, недоступна после закрытия транзакции)
+        // Габариты упаковки страницы — одним запросом к модели характеристик; пока она не собрана,
+        // считаются через attributeValues, пока JPA-транзакция ещё открыта (lazy collection)
+        Map<Long, Map<String, Object>> dimensions = null;
+        if (productReadModelService.isReady()) {
+            Map<Long, Long> productCategories = new HashMap<>();
+            for (Product p : products.getContent()) {
+                productCategories.put(p.getId(), p.getCategory().getId());
+            }
+            dimensions = productReadModelService.findValues(productCategories,
+                    ProductReadModelService.PACKAGE_DIMENSIONS);
+        }
         Map<Long, Boolean> hasPackageDims = new HashMap<>();
         Map<Long, String>  packageDimsStr = new HashMap<>();
         for (Product p : products.getContent()) {
             try {
-                Double l = p.getPackageLength();
-                Double w = p.getPackageWidth();
-                Double h = p.getPackageHeight();
+                Double l;
+                Double w;
+                Double h;
+                if (dimensions != null) {
+                    Map<String, Object> values = dimensions.getOrDefault(p.getId(), Map.of());
+                    l = (Double) values.get(ProductReadModelService.PACKAGE_LENGTH);
+                    w = (Double) values.get(ProductReadModelService.PACKAGE_WIDTH);
+                    h = (Double) values.get(ProductReadModelService.PACKAGE_HEIGHT);
+                } else {
+                    l = p.getPackageLength();
+                    w = p.getPackageWidth();
+                    h = p.getPackageHeight();
+                }
                 boolean has = (l != null && w != null && h != null);
                 hasPackageDims.put(p.getId(), has);
                 if (has) {
@@ -104,6 +144,16 @@ public class WarehouseManagementController {
         return "employee/warehouseManager/warehouses/placeProduct";
     }
 
+    /** Страница товаров по списку id, уже упорядоченному по названию. */
+    private Page<Product> pageOf(List<Long> orderedIds, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), orderedIds.size());
+        List<Long> pageIds = orderedIds.subList(from, Math.min(from + pageable.getPageSize(), orderedIds.size()));
+        Map<Long, Product> byId = productRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        List<Product> content = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, orderedIds.size());
+    }
+
     @PostMapping("/employee/warehouseManager/warehouse-management/place-product")
     public String doPlaceProduct(
             @RequestParam Long productId,
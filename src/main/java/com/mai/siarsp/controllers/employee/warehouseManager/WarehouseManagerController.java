@@ -97,10 +97,7 @@ public class WarehouseManagerController {
 
         if (created.isPresent()) {
             Warehouse wh = created.get();
-            wh.setLatitude(latitude);
-            wh.setLongitude(longitude);
-            wh.setLocationName(locationName);
-            warehouseRepository.save(wh);
+            creationService.updateWarehouseLocation(wh.getId(), latitude, longitude, locationName);
             log.info("Склад '{}' создан с ID={}", name, wh.getId());
             return "redirect:/employee/warehouseManager/warehouses/detailsWarehouse/" + wh.getId();
         } else {
@@ -192,14 +189,7 @@ public class WarehouseManagerController {
             redirectAttributes.addFlashAttribute("warehouseError", "Ошибка при обновлении склада.");
             return "redirect:/employee/warehouseManager/warehouses/editWarehouse/" + id;
         }
-        Optional<Warehouse> opt = warehouseRepository.findById(id);
-        if (opt.isPresent()) {
-            Warehouse wh = opt.get();
-            wh.setLatitude(latitude);
-            wh.setLongitude(longitude);
-            wh.setLocationName(locationName);
-            warehouseRepository.save(wh);
-        }
+        creationService.updateWarehouseLocation(id, latitude, longitude, locationName);
         redirectAttributes.addFlashAttribute("successMessage", "Склад успешно обновлён.");
         return "redirect:/employee/warehouseManager/warehouses/detailsWarehouse/" + id;
     }
@@ -1,6 +1,7 @@
 package com.mai.siarsp.controllers.employee.warehouseManager;
 
 import com.mai.siarsp.dto.WriteOffActDTO;
+import com.mai.siarsp.enumeration.ExportType;
 import com.mai.siarsp.enumeration.WriteOffReason;
 import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.models.Product;
@@ -10,22 +11,21 @@ import com.mai.siarsp.models.ZoneProduct;
 import com.mai.siarsp.repo.ProductRepository;
 import com.mai.siarsp.repo.ZoneProductRepository;
 import com.mai.siarsp.service.employee.WriteOffActService;
-import com.mai.siarsp.service.general.ReportDocumentService;
-import com.mai.siarsp.service.general.WriteOffActDocumentService;
+import com.mai.siarsp.service.general.DocumentCacheService;
+import com.mai.siarsp.service.general.ListExportService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.ContentDisposition;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -40,13 +40,19 @@ public class WriteOffActController {
     private final WriteOffActService writeOffActService;
     private final ProductRepository productRepository;
     private final ZoneProductRepository zoneProductRepository;
+    private final ListExportService listExportService;
+    private final DocumentCacheService documentCacheService;
 
     public WriteOffActController(WriteOffActService writeOffActService,
                                  ProductRepository productRepository,
-                                 ZoneProductRepository zoneProductRepository) {
+                                 ZoneProductRepository zoneProductRepository,
+                                 ListExportService listExportService,
+                                 DocumentCacheService documentCacheService) {
         this.writeOffActService = writeOffActService;
         this.productRepository = productRepository;
         this.zoneProductRepository = zoneProductRepository;
+        this.listExportService = listExportService;
+        this.documentCacheService = documentCacheService;
     }
 
     @GetMapping("/allWriteOffActs")
@@ -56,6 +62,13 @@ public class WriteOffActController {
         return "employee/warehouseManager/writeOffActs/allWriteOffActs";
     }
 
+    @GetMapping("/exportXlsx")
+    public ResponseEntity<StreamingResponseBody> exportXlsx() {
+        return ResponseEntity.ok()
+                .headers(ListExportService.attachmentHeaders(ExportType.WRITE_OFF_ACTS))
+                .body(outputStream -> listExportService.export(ExportType.WRITE_OFF_ACTS, outputStream));
+    }
+
     @Transactional(readOnly = true)
     @GetMapping("/createWriteOffAct")
     public String createWriteOffActPage(Model model) {
@@ -175,17 +188,12 @@ public class WriteOffActController {
 
     @Transactional(readOnly = true)
     @GetMapping("/downloadWriteOffAct/{id}")
-    public ResponseEntity<byte[]> downloadWriteOffAct(@PathVariable Long id) throws IOException {
+    public ResponseEntity<Resource> downloadWriteOffAct(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         Optional<WriteOffAct> optAct = writeOffActService.getActById(id);
         if (optAct.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        ReportDocumentService.ReportFile file = WriteOffActDocumentService.generateDocument(optAct.get());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(
-                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-        headers.setContentDisposition(ContentDisposition.attachment()
-                .filename(file.fileName(), StandardCharsets.UTF_8).build());
-        return ResponseEntity.ok().headers(headers).body(file.content());
+        return documentCacheService.serveWriteOffAct(optAct.get(), ifNoneMatch);
     }
 }
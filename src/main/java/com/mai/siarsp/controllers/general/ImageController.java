@@ -29,7 +29,8 @@ public class ImageController {
     public ResponseEntity<Resource> getImage(@PathVariable long product_id) {
         Optional<Product> productOptional = productService.getProductRepository().findById(product_id);
 
-        if (productOptional.isEmpty() || productOptional.get().getImage() == null) {
+        if (productOptional.isEmpty() || productOptional.get().getImage() == null
+                || productOptional.get().getImage().isBlank()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
 
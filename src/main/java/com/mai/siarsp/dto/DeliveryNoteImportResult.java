@@ -0,0 +1,27 @@
+package com.mai.siarsp.dto;
+
+import java.util.List;
+
+/**
+ * Результат приёмки поставки по электронной накладной поставщика.
+ * <p>
+ * Накладная принимается целиком или не принимается вовсе: при любой ошибке строки поставка
+ * не создаётся, а {@code errors} перечисляет все найденные проблемы.
+ *
+ * @param deliveryId  id созданной поставки, null при ошибке
+ * @param lineCount   строк с товарами в накладной
+ * @param supplyCount созданных партий (включая нулевые партии по отсутствующим в накладной позициям)
+ * @param hasDeficit  есть недопоставка хотя бы по одной позиции заявки
+ * @param errors      ошибки по строкам накладной, пусто при успехе
+ */
+public record DeliveryNoteImportResult(
+        Long deliveryId,
+        int lineCount,
+        int supplyCount,
+        boolean hasDeficit,
+        List<String> errors
+) {
+    public boolean success() {
+        return deliveryId != null;
+    }
+}
@@ -23,4 +23,5 @@ public class EmployeeDTO {
     private BigDecimal salary;
     private String hiringOrderFile;
     private String dismissalOrderFile;
+    private String notificationEmail;
 }
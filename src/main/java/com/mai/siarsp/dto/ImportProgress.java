@@ -0,0 +1,19 @@
+package com.mai.siarsp.dto;
+
+/**
+ * Состояние длительного импорта файла для опроса со страницы.
+ *
+ * @param stage     текущий этап («Чтение файла», «Поиск товаров» и т. п.)
+ * @param processed обработано строк или позиций на текущем этапе
+ * @param total     всего на текущем этапе, 0 — заранее неизвестно
+ * @param finished  импорт завершён (успешно или с ошибкой)
+ * @param error     текст ошибки, null при успехе
+ */
+public record ImportProgress(
+        String stage,
+        int processed,
+        int total,
+        boolean finished,
+        String error
+) {
+}
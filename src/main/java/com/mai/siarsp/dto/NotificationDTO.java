@@ -9,6 +9,7 @@ public class NotificationDTO {
     private Long id;
     private Long recipientId;
     private String text;
+    private String details;
     private LocalDateTime createdAt;
     private String status;
 }
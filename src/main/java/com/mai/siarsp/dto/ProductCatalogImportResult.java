@@ -0,0 +1,32 @@
+package com.mai.siarsp.dto;
+
+import java.util.List;
+
+/**
+ * Результат загрузки каталога товаров из xlsx.
+ * <p>
+ * Строки с ошибками не загружаются и перечисляются в отчёте; отчёт ограничен по размеру,
+ * при превышении {@code errorsTruncated = true}, а {@code errorCount} остаётся полным.
+ */
+public record ProductCatalogImportResult(
+        int totalRows,
+        int importedCount,
+        int errorCount,
+        boolean errorsTruncated,
+        long durationMillis,
+        List<RowError> errors
+) {
+    /**
+     * Ошибка одной строки файла.
+     *
+     * @param rowNumber номер строки на листе Excel (как его видит пользователь)
+     * @param article   артикул из строки, если указан
+     * @param message   причина, по которой строка не загружена
+     */
+    public record RowError(
+            int rowNumber,
+            String article,
+            String message
+    ) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.mai.siarsp.dto;
+
+/**
+ * Подсказка поиска товара для форм выбора с актуальными остатками.
+ *
+ * @param availableQuantity доступно для резерва: размещено в зонах минус зарезервировано
+ * @param stockQuantity     всего на складе, включая буфер приёмки
+ * @param avgDeliveryDays   среднее время поставки по завершённым заявкам, 0 — нет данных
+ */
+public record ProductSuggestion(
+        Long id,
+        String name,
+        String article,
+        int availableQuantity,
+        int stockQuantity,
+        double avgDeliveryDays
+) {
+}
@@ -0,0 +1,23 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Список, выгружаемый в XLSX (ListExportService). slug — часть имени файла.
+ */
+@Getter
+public enum ExportType {
+    ORDERS("Заказы клиентов", "orders"),
+    PRODUCTS("Товары", "products"),
+    SUPPLIES("Поставки", "supplies"),
+    WRITE_OFF_ACTS("Акты списания", "write_off_acts"),
+    DELIVERY_TASKS("Задачи доставки", "delivery_tasks");
+
+    private final String displayName;
+    private final String slug;
+
+    ExportType(String displayName, String slug) {
+        this.displayName = displayName;
+        this.slug = slug;
+    }
+}
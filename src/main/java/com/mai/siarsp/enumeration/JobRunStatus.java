@@ -0,0 +1,19 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Статус запуска фоновой задачи (см. JobCoordinationService).
+ */
+@Getter
+public enum JobRunStatus {
+    RUNNING("Выполняется"),
+    SUCCESS("Успешно"),
+    FAILED("Ошибка");
+
+    private final String displayName;
+
+    JobRunStatus(String displayName) {
+        this.displayName = displayName;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Статус события в outbox уведомлений (см. NotificationOutboxDispatcher).
+ */
+@Getter
+public enum OutboxEventStatus {
+    PENDING("Ожидает отправки"),
+    DISPATCHED("Отправлено"),
+    FAILED("Ошибка");
+
+    private final String displayName;
+
+    OutboxEventStatus(String displayName) {
+        this.displayName = displayName;
+    }
+}
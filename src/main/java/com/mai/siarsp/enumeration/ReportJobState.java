@@ -0,0 +1,20 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Состояние задания на формирование отчёта.
+ */
+@Getter
+public enum ReportJobState {
+    QUEUED("В очереди"),
+    RUNNING("Формируется"),
+    DONE("Готов"),
+    FAILED("Ошибка");
+
+    private final String displayName;
+
+    ReportJobState(String displayName) {
+        this.displayName = displayName;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Тип отчёта, формируемого ReportJobService. slug — часть имени файла и пути скачивания.
+ */
+@Getter
+public enum ReportType {
+    ORDERS("Отчёт по заказам", "orders"),
+    WAREHOUSE("Отчёт о товарах на складе", "warehouse"),
+    STATISTICS("Статистический отчёт", "statistics"),
+    EXPIRATION("Отчёт по срокам годности", "expiration"),
+    SUPPLIES("Отчёт о поставках", "supplies");
+
+    private final String displayName;
+    private final String slug;
+
+    ReportType(String displayName, String slug) {
+        this.displayName = displayName;
+        this.slug = slug;
+    }
+
+    /**
+     * Тип по slug из пути скачивания; null, если такого отчёта нет.
+     */
+    public static ReportType fromSlug(String slug) {
+        for (ReportType type : values()) {
+            if (type.slug.equals(slug)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.mai.siarsp.enumeration;
+
+import lombok.Getter;
+
+/**
+ * Состояние фоновой задачи старта приложения.
+ */
+@Getter
+public enum StartupTaskState {
+    PENDING("Ожидает"),
+    RUNNING("Выполняется"),
+    DONE("Выполнена"),
+    FAILED("Ошибка"),
+    TIMED_OUT("Превышено время");
+
+    private final String displayName;
+
+    StartupTaskState(String displayName) {
+        this.displayName = displayName;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -46,6 +47,11 @@ public class AcceptanceAct {
     @Column(length = 500)
     private String comment;
 
+    /** Момент последнего изменения — версия закэшированного документа (DocumentCacheService). */
+    @UpdateTimestamp
+    @Column
+    private LocalDateTime updatedAt;
+
     @ToString.Exclude
     @OneToOne
     @JoinColumn(nullable = false)
@@ -0,0 +1,53 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Прогресс автосписания просроченных партий за конкретный день.
+ * <p>
+ * Партии обрабатываются порциями в порядке возрастания id; после фиксации каждой порции здесь
+ * запоминается id последней обработанной партии. Если запуск прервался (рестарт, сбой БД),
+ * следующий запуск за тот же день продолжит с места остановки, не создавая повторных актов.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_autoWriteOffProgress")
+@EqualsAndHashCode(of = "id")
+public class AutoWriteOffProgress {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private LocalDate runDate;
+
+    /** id последней партии, порция которой уже зафиксирована. 0 — ещё ничего не обработано. */
+    @Column(nullable = false)
+    private long lastSupplyId = 0;
+
+    @Column(nullable = false)
+    private int processedLots = 0;
+
+    @Column(nullable = false)
+    private int actsCreated = 0;
+
+    /** Момент завершения обхода всех партий. null — обход не завершён. */
+    @Column
+    private LocalDateTime completedAt;
+
+    // ========== КОНСТРУКТОРЫ ==========
+
+    public AutoWriteOffProgress(LocalDate runDate) {
+        this.runDate = runDate;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сброс области кэша справочных данных, сделанный на одном узле кластера.
+ * <p>
+ * ReferenceDataCache пишет событие в транзакции, изменившей данные, а остальные узлы читают новые события
+ * опросом и сбрасывают у себя те же записи. Старые события удаляются по расписанию.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_cacheInvalidation",
+        indexes = @Index(columnList = "created_at"))
+@EqualsAndHashCode(of = "id")
+public class CacheInvalidationEvent {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Область кэша (см. ReferenceDataCache). */
+    @Column(nullable = false, length = 50)
+    private String region;
+
+    /** Id сбрасываемых записей через запятую; null — область сбрасывается целиком. */
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String keyList;
+
+    /** Узел-источник: свои события узел не применяет повторно. */
+    @Column(nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -20,7 +20,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "t_clientOrder")
+@Table(name = "t_clientOrder", indexes = @Index(columnList = "order_date"))
 @EqualsAndHashCode(of = "id")
 public class ClientOrder {
 
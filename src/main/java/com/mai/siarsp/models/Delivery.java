@@ -18,7 +18,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "t_delivery")
+@Table(name = "t_delivery", indexes = @Index(columnList = "delivery_date"))
 @EqualsAndHashCode(of = "id")
 public class Delivery {
 
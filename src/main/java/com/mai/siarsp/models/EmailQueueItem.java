@@ -0,0 +1,73 @@
+package com.mai.siarsp.models;
+
+import com.mai.siarsp.enumeration.OutboxEventStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Письмо в постоянной очереди e-mail уведомлений.
+ * <p>
+ * Письма ставятся в очередь диспетчером outbox в одной транзакции с уведомлениями и отправляются
+ * EmailNotificationChannel. Очередь в БД переживает перезапуск; повторная постановка того же события
+ * тому же адресату отсекается уникальным ключом (outbox_event_id, recipient_email).
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_emailQueue",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"outbox_event_id", "recipient_email"}),
+        indexes = {
+                @Index(columnList = "status, next_attempt_at"),
+                @Index(columnList = "claim_token")
+        })
+@EqualsAndHashCode(of = "id")
+public class EmailQueueItem {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 254)
+    private String recipientEmail;
+
+    @Column(nullable = false, length = 500)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String body;
+
+    @Column
+    private Long outboxEventId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxEventStatus status = OutboxEventStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    /** Не отправлять раньше этого момента (экспоненциальная задержка после ошибки). */
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 36)
+    private String claimToken;
+
+    @Column
+    private LocalDateTime claimedUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private LocalDateTime sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
@@ -98,6 +98,12 @@ public class Employee implements UserDetails {
     @Column(length = 500)
     private String dismissalOrderFile;
 
+    /**
+     * Адрес для дублирования уведомлений по e-mail. null — сотрудник получает уведомления только в системе
+     */
+    @Column(length = 254)
+    private String notificationEmail;
+
     // ========== КОНСТРУКТОРЫ ==========
 
     public Employee(String lastName, String firstName, String patronymicName, String username, String password) {
@@ -0,0 +1,60 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Партия, которая по прогнозу не успеет продаться до истечения срока годности.
+ * <p>
+ * Строки пересчитываются {@link com.mai.siarsp.service.general.ExpiryRiskForecastService} целиком
+ * по товару: при изменении остатков или продаж товара его строки удаляются и записываются заново.
+ * Ссылки на товар и партию хранятся как id, чтобы массовая перезапись шла пакетным JDBC без загрузки сущностей.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_expiryRiskForecast",
+        indexes = @Index(columnList = "product_id"))
+@EqualsAndHashCode(of = "id")
+public class ExpiryRiskForecast {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Long supplyId;
+
+    @Column(nullable = false)
+    private LocalDate expirationDate;
+
+    /** Остаток партии на складе на момент расчёта. */
+    @Column(nullable = false)
+    private int stockQuantity;
+
+    /** Сколько единиц партии останется непроданными к дате истечения срока. */
+    @Column(nullable = false)
+    private int projectedUnsold;
+
+    /** projectedUnsold × закупочная цена партии. */
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal projectedWasteCost;
+
+    /** Средние продажи товара в день, использованные в расчёте. */
+    @Column(nullable = false)
+    private double dailyVelocity;
+
+    @Column(nullable = false)
+    private LocalDateTime calculatedAt;
+}
@@ -0,0 +1,33 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отпечаток последнего прогноза просрочки по товару.
+ * <p>
+ * fingerprint — хеш строк прогноза (партия, срок, остаток, непроданный остаток, ущерб, скорость продаж)
+ * без времени расчёта. Если при очередном запуске он не изменился, строки прогноза по товару не перезаписываются.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_expiryRiskProductState")
+@EqualsAndHashCode(of = "productId")
+public class ExpiryRiskProductState {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    private Long productId;
+
+    @Column(nullable = false)
+    private long fingerprint;
+
+    @Column(nullable = false)
+    private LocalDateTime calculatedAt;
+}
@@ -0,0 +1,45 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Аренда (lease) фоновой задачи: какой узел кластера сейчас владеет правом её выполнять и до какого момента.
+ * <p>
+ * Захват и продление выполняются атомарными UPDATE/INSERT в JobCoordinationService по времени БД,
+ * поэтому расхождение часов между узлами не влияет на результат.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_jobLease")
+@EqualsAndHashCode(of = "id")
+public class JobLease {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 100)
+    private String jobName;
+
+    /** Идентификатор узла-владельца (hostname:pid либо siarsp.node-id). */
+    @Column(nullable = false, length = 200)
+    private String owner;
+
+    @Column(nullable = false)
+    private LocalDateTime acquiredAt;
+
+    @Column(nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    /** До этого момента другие узлы не могут захватить задачу. */
+    @Column(nullable = false)
+    private LocalDateTime leaseUntil;
+}
@@ -0,0 +1,57 @@
+package com.mai.siarsp.models;
+
+import com.mai.siarsp.enumeration.JobRunStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Журнал запусков фоновых задач: кто, когда, сколько длилось и чем закончилось.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_jobRun", indexes = @Index(columnList = "job_name, started_at"))
+@EqualsAndHashCode(of = "id")
+public class JobRun {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String jobName;
+
+    @Column(nullable = false, length = 200)
+    private String owner;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column
+    private LocalDateTime finishedAt;
+
+    @Column
+    private Long durationMs;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobRunStatus status = JobRunStatus.RUNNING;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    // ========== КОНСТРУКТОРЫ ==========
+
+    public JobRun(String jobName, String owner) {
+        this.jobName = jobName;
+        this.owner = owner;
+        this.startedAt = LocalDateTime.now();
+        this.status = JobRunStatus.RUNNING;
+    }
+}
@@ -14,7 +14,18 @@ import java.time.LocalDateTime;
  */
 
 @Entity
-@Table(name = "t_notification")
+@Table(name = "t_notification",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"outbox_event_id", "recipient_id"}),
+        indexes = {
+                // Лента и счётчик непрочитанных: WHERE recipient_id = ? AND visible AND status = ? ORDER BY created_at
+                @Index(columnList = "recipient_id, visible, status, created_at"),
+                // Лента без фильтра по статусу
+                @Index(columnList = "recipient_id, visible, created_at"),
+                // Отбор кандидатов на архивацию
+                @Index(columnList = "created_at, status"),
+                // Поиск непрочитанной сводки того же вида для слияния
+                @Index(columnList = "recipient_id, coalesce_key, status")
+        })
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
@@ -43,6 +54,20 @@ public class Notification {
     @Column(nullable = false)
     private boolean visible = true;
 
+    /**
+     * Вид сводки (например, EQUIPMENT_EXPIRATION). У сводок text — заголовок, details — строки по позициям;
+     * новые позиции того же вида дописываются в ещё не прочитанную сводку, а не создают новое уведомление.
+     */
+    @Column(length = 100)
+    private String coalesceKey;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String details;
+
+    /** Событие outbox, из которого создано уведомление. Защищает от дублей при повторной доставке. */
+    @Column
+    private Long outboxEventId;
+
     // ========== КОНСТРУКТОРЫ ==========
 
     public Notification(Employee recipient, String text) {
@@ -0,0 +1,55 @@
+package com.mai.siarsp.models;
+
+import com.mai.siarsp.enumeration.NotificationStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Архивное уведомление: прочитанное или скрытое уведомление старше срока хранения в основной таблице.
+ * <p>
+ * Строки переносятся из t_notification с сохранением id фоновой задачей NotificationRetentionService,
+ * чтобы основная таблица, по которой строятся ленты и счётчики, не росла бесконечно. Получатель хранится
+ * как id без внешнего ключа — архив не мешает удалению сотрудника.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_notificationArchive",
+        indexes = @Index(columnList = "recipient_id, visible, created_at"))
+@EqualsAndHashCode(of = "id")
+public class NotificationArchive {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long recipientId;
+
+    @Column(nullable = false, length = 500)
+    private String text;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String details;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationStatus status;
+
+    @Column(nullable = false)
+    private boolean visible;
+
+    @Column
+    private Long outboxEventId;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
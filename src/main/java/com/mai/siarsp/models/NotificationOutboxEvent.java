@@ -0,0 +1,76 @@
+package com.mai.siarsp.models;
+
+import com.mai.siarsp.enumeration.OutboxEventStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Событие outbox уведомлений: «отправить текст таким-то ролям (или сотруднику)».
+ * <p>
+ * Бизнес-сервисы пишут одно событие в своей транзакции; уведомления по получателям создаёт
+ * фоновый NotificationOutboxDispatcher после фиксации. Доставка «хотя бы один раз»: событие,
+ * захваченное упавшим узлом, перезахватывается по истечении claimedUntil, а повторная вставка
+ * уведомлений отсекается уникальным ключом (outbox_event_id, recipient_id) в t_notification.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_notificationOutbox",
+        indexes = {
+                @Index(columnList = "status, id"),
+                @Index(columnList = "claim_token")
+        })
+@EqualsAndHashCode(of = "id")
+public class NotificationOutboxEvent {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Роли получателей через запятую. null — событие адресовано одному сотруднику (recipientId). */
+    @Column(length = 500)
+    private String roleNames;
+
+    @Column
+    private Long recipientId;
+
+    @Column(nullable = false, length = 500)
+    private String text;
+
+    /** Вид сводки; null — обычное уведомление. */
+    @Column(length = 100)
+    private String coalesceKey;
+
+    /** Строки сводки через перевод строки. */
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String details;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxEventStatus status = OutboxEventStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    /** Метка порции, которой событие захвачено диспетчером. */
+    @Column(length = 36)
+    private String claimToken;
+
+    @Column
+    private LocalDateTime claimedUntil;
+
+    @Column
+    private LocalDateTime dispatchedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,40 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Дневной агрегат доставленных заказов клиента (по дате заказа): число заказов и выручка.
+ * Отдельная таблица нужна для итогов по заказам — из товарных строк {@link SalesDailyFact} их не получить.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_orderDailyFact",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fact_date", "client_id"}))
+@EqualsAndHashCode(of = "id")
+public class OrderDailyFact {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate factDate;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    @Column(nullable = false)
+    private int orderCount;
+
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal revenue;
+}
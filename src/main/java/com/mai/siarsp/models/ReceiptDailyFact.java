@@ -0,0 +1,59 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Дневной агрегат поступлений товара от поставщика (по дате поставки): партии, единицы и закупочная стоимость.
+ * Пополняется при приёмке поставки, пересчитывается за период (см. DailyFactService).
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_receiptDailyFact",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fact_date", "product_id", "supplier_id"}),
+        indexes = @Index(columnList = "product_id, fact_date"))
+@EqualsAndHashCode(of = "id")
+public class ReceiptDailyFact {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate factDate;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Long supplierId;
+
+    /** Число партий (Supply) — выборка для средней закупочной цены. */
+    @Column(nullable = false)
+    private int supplyCount;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal purchaseCost;
+
+    /** Сумма закупочных цен партий: средняя цена = priceSum / supplyCount. */
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal priceSum;
+
+    /** Цена последней за день партии (наибольший id). */
+    @Column(precision = 10, scale = 2)
+    private BigDecimal lastPrice;
+
+    @Column(nullable = false)
+    private Long lastSupplyId;
+}
@@ -0,0 +1,66 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Дневной агрегат продаж товара клиенту: строки доставленных заказов за день (по дате заказа).
+ * <p>
+ * Пополняется {@link com.mai.siarsp.service.general.DailyFactService} при доставке заказа и
+ * пересчитывается им же за период. Ссылки хранятся как id — строки пишутся пакетным SQL.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_salesDailyFact",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fact_date", "product_id", "client_id"}),
+        indexes = @Index(columnList = "product_id, last_order_at"))
+@EqualsAndHashCode(of = "id")
+public class SalesDailyFact {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate factDate;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    /** Число заказов, в которых был товар. */
+    @Column(nullable = false)
+    private int orderCount;
+
+    /** Число строк заказов — выборка для средней цены. */
+    @Column(nullable = false)
+    private int lineCount;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal revenue;
+
+    /** Сумма цен строк: средняя цена = priceSum / lineCount. */
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal priceSum;
+
+    /** Цена в последнем за день заказе. */
+    @Column(precision = 12, scale = 2)
+    private BigDecimal lastPrice;
+
+    @Column(nullable = false)
+    private LocalDateTime lastOrderAt;
+}
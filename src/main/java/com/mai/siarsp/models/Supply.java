@@ -20,7 +20,7 @@ import java.time.LocalDate;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "t_supply")
+@Table(name = "t_supply", indexes = @Index(columnList = "expiration_date"))
 @EqualsAndHashCode(of = "id")
 public class Supply {
 
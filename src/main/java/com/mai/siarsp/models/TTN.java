@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -43,6 +44,11 @@ public class TTN {
     @Column(length = 500)
     private String comment;
 
+    /** Момент последнего изменения — версия закэшированного документа (DocumentCacheService). */
+    @UpdateTimestamp
+    @Column
+    private LocalDateTime updatedAt;
+
     @ToString.Exclude
     @OneToOne
     @JoinColumn(nullable = false)
@@ -0,0 +1,39 @@
+package com.mai.siarsp.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отметка «число непрочитанных уведомлений сотрудника изменилось» — прочтение или скрытие на одном узле кластера.
+ * <p>
+ * Пишется в транзакции прочтения; NotificationPushService других узлов читает новые отметки и пересчитывает
+ * счётчики только этих сотрудников. Старые отметки удаляются по расписанию.
+ */
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "t_unreadCounterChange",
+        indexes = @Index(columnList = "created_at"))
+@EqualsAndHashCode(of = "id")
+public class UnreadCounterChange {
+
+    // ========== ПОЛЯ ==========
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long recipientId;
+
+    /** Узел-источник: свой счётчик он уже обновил сам. */
+    @Column(nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -7,9 +7,11 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 /**
  * Акт списания товара (брак, порча, истечение срока). Закрывает складскую операцию и оставляет аудитный след.
@@ -58,6 +60,11 @@ public class WriteOffAct {
     @Column(precision = 12, scale = 2)
     private BigDecimal totalCost;
 
+    /** Момент последнего изменения — версия закэшированного документа (DocumentCacheService). */
+    @UpdateTimestamp
+    @Column
+    private LocalDateTime updatedAt;
+
     @ToString.Exclude
     @ManyToOne
     @JoinColumn(nullable = false)
@@ -0,0 +1,12 @@
+package com.mai.siarsp.repo;
+
+import com.mai.siarsp.models.AutoWriteOffProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface AutoWriteOffProgressRepository extends JpaRepository<AutoWriteOffProgress, Long> {
+
+    Optional<AutoWriteOffProgress> findByRunDate(LocalDate runDate);
+}
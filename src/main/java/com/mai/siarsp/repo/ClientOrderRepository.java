@@ -2,12 +2,19 @@ package com.mai.siarsp.repo;
 
 import com.mai.siarsp.enumeration.ClientOrderStatus;
 import com.mai.siarsp.models.ClientOrder;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ClientOrderRepository extends JpaRepository<ClientOrder, Long> {
 
@@ -31,4 +38,58 @@ public interface ClientOrderRepository extends JpaRepository<ClientOrder, Long>
            "LEFT JOIN FETCH co.responsibleEmployee " +
            "WHERE co.id = :id")
     Optional<ClientOrder> findByIdWithDetails(@Param("id") Long id);
+
+    /**
+     * Строки отчёта по заказам за период [from, to). Проекция без сущностей; курсор MySQL
+     * (fetch size Integer.MIN_VALUE) отдаёт строки по одной, не загружая выборку целиком.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT co.orderNumber AS orderNumber, co.orderDate AS orderDate, c.organizationName AS clientName, " +
+           "co.status AS status, co.totalAmount AS totalAmount " +
+           "FROM ClientOrder co LEFT JOIN co.client c " +
+           "WHERE co.orderDate >= :from AND co.orderDate < :to ORDER BY co.orderDate DESC")
+    Stream<OrderReportRow> streamReportRows(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    interface OrderReportRow {
+        String getOrderNumber();
+
+        LocalDateTime getOrderDate();
+
+        String getClientName();
+
+        ClientOrderStatus getStatus();
+
+        BigDecimal getTotalAmount();
+    }
+
+    /**
+     * Все заказы для выгрузки в XLSX, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT co.orderNumber AS orderNumber, co.orderDate AS orderDate, co.deliveryDate AS deliveryDate, " +
+           "co.actualDeliveryDate AS actualDeliveryDate, c.organizationName AS clientName, c.inn AS clientInn, " +
+           "co.status AS status, co.totalAmount AS totalAmount, " +
+           "CONCAT(e.lastName, ' ', e.firstName) AS responsibleName " +
+           "FROM ClientOrder co LEFT JOIN co.client c LEFT JOIN co.responsibleEmployee e ORDER BY co.orderDate DESC")
+    Stream<OrderExportRow> streamExportRows();
+
+    interface OrderExportRow {
+        String getOrderNumber();
+
+        LocalDateTime getOrderDate();
+
+        LocalDate getDeliveryDate();
+
+        LocalDate getActualDeliveryDate();
+
+        String getClientName();
+
+        String getClientInn();
+
+        ClientOrderStatus getStatus();
+
+        BigDecimal getTotalAmount();
+
+        String getResponsibleName();
+    }
 }
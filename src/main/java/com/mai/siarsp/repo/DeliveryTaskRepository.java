@@ -3,13 +3,18 @@ package com.mai.siarsp.repo;
 import com.mai.siarsp.enumeration.DeliveryTaskStatus;
 import com.mai.siarsp.models.ClientOrder;
 import com.mai.siarsp.models.DeliveryTask;
+import com.mai.siarsp.models.Employee;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
-import com.mai.siarsp.models.Employee;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface DeliveryTaskRepository extends JpaRepository<DeliveryTask, Long> {
 
@@ -64,4 +69,49 @@ public interface DeliveryTaskRepository extends JpaRepository<DeliveryTask, Long
            "LEFT JOIN FETCH dt.vehicle " +
            "WHERE dt.vehicle.id = :vehicleId ORDER BY dt.plannedStartTime DESC")
     List<DeliveryTask> findByVehicleIdWithDetails(@Param("vehicleId") Long vehicleId);
+
+    @Query("SELECT dt.id FROM DeliveryTask dt WHERE dt.plannedStartTime >= :from AND dt.plannedStartTime < :to " +
+           "ORDER BY dt.plannedStartTime, dt.id")
+    List<Long> findIdsByPlannedStartTimeBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Все задачи доставки для выгрузки в XLSX, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT dt.id AS id, co.orderNumber AS orderNumber, c.organizationName AS clientName, " +
+           "c.deliveryAddress AS deliveryAddress, dt.status AS status, dt.plannedStartTime AS plannedStartTime, " +
+           "dt.actualStartTime AS actualStartTime, dt.actualEndTime AS actualEndTime, " +
+           "CONCAT(e.lastName, ' ', e.firstName) AS driverName, v.registrationNumber AS vehicleNumber, " +
+           "dt.ttnNumber AS ttnNumber, dt.startMileage AS startMileage, dt.endMileage AS endMileage " +
+           "FROM DeliveryTask dt LEFT JOIN dt.clientOrder co LEFT JOIN co.client c " +
+           "LEFT JOIN dt.driver e LEFT JOIN dt.vehicle v ORDER BY dt.plannedStartTime DESC")
+    Stream<DeliveryTaskExportRow> streamExportRows();
+
+    interface DeliveryTaskExportRow {
+        Long getId();
+
+        String getOrderNumber();
+
+        String getClientName();
+
+        String getDeliveryAddress();
+
+        DeliveryTaskStatus getStatus();
+
+        LocalDateTime getPlannedStartTime();
+
+        LocalDateTime getActualStartTime();
+
+        LocalDateTime getActualEndTime();
+
+        String getDriverName();
+
+        String getVehicleNumber();
+
+        String getTtnNumber();
+
+        Integer getStartMileage();
+
+        Integer getEndMileage();
+    }
 }
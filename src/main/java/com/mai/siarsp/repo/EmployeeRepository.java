@@ -19,6 +19,9 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
 
     List<Employee> findAllByRoleName(String roleName);
 
+    @Query("SELECT e.id FROM Employee e WHERE e.role.name = :roleName")
+    List<Long> findIdsByRoleName(@Param("roleName") String roleName);
+
     boolean existsByUsername(String username);
 
     boolean existsByUsernameAndIdNot(String username, Long id);
@@ -0,0 +1,16 @@
+package com.mai.siarsp.repo;
+
+import com.mai.siarsp.enumeration.JobRunStatus;
+import com.mai.siarsp.models.JobRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    List<JobRun> findTop20ByJobNameOrderByStartedAtDesc(String jobName);
+
+    boolean existsByJobNameAndStatusAndStartedAtGreaterThanEqual(String jobName, JobRunStatus status,
+                                                                LocalDateTime since);
+}
@@ -0,0 +1,27 @@
+package com.mai.siarsp.repo;
+
+import com.mai.siarsp.models.NotificationArchive;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface NotificationArchiveRepository extends JpaRepository<NotificationArchive, Long> {
+
+    Page<NotificationArchive> findByRecipientIdAndVisibleTrueOrderByCreatedAtDesc(Long recipientId, Pageable pageable);
+
+    @Query("SELECT n FROM NotificationArchive n WHERE n.recipientId = :recipientId AND n.visible = TRUE " +
+            "AND (LOWER(n.text) LIKE :pattern ESCAPE '!' OR LOWER(n.details) LIKE :pattern ESCAPE '!') " +
+            "ORDER BY n.createdAt DESC")
+    Page<NotificationArchive> searchSubstring(@Param("recipientId") Long recipientId, @Param("pattern") String pattern,
+                                              Pageable pageable);
+
+    @Query(value = "SELECT * FROM t_notification_archive WHERE recipient_id = :recipientId AND visible = TRUE " +
+            "AND MATCH(text, details) AGAINST(:query IN BOOLEAN MODE) ORDER BY created_at DESC",
+            countQuery = "SELECT COUNT(*) FROM t_notification_archive WHERE recipient_id = :recipientId AND visible = TRUE " +
+                    "AND MATCH(text, details) AGAINST(:query IN BOOLEAN MODE)",
+            nativeQuery = true)
+    Page<NotificationArchive> searchFullText(@Param("recipientId") Long recipientId, @Param("query") String query,
+                                             Pageable pageable);
+}
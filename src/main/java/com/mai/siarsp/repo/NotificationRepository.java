@@ -5,6 +5,8 @@ import com.mai.siarsp.models.Notification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -21,7 +23,22 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
 
     Page<Notification> findByRecipientIdAndVisibleTrueAndStatusOrderByCreatedAtDesc(Long recipientId, NotificationStatus status, Pageable pageable);
 
-    Page<Notification> findByRecipientIdAndVisibleTrueAndTextContainingIgnoreCaseOrderByCreatedAtDesc(Long recipientId, String text, Pageable pageable);
-
-    Page<Notification> findByRecipientIdAndVisibleTrueAndStatusAndTextContainingIgnoreCaseOrderByCreatedAtDesc(Long recipientId, NotificationStatus status, String text, Pageable pageable);
+    // Поиск по подстроке в тексте и подробностях, пока нет FULLTEXT-индекса; pattern — из NotificationSearchService.toLikePattern
+    @Query("SELECT n FROM Notification n WHERE n.recipient.id = :recipientId AND n.visible = TRUE " +
+            "AND (:status IS NULL OR n.status = :status) " +
+            "AND (LOWER(n.text) LIKE :pattern ESCAPE '!' OR LOWER(n.details) LIKE :pattern ESCAPE '!') " +
+            "ORDER BY n.createdAt DESC")
+    Page<Notification> searchSubstring(@Param("recipientId") Long recipientId, @Param("status") NotificationStatus status,
+                                       @Param("pattern") String pattern, Pageable pageable);
+
+    // Полнотекстовый поиск (см. NotificationSearchService); status = NULL — без фильтра по статусу
+    @Query(value = "SELECT * FROM t_notification WHERE recipient_id = :recipientId AND visible = TRUE " +
+            "AND (:status IS NULL OR status = :status) " +
+            "AND MATCH(text, details) AGAINST(:query IN BOOLEAN MODE) ORDER BY created_at DESC",
+            countQuery = "SELECT COUNT(*) FROM t_notification WHERE recipient_id = :recipientId AND visible = TRUE " +
+                    "AND (:status IS NULL OR status = :status) " +
+                    "AND MATCH(text, details) AGAINST(:query IN BOOLEAN MODE)",
+            nativeQuery = true)
+    Page<Notification> searchFullText(@Param("recipientId") Long recipientId, @Param("status") String status,
+                                      @Param("query") String query, Pageable pageable);
 }
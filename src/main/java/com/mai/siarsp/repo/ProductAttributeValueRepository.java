@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,4 +31,12 @@ public interface ProductAttributeValueRepository extends JpaRepository<ProductAt
     @Query("DELETE FROM ProductAttributeValue pav WHERE pav.product.category = :category AND pav.attribute = :attribute")
     void deleteByProductCategoryAndAttribute(@Param("category") ProductCategory category,
                                               @Param("attribute") ProductAttribute attribute);
+
+    /**
+     * Значения атрибута с заданным названием для набора товаров: пары (id товара, значение).
+     */
+    @Query("SELECT pav.product.id, pav.value FROM ProductAttributeValue pav " +
+            "WHERE pav.attribute.name = :attributeName AND pav.product.id IN :productIds")
+    List<Object[]> findValuesByAttributeNameAndProductIds(@Param("attributeName") String attributeName,
+                                                          @Param("productIds") Collection<Long> productIds);
 }
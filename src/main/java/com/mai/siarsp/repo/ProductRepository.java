@@ -1,15 +1,21 @@
 package com.mai.siarsp.repo;
 
+import com.mai.siarsp.enumeration.WarehouseType;
 import com.mai.siarsp.models.Product;
 import com.mai.siarsp.models.ProductCategory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
@@ -21,6 +27,23 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Optional<Product> findByArticle(String article);
 
+    /**
+     * Id и названия товаров по набору артикулов — для пакетного сопоставления строк импорта.
+     */
+    @Query("SELECT p.id AS id, p.article AS article, p.name AS name FROM Product p WHERE p.article IN :articles")
+    List<ArticleRef> findRefsByArticleIn(@Param("articles") Collection<String> articles);
+
+    @Query("SELECT p.article FROM Product p")
+    List<String> findAllArticles();
+
+    interface ArticleRef {
+        Long getId();
+
+        String getArticle();
+
+        String getName();
+    }
+
     /**
      * Находит все товары, принадлежащие указанным категориям.
      * Используется при создании атрибута для определения товаров,
@@ -35,14 +58,116 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByQuantityForStockGreaterThan(int qty, Pageable pageable);
 
+    /** Id товаров с остатком в буфере больше qty — отбор страницы размещения по поисковому индексу. */
+    @Query("SELECT p.id FROM Product p WHERE p.quantityForStock > :qty")
+    List<Long> findIdsByQuantityForStockGreaterThan(@Param("qty") int qty);
+
     Page<Product> findByNameContainingIgnoreCaseAndQuantityForStockGreaterThan(
             String name, int qty, Pageable pageable);
 
-    @Query("""
-select distinct p
-from Product p
-left join fetch p.attributeValues av
-left join fetch av.attribute
-""")
-    List<Product> findAllWithAttributeValues();
+    /**
+     * Поиск по подстроке названия или артикула — запасной путь подсказок, пока поисковый индекс не собран.
+     */
+    @Query("SELECT p.id FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :text, '%')) " +
+            "OR LOWER(p.article) LIKE LOWER(CONCAT('%', :text, '%')) ORDER BY p.name")
+    List<Long> findIdsByNameOrArticleContaining(@Param("text") String text, Pageable pageable);
+
+    /**
+     * Названия и текущие остатки товаров — для подсказок поиска с живым доступным количеством.
+     */
+    @Query("SELECT p.id AS id, p.name AS name, p.article AS article, p.stockQuantity AS stockQuantity, " +
+            "p.quantityForStock AS quantityForStock, p.reservedQuantity AS reservedQuantity " +
+            "FROM Product p WHERE p.id IN :ids")
+    List<SuggestionRow> findSuggestionRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    interface SuggestionRow {
+        Long getId();
+
+        String getName();
+
+        String getArticle();
+
+        int getStockQuantity();
+
+        int getQuantityForStock();
+
+        int getReservedQuantity();
+    }
+
+    @Query("SELECT p.id FROM Product p")
+    List<Long> findAllIds();
+
+    /**
+     * Текущие остатки всех товаров — накладываются на закэшированные карточки каталога.
+     */
+    @Query("SELECT p.id AS id, p.stockQuantity AS stockQuantity, p.quantityForStock AS quantityForStock, " +
+            "p.reservedQuantity AS reservedQuantity FROM Product p")
+    List<StockRow> findAllStockRows();
+
+    interface StockRow {
+        Long getId();
+
+        int getStockQuantity();
+
+        int getQuantityForStock();
+
+        int getReservedQuantity();
+    }
+
+    /**
+     * Товары вместе с категорией и значениями характеристик одним запросом — для карточек кэша каталога.
+     */
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.category " +
+            "LEFT JOIN FETCH p.attributeValues v LEFT JOIN FETCH v.attribute WHERE p.id IN :ids")
+    List<Product> findWithAttributeValuesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Строки отчёта по остаткам в порядке названия, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p.article AS article, p.name AS name, c.name AS categoryName, " +
+            "p.stockQuantity AS stockQuantity, p.reservedQuantity AS reservedQuantity " +
+            "FROM Product p LEFT JOIN p.category c ORDER BY p.name")
+    Stream<StockReportRow> streamStockReportRows();
+
+    @Query("SELECT COALESCE(SUM(p.stockQuantity), 0) FROM Product p")
+    long sumStockQuantity();
+
+    interface StockReportRow {
+        String getArticle();
+
+        String getName();
+
+        String getCategoryName();
+
+        int getStockQuantity();
+
+        int getReservedQuantity();
+    }
+
+    /**
+     * Все товары для выгрузки в XLSX, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p.article AS article, p.name AS name, c.name AS categoryName, p.warehouseType AS warehouseType, " +
+            "p.stockQuantity AS stockQuantity, p.reservedQuantity AS reservedQuantity, " +
+            "p.quantityForStock AS quantityForStock " +
+            "FROM Product p LEFT JOIN p.category c ORDER BY p.name")
+    Stream<ProductExportRow> streamExportRows();
+
+    interface ProductExportRow {
+        String getArticle();
+
+        String getName();
+
+        String getCategoryName();
+
+        WarehouseType getWarehouseType();
+
+        int getStockQuantity();
+
+        int getReservedQuantity();
+
+        int getQuantityForStock();
+    }
 }
@@ -5,7 +5,9 @@ import com.mai.siarsp.models.RequestForDelivery;
 import com.mai.siarsp.models.Supplier;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,13 +24,13 @@ public interface RequestForDeliveryRepository extends JpaRepository<RequestForDe
     List<RequestForDelivery> findByStatusInOrderByRequestDateDesc(List<RequestStatus> statuses);
 
     /**
-     * Среднее время поставки (в днях) по каждому товару
+     * Среднее время поставки (в днях) по перечисленным товарам
      * на основе завершённых заявок (статус RECEIVED)
      */
     @Query(value = "SELECT rp.product_id, AVG(DATEDIFF(r.received_date, r.request_date)) " +
             "FROM t_request_for_delivery r " +
             "JOIN t_requested_product rp ON rp.request_id = r.id " +
-            "WHERE r.status = 'RECEIVED' AND r.received_date IS NOT NULL " +
+            "WHERE r.status = 'RECEIVED' AND r.received_date IS NOT NULL AND rp.product_id IN (:productIds) " +
             "GROUP BY rp.product_id", nativeQuery = true)
-    List<Object[]> findAverageDeliveryDaysByProduct();
+    List<Object[]> findAverageDeliveryDaysByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
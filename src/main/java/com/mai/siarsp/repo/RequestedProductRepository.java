@@ -4,7 +4,11 @@ import com.mai.siarsp.models.Product;
 import com.mai.siarsp.models.RequestForDelivery;
 import com.mai.siarsp.models.RequestedProduct;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 public interface RequestedProductRepository extends JpaRepository<RequestedProduct, Long> {
@@ -14,4 +18,28 @@ public interface RequestedProductRepository extends JpaRepository<RequestedProdu
     Optional<RequestedProduct> findByRequestAndProduct(RequestForDelivery request, Product product);
 
     long countByProductId(Long productId);
+
+    /**
+     * Позиции заявки с артикулами товаров — для сопоставления строк накладной поставщика.
+     */
+    @Query("SELECT rp.id AS id, rp.quantity AS quantity, rp.purchasePrice AS purchasePrice, rp.unit AS unit, " +
+            "p.id AS productId, p.article AS article, p.name AS productName " +
+            "FROM RequestedProduct rp JOIN rp.product p WHERE rp.request.id = :requestId")
+    List<RequestedLine> findLinesByRequestId(@Param("requestId") Long requestId);
+
+    interface RequestedLine {
+        Long getId();
+
+        int getQuantity();
+
+        BigDecimal getPurchasePrice();
+
+        String getUnit();
+
+        Long getProductId();
+
+        String getArticle();
+
+        String getProductName();
+    }
 }
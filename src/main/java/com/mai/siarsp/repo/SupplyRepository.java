@@ -3,13 +3,20 @@ package com.mai.siarsp.repo;
 import com.mai.siarsp.models.Delivery;
 import com.mai.siarsp.models.Product;
 import com.mai.siarsp.models.Supply;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface SupplyRepository extends JpaRepository<Supply, Long> {
 
@@ -39,6 +46,21 @@ public interface SupplyRepository extends JpaRepository<Supply, Long> {
             "AND EXISTS (SELECT 1 FROM ZoneProduct zp WHERE zp.supply = s)")
     List<Supply> findExpiredOnStock(@Param("today") LocalDate today);
 
+    /**
+     * id просроченных партий с остатками в зонах, идущие после afterId (keyset-пагинация).
+     * Размер порции задаётся через pageable; используется порционным автосписанием.
+     */
+    @Query("SELECT s.id FROM Supply s WHERE s.expirationDate IS NOT NULL " +
+            "AND s.expirationDate < :today AND s.id > :afterId " +
+            "AND EXISTS (SELECT 1 FROM ZoneProduct zp WHERE zp.supply = s) " +
+            "ORDER BY s.id ASC")
+    List<Long> findExpiredOnStockIdsAfter(@Param("today") LocalDate today,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+    @Query("SELECT s FROM Supply s JOIN FETCH s.product WHERE s.id IN :ids ORDER BY s.id ASC")
+    List<Supply> findAllWithProductByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Партии товара, годные на referenceDate (expirationDate >= referenceDate)
      * и имеющие хотя бы один ZoneProduct с положительным остатком.
@@ -48,4 +70,125 @@ public interface SupplyRepository extends JpaRepository<Supply, Long> {
             "ORDER BY zp.supply.expirationDate ASC")
     List<Supply> findEligibleByProductAndDate(@Param("productId") Long productId,
                                               @Param("referenceDate") LocalDate referenceDate);
+
+    /**
+     * Партии с остатком в зонах и сроком годности в периоде — строки отчёта по срокам годности.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p.article AS article, p.name AS name, SUM(zp.quantity) AS quantity, s.expirationDate AS expirationDate " +
+            "FROM ZoneProduct zp JOIN zp.supply s JOIN s.product p " +
+            "WHERE zp.quantity > 0 AND s.expirationDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.id, p.article, p.name, s.expirationDate ORDER BY s.expirationDate, s.id")
+    Stream<ExpiringLotRow> streamExpiringOnStock(@Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT COUNT(DISTINCT s.product.id) FROM ZoneProduct zp JOIN zp.supply s " +
+            "WHERE zp.quantity > 0 AND s.expirationDate BETWEEN :startDate AND :endDate")
+    long countProductsExpiringOnStock(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * Позиции поставок за период — строки отчёта о поставках, сгруппированные по поставке.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT d.id AS deliveryId, d.deliveryDate AS deliveryDate, sp.name AS supplierName, sp.inn AS supplierInn, " +
+            "p.name AS productName, p.article AS productArticle, s.unit AS unit, s.quantity AS quantity, " +
+            "s.purchasePrice AS purchasePrice, s.deficitQuantity AS deficitQuantity, s.deficitReason AS deficitReason " +
+            "FROM Supply s JOIN s.delivery d JOIN s.product p LEFT JOIN d.supplier sp " +
+            "WHERE d.deliveryDate BETWEEN :startDate AND :endDate " +
+            "ORDER BY d.deliveryDate DESC, d.id DESC, s.id")
+    Stream<SupplyReportRow> streamSupplyReportRows(@Param("startDate") LocalDate startDate,
+                                                   @Param("endDate") LocalDate endDate);
+
+    /**
+     * Итоги отчёта о поставках по тем же условиям, что и его строки: они печатаются над таблицей,
+     * которая пишется потоком.
+     */
+    @Query("SELECT COUNT(DISTINCT d.id) AS deliveryCount, COUNT(s.id) AS positionCount, " +
+            "SUM(COALESCE(s.purchasePrice, 0) * s.quantity) AS totalAmount " +
+            "FROM Supply s JOIN s.delivery d JOIN s.product p " +
+            "WHERE d.deliveryDate BETWEEN :startDate AND :endDate")
+    SupplyReportTotals summarizeSupplyReport(@Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+
+    interface ExpiringLotRow {
+        String getArticle();
+
+        String getName();
+
+        long getQuantity();
+
+        LocalDate getExpirationDate();
+    }
+
+    interface SupplyReportRow {
+        Long getDeliveryId();
+
+        LocalDate getDeliveryDate();
+
+        String getSupplierName();
+
+        String getSupplierInn();
+
+        String getProductName();
+
+        String getProductArticle();
+
+        String getUnit();
+
+        int getQuantity();
+
+        BigDecimal getPurchasePrice();
+
+        int getDeficitQuantity();
+
+        String getDeficitReason();
+    }
+
+    interface SupplyReportTotals {
+        long getDeliveryCount();
+
+        long getPositionCount();
+
+        BigDecimal getTotalAmount();
+    }
+
+    /**
+     * Все позиции поставок для выгрузки в XLSX, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT d.id AS deliveryId, d.deliveryDate AS deliveryDate, sp.name AS supplierName, sp.inn AS supplierInn, " +
+            "p.article AS productArticle, p.name AS productName, s.unit AS unit, s.quantity AS quantity, " +
+            "s.purchasePrice AS purchasePrice, s.productionDate AS productionDate, s.expirationDate AS expirationDate, " +
+            "s.deficitQuantity AS deficitQuantity, s.deficitReason AS deficitReason " +
+            "FROM Supply s JOIN s.delivery d JOIN s.product p LEFT JOIN d.supplier sp " +
+            "ORDER BY d.deliveryDate DESC, d.id DESC, s.id")
+    Stream<SupplyExportRow> streamExportRows();
+
+    interface SupplyExportRow {
+        Long getDeliveryId();
+
+        LocalDate getDeliveryDate();
+
+        String getSupplierName();
+
+        String getSupplierInn();
+
+        String getProductArticle();
+
+        String getProductName();
+
+        String getUnit();
+
+        int getQuantity();
+
+        BigDecimal getPurchasePrice();
+
+        LocalDate getProductionDate();
+
+        LocalDate getExpirationDate();
+
+        int getDeficitQuantity();
+
+        String getDeficitReason();
+    }
 }
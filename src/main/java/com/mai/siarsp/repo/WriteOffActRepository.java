@@ -3,10 +3,19 @@ package com.mai.siarsp.repo;
 import com.mai.siarsp.enumeration.WriteOffActStatus;
 import com.mai.siarsp.enumeration.WriteOffReason;
 import com.mai.siarsp.models.WriteOffAct;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface WriteOffActRepository extends JpaRepository<WriteOffAct, Long> {
 
@@ -27,4 +36,46 @@ public interface WriteOffActRepository extends JpaRepository<WriteOffAct, Long>
     List<WriteOffAct> findByProductIdOrderByActDateDesc(Long productId);
 
     List<WriteOffAct> findByProductIdAndStatusOrderByActDateDesc(Long productId, WriteOffActStatus status);
+
+    @Query("SELECT a.supply.id FROM WriteOffAct a WHERE a.supply.id IN :supplyIds " +
+            "AND a.reason = :reason AND a.status = :status")
+    List<Long> findSupplyIdsByReasonAndStatus(@Param("supplyIds") Collection<Long> supplyIds,
+                                              @Param("reason") WriteOffReason reason,
+                                              @Param("status") WriteOffActStatus status);
+
+    @Query("SELECT a.actNumber FROM WriteOffAct a WHERE a.actNumber IN :actNumbers")
+    List<String> findExistingActNumbers(@Param("actNumbers") Collection<String> actNumbers);
+
+    /**
+     * Все акты списания для выгрузки в XLSX, построчно через курсор MySQL.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT a.actNumber AS actNumber, a.actDate AS actDate, p.article AS productArticle, p.name AS productName, " +
+            "a.reason AS reason, a.quantity AS quantity, a.totalCost AS totalCost, a.status AS status, " +
+            "CONCAT(e.lastName, ' ', e.firstName) AS responsibleName, a.comment AS comment " +
+            "FROM WriteOffAct a LEFT JOIN a.product p LEFT JOIN a.responsibleEmployee e " +
+            "ORDER BY a.actDate DESC, a.id DESC")
+    Stream<WriteOffActExportRow> streamExportRows();
+
+    interface WriteOffActExportRow {
+        String getActNumber();
+
+        LocalDate getActDate();
+
+        String getProductArticle();
+
+        String getProductName();
+
+        WriteOffReason getReason();
+
+        int getQuantity();
+
+        BigDecimal getTotalCost();
+
+        WriteOffActStatus getStatus();
+
+        String getResponsibleName();
+
+        String getComment();
+    }
 }
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -77,4 +78,13 @@ public interface ZoneProductRepository extends JpaRepository<ZoneProduct, Long>
 
     @Query("SELECT zp FROM ZoneProduct zp WHERE zp.supply.id = :supplyId AND zp.quantity > 0")
     List<ZoneProduct> findBySupplyId(@Param("supplyId") Long supplyId);
+
+    /**
+     * Остатки по набору партий одним запросом: [supplyId, сумма quantity, id склада].
+     * Склад — минимальный id среди складов зон партии (null, если зона не привязана к складу).
+     */
+    @Query("SELECT zp.supply.id, SUM(zp.quantity), MIN(sh.warehouse.id) FROM ZoneProduct zp " +
+            "LEFT JOIN zp.zone z LEFT JOIN z.shelf sh " +
+            "WHERE zp.supply.id IN :supplyIds GROUP BY zp.supply.id")
+    List<Object[]> sumQuantityAndWarehouseBySupplyIds(@Param("supplyIds") Collection<Long> supplyIds);
 }
@@ -5,6 +5,7 @@ import com.mai.siarsp.enumeration.*;
 import com.mai.siarsp.mapper.DeliveryTaskMapper;
 import com.mai.siarsp.models.*;
 import com.mai.siarsp.repo.*;
+import com.mai.siarsp.service.general.DailyFactService;
 import com.mai.siarsp.service.general.ProductExpirationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -48,6 +49,7 @@ public class DeliveryTaskService {
     private final ZoneProductRepository zoneProductRepository;
     private final NotificationService notificationService;
     private final ProductExpirationService productExpirationService;
+    private final DailyFactService dailyFactService;
 
     public DeliveryTaskService(DeliveryTaskRepository deliveryTaskRepository,
                                ClientOrderRepository clientOrderRepository,
@@ -58,7 +60,8 @@ public class DeliveryTaskService {
                                AcceptanceActRepository acceptanceActRepository,
                                ZoneProductRepository zoneProductRepository,
                                NotificationService notificationService,
-                               ProductExpirationService productExpirationService) {
+                               ProductExpirationService productExpirationService,
+                               DailyFactService dailyFactService) {
         this.deliveryTaskRepository = deliveryTaskRepository;
         this.clientOrderRepository = clientOrderRepository;
         this.vehicleRepository = vehicleRepository;
@@ -69,6 +72,7 @@ public class DeliveryTaskService {
         this.zoneProductRepository = zoneProductRepository;
         this.notificationService = notificationService;
         this.productExpirationService = productExpirationService;
+        this.dailyFactService = dailyFactService;
     }
 
     // ========== ЗАПРОСЫ ==========
@@ -809,6 +813,7 @@ public class DeliveryTaskService {
             order.setStatus(ClientOrderStatus.DELIVERED);
             order.setActualDeliveryDate(LocalDate.now());
             clientOrderRepository.save(order);
+            dailyFactService.recordDeliveredOrder(order.getId());
 
             // Vehicle → AVAILABLE + обновление пробега
             Vehicle vehicle = task.getVehicle();
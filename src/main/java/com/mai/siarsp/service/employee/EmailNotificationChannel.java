@@ -0,0 +1,275 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.enumeration.OutboxEventStatus;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Канал e-mail уведомлений: постоянная очередь t_email_queue и фоновая отправка.
+ * <p>
+ * Включается свойством {@code siarsp.mail.enabled=true} при настроенном {@code spring.mail.host}.
+ * Письма ставит в очередь NotificationOutboxDispatcher — для сотрудников с заполненным notificationEmail —
+ * в той же транзакции, что и уведомления, поэтому поток запроса никогда не ждёт SMTP.
+ * <p>
+ * Цикл отправки работает в виртуальном потоке: сначала берёт токены из ведра ({@code siarsp.mail.rate-per-minute},
+ * {@code siarsp.mail.burst}), затем захватывает столько готовых к отправке писем, сколько получено токенов
+ * (не больше {@link #BATCH_SIZE}), и сразу отправляет порцию одним вызовом JavaMailSender — по одному
+ * SMTP-соединению. Ожидание лимита скорости происходит до захвата, поэтому захват ({@link #CLAIM_TTL_SECONDS} с)
+ * не истекает, пока письма ждут своей очереди, и другой узел не отправит их повторно. Письма, которые сервер
+ * не принял, повторяются с экспоненциальной задержкой до {@link #MAX_ATTEMPTS} попыток.
+ * <p>
+ * Для локальной проверки достаточно SMTP-заглушки в процессе (например, GreenMail) и
+ * {@code spring.mail.host=localhost}, {@code spring.mail.port=3025}.
+ */
+@Service
+@Slf4j
+public class EmailNotificationChannel {
+
+    public static final int BATCH_SIZE = 50;
+    private static final int CLAIM_TTL_SECONDS = 300;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_SECONDS = 30;
+    private static final long MAX_BACKOFF_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long POLL_INTERVAL_MS = 5000;
+    private static final int RETENTION_DAYS = 7;
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO t_email_queue " +
+            "(recipient_email, subject, body, outbox_event_id, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (?, ?, ?, ?, 'PENDING', 0, NOW(3), NOW(3))";
+
+    private static final String CLAIM_SQL = "UPDATE t_email_queue " +
+            "SET claim_token = ?, claimed_until = DATE_ADD(NOW(3), INTERVAL ? SECOND), attempts = attempts + 1 " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= NOW(3) " +
+            "AND (claimed_until IS NULL OR claimed_until < NOW(3)) ORDER BY id LIMIT ?";
+
+    private static final String SELECT_CLAIMED_SQL = "SELECT id, recipient_email, subject, body, attempts " +
+            "FROM t_email_queue WHERE claim_token = ? ORDER BY id";
+
+    private static final String MARK_SENT_SQL = "UPDATE t_email_queue SET status = 'DISPATCHED', sent_at = NOW(3), " +
+            "claim_token = NULL, claimed_until = NULL WHERE id = ?";
+
+    private static final String MARK_RETRY_SQL = "UPDATE t_email_queue " +
+            "SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+            "next_attempt_at = DATE_ADD(NOW(3), INTERVAL ? SECOND), claim_token = NULL, claimed_until = NULL, " +
+            "last_error = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final JavaMailSender mailSender;
+    private final boolean enabled;
+    private final String from;
+    private final TokenBucket tokenBucket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running;
+
+    public EmailNotificationChannel(JdbcTemplate jdbc,
+                                    ObjectProvider<JavaMailSender> mailSenderProvider,
+                                    @Value("${siarsp.mail.enabled:false}") boolean enabled,
+                                    @Value("${siarsp.mail.from:siarsp@localhost}") String from,
+                                    @Value("${siarsp.mail.rate-per-minute:60}") int ratePerMinute,
+                                    @Value("${siarsp.mail.burst:20}") int burst) {
+        this.jdbc = jdbc;
+        this.mailSender = mailSenderProvider.getIfAvailable();
+        if (enabled && mailSender == null) {
+            log.warn("siarsp.mail.enabled=true, но JavaMailSender не настроен (spring.mail.host) — e-mail уведомления отключены");
+        }
+        this.enabled = enabled && mailSender != null;
+        this.from = from;
+        this.tokenBucket = new TokenBucket(Math.max(1, burst), Math.max(1, ratePerMinute) / 60d);
+    }
+
+    /** Письмо на одного адресата, собранное из доставленного уведомления. */
+    public record EmailMessage(Long recipientId, String subject, String body, Long outboxEventId) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит письма в очередь в текущей транзакции. Сотрудники без notificationEmail пропускаются.
+     */
+    public void enqueue(List<EmailMessage> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+        Map<Long, String> emails = loadEmails(messages.stream().map(EmailMessage::recipientId).distinct().toList());
+        List<Object[]> rows = new ArrayList<>();
+        for (EmailMessage message : messages) {
+            String email = emails.get(message.recipientId());
+            if (email != null) {
+                rows.add(new Object[]{email, truncate(message.subject(), 500), message.body(), message.outboxEventId()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        executor.submit(this::sendLoop);
+        log.info("Отправка e-mail уведомлений запущена (от {})", from);
+    }
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                while (running && sendBatch()) {
+                    // Захвачено столько, сколько разрешил лимит, — в очереди, вероятно, есть ещё письма
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Ошибка цикла отправки e-mail: {}", e.getMessage(), e);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Берёт токены, захватывает столько же писем и отправляет их по одному SMTP-соединению.
+     *
+     * @return true, если захвачено столько писем, сколько было токенов (очередь, вероятно, не пуста)
+     */
+    boolean sendBatch() throws InterruptedException {
+        int permits = tokenBucket.acquireUpTo(BATCH_SIZE);
+        String claimToken = UUID.randomUUID().toString();
+        int claimed;
+        try {
+            claimed = jdbc.update(CLAIM_SQL, claimToken, CLAIM_TTL_SECONDS, permits);
+        } catch (RuntimeException e) {
+            tokenBucket.release(permits);
+            throw e;
+        }
+        if (claimed < permits) {
+            tokenBucket.release(permits - claimed);
+        }
+        if (claimed == 0) {
+            return false;
+        }
+
+        Map<MimeMessage, long[]> idsByMessage = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>();
+        for (Map<String, Object> row : jdbc.queryForList(SELECT_CLAIMED_SQL, claimToken)) {
+            long id = ((Number) row.get("id")).longValue();
+            int attempts = ((Number) row.get("attempts")).intValue();
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+                helper.setFrom(from);
+                helper.setTo((String) row.get("recipient_email"));
+                helper.setSubject((String) row.get("subject"));
+                helper.setText((String) row.get("body"), false);
+                messages.add(message);
+                idsByMessage.put(message, new long[]{id, attempts});
+            } catch (MessagingException e) {
+                markRetry(id, attempts, e);
+            }
+        }
+
+        Collection<Object> failed = Collections.emptySet();
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            failed.addAll(e.getFailedMessages().keySet());
+            if (failed.isEmpty()) {
+                failed.addAll(messages);
+            }
+            log.warn("SMTP не принял {} из {} писем: {}", failed.size(), messages.size(), e.getMessage());
+        } catch (MailException e) {
+            failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            failed.addAll(messages);
+            log.warn("Не удалось отправить порцию e-mail ({} писем): {}", messages.size(), e.getMessage());
+        }
+
+        List<Object[]> sent = new ArrayList<>();
+        for (MimeMessage message : messages) {
+            long[] idAndAttempts = idsByMessage.get(message);
+            if (failed.contains(message)) {
+                markRetry(idAndAttempts[0], (int) idAndAttempts[1], null);
+            } else {
+                sent.add(new Object[]{idAndAttempts[0]});
+            }
+        }
+        if (!sent.isEmpty()) {
+            jdbc.batchUpdate(MARK_SENT_SQL, sent);
+        }
+        log.debug("Порция e-mail: отправлено {}, к повтору {}", sent.size(), messages.size() - sent.size());
+        return claimed == permits;
+    }
+
+    private void markRetry(long id, int attempts, Exception error) {
+        long backoff = Math.min(MAX_BACKOFF_SECONDS, BASE_BACKOFF_SECONDS << Math.min(attempts, 20));
+        String message = error != null && error.getMessage() != null ? error.getMessage() : "SMTP отклонил письмо";
+        jdbc.update(MARK_RETRY_SQL, MAX_ATTEMPTS, backoff, truncate(message, 1000), id);
+    }
+
+    private Map<Long, String> loadEmails(List<Long> employeeIds) {
+        Map<Long, String> result = new HashMap<>();
+        jdbc.query("SELECT id, notification_email FROM t_employee WHERE notification_email IS NOT NULL AND id IN (" +
+                String.join(",", Collections.nCopies(employeeIds.size(), "?")) + ")", rs -> {
+            result.put(rs.getLong(1), rs.getString(2));
+        }, employeeIds.toArray());
+        return result;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * Удаление отправленных писем старше {@link #RETENTION_DAYS} дней.
+     */
+    @Scheduled(cron = "0 20 3 * * ?")
+    public void purgeSent() {
+        if (!enabled) {
+            return;
+        }
+        int deleted = jdbc.update("DELETE FROM t_email_queue WHERE status = ? " +
+                "AND sent_at < DATE_SUB(NOW(3), INTERVAL ? DAY)", OutboxEventStatus.DISPATCHED.name(), RETENTION_DAYS);
+        log.info("Удалено отправленных писем из очереди: {}", deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+}
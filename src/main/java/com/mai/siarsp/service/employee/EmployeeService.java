@@ -36,11 +36,14 @@ public class EmployeeService implements UserDetailsService {
     private final EmployeeRepository employeeRepository;
     private final RoleRepository roleRepository;
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final RoleMembershipCache roleMembershipCache;
 
-    public EmployeeService(EmployeeRepository employeeRepository, RoleRepository roleRepository, BCryptPasswordEncoder bCryptPasswordEncoder) {
+    public EmployeeService(EmployeeRepository employeeRepository, RoleRepository roleRepository,
+                           BCryptPasswordEncoder bCryptPasswordEncoder, RoleMembershipCache roleMembershipCache) {
         this.employeeRepository = employeeRepository;
         this.roleRepository = roleRepository;
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.roleMembershipCache = roleMembershipCache;
     }
 
     @Override
@@ -88,6 +91,7 @@ public class EmployeeService implements UserDetailsService {
         }
 
         log.info("Сотрудник с username = {} ({}) успешно сохранён.", newEmployee.getUsername(), role.getDescription());
+        roleMembershipCache.invalidate();
 
         return true;
     }
@@ -136,6 +140,7 @@ public class EmployeeService implements UserDetailsService {
         }
 
         log.info("Сотрудник с username = {} ({}) успешно сохранён.", newEmployee.getUsername(), role.getDescription());
+        roleMembershipCache.invalidate();
 
         return true;
     }
@@ -189,6 +194,7 @@ public class EmployeeService implements UserDetailsService {
         }
 
         log.info("Изменения для сотрудника успешно сохранены.");
+        roleMembershipCache.invalidate();
 
         return true;
     }
@@ -238,6 +244,7 @@ public class EmployeeService implements UserDetailsService {
         }
 
         log.info("Изменения для сотрудника успешно сохранены.");
+        roleMembershipCache.invalidate();
 
         return true;
     }
@@ -296,6 +303,7 @@ public class EmployeeService implements UserDetailsService {
         }
 
         log.info("Сотрудник успешно удалён.");
+        roleMembershipCache.invalidate();
 
         return true;
     }
@@ -377,6 +385,29 @@ public class EmployeeService implements UserDetailsService {
                 SecurityContextHolder.getContext().getAuthentication().getName()).orElse(null);
     }
 
+    /**
+     * Адрес e-mail для уведомлений текущего сотрудника. Пустая строка отключает e-mail уведомления.
+     */
+    @Transactional
+    public boolean changeNotificationEmail(String email) {
+        String normalized = email != null ? email.trim() : "";
+        if (!normalized.isEmpty() && !normalized.matches("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$")) {
+            log.error("Некорректный адрес e-mail для уведомлений: {}", normalized);
+            return false;
+        }
+        Optional<Employee> employeeOptional = employeeRepository.findByUsername(
+                SecurityContextHolder.getContext().getAuthentication().getName());
+        if (employeeOptional.isEmpty()) {
+            return false;
+        }
+        Employee employee = employeeOptional.get();
+        employee.setNotificationEmail(normalized.isEmpty() ? null : normalized);
+        employeeRepository.save(employee);
+        log.info("Сотрудник {} {} e-mail уведомления.", employee.getUsername(),
+                normalized.isEmpty() ? "отключил" : "включил");
+        return true;
+    }
+
     public boolean changePassword(String newPassword) {
         Optional<Employee> employeeOptional = employeeRepository.findByUsername(
                 SecurityContextHolder.getContext().getAuthentication().getName());
@@ -0,0 +1,455 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.enumeration.NotificationStatus;
+import com.mai.siarsp.enumeration.OutboxEventStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая доставка событий outbox уведомлений (t_notification_outbox).
+ * <p>
+ * Цикл доставки работает в виртуальном потоке: захватывает порцию ожидающих событий меткой claimToken
+ * на {@link #CLAIM_TTL_SECONDS}, разворачивает их в уведомления по получателям одной пакетной вставкой и
+ * помечает события отправленными — всё в одной транзакции. Цикл просыпается сразу после коммита
+ * транзакции, записавшей событие ({@link #wakeUp()}), и раз в {@link #POLL_INTERVAL_MS} мс — чтобы подобрать
+ * события других узлов и события, захват которых истёк.
+ * <p>
+ * Доставка «хотя бы один раз»: если порция целиком не доставилась, её события доставляются по одному, каждое
+ * в своей транзакции, — так одно сбойное событие (например, получатель удалён до доставки) не задерживает
+ * остальные. Сбойное событие возвращается в очередь (до {@link #MAX_ATTEMPTS} попыток), а повторно
+ * вставленные уведомления отсекаются уникальным ключом (outbox_event_id, recipient_id).
+ * <p>
+ * Сводки повторяющихся оповещений (см. NotificationService#notifyDigest) не создают новое уведомление
+ * на каждый запуск задачи, а дописываются в непрочитанную сводку получателя.
+ * <p>
+ * Созданные и обновлённые уведомления в той же транзакции ставятся в очередь e-mail
+ * ({@link EmailNotificationChannel}) — для сотрудников, указавших адрес для уведомлений.
+ */
+@Service
+@Slf4j
+public class NotificationOutboxDispatcher {
+
+    public static final int BATCH_SIZE = 200;
+    private static final int CLAIM_TTL_SECONDS = 60;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final int RETENTION_DAYS = 7;
+    private static final int MAX_DIGEST_LINES = 1000;
+
+    /** Управленческие роли — события, направленные им, дублируются админу-владельцу ИП. */
+    private static final String ROLE_ADMIN = "ROLE_EMPLOYEE_ADMIN";
+    private static final Set<String> MANAGEMENT_ROLES = Set.of(
+            "ROLE_EMPLOYEE_MANAGER",
+            "ROLE_EMPLOYEE_WAREHOUSE_MANAGER",
+            "ROLE_EMPLOYEE_ACCOUNTER"
+    );
+
+    private static final String CLAIM_SQL = "UPDATE t_notification_outbox " +
+            "SET claim_token = ?, claimed_until = DATE_ADD(NOW(3), INTERVAL ? SECOND), attempts = attempts + 1 " +
+            "WHERE status = 'PENDING' AND (claimed_until IS NULL OR claimed_until < NOW(3)) " +
+            "ORDER BY id LIMIT ?";
+
+    private static final String SELECT_CLAIMED_SQL = "SELECT id, role_names, recipient_id, text, coalesce_key, details, " +
+            "created_at, attempts " +
+            "FROM t_notification_outbox WHERE claim_token = ? AND status = 'PENDING' ORDER BY id";
+
+    private static final String INSERT_NOTIFICATION_SQL = "INSERT IGNORE INTO t_notification " +
+            "(recipient_id, text, coalesce_key, details, created_at, status, visible, outbox_event_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_DIGEST_SQL = "UPDATE t_notification SET text = ?, details = ?, created_at = ? " +
+            "WHERE id = ? AND status = 'NEW'";
+
+    private static final String MARK_DISPATCHED_SQL = "UPDATE t_notification_outbox " +
+            "SET status = 'DISPATCHED', dispatched_at = NOW(3), claim_token = NULL, claimed_until = NULL " +
+            "WHERE claim_token = ?";
+
+    private static final String MARK_EVENT_DISPATCHED_SQL = "UPDATE t_notification_outbox " +
+            "SET status = 'DISPATCHED', dispatched_at = NOW(3), claim_token = NULL, claimed_until = NULL " +
+            "WHERE id = ? AND claim_token = ?";
+
+    private static final String RELEASE_EVENT_FAILED_SQL = "UPDATE t_notification_outbox " +
+            "SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+            "claim_token = NULL, claimed_until = NULL, last_error = ? WHERE id = ? AND claim_token = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final RoleMembershipCache roleMembershipCache;
+    private final UnreadNotificationCounter unreadCounter;
+    private final NotificationPushService pushService;
+    private final EmailNotificationChannel emailChannel;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore wakeUpSignal = new Semaphore(0);
+    private final int coalesceWindowHours;
+    private volatile boolean running;
+
+    public NotificationOutboxDispatcher(JdbcTemplate jdbc,
+                                        PlatformTransactionManager transactionManager,
+                                        RoleMembershipCache roleMembershipCache,
+                                        UnreadNotificationCounter unreadCounter,
+                                        NotificationPushService pushService,
+                                        EmailNotificationChannel emailChannel,
+                                        @Value("${siarsp.notifications.coalesce-window-hours:24}") int coalesceWindowHours) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.roleMembershipCache = roleMembershipCache;
+        this.unreadCounter = unreadCounter;
+        this.pushService = pushService;
+        this.emailChannel = emailChannel;
+        this.coalesceWindowHours = coalesceWindowHours;
+    }
+
+    record OutboxEvent(long id, List<String> roleNames, Long recipientId, String text,
+                       String coalesceKey, String details, Timestamp createdAt, int attempts) {
+    }
+
+    record Delivered(Long recipientId, String text, String details, Timestamp createdAt, Long outboxEventId,
+                     boolean created) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        executor.submit(this::dispatchLoop);
+        log.info("Диспетчер outbox уведомлений запущен");
+    }
+
+    /**
+     * Будит цикл доставки, не дожидаясь очередного опроса. Вызывается после коммита транзакции с событием.
+     */
+    public void wakeUp() {
+        wakeUpSignal.release();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                while (running && dispatchBatch() == BATCH_SIZE) {
+                    // Полная порция — в очереди, вероятно, есть ещё события
+                }
+            } catch (Exception e) {
+                log.error("Ошибка цикла доставки outbox уведомлений: {}", e.getMessage(), e);
+            }
+            try {
+                wakeUpSignal.tryAcquire(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                wakeUpSignal.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Захватывает и доставляет одну порцию событий.
+     *
+     * @return число захваченных событий
+     */
+    int dispatchBatch() {
+        String claimToken = UUID.randomUUID().toString();
+        int claimed = jdbc.update(CLAIM_SQL, claimToken, CLAIM_TTL_SECONDS, BATCH_SIZE);
+        if (claimed == 0) {
+            return 0;
+        }
+
+        List<OutboxEvent> events = jdbc.query(SELECT_CLAIMED_SQL, (rs, rowNum) -> new OutboxEvent(
+                rs.getLong(1),
+                parseRoles(rs.getString(2)),
+                rs.getObject(3) != null ? rs.getLong(3) : null,
+                rs.getString(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getTimestamp(7),
+                rs.getInt(8)), claimToken);
+
+        try {
+            List<Delivered> created = deliverInTransaction(events, MARK_DISPATCHED_SQL, claimToken);
+            publish(created);
+            log.debug("Доставлено событий outbox: {}, создано уведомлений: {}", events.size(), created.size());
+        } catch (RuntimeException e) {
+            if (events.size() == 1) {
+                releaseFailed(events.getFirst(), claimToken, e);
+            } else {
+                log.warn("Порция outbox ({} событий) не доставлена, доставка по одному: {}",
+                        events.size(), errorMessage(e));
+                dispatchOneByOne(events, claimToken);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Доставка событий порции по одному: попытка и текст ошибки записываются только сбойному событию,
+     * остальные доставляются в этом же проходе.
+     */
+    private void dispatchOneByOne(List<OutboxEvent> events, String claimToken) {
+        for (OutboxEvent event : events) {
+            try {
+                publish(deliverInTransaction(List.of(event), MARK_EVENT_DISPATCHED_SQL, event.id(), claimToken));
+            } catch (RuntimeException e) {
+                releaseFailed(event, claimToken, e);
+            }
+        }
+    }
+
+    /**
+     * Одна транзакция: уведомления, очередь e-mail и отметка о доставке событий (markSql с аргументами markArgs).
+     */
+    private List<Delivered> deliverInTransaction(List<OutboxEvent> events, String markSql, Object... markArgs) {
+        return transactionTemplate.execute(status -> {
+            List<Delivered> rows = deliver(events);
+            emailChannel.enqueue(rows.stream()
+                    .map(row -> new EmailNotificationChannel.EmailMessage(row.recipientId(), row.text(),
+                            row.details() != null ? row.text() + "\n\n" + row.details() : row.text(),
+                            row.outboxEventId()))
+                    .toList());
+            jdbc.update(markSql, markArgs);
+            return rows;
+        });
+    }
+
+    private void releaseFailed(OutboxEvent event, String claimToken, RuntimeException e) {
+        String message = errorMessage(e);
+        log.error("Не удалось доставить событие outbox #{} (попытка {}): {}", event.id(), event.attempts(), message, e);
+        jdbc.update(RELEASE_EVENT_FAILED_SQL, MAX_ATTEMPTS,
+                message.length() > 1000 ? message.substring(0, 1000) : message, event.id(), claimToken);
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    }
+
+    /**
+     * Разворачивает события в уведомления. Время уведомления — время события, чтобы порядок в ленте
+     * совпадал с порядком бизнес-операций.
+     * <p>
+     * Обычные события вставляются одной пакетной вставкой. Сводки (coalesceKey != null) сливаются по получателю
+     * с его непрочитанной сводкой того же вида не старше окна слияния — и с такими же сводками в этой порции:
+     * новые строки дописываются, уже присутствующие отбрасываются; если новых строк нет, получатель ничего не получает.
+     *
+     * @return созданные и обновлённые уведомления; строки, отсечённые как дубли, не возвращаются
+     */
+    private List<Delivered> deliver(List<OutboxEvent> events) {
+        List<Object[]> insertRows = new ArrayList<>();
+        Map<String, DigestState> digests = new LinkedHashMap<>();
+        Timestamp windowStart = Timestamp.valueOf(LocalDateTime.now().minusHours(coalesceWindowHours));
+
+        for (OutboxEvent event : events) {
+            Set<Long> recipients = resolveRecipients(event);
+            if (event.coalesceKey() == null) {
+                for (Long recipientId : recipients) {
+                    insertRows.add(new Object[]{recipientId, event.text(), null, null, event.createdAt(),
+                            NotificationStatus.NEW.name(), true, event.id()});
+                }
+                continue;
+            }
+
+            List<Long> unknown = recipients.stream()
+                    .filter(id -> !digests.containsKey(digestKey(id, event.coalesceKey())))
+                    .toList();
+            Map<Long, DigestState> open = loadOpenDigests(event.coalesceKey(), unknown, windowStart);
+            List<String> lines = event.details() != null ? List.of(event.details().split("\n")) : List.of();
+            for (Long recipientId : recipients) {
+                DigestState state = digests.computeIfAbsent(digestKey(recipientId, event.coalesceKey()),
+                        key -> open.getOrDefault(recipientId, new DigestState(recipientId, null, event.id())));
+                state.merge(event, lines);
+            }
+        }
+
+        List<Object[]> updateRows = new ArrayList<>();
+        List<Delivered> updated = new ArrayList<>();
+        for (DigestState state : digests.values()) {
+            if (!state.changed) {
+                continue;
+            }
+            String text = state.digestText();
+            String details = String.join("\n", state.lines);
+            if (state.notificationId == null) {
+                insertRows.add(new Object[]{state.recipientId, text, state.coalesceKey, details, state.createdAt,
+                        NotificationStatus.NEW.name(), true, state.outboxEventId});
+            } else {
+                updateRows.add(new Object[]{text, details, state.createdAt, state.notificationId});
+                updated.add(new Delivered(state.recipientId, text, details, state.createdAt, state.lastEventId, false));
+            }
+        }
+
+        List<Delivered> delivered = new ArrayList<>();
+        if (!insertRows.isEmpty()) {
+            int[] results = jdbc.batchUpdate(INSERT_NOTIFICATION_SQL, insertRows);
+            for (int i = 0; i < insertRows.size(); i++) {
+                // 0 — строка отсечена INSERT IGNORE; SUCCESS_NO_INFO (-2) при переписанном пакете считаем вставкой
+                if (i >= results.length || results[i] != 0) {
+                    Object[] row = insertRows.get(i);
+                    delivered.add(new Delivered((Long) row[0], (String) row[1], (String) row[3], (Timestamp) row[4],
+                            (Long) row[7], true));
+                }
+            }
+        }
+        if (!updateRows.isEmpty()) {
+            jdbc.batchUpdate(UPDATE_DIGEST_SQL, updateRows);
+            delivered.addAll(updated);
+        }
+        return delivered;
+    }
+
+    private Map<Long, DigestState> loadOpenDigests(String coalesceKey, List<Long> recipientIds, Timestamp windowStart) {
+        Map<Long, DigestState> result = new HashMap<>();
+        if (recipientIds.isEmpty()) {
+            return result;
+        }
+        List<Object> args = new ArrayList<>(recipientIds.size() + 2);
+        args.add(coalesceKey);
+        args.add(windowStart);
+        args.addAll(recipientIds);
+        jdbc.query("SELECT id, recipient_id, details FROM t_notification WHERE coalesce_key = ? " +
+                "AND status = 'NEW' AND visible = TRUE AND created_at >= ? AND recipient_id IN (" +
+                String.join(",", Collections.nCopies(recipientIds.size(), "?")) + ") ORDER BY id", rs -> {
+            DigestState state = new DigestState(rs.getLong(2), rs.getLong(1), null);
+            String details = rs.getString(3);
+            if (details != null && !details.isEmpty()) {
+                state.lines.addAll(List.of(details.split("\n")));
+            }
+            result.put(state.recipientId, state);
+        }, args.toArray());
+        return result;
+    }
+
+    private static String digestKey(Long recipientId, String coalesceKey) {
+        return recipientId + ":" + coalesceKey;
+    }
+
+    /**
+     * Сводка одного получателя в процессе слияния: существующая (notificationId != null) или новая.
+     */
+    private static final class DigestState {
+        private final Long recipientId;
+        private final Long notificationId;
+        private final Long outboxEventId;
+        private final LinkedHashSet<String> lines = new LinkedHashSet<>();
+        private Long lastEventId;
+        private String coalesceKey;
+        private String title;
+        private Timestamp createdAt;
+        private boolean changed;
+
+        private DigestState(Long recipientId, Long notificationId, Long outboxEventId) {
+            this.recipientId = recipientId;
+            this.notificationId = notificationId;
+            this.outboxEventId = outboxEventId;
+        }
+
+        private void merge(OutboxEvent event, List<String> newLines) {
+            coalesceKey = event.coalesceKey();
+            lastEventId = event.id();
+            title = event.text();
+            for (String line : newLines) {
+                if (lines.add(line)) {
+                    changed = true;
+                    createdAt = event.createdAt();
+                }
+            }
+            // Слишком длинная сводка: старые строки вытесняются новыми
+            Iterator<String> iterator = lines.iterator();
+            while (lines.size() > MAX_DIGEST_LINES && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        private String digestText() {
+            String text = title + " — позиций: " + lines.size();
+            return text.length() > 500 ? text.substring(0, 500) : text;
+        }
+    }
+
+    /**
+     * После коммита: обновление счётчиков непрочитанных и push в открытые SSE-соединения.
+     * Новые уведомления отправляет опрос {@link NotificationPushService#poll()} — тот же путь, что и для
+     * уведомлений, созданных другими узлами, поэтому они не дублируются. Обновлённая сводка счётчик
+     * не увеличивает — она уже учтена как непрочитанная — и отправляется сразу.
+     */
+    private void publish(List<Delivered> delivered) {
+        boolean created = false;
+        for (Delivered notification : delivered) {
+            if (notification.created()) {
+                unreadCounter.add(notification.recipientId(), 1);
+                created = true;
+            } else {
+                pushService.pushNotification(notification.recipientId(), notification.text(),
+                        notification.createdAt().toLocalDateTime());
+            }
+        }
+        if (created) {
+            pushService.poll();
+        }
+    }
+
+    private Set<Long> resolveRecipients(OutboxEvent event) {
+        Set<Long> recipients = new LinkedHashSet<>();
+        if (event.recipientId() != null) {
+            recipients.add(event.recipientId());
+        }
+        boolean anyManagement = false;
+        for (String roleName : event.roleNames()) {
+            recipients.addAll(roleMembershipCache.getEmployeeIds(roleName));
+            if (MANAGEMENT_ROLES.contains(roleName)) {
+                anyManagement = true;
+            }
+        }
+        if (anyManagement) {
+            recipients.addAll(roleMembershipCache.getEmployeeIds(ROLE_ADMIN));
+        }
+        return recipients;
+    }
+
+    private static List<String> parseRoles(String roleNames) {
+        if (roleNames == null || roleNames.isBlank()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(roleNames.split(","));
+    }
+
+    /**
+     * Удаление доставленных событий старше {@link #RETENTION_DAYS} дней. Идемпотентно, поэтому
+     * выполняется на каждом узле без аренды.
+     */
+    @Scheduled(cron = "0 15 3 * * ?")
+    public void purgeDispatched() {
+        int deleted = jdbc.update("DELETE FROM t_notification_outbox WHERE status = ? " +
+                "AND dispatched_at < DATE_SUB(NOW(3), INTERVAL ? DAY)", OutboxEventStatus.DISPATCHED.name(), RETENTION_DAYS);
+        log.info("Удалено доставленных событий outbox: {}", deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        wakeUp();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,280 @@
+package com.mai.siarsp.service.employee;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push новых уведомлений в открытые вкладки браузера и мобильное приложение через SSE.
+ * <p>
+ * События: {@code unread} — текущее число непрочитанных (сразу после подписки и при каждом изменении),
+ * {@code notification} — новое уведомление с обновлённым счётчиком. Соединения, в которые не удалось
+ * записать, удаляются; раз в {@link #HEARTBEAT_SECONDS} с отправляется комментарий, чтобы прокси
+ * не закрывали простаивающие соединения.
+ * <p>
+ * Уведомления создаёт диспетчер outbox на любом узле кластера, а SSE-соединение сотрудника открыто на
+ * одном узле. Поэтому новые уведомления каждый узел сам подбирает из {@code t_notification} для своих
+ * подписчиков ({@link #poll()}): раз в {@link #POLL_INTERVAL_MS} мс и сразу после доставки порции на этом узле.
+ * Строки читаются по id с запасом {@link #LOOKBACK_IDS} назад (транзакции фиксируются не в порядке id),
+ * повторы отсекаются по уже отправленным id. Пока {@code MAX(id)} не растёт, окно не перечитывается —
+ * кроме {@link #LATE_COMMIT_GRACE_MS} мс после последнего роста, когда ещё могут зафиксироваться строки
+ * с меньшими id. Так простаивающий узел делает один запрос по первичному ключу.
+ * <p>
+ * Счётчики непрочитанных пересчитываются только у сотрудников, которым пришли новые уведомления, и у тех,
+ * чьи уведомления прочитаны или скрыты на другом узле: прочтение пишет отметку в t_unread_counter_change
+ * ({@link #recordUnreadChange}), и опрос читает чужие отметки за последние {@link #CHANGE_LOOKBACK_SECONDS} с.
+ * Подписчикам этого узла счётчик пересчитывается одним запросом и отправляется, у остальных сбрасывается
+ * из кэша и загрузится при следующем обращении.
+ */
+@Service
+@Slf4j
+public class NotificationPushService {
+
+    private static final long EMITTER_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final int HEARTBEAT_SECONDS = 25;
+    private static final long POLL_INTERVAL_MS = 2000;
+    private static final int LOOKBACK_IDS = 1000;
+    private static final int POLL_LIMIT = 5000;
+    private static final int MAX_REMEMBERED_IDS = 10_000;
+    private static final long LATE_COMMIT_GRACE_MS = 10_000;
+    private static final int CHANGE_LOOKBACK_IDS = 1000;
+    private static final int CHANGE_LOOKBACK_SECONDS = 60;
+    private static final int CHANGE_RETENTION_HOURS = 24;
+
+    private static final String INSERT_CHANGE_SQL = "INSERT INTO t_unread_counter_change " +
+            "(recipient_id, node_id, created_at) VALUES (?, ?, NOW(3))";
+    private static final String SELECT_CHANGES_SQL = "SELECT id, recipient_id FROM t_unread_counter_change " +
+            "WHERE id > ? AND created_at >= DATE_SUB(NOW(3), INTERVAL ? SECOND) AND node_id <> ? ORDER BY id";
+
+    private final UnreadNotificationCounter unreadCounter;
+    private final JdbcTemplate jdbc;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<Long, List<SseEmitter>> emittersByEmployee = new ConcurrentHashMap<>();
+    /** Последний отправленный сотруднику счётчик непрочитанных. */
+    private final Map<Long, Long> pushedUnread = new ConcurrentHashMap<>();
+    /** id уже отправленных уведомлений в пределах окна опроса; доступ — под монитором сервиса. */
+    private final Set<Long> pushedIds = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_REMEMBERED_IDS;
+        }
+    });
+    /** Наибольший прочитанный id; уведомления не новее стартового значения не отправляются. */
+    private long pollCursor = -1;
+    private long pollFloor;
+    /** MAX(id) на прошлом опросе и момент, когда он последний раз вырос. */
+    private long seenMaxId;
+    private long maxIdChangedAt;
+    /** Чужие отметки прочтения, уже учтённые в окне перечитывания. */
+    private final NavigableSet<Long> appliedChangeIds = new TreeSet<>();
+
+    public NotificationPushService(UnreadNotificationCounter unreadCounter, JdbcTemplate jdbc) {
+        this.unreadCounter = unreadCounter;
+        this.jdbc = jdbc;
+    }
+
+    public record PushedNotification(String text, LocalDateTime createdAt, long unreadCount) {
+    }
+
+    public SseEmitter subscribe(Long employeeId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        List<SseEmitter> emitters = emittersByEmployee.computeIfAbsent(employeeId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        Runnable remove = () -> removeEmitter(employeeId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        long unread = unreadCounter.get(employeeId);
+        pushedUnread.put(employeeId, unread);
+        send(employeeId, emitter, SseEmitter.event().name("unread").data(unread));
+        return emitter;
+    }
+
+    public boolean hasSubscribers(Long employeeId) {
+        List<SseEmitter> emitters = emittersByEmployee.get(employeeId);
+        return emitters != null && !emitters.isEmpty();
+    }
+
+    public void pushNotification(Long employeeId, String text, LocalDateTime createdAt) {
+        if (!hasSubscribers(employeeId)) {
+            return;
+        }
+        long unread = unreadCounter.get(employeeId);
+        pushedUnread.put(employeeId, unread);
+        PushedNotification payload = new PushedNotification(text, createdAt, unread);
+        broadcast(employeeId, SseEmitter.event().name("notification").data(payload));
+    }
+
+    public void pushUnreadCount(Long employeeId) {
+        if (!hasSubscribers(employeeId)) {
+            return;
+        }
+        long unread = unreadCounter.get(employeeId);
+        pushedUnread.put(employeeId, unread);
+        broadcast(employeeId, SseEmitter.event().name("unread").data(unread));
+    }
+
+    private record NewNotification(long id, Long recipientId, String text, LocalDateTime createdAt) {
+    }
+
+    /**
+     * Отметка для других узлов: непрочитанные сотрудника изменились (прочтение, скрытие). Пишется в текущей
+     * транзакции; свой счётчик этот узел обновляет сам.
+     */
+    public void recordUnreadChange(Long employeeId) {
+        jdbc.update(INSERT_CHANGE_SQL, employeeId, nodeId);
+    }
+
+    /**
+     * Подбирает из БД новые уведомления подписчиков этого узла и сверяет счётчики непрочитанных
+     * тех подписчиков, у которых они могли измениться.
+     */
+    @Scheduled(fixedDelay = POLL_INTERVAL_MS)
+    public synchronized void poll() {
+        try {
+            long now = System.currentTimeMillis();
+            Long maxIdValue = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM t_notification", Long.class);
+            long maxId = maxIdValue != null ? maxIdValue : 0;
+            if (pollCursor < 0) {
+                pollCursor = maxId;
+                pollFloor = maxId;
+                seenMaxId = maxId;
+            }
+            if (maxId != seenMaxId) {
+                seenMaxId = maxId;
+                maxIdChangedAt = now;
+            }
+            // Окно читается целиком, а не только по подписчикам: строка, пришедшая до подписки,
+            // запоминается как отправленная и не всплывёт «новой» после открытия вкладки
+            List<NewNotification> fresh = new ArrayList<>();
+            if (now - maxIdChangedAt <= LATE_COMMIT_GRACE_MS) {
+                jdbc.query("SELECT id, recipient_id, text, created_at FROM t_notification WHERE id > ? AND visible = TRUE " +
+                                "ORDER BY id LIMIT ?",
+                        (RowCallbackHandler) rs -> {
+                            long id = rs.getLong(1);
+                            pollCursor = Math.max(pollCursor, id);
+                            if (pushedIds.add(id)) {
+                                fresh.add(new NewNotification(id, rs.getLong(2), rs.getString(3),
+                                        rs.getTimestamp(4).toLocalDateTime()));
+                            }
+                        }, Math.max(pollFloor, pollCursor - LOOKBACK_IDS), POLL_LIMIT);
+            }
+            Set<Long> changed = readRemoteUnreadChanges();
+            fresh.forEach(notification -> changed.add(notification.recipientId()));
+
+            // подписчиков пересчитываем сразу, остальным счётчик загрузится при следующем обращении
+            Set<Long> recount = new HashSet<>();
+            for (Long employeeId : changed) {
+                if (hasSubscribers(employeeId)) {
+                    recount.add(employeeId);
+                } else {
+                    unreadCounter.evict(employeeId);
+                }
+            }
+            if (recount.isEmpty()) {
+                return;
+            }
+            List<Long> recipients = new ArrayList<>(recount);
+            String placeholders = String.join(",", Collections.nCopies(recipients.size(), "?"));
+            Map<Long, Long> unread = new HashMap<>();
+            recipients.forEach(id -> unread.put(id, 0L));
+            jdbc.query("SELECT recipient_id, COUNT(*) FROM t_notification WHERE status = 'NEW' AND visible = TRUE " +
+                            "AND recipient_id IN (" + placeholders + ") GROUP BY recipient_id",
+                    (RowCallbackHandler) rs -> unread.put(rs.getLong(1), rs.getLong(2)), recipients.toArray());
+            unread.forEach(unreadCounter::set);
+
+            for (NewNotification notification : fresh) {
+                pushNotification(notification.recipientId(), notification.text(), notification.createdAt());
+            }
+            unread.forEach((employeeId, count) -> {
+                if (!count.equals(pushedUnread.get(employeeId))) {
+                    pushUnreadCount(employeeId);
+                }
+            });
+        } catch (DataAccessException e) {
+            log.warn("Не удалось опросить новые уведомления: {}", e.getMessage());
+        }
+    }
+
+    /** Сотрудники, чьи уведомления прочитаны или скрыты на других узлах с прошлого опроса. */
+    private Set<Long> readRemoteUnreadChanges() {
+        Set<Long> changed = new HashSet<>();
+        long from = appliedChangeIds.isEmpty() ? 0 : Math.max(0, appliedChangeIds.last() - CHANGE_LOOKBACK_IDS);
+        jdbc.query(SELECT_CHANGES_SQL, (RowCallbackHandler) rs -> {
+            if (appliedChangeIds.add(rs.getLong(1))) {
+                changed.add(rs.getLong(2));
+            }
+        }, from, CHANGE_LOOKBACK_SECONDS, nodeId);
+        if (!appliedChangeIds.isEmpty()) {
+            appliedChangeIds.headSet(appliedChangeIds.last() - CHANGE_LOOKBACK_IDS, true).clear();
+        }
+        return changed;
+    }
+
+    /** Удаление старых отметок прочтения. Идемпотентно, поэтому выполняется на каждом узле без аренды. */
+    @Scheduled(cron = "0 50 3 * * ?")
+    public void purgeUnreadChanges() {
+        int deleted = jdbc.update("DELETE FROM t_unread_counter_change " +
+                "WHERE created_at < DATE_SUB(NOW(3), INTERVAL ? HOUR)", CHANGE_RETENTION_HOURS);
+        log.info("Удалено отметок изменения непрочитанных: {}", deleted);
+    }
+
+    @Scheduled(fixedRate = HEARTBEAT_SECONDS, timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        for (Long employeeId : emittersByEmployee.keySet()) {
+            broadcast(employeeId, SseEmitter.event().comment("ping"));
+        }
+    }
+
+    private void broadcast(Long employeeId, SseEmitter.SseEventBuilder event) {
+        List<SseEmitter> emitters = emittersByEmployee.get(employeeId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(employeeId, emitter, event);
+        }
+    }
+
+    private void send(Long employeeId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE-соединение сотрудника id={} закрыто: {}", employeeId, e.getMessage());
+            removeEmitter(employeeId, emitter);
+        }
+    }
+
+    private void removeEmitter(Long employeeId, SseEmitter emitter) {
+        emittersByEmployee.computeIfPresent(employeeId, (id, emitters) -> {
+            emitters.remove(emitter);
+            if (emitters.isEmpty()) {
+                pushedUnread.remove(id);
+                return null;
+            }
+            return emitters;
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.service.general.JobCoordinationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Перенос старых уведомлений в архив (t_notification_archive).
+ * <p>
+ * В архив уходят прочитанные и скрытые уведомления старше {@code siarsp.notifications.retention-days} дней
+ * (по умолчанию 90); непрочитанные остаются в основной таблице независимо от возраста. Перенос идёт
+ * порциями по {@link #CHUNK_SIZE}: каждая порция — отдельная короткая транзакция из INSERT ... SELECT
+ * и DELETE по одному списку id, поэтому перенос не блокирует ленты надолго и безопасно прерывается.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionService {
+
+    public static final int CHUNK_SIZE = 1000;
+
+    private static final String SELECT_CANDIDATES_SQL = "SELECT id FROM t_notification " +
+            "WHERE created_at < ? AND (status = 'READ' OR visible = FALSE) ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionDays;
+
+    public NotificationRetentionService(JdbcTemplate jdbc,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${siarsp.notifications.retention-days:90}") int retentionDays) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+    }
+
+    public record RetentionResult(int archived, int chunks) {
+    }
+
+    /**
+     * Переносит в архив уведомления, созданные раньше today минус срок хранения.
+     */
+    public RetentionResult archiveExpired(LocalDate today) {
+        Timestamp cutoff = Timestamp.valueOf(today.minusDays(retentionDays).atStartOfDay());
+        int archived = 0;
+        int chunks = 0;
+
+        while (true) {
+            JobCoordinationService.checkLeaseHeld();
+            List<Long> ids = jdbc.queryForList(SELECT_CANDIDATES_SQL, Long.class, cutoff, CHUNK_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            Object[] args = ids.toArray();
+            Integer moved = transactionTemplate.execute(status -> {
+                jdbc.update("INSERT IGNORE INTO t_notification_archive " +
+                        "(id, recipient_id, text, details, created_at, status, visible, outbox_event_id, archived_at) " +
+                        "SELECT id, recipient_id, text, details, created_at, status, visible, outbox_event_id, NOW() " +
+                        "FROM t_notification WHERE id IN (" + placeholders + ")", args);
+                return jdbc.update("DELETE FROM t_notification WHERE id IN (" + placeholders + ")", args);
+            });
+            archived += moved != null ? moved : 0;
+            chunks++;
+            if (ids.size() < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        log.info("Архивация уведомлений старше {}: перенесено {}, порций {}", cutoff.toLocalDateTime().toLocalDate(),
+                archived, chunks);
+        return new RetentionResult(archived, chunks);
+    }
+}
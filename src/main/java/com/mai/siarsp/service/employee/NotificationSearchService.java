@@ -0,0 +1,146 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.component.StartupTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый поиск по уведомлениям: индексы FULLTEXT (text, details) на t_notification и
+ * t_notification_archive и разбор поисковой строки в запрос MATCH ... AGAINST (BOOLEAN MODE).
+ * <p>
+ * Hibernate (ddl-auto) не создаёт FULLTEXT-индексы, поэтому их создаёт фоновая стартовая задача.
+ * Пока индекс отсутствует (первый запуск, СУБД без FULLTEXT) или в запросе нет ни одного слова
+ * длиннее {@link #MIN_TOKEN_LENGTH} символов, NotificationService ищет подстроку в тех же полях text и details.
+ * <p>
+ * Готовность определяется наличием индекса в information_schema, а не успехом ALTER: при одновременном
+ * старте узлов индекс создаёт один из них, а у второго ALTER завершается ошибкой. Поэтому после ошибки
+ * наличие индекса проверяется ещё раз, а пока индекс не найден, проверка повторяется по расписанию
+ * ({@code siarsp.notifications.fulltext-recheck-ms}, по умолчанию раз в 5 минут).
+ * <p>
+ * Каждое слово запроса приводится к нижнему регистру по правилам русского языка и ищется как префикс:
+ * «просроч» находит «просрочена» и «просроченных», все слова обязательны.
+ */
+@Service
+@Slf4j
+public class NotificationSearchService {
+
+    /** Совпадает с innodb_ft_min_token_size по умолчанию — более короткие слова не индексируются. */
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final int MAX_TOKENS = 8;
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String NOTIFICATION_INDEX = "ft_notification_text";
+    private static final String ARCHIVE_INDEX = "ft_notification_archive_text";
+
+    private final JdbcTemplate jdbc;
+    private volatile boolean notificationIndexReady;
+    private volatile boolean archiveIndexReady;
+
+    public NotificationSearchService(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Bean
+    public StartupTask notificationFullTextIndexTask() {
+        return new StartupTask("notificationFullTextIndex", 10, Duration.ofMinutes(30), () -> {
+            notificationIndexReady = ensureIndex("t_notification", NOTIFICATION_INDEX);
+            archiveIndexReady = ensureIndex("t_notification_archive", ARCHIVE_INDEX);
+        });
+    }
+
+    /** Индекс, созданный другим узлом или вручную, подхватывается без перезапуска. */
+    @Scheduled(fixedDelayString = "${siarsp.notifications.fulltext-recheck-ms:300000}",
+            initialDelayString = "${siarsp.notifications.fulltext-recheck-ms:300000}")
+    public void recheckIndexes() {
+        try {
+            if (!notificationIndexReady && indexExists("t_notification", NOTIFICATION_INDEX)) {
+                notificationIndexReady = true;
+                log.info("Полнотекстовый индекс {} найден, поиск уведомлений переключён на него", NOTIFICATION_INDEX);
+            }
+            if (!archiveIndexReady && indexExists("t_notification_archive", ARCHIVE_INDEX)) {
+                archiveIndexReady = true;
+                log.info("Полнотекстовый индекс {} найден, поиск по архиву переключён на него", ARCHIVE_INDEX);
+            }
+        } catch (DataAccessException e) {
+            log.debug("Не удалось проверить полнотекстовые индексы уведомлений: {}", e.getMessage());
+        }
+    }
+
+    public boolean isNotificationIndexReady() {
+        return notificationIndexReady;
+    }
+
+    public boolean isArchiveIndexReady() {
+        return archiveIndexReady;
+    }
+
+    /**
+     * Разбор поисковой строки в запрос BOOLEAN MODE: {@code +слово* +слово*}.
+     *
+     * @return пусто, если в строке нет слов, пригодных для полнотекстового индекса
+     */
+    public Optional<String> toFullTextQuery(String search) {
+        if (search == null || search.isBlank()) {
+            return Optional.empty();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(search.toLowerCase(RUSSIAN))) {
+            if (token.length() >= MIN_TOKEN_LENGTH && terms.size() < MAX_TOKENS) {
+                terms.add("+" + token + "*");
+            }
+        }
+        return terms.isEmpty() ? Optional.empty() : Optional.of(String.join(" ", terms));
+    }
+
+    /**
+     * Шаблон LIKE для поиска подстроки без учёта регистра: спецсимволы LIKE экранируются знаком «!»
+     * (ESCAPE '!' в запросах репозиториев).
+     */
+    public String toLikePattern(String search) {
+        String escaped = search.trim().toLowerCase(RUSSIAN)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+
+    private boolean ensureIndex(String table, String indexName) {
+        try {
+            if (indexExists(table, indexName)) {
+                return true;
+            }
+            log.info("Создание полнотекстового индекса {} на {}", indexName, table);
+            jdbc.execute("ALTER TABLE " + table + " ADD FULLTEXT INDEX " + indexName + " (text, details)");
+            return true;
+        } catch (DataAccessException e) {
+            // другой узел мог создать индекс одновременно — тогда ALTER падает, а индекс есть
+            try {
+                if (indexExists(table, indexName)) {
+                    return true;
+                }
+            } catch (DataAccessException recheck) {
+                e.addSuppressed(recheck);
+            }
+            log.warn("Полнотекстовый индекс {} недоступен, поиск по {} — по подстроке: {}", indexName, table, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean indexExists(String table, String indexName) {
+        Integer existing = jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?", Integer.class, table, indexName);
+        return existing != null && existing > 0;
+    }
+}
@@ -2,21 +2,28 @@ package com.mai.siarsp.service.employee;
 
 import com.mai.siarsp.dto.NotificationDTO;
 import com.mai.siarsp.enumeration.NotificationStatus;
+import com.mai.siarsp.enumeration.OutboxEventStatus;
 import com.mai.siarsp.mapper.NotificationMapper;
 import com.mai.siarsp.models.Employee;
 import com.mai.siarsp.models.Notification;
-import com.mai.siarsp.repo.EmployeeRepository;
+import com.mai.siarsp.models.NotificationArchive;
+import com.mai.siarsp.repo.NotificationArchiveRepository;
 import com.mai.siarsp.repo.NotificationRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.HashSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 /**
  * Сервис оповещений. Рассылает сотрудникам события, чтобы процессы не «зависали» между этапами.
@@ -27,63 +34,112 @@ import java.util.Set;
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final EmployeeRepository employeeRepository;
+    private final NotificationArchiveRepository notificationArchiveRepository;
+    private final NotificationOutboxDispatcher outboxDispatcher;
+    private final UnreadNotificationCounter unreadCounter;
+    private final NotificationPushService pushService;
+    private final NotificationSearchService searchService;
+    private final JdbcTemplate jdbc;
 
     public NotificationService(NotificationRepository notificationRepository,
-                                EmployeeRepository employeeRepository) {
+                               NotificationArchiveRepository notificationArchiveRepository,
+                               NotificationOutboxDispatcher outboxDispatcher,
+                               UnreadNotificationCounter unreadCounter,
+                               NotificationPushService pushService,
+                               NotificationSearchService searchService,
+                               JdbcTemplate jdbc) {
         this.notificationRepository = notificationRepository;
-        this.employeeRepository = employeeRepository;
+        this.notificationArchiveRepository = notificationArchiveRepository;
+        this.outboxDispatcher = outboxDispatcher;
+        this.unreadCounter = unreadCounter;
+        this.pushService = pushService;
+        this.searchService = searchService;
+        this.jdbc = jdbc;
     }
 
+    private static final String INSERT_OUTBOX_SQL = "INSERT INTO t_notification_outbox " +
+            "(role_names, recipient_id, text, coalesce_key, details, created_at, status, attempts) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    /**
+     * Сообщение для рассылки по ролям. Каждый сотрудник получает его один раз, даже если подходит
+     * под несколько ролей; для управленческих ролей сообщение дублируется администратору.
+     */
+    public record RoleNotification(List<String> roleNames, String text) {
+
+        public static RoleNotification of(String roleName, String text) {
+            return new RoleNotification(List.of(roleName), text);
+        }
+    }
+
+    /*
+     * Все методы рассылки только добавляют событие в outbox в транзакции вызывающего кода.
+     * Уведомления по получателям создаёт NotificationOutboxDispatcher после фиксации, поэтому
+     * время бизнес-операции не зависит от числа получателей, а сбой рассылки её не откатывает.
+     */
+
     @Transactional
     public void createNotification(Employee recipient, String text) {
-        Notification notification = new Notification(recipient, text);
-        notificationRepository.save(notification);
-        log.info("Создано уведомление для сотрудника '{}': {}", recipient.getFullName(), text);
+        appendToOutbox(List.<Object[]>of(new Object[]{null, recipient.getId(), text, null, null, Timestamp.valueOf(LocalDateTime.now()),
+                OutboxEventStatus.PENDING.name()}));
+        log.info("Уведомление для сотрудника '{}' поставлено в очередь: {}", recipient.getFullName(), text);
     }
 
-    /** Управленческие роли — события, направленные им, дублируются админу-владельцу ИП. */
-    private static final String ROLE_ADMIN = "ROLE_EMPLOYEE_ADMIN";
-    private static final Set<String> MANAGEMENT_ROLES = Set.of(
-            "ROLE_EMPLOYEE_MANAGER",
-            "ROLE_EMPLOYEE_WAREHOUSE_MANAGER",
-            "ROLE_EMPLOYEE_ACCOUNTER"
-    );
-
     @Transactional
     public void notifyByRole(String roleName, String text) {
-        Set<Long> notified = new HashSet<>();
-        sendToRole(roleName, text, notified);
-        if (MANAGEMENT_ROLES.contains(roleName)) {
-            sendToRole(ROLE_ADMIN, text, notified);
-        }
-        log.info("Отправлено уведомление {} сотрудникам по запросу роли '{}' (с учётом дублирования администратору).",
-                notified.size(), roleName);
+        notifyAll(List.of(RoleNotification.of(roleName, text)));
     }
 
     @Transactional
     public void notifyByRoles(List<String> roleNames, String text) {
-        Set<Long> notified = new HashSet<>();
-        boolean anyManagement = false;
-        for (String roleName : roleNames) {
-            sendToRole(roleName, text, notified);
-            if (MANAGEMENT_ROLES.contains(roleName)) {
-                anyManagement = true;
-            }
+        notifyAll(List.of(new RoleNotification(roleNames, text)));
+    }
+
+    /**
+     * Рассылка нескольких сообщений: события outbox вставляются одним пакетом.
+     */
+    @Transactional
+    public void notifyAll(List<RoleNotification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
         }
-        if (anyManagement) {
-            sendToRole(ROLE_ADMIN, text, notified);
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(notifications.size());
+        for (RoleNotification notification : notifications) {
+            rows.add(new Object[]{String.join(",", notification.roleNames()), null, notification.text(), null, null,
+                    createdAt, OutboxEventStatus.PENDING.name()});
         }
-        log.info("Отправлено уведомление {} сотрудникам по ролям {} (с учётом дублирования администратору).",
-                notified.size(), roleNames);
+        appendToOutbox(rows);
+        log.info("В очередь уведомлений добавлено сообщений: {} (роли: {}).", notifications.size(),
+                notifications.size() == 1 ? notifications.get(0).roleNames() : "разные");
     }
 
-    private void sendToRole(String roleName, String text, Set<Long> notified) {
-        List<Employee> employees = employeeRepository.findAllByRoleName(roleName);
-        for (Employee employee : employees) {
-            if (notified.add(employee.getId())) {
-                createNotification(employee, text);
-            }
+    /**
+     * Сводное уведомление для повторяющихся оповещений фоновых задач: заголовок и строки по позициям.
+     * Каждый получатель видит одну непрочитанную сводку вида kind — новые строки дописываются в неё,
+     * уже присутствующие строки не дублируются (см. NotificationOutboxDispatcher).
+     */
+    @Transactional
+    public void notifyDigest(List<String> roleNames, String kind, String title, List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        appendToOutbox(List.<Object[]>of(new Object[]{String.join(",", roleNames), null, title, kind,
+                String.join("\n", lines), Timestamp.valueOf(LocalDateTime.now()), OutboxEventStatus.PENDING.name()}));
+        log.info("В очередь уведомлений добавлена сводка '{}' для ролей {}: позиций {}.", kind, roleNames, lines.size());
+    }
+
+    private void appendToOutbox(List<Object[]> rows) {
+        jdbc.batchUpdate(INSERT_OUTBOX_SQL, rows);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxDispatcher.wakeUp();
+                }
+            });
+        } else {
+            outboxDispatcher.wakeUp();
         }
     }
 
@@ -95,13 +151,16 @@ public class NotificationService {
     public Page<NotificationDTO> getNotificationsForEmployee(Long employeeId, NotificationStatus status, String search, Pageable pageable) {
         Page<Notification> page;
         boolean hasSearch = search != null && !search.isBlank();
+        Optional<String> fullTextQuery = hasSearch && searchService.isNotificationIndexReady()
+                ? searchService.toFullTextQuery(search) : Optional.empty();
 
-        if (status != null && hasSearch) {
-            page = notificationRepository.findByRecipientIdAndVisibleTrueAndStatusAndTextContainingIgnoreCaseOrderByCreatedAtDesc(employeeId, status, search, pageable);
+        if (fullTextQuery.isPresent()) {
+            page = notificationRepository.searchFullText(employeeId, status != null ? status.name() : null,
+                    fullTextQuery.get(), pageable);
+        } else if (hasSearch) {
+            page = notificationRepository.searchSubstring(employeeId, status, searchService.toLikePattern(search), pageable);
         } else if (status != null) {
             page = notificationRepository.findByRecipientIdAndVisibleTrueAndStatusOrderByCreatedAtDesc(employeeId, status, pageable);
-        } else if (hasSearch) {
-            page = notificationRepository.findByRecipientIdAndVisibleTrueAndTextContainingIgnoreCaseOrderByCreatedAtDesc(employeeId, search, pageable);
         } else {
             page = notificationRepository.findByRecipientIdAndVisibleTrueOrderByCreatedAtDesc(employeeId, pageable);
         }
@@ -109,8 +168,41 @@ public class NotificationService {
         return page.map(NotificationMapper.INSTANCE::toDTO);
     }
 
+    /**
+     * Архив уведомлений сотрудника (перенесённые NotificationRetentionService), только чтение.
+     */
+    public Page<NotificationDTO> getArchivedNotifications(Long employeeId, String search, Pageable pageable) {
+        Optional<String> fullTextQuery = searchService.isArchiveIndexReady()
+                ? searchService.toFullTextQuery(search) : Optional.empty();
+        Page<NotificationArchive> page;
+        if (fullTextQuery.isPresent()) {
+            page = notificationArchiveRepository.searchFullText(employeeId, fullTextQuery.get(), pageable);
+        } else if (search != null && !search.isBlank()) {
+            page = notificationArchiveRepository.searchSubstring(employeeId, searchService.toLikePattern(search), pageable);
+        } else {
+            page = notificationArchiveRepository.findByRecipientIdAndVisibleTrueOrderByCreatedAtDesc(employeeId, pageable);
+        }
+        return page.map(archived -> {
+            NotificationDTO dto = new NotificationDTO();
+            dto.setId(archived.getId());
+            dto.setRecipientId(archived.getRecipientId());
+            dto.setText(archived.getText());
+            dto.setDetails(archived.getDetails());
+            dto.setCreatedAt(archived.getCreatedAt());
+            dto.setStatus(archived.getStatus().getDisplayName());
+            return dto;
+        });
+    }
+
+    /**
+     * Число непрочитанных из кэша счётчиков — без запроса к БД при повторных обращениях.
+     */
     public long getUnreadCount(Long employeeId) {
-        return notificationRepository.countByRecipientIdAndStatusAndVisibleTrue(employeeId, NotificationStatus.NEW);
+        return unreadCounter.get(employeeId);
+    }
+
+    public SseEmitter subscribe(Long employeeId) {
+        return pushService.subscribe(employeeId);
     }
 
     @Transactional
@@ -118,8 +210,12 @@ public class NotificationService {
         Optional<Notification> optional = notificationRepository.findById(notificationId);
         if (optional.isPresent()) {
             Notification notification = optional.get();
+            boolean wasUnread = notification.getStatus() == NotificationStatus.NEW && notification.isVisible();
             notification.setStatus(NotificationStatus.READ);
             notificationRepository.save(notification);
+            if (wasUnread) {
+                decrementUnread(notification.getRecipient().getId());
+            }
         }
     }
 
@@ -131,6 +227,13 @@ public class NotificationService {
             notification.setStatus(NotificationStatus.READ);
         }
         notificationRepository.saveAll(unread);
+        if (!unread.isEmpty()) {
+            pushService.recordUnreadChange(employeeId);
+        }
+        unreadCounter.afterCommit(() -> {
+            unreadCounter.reset(employeeId);
+            pushService.pushUnreadCount(employeeId);
+        });
         log.info("Все уведомления сотрудника id={} отмечены как прочитанные ({} шт.).", employeeId, unread.size());
     }
 
@@ -139,11 +242,23 @@ public class NotificationService {
         Optional<Notification> optional = notificationRepository.findById(notificationId);
         if (optional.isPresent()) {
             Notification notification = optional.get();
+            boolean wasUnread = notification.getStatus() == NotificationStatus.NEW && notification.isVisible();
             notification.setVisible(false);
             notificationRepository.save(notification);
+            if (wasUnread) {
+                decrementUnread(notification.getRecipient().getId());
+            }
             log.info("Уведомление id={} скрыто.", notificationId);
             return true;
         }
         return false;
     }
+
+    private void decrementUnread(Long employeeId) {
+        pushService.recordUnreadChange(employeeId);
+        unreadCounter.afterCommit(() -> {
+            unreadCounter.add(employeeId, -1);
+            pushService.pushUnreadCount(employeeId);
+        });
+    }
 }
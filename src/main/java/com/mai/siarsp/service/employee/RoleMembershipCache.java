@@ -0,0 +1,79 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.repo.EmployeeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш состава ролей: имя роли → id сотрудников с этой ролью.
+ * <p>
+ * Используется рассылкой уведомлений, чтобы не выполнять запрос к сотрудникам на каждое сообщение.
+ * Сбрасывается целиком при любом изменении сотрудников и ролей ({@link #invalidate()} вызывают
+ * EmployeeService и RoleService). Внутри транзакции кэш сбрасывается повторно после фиксации, чтобы
+ * параллельное чтение не закэшировало состав, видимый до коммита.
+ * <p>
+ * Сброс видит только этот узел, поэтому запись также живёт не дольше {@code siarsp.role-membership.ttl-ms}
+ * (по умолчанию минута): изменение ролей на другом узле кластера доходит до рассылки не позже этого срока.
+ */
+@Service
+@Slf4j
+public class RoleMembershipCache {
+
+    private final EmployeeRepository employeeRepository;
+    private record Entry(List<Long> employeeIds, long loadedAtNanos) {}
+
+    private final long ttlNanos;
+    private final Map<String, Entry> employeeIdsByRole = new ConcurrentHashMap<>();
+    /** Поколение кэша: загрузка, начатая до сброса, не попадает в кэш после него. */
+    private final AtomicLong generation = new AtomicLong();
+
+    public RoleMembershipCache(EmployeeRepository employeeRepository,
+                               @Value("${siarsp.role-membership.ttl-ms:60000}") long ttlMillis) {
+        this.employeeRepository = employeeRepository;
+        this.ttlNanos = Duration.ofMillis(ttlMillis).toNanos();
+    }
+
+    public List<Long> getEmployeeIds(String roleName) {
+        Entry cached = employeeIdsByRole.get(roleName);
+        if (cached != null) {
+            if (System.nanoTime() - cached.loadedAtNanos() < ttlNanos) {
+                return cached.employeeIds();
+            }
+            employeeIdsByRole.remove(roleName, cached);
+        }
+        long loadedGeneration = generation.get();
+        long loadedAt = System.nanoTime();
+        List<Long> loaded = List.copyOf(employeeRepository.findIdsByRoleName(roleName));
+        if (generation.get() == loadedGeneration) {
+            employeeIdsByRole.putIfAbsent(roleName, new Entry(loaded, loadedAt));
+        }
+        return loaded;
+    }
+
+    public void invalidate() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        employeeIdsByRole.clear();
+        log.debug("Кэш состава ролей сброшен");
+    }
+}
@@ -3,6 +3,7 @@ package com.mai.siarsp.service.employee;
 import com.mai.siarsp.models.Role;
 import com.mai.siarsp.repo.EmployeeRepository;
 import com.mai.siarsp.repo.RoleRepository;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -35,14 +36,40 @@ public class RoleService {
 
     private final RoleRepository roleRepository;
     private final EmployeeRepository employeeRepository;
+    private final RoleMembershipCache roleMembershipCache;
+    private final ReferenceDataCache referenceDataCache;
 
-    public RoleService(RoleRepository roleRepository, EmployeeRepository employeeRepository) {
+    public RoleService(RoleRepository roleRepository, EmployeeRepository employeeRepository,
+                       RoleMembershipCache roleMembershipCache, ReferenceDataCache referenceDataCache) {
         this.roleRepository = roleRepository;
         this.employeeRepository = employeeRepository;
+        this.roleMembershipCache = roleMembershipCache;
+        this.referenceDataCache = referenceDataCache;
     }
 
+    /**
+     * Роли из кэша справочных данных — только для отображения. Изменять роль нужно
+     * через экземпляр из {@link #getRoleById(Long)}.
+     */
     public List<Role> getAllRoles() {
-        return roleRepository.findAll();
+        return referenceDataCache.getRoles(() -> roleRepository.findAll().stream()
+                .map(RoleService::copyOf)
+                .toList());
+    }
+
+    /**
+     * Роли сотрудников (ROLE_EMPLOYEE_*) для выбора на формах сотрудника
+     */
+    public List<Role> getEmployeeRoles() {
+        return getAllRoles().stream()
+                .filter(role -> role.getName().startsWith("ROLE_EMPLOYEE"))
+                .toList();
+    }
+
+    public Optional<Role> getRoleByName(String name) {
+        return getAllRoles().stream()
+                .filter(role -> role.getName().equals(name))
+                .findFirst();
     }
 
     public Optional<Role> getRoleById(Long id) {
@@ -74,6 +101,7 @@ public class RoleService {
         }
 
         log.info("Роль {} успешно создана.", name);
+        referenceDataCache.invalidateRoles();
         return true;
     }
 
@@ -98,6 +126,7 @@ public class RoleService {
         }
 
         log.info("Описание роли {} успешно обновлено.", role.getName());
+        referenceDataCache.invalidateRoles();
         return true;
     }
 
@@ -135,6 +164,8 @@ public class RoleService {
         }
 
         log.info("Роль успешно обновлена.");
+        referenceDataCache.invalidateRoles();
+        roleMembershipCache.invalidate();
         return true;
     }
 
@@ -167,6 +198,16 @@ public class RoleService {
         }
 
         log.info("Роль {} успешно удалена.", role.getName());
+        referenceDataCache.invalidateRoles();
+        roleMembershipCache.invalidate();
         return true;
     }
+
+    private static Role copyOf(Role role) {
+        Role copy = new Role();
+        copy.setId(role.getId());
+        copy.setName(role.getName());
+        copy.setDescription(role.getDescription());
+        return copy;
+    }
 }
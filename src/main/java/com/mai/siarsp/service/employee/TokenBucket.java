@@ -0,0 +1,64 @@
+package com.mai.siarsp.service.employee;
+
+/**
+ * Ограничитель скорости «ведро токенов»: не больше capacity операций подряд и в среднем
+ * не больше refillPerSecond операций в секунду.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Забирает один токен, ожидая его появления. Вызывается из фонового потока отправки.
+     */
+    void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / refillPerNano);
+            }
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    /**
+     * Ждёт хотя бы один токен и забирает все накопленные целые токены, но не больше max.
+     *
+     * @return число забранных токенов (от 1 до max)
+     */
+    int acquireUpTo(int max) throws InterruptedException {
+        acquire();
+        synchronized (this) {
+            int extra = (int) Math.min(Math.floor(tokens), max - 1);
+            tokens -= extra;
+            return 1 + extra;
+        }
+    }
+
+    /** Возвращает неиспользованные токены (не сверх ёмкости). */
+    synchronized void release(int count) {
+        refill();
+        tokens = Math.min(capacity, tokens + count);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
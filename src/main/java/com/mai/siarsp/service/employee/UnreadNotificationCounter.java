@@ -0,0 +1,95 @@
+package com.mai.siarsp.service.employee;
+
+import com.mai.siarsp.enumeration.NotificationStatus;
+import com.mai.siarsp.repo.NotificationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш счётчиков непрочитанных уведомлений по сотрудникам (badge в header).
+ * <p>
+ * Счётчик загружается из БД при первом обращении и дальше поддерживается в памяти: увеличивается
+ * диспетчером outbox при доставке, уменьшается при прочтении и скрытии. Изменения применяются после
+ * коммита транзакции. Изменения на других узлах кластера (новые уведомления, прочтение, скрытие) подбирает
+ * опрос NotificationPushService: счётчик таких сотрудников пересчитывается или сбрасывается. Запись
+ * в любом случае живёт не дольше {@link #TTL_MS} мс и затем пересчитывается одним запросом.
+ */
+@Service
+public class UnreadNotificationCounter {
+
+    private static final long TTL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final NotificationRepository notificationRepository;
+    private final Map<Long, Entry> counters = new ConcurrentHashMap<>();
+
+    public UnreadNotificationCounter(NotificationRepository notificationRepository) {
+        this.notificationRepository = notificationRepository;
+    }
+
+    private record Entry(AtomicLong count, long loadedAt) {
+    }
+
+    public long get(Long employeeId) {
+        long now = System.currentTimeMillis();
+        Entry entry = counters.get(employeeId);
+        if (entry == null || now - entry.loadedAt() > TTL_MS) {
+            entry = new Entry(new AtomicLong(notificationRepository
+                    .countByRecipientIdAndStatusAndVisibleTrue(employeeId, NotificationStatus.NEW)), now);
+            counters.put(employeeId, entry);
+        }
+        return entry.count().get();
+    }
+
+    /**
+     * Изменяет счётчик на delta. Если счётчик ещё не загружен, ничего не делает — он будет прочитан из БД.
+     *
+     * @return новое значение или -1, если счётчик не загружен
+     */
+    public long add(Long employeeId, long delta) {
+        Entry entry = counters.get(employeeId);
+        if (entry == null) {
+            return -1;
+        }
+        return entry.count().updateAndGet(value -> Math.max(0, value + delta));
+    }
+
+    /**
+     * Значение, только что прочитанное из БД (сверка опросом {@link NotificationPushService#poll()}).
+     */
+    public void set(Long employeeId, long count) {
+        counters.put(employeeId, new Entry(new AtomicLong(count), System.currentTimeMillis()));
+    }
+
+    public void reset(Long employeeId) {
+        Entry entry = counters.get(employeeId);
+        if (entry != null) {
+            entry.count().set(0);
+        }
+    }
+
+    public void evict(Long employeeId) {
+        counters.remove(employeeId);
+    }
+
+    /**
+     * Выполняет action после коммита текущей транзакции (или сразу, если транзакции нет).
+     */
+    void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
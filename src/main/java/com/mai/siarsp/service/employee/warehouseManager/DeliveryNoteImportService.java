@@ -0,0 +1,498 @@
+package com.mai.siarsp.service.employee.warehouseManager;
+
+import com.mai.siarsp.dto.DeliveryNoteImportResult;
+import com.mai.siarsp.enumeration.RequestStatus;
+import com.mai.siarsp.models.Delivery;
+import com.mai.siarsp.models.RequestForDelivery;
+import com.mai.siarsp.repo.DeliveryRepository;
+import com.mai.siarsp.repo.ProductAttributeValueRepository;
+import com.mai.siarsp.repo.RequestForDeliveryRepository;
+import com.mai.siarsp.repo.RequestedProductRepository;
+import com.mai.siarsp.repo.RequestedProductRepository.RequestedLine;
+import com.mai.siarsp.service.general.XlsxStreamReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Приёмка поставки по электронной накладной поставщика (xlsx или csv) вместо ручного заполнения формы.
+ * <p>
+ * Строка заголовка ищется по колонке «Артикул»; обязательна также колонка «Количество»,
+ * необязательны «Цена», «Дата производства» и «Причина недопоставки». Строки без артикула
+ * (итоги, подписи) пропускаются. Строки сопоставляются с позициями заявки по артикулу, несколько строк
+ * одного товара — отдельные партии с разными датами производства.
+ * <p>
+ * За один проход по строкам проверяются количества и цены, считаются сроки годности и недопоставки.
+ * Накладная принимается целиком: при ошибках ничего не записывается. Иначе в одной транзакции
+ * создаётся Delivery, партии вставляются одним пакетным INSERT, остатки товаров увеличиваются
+ * одним пакетным UPDATE, после чего приёмка завершается как из формы
+ * ({@link DeliveryService#completeReceipt}).
+ */
+@Service
+@Slf4j
+public class DeliveryNoteImportService {
+
+    private static final int MAX_ERRORS = 100;
+    private static final String SHELF_LIFE_ATTRIBUTE = "Срок годности";
+    private static final String REASON_SHORT_IN_NOTE = "Недопоставка по накладной поставщика";
+    private static final String REASON_MISSING_IN_NOTE = "Позиция отсутствует в накладной поставщика";
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    private static final String INSERT_SUPPLY_SQL = "INSERT INTO t_supply " +
+            "(purchase_price, unit, quantity, quantity_for_stock, deficit_quantity, deficit_reason, " +
+            "production_date, expiration_date, product_id, delivery_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_STOCK_SQL = "UPDATE t_product " +
+            "SET stock_quantity = stock_quantity + ?, quantity_for_stock = quantity_for_stock + ? WHERE id = ?";
+
+    private final RequestForDeliveryRepository requestForDeliveryRepository;
+    private final RequestedProductRepository requestedProductRepository;
+    private final ProductAttributeValueRepository productAttributeValueRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final DeliveryService deliveryService;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    public DeliveryNoteImportService(RequestForDeliveryRepository requestForDeliveryRepository,
+                                     RequestedProductRepository requestedProductRepository,
+                                     ProductAttributeValueRepository productAttributeValueRepository,
+                                     DeliveryRepository deliveryRepository,
+                                     DeliveryService deliveryService,
+                                     JdbcTemplate jdbc,
+                                     PlatformTransactionManager transactionManager) {
+        this.requestForDeliveryRepository = requestForDeliveryRepository;
+        this.requestedProductRepository = requestedProductRepository;
+        this.productAttributeValueRepository = productAttributeValueRepository;
+        this.deliveryRepository = deliveryRepository;
+        this.deliveryService = deliveryService;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Принимает поставку по накладной для согласованной заявки; датой приёмки считается сегодняшний день,
+     * как в форме приёмки. Ошибки формата файла выбрасываются как IllegalArgumentException.
+     */
+    public DeliveryNoteImportResult importDeliveryNote(Long requestId, MultipartFile file) {
+        long started = System.currentTimeMillis();
+        ParsedNote note = parse(file);
+        if (note.lines().isEmpty() && note.errors().isEmpty()) {
+            throw new IllegalArgumentException("В накладной нет строк с товарами.");
+        }
+        LocalDate deliveryDate = LocalDate.now();
+        try {
+            DeliveryNoteImportResult result = transactionTemplate.execute(status -> receive(requestId, note, deliveryDate));
+            if (result.success()) {
+                log.info("Поставка ID {} принята по накладной для заявки ID {}: строк {}, партий {} за {} мс.",
+                        result.deliveryId(), requestId, result.lineCount(), result.supplyCount(),
+                        System.currentTimeMillis() - started);
+            }
+            return result;
+        } catch (DataAccessException e) {
+            log.error("Ошибка записи поставки по накладной для заявки ID {}: {}", requestId, e.getMessage(), e);
+            return failure(note.lines().size(), List.of("Ошибка записи в базу данных. Поставка не оформлена."));
+        }
+    }
+
+    // ========== ПРИЁМКА ==========
+
+    private record NoteLine(int rowNumber, String article, int quantity, BigDecimal price,
+                            LocalDate productionDate, String deficitReason) {
+    }
+
+    private record ParsedNote(List<NoteLine> lines, List<String> errors) {
+    }
+
+    /** Итог по позиции заявки: принятое количество и причина недопоставки из накладной. */
+    private static final class Received {
+        private int quantity;
+        private String reason;
+        private boolean inNote;
+    }
+
+    private DeliveryNoteImportResult receive(Long requestId, ParsedNote note, LocalDate deliveryDate) {
+        Optional<RequestForDelivery> optRequest = requestForDeliveryRepository.findById(requestId);
+        if (optRequest.isEmpty()) {
+            return failure(note.lines().size(), List.of("Заявка не найдена."));
+        }
+        RequestForDelivery request = optRequest.get();
+        if (request.getStatus() != RequestStatus.APPROVED) {
+            return failure(note.lines().size(), List.of("Заявка не в статусе «Согласовано». Текущий статус: "
+                    + request.getStatus().getDisplayName()));
+        }
+
+        List<RequestedLine> requestedLines = requestedProductRepository.findLinesByRequestId(requestId);
+        Map<String, RequestedLine> byArticle = new HashMap<>(requestedLines.size() * 2);
+        for (RequestedLine line : requestedLines) {
+            byArticle.put(normalize(line.getArticle()), line);
+        }
+        Map<Long, Integer> shelfLifeDays = loadShelfLifeDays(requestedLines);
+
+        // Один проход: сопоставление, цены, сроки годности и накопление принятого по позициям
+        List<String> errors = new ArrayList<>(note.errors());
+        Map<Long, Received> received = new LinkedHashMap<>();
+        List<Object[]> supplyRows = new ArrayList<>(note.lines().size() + requestedLines.size());
+        for (NoteLine line : note.lines()) {
+            RequestedLine requested = byArticle.get(normalize(line.article()));
+            if (requested == null) {
+                addError(errors, "Строка " + line.rowNumber() + ": артикул «" + line.article() + "» отсутствует в заявке.");
+                continue;
+            }
+            BigDecimal price = line.price() != null ? line.price() : requested.getPurchasePrice();
+            if (price == null || price.signum() < 0) {
+                addError(errors, "Строка " + line.rowNumber() + ": не указана цена, и её нет в заявке.");
+                continue;
+            }
+            LocalDate productionDate = line.productionDate();
+            LocalDate expirationDate = null;
+            if (productionDate != null) {
+                if (productionDate.isAfter(deliveryDate)) {
+                    addError(errors, "Строка " + line.rowNumber() + ": дата производства "
+                            + productionDate.format(DATE_FMT) + " позже даты приёмки.");
+                    continue;
+                }
+                Integer days = shelfLifeDays.get(requested.getProductId());
+                if (days != null) {
+                    expirationDate = productionDate.plusDays(days);
+                    if (expirationDate.isBefore(deliveryDate)) {
+                        addError(errors, "Строка " + line.rowNumber() + ": партия просрочена (годна до "
+                                + expirationDate.format(DATE_FMT) + ").");
+                        continue;
+                    }
+                }
+            }
+
+            Received total = received.computeIfAbsent(requested.getId(), id -> new Received());
+            total.quantity += line.quantity();
+            total.inNote = true;
+            if (total.reason == null && line.deficitReason() != null) {
+                total.reason = line.deficitReason();
+            }
+            supplyRows.add(new Object[]{price, requested.getUnit(), line.quantity(), line.quantity(), 0, null,
+                    toSqlDate(productionDate), toSqlDate(expirationDate), requested.getProductId(), null});
+        }
+
+        // Недопоставка по позициям заявки; отсутствующие в накладной позиции — нулевые партии, как в форме
+        boolean hasDeficit = false;
+        Map<Long, Integer> deficitRowIndex = new HashMap<>();
+        for (int i = 0; i < supplyRows.size(); i++) {
+            deficitRowIndex.putIfAbsent((Long) supplyRows.get(i)[8], i);
+        }
+        for (RequestedLine requested : requestedLines) {
+            Received total = received.getOrDefault(requested.getId(), new Received());
+            if (total.quantity > requested.getQuantity()) {
+                addError(errors, "Товар «" + requested.getProductName() + "» (артикул " + requested.getArticle()
+                        + "): принято " + total.quantity + ", заказано " + requested.getQuantity() + ".");
+                continue;
+            }
+            int deficit = requested.getQuantity() - total.quantity;
+            if (deficit == 0) {
+                continue;
+            }
+            hasDeficit = true;
+            String reason = total.reason != null ? total.reason
+                    : total.inNote ? REASON_SHORT_IN_NOTE : REASON_MISSING_IN_NOTE;
+            Integer rowIndex = deficitRowIndex.get(requested.getProductId());
+            if (rowIndex != null) {
+                supplyRows.get(rowIndex)[4] = deficit;
+                supplyRows.get(rowIndex)[5] = reason;
+            } else {
+                supplyRows.add(new Object[]{requested.getPurchasePrice() != null ? requested.getPurchasePrice() : BigDecimal.ZERO,
+                        requested.getUnit(), 0, 0, deficit, reason, null, null, requested.getProductId(), null});
+            }
+        }
+        if (!errors.isEmpty()) {
+            return failure(note.lines().size(), errors);
+        }
+
+        Delivery delivery = deliveryRepository.save(new Delivery(request.getSupplier(), deliveryDate));
+        Map<Long, Integer> stockIncrements = new LinkedHashMap<>();
+        for (Object[] row : supplyRows) {
+            row[9] = delivery.getId();
+            stockIncrements.merge((Long) row[8], (Integer) row[2], Integer::sum);
+        }
+        jdbc.batchUpdate(INSERT_SUPPLY_SQL, supplyRows);
+
+        List<Object[]> stockRows = new ArrayList<>(stockIncrements.size());
+        for (Map.Entry<Long, Integer> increment : stockIncrements.entrySet()) {
+            if (increment.getValue() > 0) {
+                stockRows.add(new Object[]{increment.getValue(), increment.getValue(), increment.getKey()});
+            }
+        }
+        jdbc.batchUpdate(UPDATE_STOCK_SQL, stockRows);
+
+        delivery = deliveryService.completeReceipt(request, delivery, hasDeficit);
+        return new DeliveryNoteImportResult(delivery.getId(), note.lines().size(), supplyRows.size(), hasDeficit, List.of());
+    }
+
+    private Map<Long, Integer> loadShelfLifeDays(List<RequestedLine> requestedLines) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (requestedLines.isEmpty()) {
+            return result;
+        }
+        List<Long> productIds = requestedLines.stream().map(RequestedLine::getProductId).toList();
+        for (Object[] row : productAttributeValueRepository.findValuesByAttributeNameAndProductIds(
+                SHELF_LIFE_ATTRIBUTE, productIds)) {
+            try {
+                result.put((Long) row[0], Integer.parseInt(((String) row[1]).trim()));
+            } catch (NumberFormatException e) {
+                // некорректный срок годности — как Product.getShelfLifeDays(), срок не рассчитывается
+            }
+        }
+        return result;
+    }
+
+    private static DeliveryNoteImportResult failure(int lineCount, List<String> errors) {
+        return new DeliveryNoteImportResult(null, lineCount, 0, false, List.copyOf(errors));
+    }
+
+    private static void addError(List<String> errors, String error) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    // ========== ЧТЕНИЕ ФАЙЛА ==========
+
+    private ParsedNote parse(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Файл не выбран или пуст.");
+        }
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+        NoteReader reader = new NoteReader();
+        try {
+            if (name.endsWith(".xlsx")) {
+                Path temp = Files.createTempFile("delivery-note-", ".xlsx");
+                try {
+                    try (InputStream in = file.getInputStream()) {
+                        Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    XlsxStreamReader.read(temp, reader::acceptRow);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } else if (name.endsWith(".csv")) {
+                readCsv(file.getBytes(), reader);
+            } else {
+                throw new IllegalArgumentException("Поддерживаются только форматы .xlsx и .csv.");
+            }
+        } catch (IOException e) {
+            log.error("Не удалось прочитать накладную: {}", e.getMessage(), e);
+            throw new IllegalArgumentException("Не удалось прочитать файл накладной.");
+        }
+        if (reader.columns == null) {
+            throw new IllegalArgumentException("В накладной не найдена строка заголовка с колонками «Артикул» и «Количество».");
+        }
+        return new ParsedNote(reader.lines, reader.errors);
+    }
+
+    /**
+     * Разбор строк накладной: поиск заголовка, затем преобразование строк с артикулом.
+     */
+    private static final class NoteReader {
+
+        private static final String COL_ARTICLE = "article";
+        private static final String COL_QUANTITY = "quantity";
+        private static final String COL_PRICE = "price";
+        private static final String COL_PRODUCTION_DATE = "productionDate";
+        private static final String COL_REASON = "reason";
+
+        private final List<NoteLine> lines = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private Map<String, Integer> columns;
+
+        private void acceptRow(int rowNum, List<String> cells) {
+            if (columns == null) {
+                detectHeader(cells);
+                return;
+            }
+            int rowNumber = rowNum + 1;
+            String article = cell(cells, COL_ARTICLE);
+            if (article.isEmpty()) {
+                return;
+            }
+            try {
+                int quantity = parseQuantity(cell(cells, COL_QUANTITY));
+                String price = cell(cells, COL_PRICE);
+                String productionDate = cell(cells, COL_PRODUCTION_DATE);
+                String reason = cell(cells, COL_REASON);
+                lines.add(new NoteLine(rowNumber, article, quantity,
+                        price.isEmpty() ? null : parseDecimal(price),
+                        productionDate.isEmpty() ? null : parseDate(productionDate),
+                        reason.isEmpty() ? null : reason));
+            } catch (IllegalArgumentException e) {
+                addError(errors, "Строка " + rowNumber + ": " + e.getMessage());
+            }
+        }
+
+        private void detectHeader(List<String> cells) {
+            Map<String, Integer> found = new HashMap<>();
+            for (int i = 0; i < cells.size(); i++) {
+                String header = normalize(cells.get(i));
+                if (header.contains("артикул")) {
+                    found.putIfAbsent(COL_ARTICLE, i);
+                } else if (header.startsWith("кол")) {
+                    found.putIfAbsent(COL_QUANTITY, i);
+                } else if (header.contains("цена")) {
+                    found.putIfAbsent(COL_PRICE, i);
+                } else if (header.contains("произв")) {
+                    found.putIfAbsent(COL_PRODUCTION_DATE, i);
+                } else if (header.contains("причин")) {
+                    found.putIfAbsent(COL_REASON, i);
+                }
+            }
+            if (found.containsKey(COL_ARTICLE) && found.containsKey(COL_QUANTITY)) {
+                columns = found;
+            }
+        }
+
+        private String cell(List<String> cells, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= cells.size() || cells.get(index) == null) {
+                return "";
+            }
+            return cells.get(index).trim();
+        }
+    }
+
+    /**
+     * CSV из учётных систем: разделитель «;» или «,» (по строке заголовка), кавычки по RFC 4180,
+     * кодировка UTF-8 или, если файл в ней не читается, Windows-1251. Накладная невелика
+     * и декодируется целиком.
+     */
+    private static void readCsv(byte[] bytes, NoteReader reader) {
+        String text = decode(bytes);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        String[] rows = text.split("\r\n|\n|\r", -1);
+        char delimiter = ';';
+        for (String row : rows) {
+            if (!row.isBlank()) {
+                delimiter = count(row, ';') >= count(row, ',') ? ';' : ',';
+                break;
+            }
+        }
+        for (int i = 0; i < rows.length; i++) {
+            if (!rows[i].isBlank()) {
+                reader.acceptRow(i, splitCsv(rows[i], delimiter));
+            }
+        }
+    }
+
+    private static String decode(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes, WINDOWS_1251);
+        }
+    }
+
+    private static List<String> splitCsv(String row, char delimiter) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ========== HELPERS ==========
+
+    private static int parseQuantity(String text) {
+        try {
+            int quantity = new BigDecimal(text.replaceAll("[\\s\\u00A0]", "").replace(",", ".")).intValueExact();
+            if (quantity < 0) {
+                throw new IllegalArgumentException("отрицательное количество «" + text + "».");
+            }
+            return quantity;
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("некорректное количество «" + text + "».");
+        }
+    }
+
+    private static BigDecimal parseDecimal(String text) {
+        try {
+            return new BigDecimal(text.replaceAll("[\\s\\u00A0]", "").replace(",", "."));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректная цена «" + text + "».");
+        }
+    }
+
+    private static LocalDate parseDate(String text) {
+        try {
+            return text.contains(".") ? LocalDate.parse(text, DATE_FMT) : LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("некорректная дата производства «" + text + "».");
+        }
+    }
+
+    private static Date toSqlDate(LocalDate date) {
+        return date != null ? Date.valueOf(date) : null;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
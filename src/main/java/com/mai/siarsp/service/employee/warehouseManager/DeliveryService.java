@@ -9,6 +9,7 @@ import com.mai.siarsp.repo.DeliveryRepository;
 import com.mai.siarsp.repo.ProductRepository;
 import com.mai.siarsp.repo.RequestForDeliveryRepository;
 import com.mai.siarsp.service.employee.NotificationService;
+import com.mai.siarsp.service.general.DailyFactService;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -38,15 +39,18 @@ public class DeliveryService {
     private final RequestForDeliveryRepository requestForDeliveryRepository;
     private final ProductRepository productRepository;
     private final NotificationService notificationService;
+    private final DailyFactService dailyFactService;
 
     public DeliveryService(DeliveryRepository deliveryRepository,
                            RequestForDeliveryRepository requestForDeliveryRepository,
                            ProductRepository productRepository,
-                           NotificationService notificationService) {
+                           NotificationService notificationService,
+                           DailyFactService dailyFactService) {
         this.deliveryRepository = deliveryRepository;
         this.requestForDeliveryRepository = requestForDeliveryRepository;
         this.productRepository = productRepository;
         this.notificationService = notificationService;
+        this.dailyFactService = dailyFactService;
     }
 
     @Transactional(readOnly = true)
@@ -163,39 +167,9 @@ public class DeliveryService {
                         product.getName(), product.getId(), input.getQuantity(), deficit);
             }
 
-            // 7. Связать поставку с заявкой
-            request.setDelivery(delivery);
-
-            // 8. Определить статус заявки
-            if (hasDeficit) {
-                request.setStatus(RequestStatus.PARTIALLY_RECEIVED);
-                log.info("Заявка ID {} → статус PARTIALLY_RECEIVED", requestId);
-            } else {
-                request.setStatus(RequestStatus.RECEIVED);
-                request.setReceivedDate(LocalDate.now());
-                log.info("Заявка ID {} → статус RECEIVED, дата получения: {}", requestId, LocalDate.now());
-            }
-
-            // 9. Сохранить (каскад сохранит Delivery и Supply)
-            request = requestForDeliveryRepository.save(request);
-            delivery = request.getDelivery(); // получить managed copy с ID
-
-            // 10. Уведомления
+            // 7–10. Связать поставку с заявкой, обновить статус, агрегаты и уведомить
+            delivery = completeReceipt(request, delivery, hasDeficit);
             String supplierName = request.getSupplier().getName();
-            String dateStr = deliveryDate.format(DATE_FMT);
-            if (hasDeficit) {
-                String notificationText = String.format(
-                        "Поставка №%d от поставщика «%s» принята частично (%s). Имеются расхождения.",
-                        delivery.getId(), supplierName, dateStr);
-                notificationService.notifyByRole("ROLE_EMPLOYEE_MANAGER", notificationText);
-                notificationService.notifyByRole("ROLE_EMPLOYEE_ACCOUNTER", notificationText);
-            } else {
-                String notificationText = String.format(
-                        "Поставка №%d от поставщика «%s» полностью принята (%s).",
-                        delivery.getId(), supplierName, dateStr);
-                notificationService.notifyByRole("ROLE_EMPLOYEE_MANAGER", notificationText);
-                notificationService.notifyByRole("ROLE_EMPLOYEE_ACCOUNTER", notificationText);
-            }
 
             log.info("Поставка ID {} создана для заявки ID {} от поставщика '{}', позиций: {}",
                     delivery.getId(), requestId, supplierName, supplyInputs.size());
@@ -207,4 +181,52 @@ public class DeliveryService {
             return false;
         }
     }
+
+    /**
+     * Завершение приёмки по заявке: связь поставки с заявкой, статус заявки, агрегаты поступлений
+     * и уведомления менеджеру и бухгалтеру. Выполняется в транзакции оформления поставки —
+     * из формы приёмки и из импорта накладной поставщика.
+     *
+     * @return сохранённая поставка с ID
+     */
+    public Delivery completeReceipt(RequestForDelivery request, Delivery delivery, boolean hasDeficit) {
+        Long requestId = request.getId();
+        LocalDate deliveryDate = delivery.getDeliveryDate();
+
+        // 1. Связать поставку с заявкой
+        request.setDelivery(delivery);
+
+        // 2. Определить статус заявки
+        if (hasDeficit) {
+            request.setStatus(RequestStatus.PARTIALLY_RECEIVED);
+            log.info("Заявка ID {} → статус PARTIALLY_RECEIVED", requestId);
+        } else {
+            request.setStatus(RequestStatus.RECEIVED);
+            request.setReceivedDate(LocalDate.now());
+            log.info("Заявка ID {} → статус RECEIVED, дата получения: {}", requestId, LocalDate.now());
+        }
+
+        // 3. Сохранить (каскад сохранит Delivery и Supply)
+        request = requestForDeliveryRepository.save(request);
+        delivery = request.getDelivery(); // получить managed copy с ID
+        dailyFactService.recordReceipt(delivery.getId());
+
+        // 4. Уведомления
+        String supplierName = request.getSupplier().getName();
+        String dateStr = deliveryDate.format(DATE_FMT);
+        if (hasDeficit) {
+            String notificationText = String.format(
+                    "Поставка №%d от поставщика «%s» принята частично (%s). Имеются расхождения.",
+                    delivery.getId(), supplierName, dateStr);
+            notificationService.notifyByRole("ROLE_EMPLOYEE_MANAGER", notificationText);
+            notificationService.notifyByRole("ROLE_EMPLOYEE_ACCOUNTER", notificationText);
+        } else {
+            String notificationText = String.format(
+                    "Поставка №%d от поставщика «%s» полностью принята (%s).",
+                    delivery.getId(), supplierName, dateStr);
+            notificationService.notifyByRole("ROLE_EMPLOYEE_MANAGER", notificationText);
+            notificationService.notifyByRole("ROLE_EMPLOYEE_ACCOUNTER", notificationText);
+        }
+        return delivery;
+    }
 }
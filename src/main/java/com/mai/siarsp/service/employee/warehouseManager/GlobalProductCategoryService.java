@@ -5,6 +5,7 @@ import com.mai.siarsp.mapper.GlobalProductCategoryMapper;
 import com.mai.siarsp.models.GlobalProductCategory;
 import com.mai.siarsp.repo.GlobalProductCategoryRepository;
 import com.mai.siarsp.repo.ProductCategoryRepository;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -25,11 +26,14 @@ public class GlobalProductCategoryService {
 
     private final GlobalProductCategoryRepository globalProductCategoryRepository;
     private final ProductCategoryRepository productCategoryRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     public GlobalProductCategoryService(GlobalProductCategoryRepository globalProductCategoryRepository,
-                                         ProductCategoryRepository productCategoryRepository) {
+                                         ProductCategoryRepository productCategoryRepository,
+                                         ReferenceDataCache referenceDataCache) {
         this.globalProductCategoryRepository = globalProductCategoryRepository;
         this.productCategoryRepository = productCategoryRepository;
+        this.referenceDataCache = referenceDataCache;
     }
 
     public boolean checkName(String name, Long id) {
@@ -95,6 +99,8 @@ public class GlobalProductCategoryService {
             return false;
         }
 
+        // название глобальной категории входит в отображаемое имя товарных категорий
+        referenceDataCache.invalidateProductCategories();
         log.info("Изменения глобальной категории успешно сохранены.");
         return true;
     }
@@ -11,6 +11,9 @@ import com.mai.siarsp.repo.ProductAttributeRepository;
 import com.mai.siarsp.repo.ProductAttributeValueRepository;
 import com.mai.siarsp.repo.ProductCategoryRepository;
 import com.mai.siarsp.repo.ProductRepository;
+import com.mai.siarsp.service.general.ProductFacetIndex;
+import com.mai.siarsp.service.general.ProductReadModelService;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -37,15 +40,24 @@ public class ProductAttributeService {
     private final ProductAttributeValueRepository productAttributeValueRepository;
     private final ProductCategoryRepository productCategoryRepository;
     private final ProductRepository productRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ProductFacetIndex productFacetIndex;
+    private final ReferenceDataCache referenceDataCache;
 
     public ProductAttributeService(ProductAttributeRepository productAttributeRepository,
                                     ProductAttributeValueRepository productAttributeValueRepository,
                                     ProductCategoryRepository productCategoryRepository,
-                                    ProductRepository productRepository) {
+                                    ProductRepository productRepository,
+                                    ProductReadModelService productReadModelService,
+                                    ProductFacetIndex productFacetIndex,
+                                    ReferenceDataCache referenceDataCache) {
         this.productAttributeRepository = productAttributeRepository;
         this.productAttributeValueRepository = productAttributeValueRepository;
         this.productCategoryRepository = productCategoryRepository;
         this.productRepository = productRepository;
+        this.productReadModelService = productReadModelService;
+        this.productFacetIndex = productFacetIndex;
+        this.referenceDataCache = referenceDataCache;
     }
 
     public boolean isProtectedGabarite(ProductAttribute attribute) {
@@ -95,6 +107,9 @@ public class ProductAttributeService {
             return false;
         }
 
+        productReadModelService.markCategoriesChanged(categoryIds);
+        productFacetIndex.markAttributeChanged(attribute.getId());
+        invalidateCachedReferences(categoryIds);
         log.info("Атрибут {} успешно сохранён.", attribute.getName());
         return true;
     }
@@ -174,6 +189,7 @@ public class ProductAttributeService {
         attribute.setUnit(inputUnit != null ? inputUnit : "");
         attribute.setDataType(inputDataType);
 
+        Set<Long> affectedCategoryIds = new HashSet<>();
         try {
             productAttributeRepository.save(attribute);
             log.info("Атрибут '{}' (id={}) сохранён с обновлёнными полями.", attribute.getName(), id);
@@ -188,6 +204,10 @@ public class ProductAttributeService {
             List<ProductCategory> removedCategories = new ArrayList<>(currentCategories);
             removedCategories.removeAll(newCategories);
 
+            // Таблицы модели характеристик перестраиваются для старых и новых категорий атрибута
+            currentCategories.forEach(category -> affectedCategoryIds.add(category.getId()));
+            newCategories.forEach(category -> affectedCategoryIds.add(category.getId()));
+
             log.info("Текущие категории: {}, Новые категории: {}, Удалённые категории: {}",
                     currentCategories.stream().map(ProductCategory::getName).toList(),
                     newCategories.stream().map(ProductCategory::getName).toList(),
@@ -252,6 +272,9 @@ public class ProductAttributeService {
             return false;
         }
 
+        productReadModelService.markCategoriesChanged(affectedCategoryIds);
+        productFacetIndex.markAttributeChanged(id);
+        invalidateCachedReferences(affectedCategoryIds);
         log.info("Изменения атрибута '{}' (id={}) успешно сохранены.", attribute.getName(), id);
         return true;
     }
@@ -289,6 +312,10 @@ public class ProductAttributeService {
                 category.getAttributes().remove(attribute);
                 productCategoryRepository.save(category);
             }
+            productReadModelService.markCategoriesChanged(
+                    currentCategories.stream().map(ProductCategory::getId).toList());
+            invalidateCachedReferences(List.of());
+            productFacetIndex.markAttributeChanged(id);
 
             productAttributeRepository.delete(attribute);
         } catch (Exception e) {
@@ -301,9 +328,18 @@ public class ProductAttributeService {
         return true;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<ProductAttributeDTO> getAllProductAttributes() {
-        List<ProductAttribute> attributes = productAttributeRepository.findAll();
-        return ProductAttributeMapper.INSTANCE.toDTOList(attributes);
+        return referenceDataCache.getProductAttributes(() ->
+                ProductAttributeMapper.INSTANCE.toDTOList(productAttributeRepository.findAll()));
+    }
+
+    /**
+     * Списки атрибутов и категорий (в них входят атрибуты) и карточки товаров затронутых категорий
+     */
+    private void invalidateCachedReferences(Collection<Long> categoryIds) {
+        referenceDataCache.invalidateProductAttributes();
+        referenceDataCache.invalidateProductCategories();
+        referenceDataCache.invalidateProductsOfCategories(categoryIds);
     }
 }
@@ -10,6 +10,9 @@ import com.mai.siarsp.repo.ProductAttributeRepository;
 import com.mai.siarsp.repo.ProductAttributeValueRepository;
 import com.mai.siarsp.repo.ProductCategoryRepository;
 import com.mai.siarsp.repo.ProductRepository;
+import com.mai.siarsp.service.general.ProductFacetIndex;
+import com.mai.siarsp.service.general.ProductReadModelService;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -42,17 +45,26 @@ public class ProductCategoryService {
     private final ProductAttributeRepository productAttributeRepository;
     private final ProductRepository productRepository;
     private final ProductAttributeValueRepository productAttributeValueRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ProductFacetIndex productFacetIndex;
+    private final ReferenceDataCache referenceDataCache;
 
     public ProductCategoryService(ProductCategoryRepository productCategoryRepository,
                                    GlobalProductCategoryRepository globalProductCategoryRepository,
                                    ProductAttributeRepository productAttributeRepository,
                                    ProductRepository productRepository,
-                                   ProductAttributeValueRepository productAttributeValueRepository) {
+                                   ProductAttributeValueRepository productAttributeValueRepository,
+                                   ProductReadModelService productReadModelService,
+                                   ProductFacetIndex productFacetIndex,
+                                   ReferenceDataCache referenceDataCache) {
         this.productCategoryRepository = productCategoryRepository;
         this.globalProductCategoryRepository = globalProductCategoryRepository;
         this.productAttributeRepository = productAttributeRepository;
         this.productRepository = productRepository;
         this.productAttributeValueRepository = productAttributeValueRepository;
+        this.productReadModelService = productReadModelService;
+        this.productFacetIndex = productFacetIndex;
+        this.referenceDataCache = referenceDataCache;
     }
 
     public boolean checkName(String name, Long globalProductCategoryId, Long id) {
@@ -111,6 +123,9 @@ public class ProductCategoryService {
             return false;
         }
 
+        productReadModelService.markCategoryChanged(category.getId());
+        productFacetIndex.markCategoryChanged(category.getId());
+        referenceDataCache.invalidateProductCategories();
         log.info("Категория товара {} успешно сохранена.", category.getName());
         return true;
     }
@@ -206,6 +221,10 @@ public class ProductCategoryService {
             return false;
         }
 
+        productReadModelService.markCategoryChanged(id);
+        productFacetIndex.markCategoryChanged(id);
+        referenceDataCache.invalidateProductCategories();
+        referenceDataCache.invalidateProductsOfCategories(List.of(id));
         log.info("Изменения категории товара успешно сохранены.");
         return true;
     }
@@ -237,13 +256,16 @@ public class ProductCategoryService {
             return false;
         }
 
+        productReadModelService.markCategoryChanged(id);
+        productFacetIndex.markCategoryChanged(id);
+        referenceDataCache.invalidateProductCategories();
         log.info("Категория товара успешно удалена.");
         return true;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<ProductCategoryDTO> getAllProductCategories() {
-        List<ProductCategory> categories = productCategoryRepository.findAll();
-        return ProductCategoryMapper.INSTANCE.toDTOList(categories);
+        return referenceDataCache.getProductCategories(() ->
+                ProductCategoryMapper.INSTANCE.toDTOList(productCategoryRepository.findAll()));
     }
 }
@@ -2,13 +2,16 @@ package com.mai.siarsp.service.employee.warehouseManager;
 
 import com.mai.siarsp.dto.ProductDTO;
 import com.mai.siarsp.enumeration.WarehouseType;
-import com.mai.siarsp.mapper.ProductMapper;
 import com.mai.siarsp.models.Product;
 import com.mai.siarsp.models.ProductAttribute;
 import com.mai.siarsp.models.ProductAttributeValue;
 import com.mai.siarsp.models.ProductCategory;
 import com.mai.siarsp.repo.*;
 import com.mai.siarsp.service.general.ImageService;
+import com.mai.siarsp.service.general.ProductFacetIndex;
+import com.mai.siarsp.service.general.ProductReadModelService;
+import com.mai.siarsp.service.general.ProductSearchIndex;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -36,6 +39,10 @@ public class ProductService {
     private final ZoneProductRepository zoneProductRepository;
     private final SupplyRepository supplyRepository;
     private final WriteOffActRepository writeOffActRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final ReferenceDataCache referenceDataCache;
 
     public ProductService(ProductRepository productRepository,
                           ProductCategoryRepository productCategoryRepository,
@@ -45,7 +52,11 @@ public class ProductService {
                           RequestedProductRepository requestedProductRepository,
                           ZoneProductRepository zoneProductRepository,
                           SupplyRepository supplyRepository,
-                          WriteOffActRepository writeOffActRepository) {
+                          WriteOffActRepository writeOffActRepository,
+                          ProductReadModelService productReadModelService,
+                          ProductFacetIndex productFacetIndex,
+                          ProductSearchIndex productSearchIndex,
+                          ReferenceDataCache referenceDataCache) {
         this.productRepository = productRepository;
         this.productCategoryRepository = productCategoryRepository;
         this.productAttributeRepository = productAttributeRepository;
@@ -55,6 +66,10 @@ public class ProductService {
         this.zoneProductRepository = zoneProductRepository;
         this.supplyRepository = supplyRepository;
         this.writeOffActRepository = writeOffActRepository;
+        this.productReadModelService = productReadModelService;
+        this.productFacetIndex = productFacetIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.referenceDataCache = referenceDataCache;
     }
 
     public boolean checkArticle(String article, Long id) {
@@ -101,6 +116,10 @@ public class ProductService {
             return Optional.empty();
         }
 
+        productReadModelService.markProductChanged(product.getId());
+        productFacetIndex.markProductChanged(product.getId());
+        productSearchIndex.productSaved(product.getId(), product.getName(), product.getArticle());
+        referenceDataCache.invalidateProduct(product.getId());
         return Optional.of(product.getId());
     }
 
@@ -147,6 +166,10 @@ public class ProductService {
             return Optional.empty();
         }
 
+        productReadModelService.markProductChanged(product.getId());
+        productFacetIndex.markProductChanged(product.getId());
+        productSearchIndex.productSaved(product.getId(), product.getName(), product.getArticle());
+        referenceDataCache.invalidateProduct(product.getId());
         return Optional.of(product.getId());
     }
 
@@ -189,12 +212,19 @@ public class ProductService {
             return false;
         }
 
+        productReadModelService.markProductChanged(id);
+        productFacetIndex.markProductChanged(id);
+        productSearchIndex.productRemoved(id);
+        referenceDataCache.invalidateProduct(id);
         return true;
     }
 
-    @Transactional
+    /**
+     * Все товары: карточки каталога из кэша справочных данных, остатки — текущие из БД.
+     */
+    @Transactional(readOnly = true)
     public List<ProductDTO> getAllProducts() {
-        return ProductMapper.INSTANCE.toDTOList(productRepository.findAll());
+        return referenceDataCache.getAllProducts();
     }
 
     private void saveAttributeValues(Product product, Map<String, String> attributeValues) {
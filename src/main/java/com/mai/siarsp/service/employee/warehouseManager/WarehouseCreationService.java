@@ -8,6 +8,7 @@ import com.mai.siarsp.repo.ShelfRepository;
 import com.mai.siarsp.repo.StorageZoneRepository;
 import com.mai.siarsp.repo.WarehouseRepository;
 import com.mai.siarsp.repo.ZoneProductRepository;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,15 +28,18 @@ public class WarehouseCreationService {
     private final ShelfRepository shelfRepository;
     private final StorageZoneRepository storageZoneRepository;
     private final ZoneProductRepository zoneProductRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     public WarehouseCreationService(WarehouseRepository warehouseRepository,
                                     ShelfRepository shelfRepository,
                                     StorageZoneRepository storageZoneRepository,
-                                    ZoneProductRepository zoneProductRepository) {
+                                    ZoneProductRepository zoneProductRepository,
+                                    ReferenceDataCache referenceDataCache) {
         this.warehouseRepository = warehouseRepository;
         this.shelfRepository = shelfRepository;
         this.storageZoneRepository = storageZoneRepository;
         this.zoneProductRepository = zoneProductRepository;
+        this.referenceDataCache = referenceDataCache;
     }
 
     @Transactional
@@ -66,6 +70,7 @@ public class WarehouseCreationService {
                 }
             }
 
+            referenceDataCache.invalidateWarehouses();
             log.info("✅ Создан склад '{}': {} стеллажей × {} зон, объём {} л",
                     name, shelfCount, zonesPerShelf, totalVolume);
             return Optional.of(warehouse);
@@ -90,6 +95,7 @@ public class WarehouseCreationService {
                 return false;
             }
             warehouseRepository.deleteById(warehouseId);
+            referenceDataCache.invalidateWarehouses();
             log.info("✅ Склад ID {} удалён", warehouseId);
             return true;
         } catch (Exception e) {
@@ -132,6 +138,7 @@ public class WarehouseCreationService {
             Warehouse warehouse = opt.get();
             warehouse.setAddress(newAddress);
             warehouseRepository.save(warehouse);
+            referenceDataCache.invalidateWarehouses();
             log.info("Адрес склада '{}' (ID {}) обновлён: {}", warehouse.getName(), warehouseId, newAddress);
             return true;
         } catch (Exception e) {
@@ -173,6 +180,7 @@ public class WarehouseCreationService {
             double newVolume = (zoneLength * zoneWidth * zoneHeight) / 1000.0 * zonesPerShelf;
             warehouse.setTotalVolume(warehouse.getTotalVolume() + newVolume);
             warehouseRepository.save(warehouse);
+            referenceDataCache.invalidateWarehouses();
 
             log.info("Стеллаж '{}' добавлен к складу '{}' (ID {}): {} зон, доп. объём {} л",
                     shelfCode, warehouse.getName(), warehouseId, zonesPerShelf, newVolume);
@@ -184,6 +192,20 @@ public class WarehouseCreationService {
         }
     }
 
+    /**
+     * Координаты и название точки на карте; склад не найден — ничего не меняется
+     */
+    @Transactional
+    public void updateWarehouseLocation(Long warehouseId, Double latitude, Double longitude, String locationName) {
+        warehouseRepository.findById(warehouseId).ifPresent(warehouse -> {
+            warehouse.setLatitude(latitude);
+            warehouse.setLongitude(longitude);
+            warehouse.setLocationName(locationName);
+            warehouseRepository.save(warehouse);
+            referenceDataCache.invalidateWarehouses();
+        });
+    }
+
     private double calculateTotalVolume(int shelfCount, int zonesPerShelf,
                                         double zoneL, double zoneW, double zoneH) {
         double zoneVolumeLiters = (zoneL * zoneW * zoneH) / 1_000_000.0 * 1000.0;
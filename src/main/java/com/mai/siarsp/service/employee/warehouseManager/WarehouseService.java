@@ -5,6 +5,8 @@ import com.mai.siarsp.models.Warehouse;
 import com.mai.siarsp.models.ZoneProduct;
 import com.mai.siarsp.repo.ProductRepository;
 import com.mai.siarsp.repo.WarehouseRepository;
+import com.mai.siarsp.service.general.ProductReadModelService;
+import com.mai.siarsp.service.general.ReferenceDataCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,17 +25,43 @@ public class WarehouseService {
 
     private final WarehouseRepository warehouseRepository;
     private final ProductRepository productRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ReferenceDataCache referenceDataCache;
 
-    public WarehouseService(WarehouseRepository warehouseRepository, ProductRepository productRepository) {
+    public WarehouseService(WarehouseRepository warehouseRepository, ProductRepository productRepository,
+                            ProductReadModelService productReadModelService, ReferenceDataCache referenceDataCache) {
         this.warehouseRepository = warehouseRepository;
         this.productRepository = productRepository;
+        this.productReadModelService = productReadModelService;
+        this.referenceDataCache = referenceDataCache;
     }
 
+    /**
+     * Справочник складов из кэша: отсоединённые копии только с собственными полями склада,
+     * без стеллажей. Структура складов — {@link #getAllWarehousesWithShelves()}.
+     */
     @Transactional(readOnly = true)
     public List<Warehouse> getAllWarehouses() {
+        return referenceDataCache.getWarehouses(() -> warehouseRepository.findAll().stream()
+                .map(WarehouseService::referenceCopy)
+                .toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<Warehouse> getAllWarehousesWithShelves() {
         return warehouseRepository.findAll();
     }
 
+    private static Warehouse referenceCopy(Warehouse warehouse) {
+        Warehouse copy = new Warehouse(warehouse.getName(), warehouse.getType(), warehouse.getTotalVolume(),
+                warehouse.getAddress());
+        copy.setId(warehouse.getId());
+        copy.setLatitude(warehouse.getLatitude());
+        copy.setLongitude(warehouse.getLongitude());
+        copy.setLocationName(warehouse.getLocationName());
+        return copy;
+    }
+
     /**
      * Возвращает данные о вместимости каждого склада.
      * Ключ — id склада, значение — массив [totalVolume, usedVolume] (в м³).
@@ -56,19 +84,33 @@ public class WarehouseService {
     /**
      * Возвращает объём одной единицы каждого товара (в м³).
      * Ключ — id товара, значение — объём (L*W*H / 1_000_000) или 0.0.
+     * Габариты читаются из модели характеристик одним запросом на категорию; пока модель не собрана —
+     * через сущности товаров.
      */
     @Transactional(readOnly = true)
     public Map<Long, Double> getProductVolumeData() {
+        if (productReadModelService.isReady()) {
+            Map<Long, Map<String, Object>> dimensions =
+                    productReadModelService.findAllValues(ProductReadModelService.PACKAGE_DIMENSIONS);
+            Map<Long, Double> result = new HashMap<>();
+            for (Long productId : productRepository.findAllIds()) {
+                Map<String, Object> values = dimensions.getOrDefault(productId, Map.of());
+                result.put(productId, volume((Double) values.get(ProductReadModelService.PACKAGE_LENGTH),
+                        (Double) values.get(ProductReadModelService.PACKAGE_WIDTH),
+                        (Double) values.get(ProductReadModelService.PACKAGE_HEIGHT)));
+            }
+            return result;
+        }
+
         List<Product> products = productRepository.findAll();
         Map<Long, Double> result = new HashMap<>();
         for (Product p : products) {
-            Double l = p.getPackageLength();
-            Double w = p.getPackageWidth();
-            Double h = p.getPackageHeight();
-            double volume = (l != null && w != null && h != null)
-                    ? (l * w * h) / 1_000_000.0 : 0.0;
-            result.put(p.getId(), volume);
+            result.put(p.getId(), volume(p.getPackageLength(), p.getPackageWidth(), p.getPackageHeight()));
         }
         return result;
     }
+
+    private static double volume(Double l, Double w, Double h) {
+        return (l != null && w != null && h != null) ? (l * w * h) / 1_000_000.0 : 0.0;
+    }
 }
@@ -0,0 +1,160 @@
+package com.mai.siarsp.service.general;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Область кэша справочных данных: не больше maxEntries записей (вытесняется давно не читанная)
+ * и не дольше ttl с момента загрузки.
+ * <p>
+ * Чтение сквозное: отсутствующее значение загружается переданным загрузчиком вне блокировки.
+ * Загрузка, начатая до сброса, в кэш не попадает — как в RoleMembershipCache, по номеру поколения.
+ */
+class CacheRegion<K, V> {
+
+    private record Entry<V>(V value, long loadedAtNanos) {}
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    /** Порядок доступа: первой идёт запись, которую дольше всех не читали. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    CacheRegion(String name, int maxEntries, Duration ttl) {
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    V get(K key, Supplier<V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            V cached = lookup(key);
+            if (cached != null) {
+                return cached;
+            }
+            loadGeneration = generation;
+        }
+        V loaded = loader.get();
+        if (loaded != null) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    store(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Значения по набору ключей; недостающие загружаются одним вызовом загрузчика.
+     * Ключа нет в результате, если загрузчик его не вернул.
+     */
+    Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> result = new HashMap<>(keys.size() * 2);
+        List<K> missing = new ArrayList<>();
+        long loadGeneration;
+        synchronized (this) {
+            for (K key : keys) {
+                V cached = lookup(key);
+                if (cached != null) {
+                    result.put(key, cached);
+                } else {
+                    missing.add(key);
+                }
+            }
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Map<K, V> loaded = loader.apply(missing);
+        result.putAll(loaded);
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                loaded.forEach(this::store);
+            }
+        }
+        return result;
+    }
+
+    synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    synchronized void invalidateAll(Collection<K> keys) {
+        generation++;
+        for (K key : keys) {
+            if (entries.remove(key) != null) {
+                invalidations++;
+            }
+        }
+    }
+
+    synchronized void invalidateIf(Predicate<V> predicate) {
+        generation++;
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (predicate.test(iterator.next().value())) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    synchronized ReferenceDataCache.CacheStats stats() {
+        long requests = hits + misses;
+        return new ReferenceDataCache.CacheStats(name, entries.size(), maxEntries, hits, misses,
+                requests == 0 ? 0 : (double) hits / requests, evictions, expirations, invalidations);
+    }
+
+    private V lookup(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.loadedAtNanos() > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    private void store(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+        if (entries.size() > maxEntries) {
+            Iterator<K> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
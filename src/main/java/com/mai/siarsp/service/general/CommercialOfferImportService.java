@@ -2,7 +2,7 @@ package com.mai.siarsp.service.general;
 
 import com.mai.siarsp.dto.CommercialOfferImportResult;
 import com.mai.siarsp.dto.CommercialOfferImportResult.ImportedItem;
-import com.mai.siarsp.models.Product;
+import com.mai.siarsp.dto.ImportProgress;
 import com.mai.siarsp.repo.ProductRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
@@ -10,26 +10,35 @@ import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.apache.poi.xwpf.usermodel.XWPFTableCell;
 import org.apache.poi.xwpf.usermodel.XWPFTableRow;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
 /**
- * Парсинг docx-файла коммерческого предложения для импорта позиций в форму
+ * Парсинг файла коммерческого предложения (docx или xlsx) для импорта позиций в форму
  * создания клиентского заказа.
  * <p>
- * Ожидаемая структура: первая таблица в документе содержит 6 колонок —
+ * Ожидаемая структура: первая таблица в docx (или первый лист xlsx) содержит 6 колонок —
  * «№ п/п, Наименование товара, Артикул, Количество, Скидка %, Цена за единицу с учётом НДС».
  * Цена в файле — это цена ПОСЛЕ скидки, поэтому при импорте восстанавливается
  * базовая цена: {@code originalPrice = priceAfterDiscount / (1 - discount/100)}.
+ * <p>
+ * Строки сначала только накапливаются (дубли по артикулу суммируются), затем все артикулы
+ * сопоставляются с товарами запросами {@code IN} по {@link #ARTICLE_CHUNK} штук. xlsx читается
+ * потоково ({@link XlsxStreamReader}), ход импорта публикуется через {@link ImportProgressService}.
  */
 @Service
 @Slf4j
@@ -41,23 +50,62 @@ public class CommercialOfferImportService {
     private static final int COL_INDEX_PRICE = 5;
     private static final int COL_INDEX_NAME = 1;
     private static final int EXPECTED_COLUMNS = 6;
+    private static final int ARTICLE_CHUNK = 500;
 
     private final ProductRepository productRepository;
+    private final ImportProgressService importProgressService;
 
-    public CommercialOfferImportService(ProductRepository productRepository) {
+    public CommercialOfferImportService(ProductRepository productRepository,
+                                        ImportProgressService importProgressService) {
         this.productRepository = productRepository;
+        this.importProgressService = importProgressService;
     }
 
-    @Transactional(readOnly = true)
-    public CommercialOfferImportResult parse(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("Файл не выбран или пуст.");
-        }
-        String originalName = file.getOriginalFilename();
-        if (originalName != null && !originalName.toLowerCase().endsWith(".docx")) {
-            throw new IllegalArgumentException("Поддерживается только формат .docx.");
+    /**
+     * Разбор файла без транзакции: соединение с БД берут только запросы сопоставления артикулов,
+     * а не всё время чтения файла.
+     *
+     * @param importId идентификатор для опроса прогресса через {@link ImportProgressService}, может быть null
+     */
+    public CommercialOfferImportResult parse(MultipartFile file, String importId) {
+        ImportProgressService.Tracker progress = importProgressService.start(importId);
+        try {
+            if (file == null || file.isEmpty()) {
+                throw new IllegalArgumentException("Файл не выбран или пуст.");
+            }
+            String originalName = file.getOriginalFilename();
+            String lowerName = originalName != null ? originalName.toLowerCase() : "";
+            OfferLines lines = new OfferLines(progress);
+            if (lowerName.endsWith(".xlsx")) {
+                readXlsx(file, lines);
+            } else if (originalName == null || lowerName.endsWith(".docx")) {
+                readDocx(file, lines);
+            } else {
+                throw new IllegalArgumentException("Поддерживаются только форматы .docx и .xlsx.");
+            }
+            CommercialOfferImportResult result = resolve(lines, progress);
+            progress.finish();
+            log.info("Импорт коммерческого предложения: строк {}, позиций {}, найдено {}.",
+                    result.totalRows(), result.items().size(), result.foundCount());
+            return result;
+        } catch (IllegalArgumentException e) {
+            progress.fail(e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Не удалось разобрать коммерческое предложение: {}", e.getMessage(), e);
+            String message = "Не удалось разобрать файл. Проверьте, что это docx или xlsx с таблицей коммерческого предложения.";
+            progress.fail(message);
+            throw new IllegalArgumentException(message);
         }
+    }
 
+    public Optional<ImportProgress> getProgress(String importId) {
+        return importProgressService.get(importId);
+    }
+
+    // ========== ЧТЕНИЕ ==========
+
+    private void readDocx(MultipartFile file, OfferLines lines) throws IOException {
         try (InputStream in = file.getInputStream();
              XWPFDocument doc = new XWPFDocument(in)) {
 
@@ -65,103 +113,161 @@ public class CommercialOfferImportService {
             if (tables.isEmpty()) {
                 throw new IllegalArgumentException("В файле не найдено ни одной таблицы.");
             }
-            XWPFTable table = tables.get(0);
-            List<XWPFTableRow> rows = table.getRows();
+            List<XWPFTableRow> rows = tables.get(0).getRows();
             if (rows.size() < 2) {
                 throw new IllegalArgumentException("Таблица не содержит данных.");
             }
 
-            validateHeader(rows.get(0));
-
-            // Аккумулируем дубли по артикулу, сохраняем порядок появления
-            LinkedHashMap<String, ImportedItem> byArticle = new LinkedHashMap<>();
-            int duplicatesMerged = 0;
-            int totalDataRows = 0;
-
+            validateHeader(cellTexts(rows.get(0)));
+            lines.progress.stage("Чтение файла", rows.size() - 1);
             for (int i = 1; i < rows.size(); i++) {
-                XWPFTableRow row = rows.get(i);
-                String article = cellText(row, COL_INDEX_ARTICLE);
-                if (article.isBlank()) {
-                    // пустая строка — пропускаем молча
-                    continue;
-                }
-                totalDataRows++;
-                String nameInFile = cellText(row, COL_INDEX_NAME);
-                int quantity = parseQuantity(cellText(row, COL_INDEX_QUANTITY), i);
-                int discount = parseDiscount(cellText(row, COL_INDEX_DISCOUNT), i);
-                BigDecimal price = parseDecimal(cellText(row, COL_INDEX_PRICE), i);
-
-                if (quantity <= 0 || price.signum() <= 0 || discount >= 100) {
-                    // строка некорректная — пропускаем (молчаливо, как пустую)
-                    continue;
-                }
+                lines.accept(i, cellTexts(rows.get(i)));
+            }
+        }
+    }
 
-                ImportedItem existing = byArticle.get(article);
-                if (existing != null) {
-                    duplicatesMerged++;
-                    int sumQty = existing.quantity() + quantity;
-                    byArticle.put(article, new ImportedItem(
-                            existing.rowNumber(),
-                            existing.article(),
-                            existing.productNameInFile(),
-                            existing.productNameInSystem(),
-                            existing.productId(),
-                            sumQty,
-                            existing.originalPrice(),
-                            existing.priceAfterDiscount(),
-                            existing.discountPercent(),
-                            existing.status()
-                    ));
-                    continue;
+    /**
+     * Первая непустая строка листа — заголовок, номера строк данных отсчитываются от него,
+     * как в таблице docx.
+     */
+    private void readXlsx(MultipartFile file, OfferLines lines) throws IOException {
+        Path temp = Files.createTempFile("offer-", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            lines.progress.stage("Чтение файла", 0);
+            int[] headerRow = {-1};
+            XlsxStreamReader.read(temp, (rowNum, cells) -> {
+                if (headerRow[0] < 0) {
+                    if (cells.stream().anyMatch(cell -> !cell.isBlank())) {
+                        validateHeader(cells);
+                        headerRow[0] = rowNum;
+                    }
+                    return;
                 }
+                lines.accept(rowNum - headerRow[0], cells);
+            });
+            if (headerRow[0] < 0 || lines.totalDataRows == 0) {
+                throw new IllegalArgumentException("Таблица не содержит данных.");
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 
-                Optional<Product> match = productRepository.findByArticle(article);
-                BigDecimal originalPrice = recoverOriginalPrice(price, discount);
-                if (match.isPresent()) {
-                    Product p = match.get();
-                    byArticle.put(article, new ImportedItem(
-                            i, article, nameInFile,
-                            p.getName(), p.getId(),
-                            quantity, originalPrice, price, discount,
-                            "FOUND"
-                    ));
-                } else {
-                    byArticle.put(article, new ImportedItem(
-                            i, article, nameInFile,
-                            null, null,
-                            quantity, originalPrice, price, discount,
-                            "NOT_FOUND"
-                    ));
-                }
+    // ========== СОПОСТАВЛЕНИЕ ==========
+
+    /**
+     * Сопоставляет накопленные артикулы с товарами и собирает позиции результата.
+     * Поиск регистронезависимый, как и сравнение артикулов в MySQL.
+     */
+    private CommercialOfferImportResult resolve(OfferLines lines, ImportProgressService.Tracker progress) {
+        List<String> articles = new ArrayList<>(lines.byArticle.keySet());
+        progress.stage("Поиск товаров", articles.size());
+        Map<String, ProductRepository.ArticleRef> refs = new HashMap<>(articles.size() * 2);
+        for (int from = 0; from < articles.size(); from += ARTICLE_CHUNK) {
+            List<String> chunk = articles.subList(from, Math.min(from + ARTICLE_CHUNK, articles.size()));
+            for (ProductRepository.ArticleRef ref : productRepository.findRefsByArticleIn(chunk)) {
+                refs.put(ref.getArticle().toLowerCase(Locale.ROOT), ref);
             }
+            progress.advance(chunk.size());
+        }
 
-            List<ImportedItem> items = new ArrayList<>(byArticle.values());
-            int foundCount = (int) items.stream().filter(it -> "FOUND".equals(it.status())).count();
-            int notFoundCount = items.size() - foundCount;
-            return new CommercialOfferImportResult(totalDataRows, foundCount, notFoundCount,
-                    duplicatesMerged, items);
+        List<ImportedItem> items = new ArrayList<>(articles.size());
+        int foundCount = 0;
+        for (OfferLine line : lines.byArticle.values()) {
+            ProductRepository.ArticleRef ref = refs.get(line.article.toLowerCase(Locale.ROOT));
+            BigDecimal originalPrice = recoverOriginalPrice(line.price, line.discount);
+            if (ref != null) {
+                foundCount++;
+            }
+            items.add(new ImportedItem(
+                    line.rowNumber, line.article, line.nameInFile,
+                    ref != null ? ref.getName() : null, ref != null ? ref.getId() : null,
+                    line.quantity, originalPrice, line.price, line.discount,
+                    ref != null ? "FOUND" : "NOT_FOUND"
+            ));
+        }
+        return new CommercialOfferImportResult(lines.totalDataRows, foundCount, items.size() - foundCount,
+                lines.duplicatesMerged, items);
+    }
 
-        } catch (IllegalArgumentException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("Не удалось разобрать docx: {}", e.getMessage(), e);
-            throw new IllegalArgumentException("Не удалось разобрать файл. Проверьте, что это docx с таблицей коммерческого предложения.");
+    /**
+     * Строки файла, накопленные по артикулу в порядке появления; дубли суммируют количество
+     * первой строки.
+     */
+    private final class OfferLines {
+
+        private final ImportProgressService.Tracker progress;
+        private final LinkedHashMap<String, OfferLine> byArticle = new LinkedHashMap<>();
+        private int totalDataRows;
+        private int duplicatesMerged;
+
+        private OfferLines(ImportProgressService.Tracker progress) {
+            this.progress = progress;
+        }
+
+        private void accept(int rowNumber, List<String> cells) {
+            progress.advance(1);
+            String article = cellText(cells, COL_INDEX_ARTICLE);
+            if (article.isBlank()) {
+                // пустая строка — пропускаем молча
+                return;
+            }
+            totalDataRows++;
+            String nameInFile = cellText(cells, COL_INDEX_NAME);
+            int quantity = parseQuantity(cellText(cells, COL_INDEX_QUANTITY), rowNumber);
+            int discount = parseDiscount(cellText(cells, COL_INDEX_DISCOUNT), rowNumber);
+            BigDecimal price = parseDecimal(cellText(cells, COL_INDEX_PRICE), rowNumber);
+
+            if (quantity <= 0 || price.signum() <= 0 || discount >= 100) {
+                // строка некорректная — пропускаем (молчаливо, как пустую)
+                return;
+            }
+
+            OfferLine existing = byArticle.get(article);
+            if (existing != null) {
+                duplicatesMerged++;
+                existing.quantity += quantity;
+                return;
+            }
+            byArticle.put(article, new OfferLine(rowNumber, article, nameInFile, quantity, price, discount));
+        }
+    }
+
+    private static final class OfferLine {
+
+        private final int rowNumber;
+        private final String article;
+        private final String nameInFile;
+        private final BigDecimal price;
+        private final int discount;
+        private int quantity;
+
+        private OfferLine(int rowNumber, String article, String nameInFile, int quantity,
+                          BigDecimal price, int discount) {
+            this.rowNumber = rowNumber;
+            this.article = article;
+            this.nameInFile = nameInFile;
+            this.quantity = quantity;
+            this.price = price;
+            this.discount = discount;
         }
     }
 
     // ========== HELPERS ==========
 
-    private void validateHeader(XWPFTableRow header) {
-        List<XWPFTableCell> cells = header.getTableCells();
+    private void validateHeader(List<String> cells) {
         if (cells.size() < EXPECTED_COLUMNS) {
             throw new IllegalArgumentException(
                     "Ожидается таблица с " + EXPECTED_COLUMNS + " колонками, найдено " + cells.size() + ".");
         }
         // Лёгкая проверка по ключевым словам в заголовках — нечувствительная к точному написанию
-        String h2 = cells.get(COL_INDEX_ARTICLE).getText().toLowerCase();
-        String h3 = cells.get(COL_INDEX_QUANTITY).getText().toLowerCase();
-        String h4 = cells.get(COL_INDEX_DISCOUNT).getText().toLowerCase();
-        String h5 = cells.get(COL_INDEX_PRICE).getText().toLowerCase();
+        String h2 = cells.get(COL_INDEX_ARTICLE).toLowerCase();
+        String h3 = cells.get(COL_INDEX_QUANTITY).toLowerCase();
+        String h4 = cells.get(COL_INDEX_DISCOUNT).toLowerCase();
+        String h5 = cells.get(COL_INDEX_PRICE).toLowerCase();
         Map<String, String> expectations = new LinkedHashMap<>();
         expectations.put("«Артикул»", h2);
         expectations.put("«Количество»", h3);
@@ -176,10 +282,18 @@ public class CommercialOfferImportService {
         }
     }
 
-    private String cellText(XWPFTableRow row, int col) {
+    private List<String> cellTexts(XWPFTableRow row) {
         List<XWPFTableCell> cells = row.getTableCells();
+        List<String> texts = new ArrayList<>(cells.size());
+        for (XWPFTableCell cell : cells) {
+            texts.add(cell.getText() == null ? "" : cell.getText());
+        }
+        return texts;
+    }
+
+    private String cellText(List<String> cells, int col) {
         if (col >= cells.size()) return "";
-        return cells.get(col).getText() == null ? "" : cells.get(col).getText().trim();
+        return cells.get(col) == null ? "" : cells.get(col).trim();
     }
 
     private int parseQuantity(String text, int rowIdx) {
@@ -0,0 +1,228 @@
+package com.mai.siarsp.service.general;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Дневные агрегаты продаж и поступлений: t_sales_daily_fact (товар × клиент × день),
+ * t_order_daily_fact (клиент × день) и t_receipt_daily_fact (товар × поставщик × день).
+ * <p>
+ * Агрегаты пополняются инкрементально в транзакции бизнес-операции: при доставке заказа
+ * ({@link #recordDeliveredOrder}) и при приёмке поставки ({@link #recordReceipt}). Пересчёт за период
+ * ({@link #rebuild}) удаляет строки периода и заново собирает их из исходных таблиц — им выполняется
+ * первичное заполнение и ночная сверка последних дней.
+ * <p>
+ * Статистический отчёт и сводки цен на карточке товара читают только эти агрегаты.
+ */
+@Service
+@Slf4j
+public class DailyFactService {
+
+    /** Пересчёт идёт помесячно — одна транзакция на месяц истории. */
+    private static final int REBUILD_CHUNK_MONTHS = 1;
+
+    private static final String DELIVERED = "'DELIVERED'";
+
+    private static final String SALES_SQL = "INSERT INTO t_sales_daily_fact " +
+            "(fact_date, product_id, client_id, order_count, line_count, units, revenue, price_sum, last_price, last_order_at) " +
+            "SELECT fact_date, product_id, client_id, COUNT(DISTINCT order_id), COUNT(*), SUM(quantity), SUM(revenue), " +
+            "COALESCE(SUM(price), 0), MAX(CASE WHEN rn = 1 THEN price END), MAX(order_date) " +
+            "FROM (SELECT DATE(co.order_date) AS fact_date, op.product_id, co.client_id, co.id AS order_id, " +
+            "op.quantity, op.price, COALESCE(op.total_price, op.price * op.quantity, 0) AS revenue, co.order_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY DATE(co.order_date), op.product_id, co.client_id " +
+            "ORDER BY co.order_date DESC, op.id DESC) AS rn " +
+            "FROM t_ordered_product op JOIN t_client_order co ON co.id = op.client_order_id " +
+            "WHERE co.status = " + DELIVERED + " AND %s) sold " +
+            "GROUP BY fact_date, product_id, client_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_price = IF(VALUES(last_order_at) >= last_order_at, VALUES(last_price), last_price), " +
+            "last_order_at = GREATEST(last_order_at, VALUES(last_order_at)), " +
+            "order_count = order_count + VALUES(order_count), line_count = line_count + VALUES(line_count), " +
+            "units = units + VALUES(units), revenue = revenue + VALUES(revenue), price_sum = price_sum + VALUES(price_sum)";
+
+    private static final String ORDERS_SQL = "INSERT INTO t_order_daily_fact (fact_date, client_id, order_count, revenue) " +
+            "SELECT DATE(co.order_date), co.client_id, COUNT(*), COALESCE(SUM(co.total_amount), 0) " +
+            "FROM t_client_order co WHERE co.status = " + DELIVERED + " AND %s " +
+            "GROUP BY DATE(co.order_date), co.client_id " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), revenue = revenue + VALUES(revenue)";
+
+    private static final String RECEIPTS_SQL = "INSERT INTO t_receipt_daily_fact " +
+            "(fact_date, product_id, supplier_id, supply_count, units, purchase_cost, price_sum, last_price, last_supply_id) " +
+            "SELECT fact_date, product_id, supplier_id, COUNT(*), SUM(quantity), SUM(purchase_price * quantity), " +
+            "SUM(purchase_price), MAX(CASE WHEN rn = 1 THEN purchase_price END), MAX(supply_id) " +
+            "FROM (SELECT d.delivery_date AS fact_date, s.product_id, d.supplier_id, s.id AS supply_id, " +
+            "s.quantity, s.purchase_price, " +
+            "ROW_NUMBER() OVER (PARTITION BY d.delivery_date, s.product_id, d.supplier_id ORDER BY s.id DESC) AS rn " +
+            "FROM t_supply s JOIN t_delivery d ON d.id = s.delivery_id WHERE %s) supplies " +
+            "GROUP BY fact_date, product_id, supplier_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_price = IF(VALUES(last_supply_id) >= last_supply_id, VALUES(last_price), last_price), " +
+            "last_supply_id = GREATEST(last_supply_id, VALUES(last_supply_id)), " +
+            "supply_count = supply_count + VALUES(supply_count), units = units + VALUES(units), " +
+            "purchase_cost = purchase_cost + VALUES(purchase_cost), price_sum = price_sum + VALUES(price_sum)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    public DailyFactService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // ========== DTO ==========
+
+    public record SalesTotals(long orderCount, BigDecimal revenue) {}
+
+    public record PriceSummary(BigDecimal lastPrice, LocalDate lastDate, String lastCounterparty,
+                               BigDecimal avgPrice, int sampleCount) {}
+
+    public record RebuildResult(LocalDate from, LocalDate to, int chunks, long durationMs) {}
+
+    // ========== ИНКРЕМЕНТАЛЬНОЕ ПОПОЛНЕНИЕ ==========
+
+    /**
+     * Добавляет доставленный заказ в агрегаты. Вызывается в транзакции смены статуса на DELIVERED;
+     * незаписанные изменения сущностей сбрасываются в БД, чтобы SQL увидел новый статус.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeliveredOrder(Long orderId) {
+        entityManager.flush();
+        jdbc.update(SALES_SQL.formatted("co.id = ?"), orderId);
+        jdbc.update(ORDERS_SQL.formatted("co.id = ?"), orderId);
+    }
+
+    /**
+     * Добавляет партии принятой поставки в агрегаты поступлений. Вызывается в транзакции приёмки.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordReceipt(Long deliveryId) {
+        entityManager.flush();
+        jdbc.update(RECEIPTS_SQL.formatted("d.id = ?"), deliveryId);
+    }
+
+    // ========== ПЕРЕСЧЁТ ==========
+
+    /**
+     * Пересобирает агрегаты за [from, to] помесячно. Каждая порция — отдельная транзакция:
+     * строки периода удаляются и вставляются заново из исходных таблиц.
+     */
+    public RebuildResult rebuild(LocalDate from, LocalDate to) {
+        long startNanos = System.nanoTime();
+        int chunks = 0;
+        for (LocalDate chunkStart = from; !chunkStart.isAfter(to); chunkStart = chunkStart.plusMonths(REBUILD_CHUNK_MONTHS)) {
+            JobCoordinationService.checkLeaseHeld();
+            LocalDate chunkEnd = chunkStart.plusMonths(REBUILD_CHUNK_MONTHS).minusDays(1);
+            rebuildChunk(chunkStart, chunkEnd.isAfter(to) ? to : chunkEnd);
+            chunks++;
+        }
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("Дневные агрегаты пересчитаны за {} – {}: порций {}, {} мс", from, to, chunks, durationMs);
+        return new RebuildResult(from, to, chunks, durationMs);
+    }
+
+    /**
+     * Первичное заполнение: пересчёт всей истории с даты самого раннего заказа или поставки.
+     */
+    public RebuildResult backfill(LocalDate today) {
+        List<LocalDate> firstDates = jdbc.queryForList("SELECT MIN(DATE(order_date)) FROM t_client_order " +
+                "UNION ALL SELECT MIN(delivery_date) FROM t_delivery", LocalDate.class);
+        LocalDate from = firstDates.stream()
+                .filter(date -> date != null)
+                .min(LocalDate::compareTo)
+                .orElse(today);
+        return rebuild(from, today);
+    }
+
+    private void rebuildChunk(LocalDate from, LocalDate to) {
+        Date fromDate = Date.valueOf(from);
+        Date toDate = Date.valueOf(to);
+        Timestamp fromTime = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp toTime = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM t_sales_daily_fact WHERE fact_date BETWEEN ? AND ?", fromDate, toDate);
+            jdbc.update("DELETE FROM t_order_daily_fact WHERE fact_date BETWEEN ? AND ?", fromDate, toDate);
+            jdbc.update("DELETE FROM t_receipt_daily_fact WHERE fact_date BETWEEN ? AND ?", fromDate, toDate);
+            jdbc.update(SALES_SQL.formatted("co.order_date >= ? AND co.order_date < ?"), fromTime, toTime);
+            jdbc.update(ORDERS_SQL.formatted("co.order_date >= ? AND co.order_date < ?"), fromTime, toTime);
+            jdbc.update(RECEIPTS_SQL.formatted("d.delivery_date BETWEEN ? AND ?"), fromDate, toDate);
+        });
+    }
+
+    // ========== ЧТЕНИЕ ==========
+
+    /**
+     * Доставленные заказы с датой заказа в [from, to].
+     */
+    @Transactional(readOnly = true)
+    public SalesTotals getSalesTotals(LocalDate from, LocalDate to) {
+        return jdbc.queryForObject("SELECT COALESCE(SUM(order_count), 0), COALESCE(SUM(revenue), 0) " +
+                        "FROM t_order_daily_fact WHERE fact_date BETWEEN ? AND ?",
+                (rs, rowNum) -> new SalesTotals(rs.getLong(1), rs.getBigDecimal(2)),
+                Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Закупочная стоимость поступлений с датой поставки в [from, to].
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getPurchaseCost(LocalDate from, LocalDate to) {
+        return jdbc.queryForObject("SELECT COALESCE(SUM(purchase_cost), 0) FROM t_receipt_daily_fact " +
+                "WHERE fact_date BETWEEN ? AND ?", BigDecimal.class, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    @Transactional(readOnly = true)
+    public PriceSummary getSaleSummary(Long productId) {
+        return readSummary(
+                "SELECT SUM(price_sum), SUM(line_count) FROM t_sales_daily_fact WHERE product_id = ?",
+                "SELECT f.last_price, DATE(f.last_order_at), CONCAT(c.organization_name, ' (', c.organization_type, ')') " +
+                        "FROM t_sales_daily_fact f LEFT JOIN t_client c ON c.id = f.client_id " +
+                        "WHERE f.product_id = ? ORDER BY f.last_order_at DESC LIMIT 1",
+                productId);
+    }
+
+    @Transactional(readOnly = true)
+    public PriceSummary getPurchaseSummary(Long productId) {
+        return readSummary(
+                "SELECT SUM(price_sum), SUM(supply_count) FROM t_receipt_daily_fact WHERE product_id = ?",
+                "SELECT f.last_price, f.fact_date, s.name " +
+                        "FROM t_receipt_daily_fact f LEFT JOIN t_supplier s ON s.id = f.supplier_id " +
+                        "WHERE f.product_id = ? ORDER BY f.fact_date DESC, f.last_supply_id DESC LIMIT 1",
+                productId);
+    }
+
+    private PriceSummary readSummary(String totalsSql, String lastSql, Long productId) {
+        Object[] totals = jdbc.queryForObject(totalsSql,
+                (rs, rowNum) -> new Object[]{rs.getBigDecimal(1), rs.getLong(2)}, productId);
+        long sampleCount = (Long) totals[1];
+        if (sampleCount == 0) {
+            return new PriceSummary(null, null, null, null, 0);
+        }
+        BigDecimal priceSum = totals[0] != null ? (BigDecimal) totals[0] : BigDecimal.ZERO;
+        BigDecimal avgPrice = priceSum.divide(BigDecimal.valueOf(sampleCount), 2, RoundingMode.HALF_UP);
+        return jdbc.query(lastSql, rs -> {
+            if (!rs.next()) {
+                return new PriceSummary(null, null, null, avgPrice, (int) sampleCount);
+            }
+            Date lastDate = rs.getDate(2);
+            return new PriceSummary(rs.getBigDecimal(1), lastDate != null ? lastDate.toLocalDate() : null,
+                    rs.getString(3), avgPrice, (int) sampleCount);
+        }, productId);
+    }
+}
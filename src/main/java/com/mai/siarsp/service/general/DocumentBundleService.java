@@ -0,0 +1,166 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.models.AcceptanceAct;
+import com.mai.siarsp.models.DeliveryTask;
+import com.mai.siarsp.repo.AcceptanceActRepository;
+import com.mai.siarsp.repo.DeliveryTaskRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Пакет документов на день доставки: ТТН и акты приёма-передачи нескольких задач одним ZIP-архивом.
+ * <p>
+ * Документы каждой задачи формируются (или берутся из кэша DocumentCacheService) в общем пуле из
+ * {@code siarsp.documents.bundle-workers} потоков, каждый — в своей транзакции только для чтения.
+ * Архив пишется прямо в поток ответа в порядке задач: следующий файл копируется в ZipOutputStream,
+ * как только готов, поэтому архив целиком в памяти не собирается. В конце добавляется опись
+ * с задачами, для которых документов нет или их не удалось сформировать.
+ */
+@Service
+@Slf4j
+public class DocumentBundleService {
+
+    public static final int MAX_TASKS = 500;
+
+    private final DeliveryTaskRepository deliveryTaskRepository;
+    private final AcceptanceActRepository acceptanceActRepository;
+    private final DocumentCacheService documentCacheService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+
+    public DocumentBundleService(DeliveryTaskRepository deliveryTaskRepository,
+                                 AcceptanceActRepository acceptanceActRepository,
+                                 DocumentCacheService documentCacheService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${siarsp.documents.bundle-workers:4}") int workers) {
+        this.deliveryTaskRepository = deliveryTaskRepository;
+        this.acceptanceActRepository = acceptanceActRepository;
+        this.documentCacheService = documentCacheService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "document-bundle-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Документы одной задачи; problems — строки описи для задач без документов или с ошибкой. */
+    private record TaskDocuments(Long taskId, List<DocumentCacheService.CachedDocument> documents, List<String> problems) {
+    }
+
+    public List<Long> findTaskIdsForDate(LocalDate date) {
+        return deliveryTaskRepository.findIdsByPlannedStartTimeBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Пишет ZIP с ТТН и актами задач в поток.
+     *
+     * @throws IllegalArgumentException задач больше {@link #MAX_TASKS}
+     */
+    public void writeBundle(List<Long> taskIds, OutputStream outputStream) throws IOException {
+        if (taskIds.size() > MAX_TASKS) {
+            throw new IllegalArgumentException("Слишком много задач в одном пакете: " + taskIds.size());
+        }
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<TaskDocuments>> futures = new ArrayList<>(taskIds.size());
+        for (Long taskId : taskIds) {
+            futures.add(CompletableFuture.supplyAsync(() -> collect(taskId), executor));
+        }
+
+        List<String> summary = new ArrayList<>();
+        int files = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(outputStream)) {
+            for (CompletableFuture<TaskDocuments> future : futures) {
+                TaskDocuments task = future.join();
+                summary.addAll(task.problems());
+                for (DocumentCacheService.CachedDocument document : task.documents()) {
+                    zip.putNextEntry(new ZipEntry("Задача_" + task.taskId() + "/" + document.fileName()));
+                    Files.copy(document.file(), zip);
+                    zip.closeEntry();
+                    files++;
+                }
+            }
+            zip.putNextEntry(new ZipEntry("Опись.txt"));
+            zip.write(buildSummary(taskIds.size(), files, summary).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+        log.info("Пакет документов: задач {}, файлов {}, за {} мс", taskIds.size(), files,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private TaskDocuments collect(Long taskId) {
+        List<DocumentCacheService.CachedDocument> documents = new ArrayList<>(2);
+        List<String> problems = new ArrayList<>();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                Optional<DeliveryTask> optTask = deliveryTaskRepository.findById(taskId);
+                if (optTask.isEmpty()) {
+                    problems.add("Задача " + taskId + ": не найдена");
+                    return;
+                }
+                DeliveryTask task = optTask.get();
+                try {
+                    if (task.getTtn() != null) {
+                        documents.add(documentCacheService.getTtn(task.getTtn()));
+                    } else {
+                        problems.add("Задача " + taskId + ": ТТН не оформлена");
+                    }
+                    Optional<AcceptanceAct> act = task.getClientOrder() != null
+                            ? acceptanceActRepository.findByClientOrder(task.getClientOrder()) : Optional.empty();
+                    if (act.isPresent()) {
+                        documents.add(documentCacheService.getAcceptanceAct(act.get()));
+                    } else {
+                        problems.add("Задача " + taskId + ": акт приёма-передачи не оформлен");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Не удалось сформировать документы задачи {}: {}", taskId, e.getMessage(), e);
+            problems.add("Задача " + taskId + ": ошибка формирования документов");
+        }
+        return new TaskDocuments(taskId, documents, problems);
+    }
+
+    private static String buildSummary(int tasks, int files, List<String> problems) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Задач в пакете: ").append(tasks).append("\r\n");
+        sb.append("Документов: ").append(files).append("\r\n");
+        if (!problems.isEmpty()) {
+            sb.append("\r\nЗамечания:\r\n");
+            problems.forEach(problem -> sb.append(problem).append("\r\n"));
+        }
+        return sb.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
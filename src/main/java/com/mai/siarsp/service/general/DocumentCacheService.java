@@ -0,0 +1,341 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.models.AcceptanceAct;
+import com.mai.siarsp.models.Client;
+import com.mai.siarsp.models.ClientOrder;
+import com.mai.siarsp.models.Employee;
+import com.mai.siarsp.models.OrderedProduct;
+import com.mai.siarsp.models.TTN;
+import com.mai.siarsp.models.Vehicle;
+import com.mai.siarsp.models.WriteOffAct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Кэш сформированных документов ТТН, актов приёма-передачи и актов списания на диске.
+ * <p>
+ * Документ хранится в {@code siarsp.documents.cache-dir} под ключом «вид + id сущности + хэш данных»
+ * и формируется заново только после изменения того, что в нём печатается. Хэш считается по всем
+ * выводимым значениям: у ТТН — по самой ТТН, реквизитам клиента, строкам заказа, водителю и автомобилю,
+ * у актов — аналогично. Поэтому правка клиента, заказа или автомобиля тоже даёт новый ключ, хотя
+ * updatedAt документа не меняется; прежняя версия файла удаляется.
+ * <p>
+ * Ответ несёт ETag с тем же ключом и {@code Cache-Control: private, no-cache}: клиент, уже скачавший
+ * документ, присылает If-None-Match и получает 304 без тела — это главное для курьеров на мобильной
+ * связи. Тело отдаётся как файловый ресурс, поэтому докачка по Range тоже работает.
+ */
+@Service
+@Slf4j
+public class DocumentCacheService {
+
+    private static final MediaType DOCX = MediaType.parseMediaType(
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private final Path cacheDir;
+    private final Duration cacheTtl;
+
+    public DocumentCacheService(@Value("${siarsp.documents.cache-dir:${java.io.tmpdir}/siarsp-documents}") String cacheDir,
+                                @Value("${siarsp.documents.cache-ttl-days:30}") long cacheTtlDays) {
+        this.cacheDir = Paths.get(cacheDir);
+        this.cacheTtl = Duration.ofDays(cacheTtlDays);
+        try {
+            Files.createDirectories(this.cacheDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог кэша документов " + cacheDir, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface DocumentGenerator {
+        ReportDocumentService.ReportFile generate() throws IOException;
+    }
+
+    /** Документ в кэше: имя файла для скачивания, путь и ETag версии. */
+    public record CachedDocument(String fileName, Path file, String etag) {}
+
+    public CachedDocument getTtn(TTN ttn) throws IOException {
+        return resolve("ttn", ttn.getId(), ttnVersion(ttn), () -> TTNDocumentService.generateDocument(ttn));
+    }
+
+    public CachedDocument getAcceptanceAct(AcceptanceAct act) throws IOException {
+        return resolve("acceptance", act.getId(), acceptanceActVersion(act),
+                () -> AcceptanceActDocumentService.generateDocument(act));
+    }
+
+    public CachedDocument getWriteOffAct(WriteOffAct act) throws IOException {
+        return resolve("writeoff", act.getId(), writeOffActVersion(act),
+                () -> WriteOffActDocumentService.generateDocument(act));
+    }
+
+    public ResponseEntity<Resource> serveTtn(TTN ttn, String ifNoneMatch) throws IOException {
+        String version = ttnVersion(ttn);
+        String etag = buildEtag("ttn", version);
+        return matches(ifNoneMatch, etag) ? notModified(etag)
+                : toResponse(resolve("ttn", ttn.getId(), version, () -> TTNDocumentService.generateDocument(ttn)));
+    }
+
+    public ResponseEntity<Resource> serveAcceptanceAct(AcceptanceAct act, String ifNoneMatch) throws IOException {
+        String version = acceptanceActVersion(act);
+        String etag = buildEtag("acceptance", version);
+        return matches(ifNoneMatch, etag) ? notModified(etag)
+                : toResponse(resolve("acceptance", act.getId(), version,
+                () -> AcceptanceActDocumentService.generateDocument(act)));
+    }
+
+    public ResponseEntity<Resource> serveWriteOffAct(WriteOffAct act, String ifNoneMatch) throws IOException {
+        String version = writeOffActVersion(act);
+        String etag = buildEtag("writeoff", version);
+        return matches(ifNoneMatch, etag) ? notModified(etag)
+                : toResponse(resolve("writeoff", act.getId(), version,
+                () -> WriteOffActDocumentService.generateDocument(act)));
+    }
+
+    private CachedDocument resolve(String kind, Long id, String version,
+                                   DocumentGenerator generator) throws IOException {
+        Path dir = cacheDir.resolve(kind);
+        Path document = dir.resolve(version + ".docx");
+        Path nameFile = dir.resolve(version + ".name");
+        String fileName;
+        if (Files.exists(document) && Files.exists(nameFile)) {
+            fileName = Files.readString(nameFile, StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(document, FileTime.from(Instant.now()));
+        } else {
+            ReportDocumentService.ReportFile generated = generator.generate();
+            fileName = generated.fileName();
+            store(dir, id, version, generated);
+            log.debug("Документ {} {} сформирован и помещён в кэш", kind, version);
+        }
+        return new CachedDocument(fileName, document, buildEtag(kind, version));
+    }
+
+    // ========== ВЕРСИИ ДОКУМЕНТОВ ==========
+
+    /** Всё, что печатает {@link TTNDocumentService}. */
+    private static String ttnVersion(TTN ttn) {
+        List<Object> inputs = new ArrayList<>();
+        inputs.add(ttn.getUpdatedAt());
+        inputs.add(ttn.getTtnNumber());
+        inputs.add(ttn.getIssueDate());
+        inputs.add(ttn.getCargoDescription());
+        inputs.add(ttn.getTotalWeight());
+        inputs.add(ttn.getTotalVolume());
+        inputs.add(ttn.getComment());
+        ClientOrder order = ttn.getDeliveryTask().getClientOrder();
+        addClient(inputs, order.getClient());
+        addOrder(inputs, order);
+        Vehicle vehicle = ttn.getVehicle();
+        inputs.add(vehicle.getBrand());
+        inputs.add(vehicle.getModel());
+        inputs.add(vehicle.getRegistrationNumber());
+        addEmployee(inputs, ttn.getDriver());
+        return buildVersion(ttn.getId(), inputs);
+    }
+
+    /** Всё, что печатает {@link AcceptanceActDocumentService}. */
+    private static String acceptanceActVersion(AcceptanceAct act) {
+        List<Object> inputs = new ArrayList<>();
+        inputs.add(act.getUpdatedAt());
+        inputs.add(act.getActNumber());
+        inputs.add(act.getActDate());
+        inputs.add(act.getClientRepresentative());
+        inputs.add(act.isSigned());
+        inputs.add(act.getSignedAt());
+        inputs.add(act.getComment());
+        addClient(inputs, act.getClient());
+        addOrder(inputs, act.getClientOrder());
+        addEmployee(inputs, act.getDeliveredBy());
+        return buildVersion(act.getId(), inputs);
+    }
+
+    /** Всё, что печатает {@link WriteOffActDocumentService}. */
+    private static String writeOffActVersion(WriteOffAct act) {
+        List<Object> inputs = new ArrayList<>();
+        inputs.add(act.getUpdatedAt());
+        inputs.add(act.getActNumber());
+        inputs.add(act.getActDate());
+        inputs.add(act.getStatus());
+        inputs.add(act.getReason());
+        inputs.add(act.getQuantity());
+        inputs.add(act.getTotalCost());
+        inputs.add(act.getComment());
+        inputs.add(act.getDirectorComment());
+        if (act.getProduct() != null) {
+            inputs.add(act.getProduct().getName());
+            inputs.add(act.getProduct().getArticle());
+        }
+        if (act.getWarehouse() != null) {
+            inputs.add(act.getWarehouse().getName());
+        }
+        Employee responsible = act.getResponsibleEmployee();
+        addEmployee(inputs, responsible);
+        if (responsible != null && responsible.getRole() != null) {
+            inputs.add(responsible.getRole().getDescription());
+        }
+        return buildVersion(act.getId(), inputs);
+    }
+
+    private static void addClient(List<Object> inputs, Client client) {
+        inputs.add(client.getOrganizationName());
+        inputs.add(client.getOrganizationType());
+        inputs.add(client.getDeliveryAddress());
+        inputs.add(client.getInn());
+        inputs.add(client.getContactPerson());
+        inputs.add(client.getPhoneNumber());
+    }
+
+    private static void addOrder(List<Object> inputs, ClientOrder order) {
+        inputs.add(order.getOrderNumber());
+        inputs.add(order.getOrderDate());
+        inputs.add(order.getDeliveryDate());
+        inputs.add(order.getActualDeliveryDate());
+        for (OrderedProduct product : order.getOrderedProducts()) {
+            inputs.add(product.getProduct().getName());
+            inputs.add(product.getQuantity());
+            inputs.add(product.getPrice());
+            inputs.add(product.getTotalPrice());
+        }
+    }
+
+    private static void addEmployee(List<Object> inputs, Employee employee) {
+        inputs.add(employee != null ? employee.getFullName() : null);
+    }
+
+    /** id сущности и первые 16 байт SHA-256 от выводимых значений. */
+    private static String buildVersion(Long id, List<Object> inputs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object input : inputs) {
+                digest.update(String.valueOf(input).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0x1F);
+            }
+            byte[] hash = digest.digest();
+            return id + "_" + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String buildEtag(String kind, String version) {
+        return "\"" + kind + "-" + version + "\"";
+    }
+
+    private static ResponseEntity<Resource> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL).build();
+    }
+
+    private static ResponseEntity<Resource> toResponse(CachedDocument document) {
+        return ResponseEntity.ok()
+                .contentType(DOCX)
+                .eTag(document.etag())
+                .cacheControl(CACHE_CONTROL)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(document.fileName(), StandardCharsets.UTF_8).build().toString())
+                .body(new FileSystemResource(document.file()));
+    }
+
+    /**
+     * Записывает документ через временный файл и атомарное переименование, затем удаляет прежние версии.
+     */
+    private void store(Path dir, Long id, String version, ReportDocumentService.ReportFile generated) throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve(version + ".name"), generated.fileName(), StandardCharsets.UTF_8);
+        Path temp = Files.createTempFile(dir, "tmp-" + version + "-", ".part");
+        try {
+            Files.write(temp, generated.content());
+            Files.move(temp, dir.resolve(version + ".docx"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, id + "_*")) {
+            for (Path file : stale) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(version + ".")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /** Файл имени живёт вместе с документом: время обращения берётся по .docx. */
+    private static boolean isExpired(Path file, Instant threshold) throws IOException {
+        String name = file.getFileName().toString();
+        Path document = name.endsWith(".name")
+                ? file.resolveSibling(name.substring(0, name.length() - ".name".length()) + ".docx") : file;
+        Path probe = Files.exists(document) ? document : file;
+        return Files.getLastModifiedTime(probe).toInstant().isBefore(threshold);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Удаление документов, к которым не обращались дольше {@code siarsp.documents.cache-ttl-days}.
+     */
+    @Scheduled(cron = "0 35 3 * * ?")
+    public void purgeExpired() {
+        Instant threshold = Instant.now().minus(cacheTtl);
+        int deleted = 0;
+        try (DirectoryStream<Path> kinds = Files.newDirectoryStream(cacheDir)) {
+            for (Path kind : kinds) {
+                if (!Files.isDirectory(kind)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(kind)) {
+                    for (Path file : files) {
+                        if (isExpired(file, threshold) && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось очистить кэш документов: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("Удалено файлов из кэша документов: {}", deleted);
+        }
+    }
+}
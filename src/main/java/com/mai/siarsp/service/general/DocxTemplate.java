@@ -0,0 +1,319 @@
+package com.mai.siarsp.service.general;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.apache.xmlbeans.impl.xb.xmlschema.SpaceAttribute;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Скомпилированный шаблон DOCX: файл разбирается один раз, дальше документы собираются без POI.
+ * <p>
+ * При компиляции каждый абзац тела документа и ячеек таблиц, содержащий хотя бы один из плейсхолдеров,
+ * сводится к первому Run (как при прежней замене через XWPF) и помечается слотом; строка таблицы,
+ * первой содержащая якорь ({@code rowAnchor}), становится повторяемым блоком — все её непустые абзацы тоже слоты.
+ * После этого word/document.xml разрезается на неизменяемые фрагменты XML и слоты, а остальные части
+ * пакета сохраняются как есть.
+ * <p>
+ * Генерация документа — запись частей пакета в ZIP, фрагментов XML подряд и текста слотов,
+ * полученного функциями заполнения из исходного текста абзаца. Разбора XML на каждый запрос нет.
+ * <p>
+ * Шаблоны кэшируются по пути; изменённый на диске файл перекомпилируется при следующем обращении.
+ */
+public final class DocxTemplate {
+
+    private static final char SLOT_START = '\uE000';
+    private static final char SLOT_END = '\uE001';
+    private static final Pattern SLOT_PATTERN = Pattern.compile(SLOT_START + "(\\d+)" + SLOT_END);
+
+    private static final Map<Path, DocxTemplate> CACHE = new ConcurrentHashMap<>();
+
+    /** Строка таблицы-якоря и функция её заполнения для одного элемента. */
+    @FunctionalInterface
+    public interface RowFiller<T> {
+        String fill(String text, T item, int number);
+    }
+
+    private sealed interface Segment permits Fragment, Slot, RowBlock {
+    }
+
+    private record Fragment(byte[] xml) implements Segment {
+    }
+
+    private record Slot(String text) implements Segment {
+    }
+
+    private record RowBlock(List<Segment> segments) implements Segment {
+    }
+
+    private final Path source;
+    private final long lastModified;
+    private final String documentPartName;
+    private final Map<String, byte[]> parts;
+    private final List<Segment> segments;
+
+    private DocxTemplate(Path source, long lastModified, String documentPartName,
+                         Map<String, byte[]> parts, List<Segment> segments) {
+        this.source = source;
+        this.lastModified = lastModified;
+        this.documentPartName = documentPartName;
+        this.parts = parts;
+        this.segments = segments;
+    }
+
+    /**
+     * Скомпилированный шаблон из кэша; компилируется при первом обращении и после изменения файла.
+     *
+     * @param placeholders слова-плейсхолдеры, по которым определяются заполняемые абзацы
+     * @param rowAnchor    плейсхолдер строки таблицы, размножаемой по элементам, или null
+     */
+    public static DocxTemplate load(Path file, Set<String> placeholders, String rowAnchor) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(key).toMillis();
+        DocxTemplate cached = CACHE.get(key);
+        if (cached != null && cached.lastModified == modified) {
+            return cached;
+        }
+        DocxTemplate compiled = compile(key, modified, placeholders, rowAnchor);
+        CACHE.put(key, compiled);
+        return compiled;
+    }
+
+    /**
+     * Собирает документ.
+     *
+     * @param fill      заполнение абзацев вне строк-якорей: исходный текст → итоговый
+     * @param items     элементы, по одному на копию строки-якоря
+     * @param rowFiller заполнение абзацев строки-якоря для элемента (номер с 1)
+     */
+    public <T> byte[] render(UnaryOperator<String> fill, List<T> items, RowFiller<T> rowFiller) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(estimateSize());
+        try (ZipOutputStream zip = new ZipOutputStream(result)) {
+            for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+                zip.putNextEntry(new ZipEntry(part.getKey()));
+                if (part.getKey().equals(documentPartName)) {
+                    writeSegments(zip, segments, fill, items, rowFiller);
+                } else {
+                    zip.write(part.getValue());
+                }
+                zip.closeEntry();
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private <T> void writeSegments(OutputStream out, List<Segment> segments, UnaryOperator<String> fill,
+                                   List<T> items, RowFiller<T> rowFiller) throws IOException {
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Fragment fragment -> out.write(fragment.xml());
+                case Slot slot -> out.write(escape(fill.apply(slot.text())).getBytes(StandardCharsets.UTF_8));
+                case RowBlock block -> {
+                    for (int i = 0; i < items.size(); i++) {
+                        T item = items.get(i);
+                        int number = i + 1;
+                        writeSegments(out, block.segments(),
+                                text -> fill.apply(rowFiller.fill(text, item, number)), items, rowFiller);
+                    }
+                }
+            }
+        }
+    }
+
+    private int estimateSize() {
+        int size = 0;
+        for (byte[] part : parts.values()) {
+            size += part.length;
+        }
+        return size / 2 + 4096;
+    }
+
+    // ========== КОМПИЛЯЦИЯ ==========
+
+    private static DocxTemplate compile(Path file, long lastModified, Set<String> placeholders,
+                                        String rowAnchor) throws IOException {
+        List<String> slotTexts = new ArrayList<>();
+        Set<Integer> rowSlots = new HashSet<>();
+        byte[] marked;
+        String documentPartName;
+
+        try (InputStream input = Files.newInputStream(file);
+             XWPFDocument document = new XWPFDocument(input)) {
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                markIfContains(paragraph, placeholders, slotTexts);
+            }
+            for (XWPFTable table : document.getTables()) {
+                boolean anchorFound = false;
+                for (XWPFTableRow row : table.getRows()) {
+                    boolean anchorRow = !anchorFound && rowAnchor != null && rowText(row).contains(rowAnchor);
+                    anchorFound |= anchorRow;
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                            if (anchorRow) {
+                                if (!fullText(paragraph).isEmpty()) {
+                                    rowSlots.add(mark(paragraph, slotTexts));
+                                }
+                            } else {
+                                markIfContains(paragraph, placeholders, slotTexts);
+                            }
+                        }
+                    }
+                }
+            }
+            documentPartName = document.getPackagePart().getPartName().getName().substring(1);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            document.write(buffer);
+            marked = buffer.toByteArray();
+        }
+
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(marked))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                parts.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        String documentXml = new String(parts.get(documentPartName), StandardCharsets.UTF_8);
+        List<Segment> segments = split(documentXml, slotTexts, rowSlots);
+        return new DocxTemplate(file, lastModified, documentPartName, Collections.unmodifiableMap(parts), List.copyOf(segments));
+    }
+
+    /**
+     * Разрезает document.xml на фрагменты и слоты; строки таблиц со слотами строк-якорей
+     * становятся блоками от {@code <w:tr>} до {@code </w:tr>}.
+     */
+    private static List<Segment> split(String xml, List<String> slotTexts, Set<Integer> rowSlots) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = SLOT_PATTERN.matcher(xml);
+        int position = 0;
+        while (matcher.find(position)) {
+            int slot = Integer.parseInt(matcher.group(1));
+            if (rowSlots.contains(slot)) {
+                int rowStart = Math.max(xml.lastIndexOf("<w:tr>", matcher.start()), xml.lastIndexOf("<w:tr ", matcher.start()));
+                int rowEnd = xml.indexOf("</w:tr>", matcher.end());
+                if (rowStart < position || rowEnd < 0) {
+                    throw new IllegalStateException("Не удалось выделить строку-якорь таблицы в шаблоне");
+                }
+                rowEnd += "</w:tr>".length();
+                addFragment(segments, xml.substring(position, rowStart));
+                segments.add(new RowBlock(List.copyOf(split(xml.substring(rowStart, rowEnd), slotTexts, Set.of()))));
+                position = rowEnd;
+            } else {
+                addFragment(segments, xml.substring(position, matcher.start()));
+                segments.add(new Slot(slotTexts.get(slot)));
+                position = matcher.end();
+            }
+        }
+        addFragment(segments, xml.substring(position));
+        return segments;
+    }
+
+    private static void addFragment(List<Segment> segments, String xml) {
+        if (!xml.isEmpty()) {
+            segments.add(new Fragment(xml.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static void markIfContains(XWPFParagraph paragraph, Set<String> placeholders, List<String> slotTexts) {
+        String text = fullText(paragraph);
+        if (text.isEmpty()) {
+            return;
+        }
+        for (String placeholder : placeholders) {
+            if (text.contains(placeholder)) {
+                mark(paragraph, slotTexts);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Переносит текст абзаца в первый Run и заменяет его маркером слота; остальные Run очищаются.
+     */
+    private static int mark(XWPFParagraph paragraph, List<String> slotTexts) {
+        int slot = slotTexts.size();
+        slotTexts.add(fullText(paragraph));
+        List<XWPFRun> runs = paragraph.getRuns();
+        runs.get(0).setText(SLOT_START + Integer.toString(slot) + SLOT_END, 0);
+        runs.get(0).getCTR().getTArray(0).setSpace(SpaceAttribute.Space.PRESERVE);
+        for (int i = 1; i < runs.size(); i++) {
+            runs.get(i).setText("", 0);
+        }
+        return slot;
+    }
+
+    private static String fullText(XWPFParagraph paragraph) {
+        StringBuilder sb = new StringBuilder();
+        for (XWPFRun run : paragraph.getRuns()) {
+            String text = run.getText(0);
+            if (text != null) {
+                sb.append(text);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String rowText(XWPFTableRow row) {
+        StringBuilder sb = new StringBuilder();
+        for (XWPFTableCell cell : row.getTableCells()) {
+            for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                sb.append(fullText(paragraph));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                default -> null;
+            };
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb != null ? sb.toString() : text;
+    }
+
+    @Override
+    public String toString() {
+        return "DocxTemplate{" + source.getFileName() + ", segments=" + segments.size() + "}";
+    }
+}
@@ -0,0 +1,253 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.enumeration.WriteOffActStatus;
+import com.mai.siarsp.enumeration.WriteOffReason;
+import com.mai.siarsp.models.AutoWriteOffProgress;
+import com.mai.siarsp.models.Employee;
+import com.mai.siarsp.models.Product;
+import com.mai.siarsp.models.Supply;
+import com.mai.siarsp.repo.AutoWriteOffProgressRepository;
+import com.mai.siarsp.repo.EmployeeRepository;
+import com.mai.siarsp.repo.SupplyRepository;
+import com.mai.siarsp.repo.WriteOffActRepository;
+import com.mai.siarsp.repo.ZoneProductRepository;
+import com.mai.siarsp.service.employee.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Порционное автосписание просроченных партий.
+ * <p>
+ * Просроченные партии с остатками в зонах обходятся по возрастанию id порциями по {@link #CHUNK_SIZE}.
+ * На порцию приходится фиксированное число запросов (id партий, сами партии, остатки по зонам,
+ * уже созданные акты) и одна пакетная вставка актов через JDBC. Каждая порция — отдельная транзакция,
+ * вместе с актами в ней фиксируется {@link AutoWriteOffProgress}, поэтому прерванный запуск
+ * продолжается с последней зафиксированной порции. Сводки уведомлений пишутся в outbox в той же
+ * транзакции, что и акты порции, поэтому зафиксированное списание не остаётся без оповещения.
+ */
+@Service
+@Slf4j
+public class ExpiredSupplyWriteOffService {
+
+    public static final int CHUNK_SIZE = 200;
+
+    private static final String MANAGER_ROLE = "ROLE_EMPLOYEE_MANAGER";
+    private static final String ROLE_EMPLOYEE_WAREHOUSE_MANAGER = "ROLE_EMPLOYEE_WAREHOUSE_MANAGER";
+    private static final String DIGEST_EXPIRED_LOTS = "EXPIRED_LOTS";
+    private static final String DIGEST_AUTO_WRITE_OFF_ACTS = "AUTO_WRITE_OFF_ACTS";
+    private static final List<String> NOTIFIED_ROLES = List.of(MANAGER_ROLE, ROLE_EMPLOYEE_WAREHOUSE_MANAGER);
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private static final String INSERT_ACT_SQL = "INSERT INTO t_write_off_act " +
+            "(act_number, act_date, reason, quantity, status, comment, total_cost, " +
+            "product_id, responsible_employee_id, warehouse_id, supply_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SupplyRepository supplyRepository;
+    private final ZoneProductRepository zoneProductRepository;
+    private final WriteOffActRepository writeOffActRepository;
+    private final EmployeeRepository employeeRepository;
+    private final AutoWriteOffProgressRepository progressRepository;
+    private final NotificationService notificationService;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExpiredSupplyWriteOffService(SupplyRepository supplyRepository,
+                                        ZoneProductRepository zoneProductRepository,
+                                        WriteOffActRepository writeOffActRepository,
+                                        EmployeeRepository employeeRepository,
+                                        AutoWriteOffProgressRepository progressRepository,
+                                        NotificationService notificationService,
+                                        JdbcTemplate jdbc,
+                                        PlatformTransactionManager transactionManager) {
+        this.supplyRepository = supplyRepository;
+        this.zoneProductRepository = zoneProductRepository;
+        this.writeOffActRepository = writeOffActRepository;
+        this.employeeRepository = employeeRepository;
+        this.progressRepository = progressRepository;
+        this.notificationService = notificationService;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public record AutoWriteOffResult(int expiredLots, int actsCreated, int chunks, boolean resumed) {
+    }
+
+    /**
+     * Списывает все партии, просроченные к указанной дате. Повторный вызов за ту же дату
+     * продолжает незавершённый обход или ничего не делает, если обход уже завершён.
+     */
+    public AutoWriteOffResult writeOffExpired(LocalDate today) {
+        AutoWriteOffProgress progress = transactionTemplate.execute(status ->
+                progressRepository.findByRunDate(today)
+                        .orElseGet(() -> progressRepository.save(new AutoWriteOffProgress(today))));
+
+        if (progress.getCompletedAt() != null) {
+            log.info("Автосписание за {} уже выполнено ({}): партий {}, актов {}",
+                    today, progress.getCompletedAt(), progress.getProcessedLots(), progress.getActsCreated());
+            return new AutoWriteOffResult(progress.getProcessedLots(), progress.getActsCreated(), 0, false);
+        }
+
+        boolean resumed = progress.getLastSupplyId() > 0;
+        if (resumed) {
+            log.info("Продолжаем автосписание за {} с партии id > {}", today, progress.getLastSupplyId());
+        }
+
+        Optional<Employee> responsibleOpt = findResponsibleForAutoWriteOff();
+        long afterId = progress.getLastSupplyId();
+        int chunks = 0;
+
+        while (true) {
+            JobCoordinationService.checkLeaseHeld();
+            List<Long> ids = supplyRepository.findExpiredOnStockIdsAfter(today, afterId,
+                    PageRequest.of(0, CHUNK_SIZE));
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> expiredLines = new ArrayList<>();
+                List<String> actLines = new ArrayList<>();
+                processChunk(today, ids, responsibleOpt.orElse(null), expiredLines, actLines);
+
+                // События outbox фиксируются вместе с актами порции; порции одного запуска
+                // сливаются диспетчером в одну сводку на получателя
+                notificationService.notifyDigest(NOTIFIED_ROLES, DIGEST_EXPIRED_LOTS,
+                        "🚨 Просроченные партии (будут списаны автоматически)", expiredLines);
+                notificationService.notifyDigest(NOTIFIED_ROLES, DIGEST_AUTO_WRITE_OFF_ACTS,
+                        "📄 Автоматически созданы акты списания просрочки — требуется подпись руководителя", actLines);
+            });
+            chunks++;
+            afterId = ids.get(ids.size() - 1);
+        }
+
+        AutoWriteOffProgress finished = transactionTemplate.execute(status -> {
+            AutoWriteOffProgress current = progressRepository.findByRunDate(today).orElseThrow();
+            current.setCompletedAt(LocalDateTime.now());
+            return progressRepository.save(current);
+        });
+
+        return new AutoWriteOffResult(finished.getProcessedLots(), finished.getActsCreated(), chunks, resumed);
+    }
+
+    /**
+     * Обработка одной порции в рамках текущей транзакции. Строки сводок (просроченные партии и созданные акты)
+     * складываются в expiredLines и actLines; вызывающий код ставит их в outbox в этой же транзакции.
+     */
+    private void processChunk(LocalDate today, List<Long> ids, Employee responsible,
+                              List<String> expiredLines, List<String> actLines) {
+        List<Supply> supplies = supplyRepository.findAllWithProductByIdIn(ids);
+
+        Map<Long, long[]> stockBySupply = new HashMap<>();
+        for (Object[] row : zoneProductRepository.sumQuantityAndWarehouseBySupplyIds(ids)) {
+            long quantity = row[1] != null ? ((Number) row[1]).longValue() : 0;
+            long warehouseId = row[2] != null ? ((Number) row[2]).longValue() : 0;
+            stockBySupply.put((Long) row[0], new long[]{quantity, warehouseId});
+        }
+
+        Set<Long> pendingSupplyIds = new HashSet<>(writeOffActRepository.findSupplyIdsByReasonAndStatus(
+                ids, WriteOffReason.EXPIRED, WriteOffActStatus.PENDING_DIRECTOR));
+
+        Map<String, Supply> candidates = new HashMap<>();
+        for (Supply supply : supplies) {
+            long[] stock = stockBySupply.get(supply.getId());
+            if (responsible != null && !pendingSupplyIds.contains(supply.getId())
+                    && stock != null && stock[0] > 0) {
+                candidates.put(buildActNumber(today, supply), supply);
+            }
+        }
+        if (!candidates.isEmpty()) {
+            writeOffActRepository.findExistingActNumbers(candidates.keySet()).forEach(candidates::remove);
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Supply supply : supplies) {
+            Product product = supply.getProduct();
+            expiredLines.add("«" + product.getName() + "» (артикул " + product.getArticle() + ", партия "
+                    + supply.getId() + ", срок до " + supply.getExpirationDate().format(DATE_FMT) + ")");
+
+            String actNumber = buildActNumber(today, supply);
+            if (!candidates.containsKey(actNumber)) {
+                continue;
+            }
+
+            long[] stock = stockBySupply.get(supply.getId());
+            int quantity = (int) stock[0];
+            // Стоимость по фактической закупочной цене этой партии
+            BigDecimal totalCost = supply.getPurchasePrice() != null
+                    ? supply.getPurchasePrice().multiply(BigDecimal.valueOf(quantity))
+                    : null;
+            String comment = "Автоматическое списание просроченной партии. Срок годности истёк "
+                    + supply.getExpirationDate().format(DATE_FMT) + ".";
+
+            batch.add(new Object[]{
+                    actNumber,
+                    Date.valueOf(today),
+                    WriteOffReason.EXPIRED.name(),
+                    quantity,
+                    WriteOffActStatus.PENDING_DIRECTOR.name(),
+                    comment,
+                    totalCost,
+                    product.getId(),
+                    responsible.getId(),
+                    stock[1] > 0 ? stock[1] : null,
+                    supply.getId()
+            });
+
+            actLines.add(actNumber + " — «" + product.getName() + "», " + quantity + " ед.");
+        }
+
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT_ACT_SQL, batch);
+        }
+        if (responsible == null && !supplies.isEmpty()) {
+            log.warn("Не найден сотрудник для автосоздания актов списания просрочки: пропущено партий {}",
+                    supplies.size());
+        }
+
+        AutoWriteOffProgress progress = progressRepository.findByRunDate(today).orElseThrow();
+        progress.setLastSupplyId(ids.get(ids.size() - 1));
+        progress.setProcessedLots(progress.getProcessedLots() + supplies.size());
+        progress.setActsCreated(progress.getActsCreated() + batch.size());
+        progressRepository.save(progress);
+
+        log.debug("Порция автосписания: партий {}, создано актов {}, последняя партия id={}",
+                supplies.size(), batch.size(), progress.getLastSupplyId());
+    }
+
+    private String buildActNumber(LocalDate today, Supply supply) {
+        return "AUTO-WR-" + today.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "-" + supply.getProduct().getId() + "-S" + supply.getId();
+    }
+
+    private Optional<Employee> findResponsibleForAutoWriteOff() {
+        List<Employee> warehouseManagers = employeeRepository.findAllByRoleName(ROLE_EMPLOYEE_WAREHOUSE_MANAGER);
+        if (!warehouseManagers.isEmpty()) {
+            return Optional.of(warehouseManagers.get(0));
+        }
+
+        List<Employee> managers = employeeRepository.findAllByRoleName(MANAGER_ROLE);
+        if (!managers.isEmpty()) {
+            return Optional.of(managers.get(0));
+        }
+
+        return Optional.empty();
+    }
+}
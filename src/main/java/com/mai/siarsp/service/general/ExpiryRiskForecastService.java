@@ -0,0 +1,258 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.enumeration.ClientOrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прогноз просрочки: какие партии не успеют продаться до истечения срока годности.
+ * <p>
+ * Скорость продаж товара берётся из отгруженных позиций заказов за последние {@link #VELOCITY_WINDOW_DAYS} дней.
+ * Для каждого товара партии с остатком расходуются в порядке FEFO с этой скоростью начиная с сегодняшнего дня;
+ * всё, что не израсходовано к дате истечения партии, считается будущим списанием по её закупочной цене.
+ * <p>
+ * Входные данные читаются тремя агрегирующими запросами на весь склад, расчёт по товарам идёт параллельно
+ * и в памяти дёшев. Отпечаток (см. ExpiryRiskProductState) снимается с результата расчёта, а не с входных
+ * данных вместе с датой: смена дня сама по себе не меняет прогноз товара без риска, и такие товары не
+ * перезаписываются. Строки товаров с изменившимся прогнозом перезаписываются пакетным JDBC порциями
+ * по {@link #WRITE_CHUNK_SIZE} товаров.
+ */
+@Service
+@Slf4j
+public class ExpiryRiskForecastService {
+
+    public static final int VELOCITY_WINDOW_DAYS = 90;
+    private static final int WRITE_CHUNK_SIZE = 500;
+
+    private static final String SALES_SQL = "SELECT op.product_id, SUM(op.quantity) FROM t_ordered_product op " +
+            "JOIN t_client_order co ON co.id = op.client_order_id " +
+            "WHERE co.status IN (?, ?) AND co.order_date >= ? GROUP BY op.product_id";
+
+    private static final String LOTS_SQL = "SELECT s.id, s.product_id, s.expiration_date, s.purchase_price, " +
+            "s.quantity_for_stock + COALESCE(SUM(zp.quantity), 0) AS stock FROM t_supply s " +
+            "LEFT JOIN t_zone_product zp ON zp.supply_id = s.id " +
+            "WHERE s.expiration_date IS NOT NULL AND s.expiration_date >= ? " +
+            "GROUP BY s.id, s.product_id, s.expiration_date, s.purchase_price, s.quantity_for_stock " +
+            "HAVING stock > 0";
+
+    private static final String STATES_SQL = "SELECT product_id, fingerprint FROM t_expiry_risk_product_state";
+
+    private static final String INSERT_FORECAST_SQL = "INSERT INTO t_expiry_risk_forecast " +
+            "(product_id, supply_id, expiration_date, stock_quantity, projected_unsold, projected_waste_cost, " +
+            "daily_velocity, calculated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_STATE_SQL = "INSERT INTO t_expiry_risk_product_state " +
+            "(product_id, fingerprint, calculated_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE fingerprint = VALUES(fingerprint), calculated_at = VALUES(calculated_at)";
+
+    private static final String TOP_RISKS_SQL = "SELECT f.product_id, p.article, p.name, f.supply_id, " +
+            "f.expiration_date, f.stock_quantity, f.projected_unsold, f.projected_waste_cost, f.daily_velocity " +
+            "FROM t_expiry_risk_forecast f JOIN t_product p ON p.id = f.product_id " +
+            "ORDER BY f.projected_waste_cost DESC LIMIT ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExpiryRiskForecastService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public record ForecastResult(int products, int recalculatedProducts, int riskyLots,
+                                 BigDecimal totalWasteCost, long durationMs) {
+    }
+
+    public record RiskLot(Long productId, String article, String productName, Long supplyId,
+                         LocalDate expirationDate, int stockQuantity, int projectedUnsold,
+                         BigDecimal projectedWasteCost, double dailyVelocity) {
+    }
+
+    private record Lot(long supplyId, LocalDate expirationDate, BigDecimal purchasePrice, int stock) {
+    }
+
+    private record ProductForecast(long productId, long fingerprint, boolean hasStock, List<Object[]> rows) {
+    }
+
+    /**
+     * Пересчитывает прогноз на указанную дату для товаров, у которых изменились продажи или остатки.
+     */
+    public ForecastResult recalculate(LocalDate today) {
+        long startNanos = System.nanoTime();
+        LocalDateTime calculatedAt = LocalDateTime.now();
+
+        Map<Long, Double> velocityByProduct = loadVelocities(today);
+        Map<Long, List<Lot>> lotsByProduct = loadLots(today);
+        Map<Long, Long> previousFingerprints = new HashMap<>();
+        jdbc.query(STATES_SQL, rs -> {
+            previousFingerprints.put(rs.getLong(1), rs.getLong(2));
+        });
+
+        List<Long> productIds = new ArrayList<>(lotsByProduct.keySet());
+        // Товары, у которых партий с остатком больше нет, но прогноз ещё хранится — очищаем
+        previousFingerprints.keySet().stream()
+                .filter(id -> !lotsByProduct.containsKey(id))
+                .forEach(productIds::add);
+
+        Timestamp calculatedAtTs = Timestamp.valueOf(calculatedAt);
+        List<ProductForecast> changed = productIds.parallelStream()
+                .map(productId -> {
+                    List<Lot> lots = lotsByProduct.getOrDefault(productId, List.of());
+                    double velocity = velocityByProduct.getOrDefault(productId, 0.0);
+                    ProductForecast forecast = simulate(productId, today, velocity, lots, calculatedAtTs);
+                    Long previous = previousFingerprints.get(productId);
+                    // товар без остатка всегда записывается: его состояние удаляется
+                    if (forecast.hasStock() && previous != null && previous == forecast.fingerprint()) {
+                        return null;
+                    }
+                    return forecast;
+                })
+                .filter(Objects::nonNull)
+                .toList();
+
+        for (int from = 0; from < changed.size(); from += WRITE_CHUNK_SIZE) {
+            JobCoordinationService.checkLeaseHeld();
+            List<ProductForecast> chunk = changed.subList(from, Math.min(from + WRITE_CHUNK_SIZE, changed.size()));
+            transactionTemplate.executeWithoutResult(status -> writeChunk(chunk, calculatedAtTs));
+        }
+
+        int riskyLots = jdbc.queryForObject("SELECT COUNT(*) FROM t_expiry_risk_forecast", Integer.class);
+        BigDecimal totalWaste = jdbc.queryForObject(
+                "SELECT COALESCE(SUM(projected_waste_cost), 0) FROM t_expiry_risk_forecast", BigDecimal.class);
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        log.info("Прогноз просрочки на {}: товаров {}, пересчитано {}, партий под риском {}, ущерб {} руб., {} мс",
+                today, productIds.size(), changed.size(), riskyLots, totalWaste, durationMs);
+        return new ForecastResult(productIds.size(), changed.size(), riskyLots, totalWaste, durationMs);
+    }
+
+    /**
+     * Партии с наибольшим прогнозируемым ущербом.
+     */
+    public List<RiskLot> getTopRisks(int limit) {
+        return jdbc.query(TOP_RISKS_SQL, (rs, rowNum) -> new RiskLot(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getLong(4),
+                rs.getDate(5).toLocalDate(),
+                rs.getInt(6),
+                rs.getInt(7),
+                rs.getBigDecimal(8),
+                rs.getDouble(9)), limit);
+    }
+
+    private Map<Long, Double> loadVelocities(LocalDate today) {
+        Map<Long, Double> result = new HashMap<>();
+        Timestamp windowStart = Timestamp.valueOf(today.minusDays(VELOCITY_WINDOW_DAYS).atStartOfDay());
+        jdbc.query(SALES_SQL, rs -> {
+            result.put(rs.getLong(1), rs.getLong(2) / (double) VELOCITY_WINDOW_DAYS);
+        }, ClientOrderStatus.SHIPPED.name(), ClientOrderStatus.DELIVERED.name(), windowStart);
+        return result;
+    }
+
+    private Map<Long, List<Lot>> loadLots(LocalDate today) {
+        Map<Long, List<Lot>> result = new HashMap<>();
+        jdbc.query(LOTS_SQL, rs -> {
+            Lot lot = new Lot(rs.getLong(1), rs.getDate(3).toLocalDate(), rs.getBigDecimal(4), rs.getInt(5));
+            result.computeIfAbsent(rs.getLong(2), id -> new ArrayList<>()).add(lot);
+        }, Date.valueOf(today));
+        return result;
+    }
+
+    /**
+     * FEFO-расход партий товара с постоянной скоростью. t — день (от сегодня, дробный),
+     * к которому израсходованы все предыдущие партии; партия продаётся с t до своей даты истечения.
+     */
+    private ProductForecast simulate(long productId, LocalDate today, double velocity, List<Lot> lots,
+                                     Timestamp calculatedAt) {
+        List<Lot> ordered = new ArrayList<>(lots);
+        ordered.sort(Comparator.comparing(Lot::expirationDate).thenComparingLong(Lot::supplyId));
+
+        List<Object[]> rows = new ArrayList<>();
+        double t = 0;
+        for (Lot lot : ordered) {
+            double sellableDays = ChronoUnit.DAYS.between(today, lot.expirationDate()) - t;
+            double sold = velocity > 0 && sellableDays > 0 ? Math.min(lot.stock(), velocity * sellableDays) : 0;
+            if (velocity > 0) {
+                t += sold / velocity;
+            }
+            int unsold = lot.stock() - (int) Math.floor(sold);
+            if (unsold <= 0) {
+                continue;
+            }
+
+            BigDecimal cost = lot.purchasePrice() != null
+                    ? lot.purchasePrice().multiply(BigDecimal.valueOf(unsold)).setScale(2, RoundingMode.HALF_UP)
+                    : BigDecimal.ZERO;
+            rows.add(new Object[]{
+                    productId,
+                    lot.supplyId(),
+                    Date.valueOf(lot.expirationDate()),
+                    lot.stock(),
+                    unsold,
+                    cost,
+                    velocity,
+                    calculatedAt
+            });
+        }
+        return new ProductForecast(productId, fingerprint(rows), !lots.isEmpty(), rows);
+    }
+
+    private void writeChunk(List<ProductForecast> chunk, Timestamp calculatedAt) {
+        String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+        jdbc.update("DELETE FROM t_expiry_risk_forecast WHERE product_id IN (" + placeholders + ")",
+                chunk.stream().map(ProductForecast::productId).toArray());
+
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> states = new ArrayList<>(chunk.size());
+        List<Object[]> removedStates = new ArrayList<>();
+        for (ProductForecast forecast : chunk) {
+            rows.addAll(forecast.rows());
+            if (forecast.hasStock()) {
+                states.add(new Object[]{forecast.productId(), forecast.fingerprint(), calculatedAt});
+            } else {
+                removedStates.add(new Object[]{forecast.productId()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FORECAST_SQL, rows);
+        }
+        if (!states.isEmpty()) {
+            jdbc.batchUpdate(UPSERT_STATE_SQL, states);
+        }
+        if (!removedStates.isEmpty()) {
+            jdbc.batchUpdate("DELETE FROM t_expiry_risk_product_state WHERE product_id = ?", removedStates);
+        }
+    }
+
+    /**
+     * Хеш строк прогноза без времени расчёта. Строки идут в порядке FEFO, поэтому порядок стабилен;
+     * у товара без риска строк нет, и отпечаток не зависит ни от даты, ни от скорости продаж.
+     */
+    private static long fingerprint(List<Object[]> rows) {
+        long hash = 1;
+        for (Object[] row : rows) {
+            hash = hash * 31 + Objects.hash(row[1], row[2], row[3], row[4], row[5], row[6]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,359 @@
+package com.mai.siarsp.service.general;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Сжатое множество неотрицательных int (id товаров) по схеме Roaring.
+ * <p>
+ * Значения разбиты на блоки по 65536 по старшим 16 битам. Разреженный блок хранится отсортированным
+ * массивом младших 16 бит (до {@value #ARRAY_MAX} значений), плотный — битовой картой из 1024 long.
+ * Пересечение, объединение и их мощность вычисляются поблочно, без перебора отдельных id.
+ * Класс не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+final class IdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    /** Старшие 16 бит блоков по возрастанию. */
+    private char[] keys = new char[4];
+    /** char[] — массив значений (заполнены первые counts[i]) или long[1024] — битовая карта. */
+    private Object[] containers = new Object[4];
+    private int[] counts = new int[4];
+    private int size;
+
+    static IdBitmap of(int... values) {
+        IdBitmap bitmap = new IdBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    boolean add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertBlock(index, high, new char[]{low, 0, 0, 0}, 1);
+            return true;
+        }
+        if (containers[index] instanceof long[] bits) {
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= mask;
+            counts[index]++;
+            return true;
+        }
+        char[] array = (char[]) containers[index];
+        int count = counts[index];
+        int position = Arrays.binarySearch(array, 0, count, low);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (count == ARRAY_MAX) {
+            long[] bits = toBits(array, count);
+            bits[low >>> 6] |= 1L << low;
+            containers[index] = bits;
+        } else {
+            if (count == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, count * 2));
+                containers[index] = array;
+            }
+            System.arraycopy(array, position, array, position + 1, count - position);
+            array[position] = low;
+        }
+        counts[index]++;
+        return true;
+    }
+
+    boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (containers[index] instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) containers[index], 0, counts[index], low) >= 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    IdBitmap and(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendBlock(keys[i], intersect(containers[i], counts[i], other.containers[j], other.counts[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** Мощность пересечения без построения результата — для счётчиков фасетов. */
+    int andCardinality(IdBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += intersectCount(containers[i], counts[i], other.containers[j], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    IdBitmap or(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendBlock(keys[i], copy(containers[i], counts[i]));
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.appendBlock(other.keys[j], copy(other.containers[j], other.counts[j]));
+                j++;
+            } else {
+                long[] bits = toBits(containers[i], counts[i]);
+                addAll(bits, other.containers[j], other.counts[j]);
+                result.appendBlock(keys[i], fromBits(bits));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** Значения этого множества, которых нет в other. */
+    IdBitmap andNot(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                long[] bits = toBits(containers[i], counts[i]);
+                long[] removed = toBits(other.containers[j], other.counts[j]);
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    bits[w] &= ~removed[w];
+                }
+                result.appendBlock(keys[i], fromBits(bits));
+            } else {
+                result.appendBlock(keys[i], copy(containers[i], counts[i]));
+            }
+        }
+        return result;
+    }
+
+    /** Первые limit значений по возрастанию. */
+    List<Long> toList(int limit) {
+        List<Long> result = new ArrayList<>(Math.min(limit, cardinality()));
+        for (int i = 0; i < size && result.size() < limit; i++) {
+            long base = (long) keys[i] << 16;
+            if (containers[i] instanceof long[] bits) {
+                for (int w = 0; w < BITMAP_WORDS && result.size() < limit; w++) {
+                    long word = bits[w];
+                    while (word != 0 && result.size() < limit) {
+                        result.add(base + w * 64L + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) containers[i];
+                for (int k = 0; k < counts[i] && result.size() < limit; k++) {
+                    result.add(base + array[k]);
+                }
+            }
+        }
+        return result;
+    }
+
+    // ========== БЛОКИ ==========
+
+    /** Блок результата операции: массив или битовая карта с мощностью; пустой блок не добавляется. */
+    private record Block(Object container, int count) {}
+
+    private void appendBlock(char key, Block block) {
+        if (block.count() > 0) {
+            insertBlock(size, key, block.container(), block.count());
+        }
+    }
+
+    private void insertBlock(int index, char key, Object container, int count) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(counts, index, counts, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        counts[index] = count;
+        size++;
+    }
+
+    private static Block intersect(Object left, int leftCount, Object right, int rightCount) {
+        if (left instanceof long[] leftBits && right instanceof long[] rightBits) {
+            long[] bits = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                bits[w] = leftBits[w] & rightBits[w];
+            }
+            return fromBits(bits);
+        }
+        if (left instanceof long[]) {
+            return intersect(right, rightCount, left, leftCount);
+        }
+        char[] array = (char[]) left;
+        char[] result = new char[Math.min(leftCount, right instanceof long[] ? leftCount : rightCount)];
+        int count = 0;
+        if (right instanceof long[] bits) {
+            for (int k = 0; k < leftCount; k++) {
+                char value = array[k];
+                if ((bits[value >>> 6] & (1L << value)) != 0) {
+                    result[count++] = value;
+                }
+            }
+        } else {
+            char[] other = (char[]) right;
+            int i = 0;
+            int j = 0;
+            while (i < leftCount && j < rightCount) {
+                if (array[i] < other[j]) {
+                    i++;
+                } else if (array[i] > other[j]) {
+                    j++;
+                } else {
+                    result[count++] = array[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new Block(result, count);
+    }
+
+    private static int intersectCount(Object left, int leftCount, Object right, int rightCount) {
+        if (left instanceof long[] leftBits && right instanceof long[] rightBits) {
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(leftBits[w] & rightBits[w]);
+            }
+            return count;
+        }
+        if (left instanceof long[]) {
+            return intersectCount(right, rightCount, left, leftCount);
+        }
+        char[] array = (char[]) left;
+        int count = 0;
+        if (right instanceof long[] bits) {
+            for (int k = 0; k < leftCount; k++) {
+                char value = array[k];
+                if ((bits[value >>> 6] & (1L << value)) != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        char[] other = (char[]) right;
+        int i = 0;
+        int j = 0;
+        while (i < leftCount && j < rightCount) {
+            if (array[i] < other[j]) {
+                i++;
+            } else if (array[i] > other[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static Block copy(Object container, int count) {
+        if (container instanceof long[] bits) {
+            return new Block(bits.clone(), count);
+        }
+        return new Block(Arrays.copyOf((char[]) container, count), count);
+    }
+
+    private static long[] toBits(Object container, int count) {
+        if (container instanceof long[] bits) {
+            return bits.clone();
+        }
+        long[] bits = new long[BITMAP_WORDS];
+        addAll(bits, container, count);
+        return bits;
+    }
+
+    private static void addAll(long[] bits, Object container, int count) {
+        if (container instanceof long[] other) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                bits[w] |= other[w];
+            }
+            return;
+        }
+        char[] array = (char[]) container;
+        for (int k = 0; k < count; k++) {
+            bits[array[k] >>> 6] |= 1L << array[k];
+        }
+    }
+
+    /** Битовая карта блока в компактном виде: массив, если значений не больше ARRAY_MAX. */
+    private static Block fromBits(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        if (count > ARRAY_MAX) {
+            return new Block(bits, count);
+        }
+        char[] array = new char[count];
+        int k = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                array[k++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new Block(array, count);
+    }
+}
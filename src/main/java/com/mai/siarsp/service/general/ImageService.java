@@ -50,8 +50,26 @@ public class ImageService {
         throw new IllegalArgumentException("Файл пустой или null");
     }
 
+    /**
+     * Имя уже загруженного изображения: только имя файла без каталогов, файл есть в каталоге загрузок.
+     * Используется для значений, пришедших извне (импорт каталога).
+     */
+    public static boolean isStoredImage(String imageName) {
+        if (imageName == null || imageName.isBlank()
+                || imageName.contains("/") || imageName.contains("\\") || imageName.contains("..")) {
+            return false;
+        }
+        Path uploadDir = Paths.get(uploadPath).toAbsolutePath().normalize();
+        Path filePath = uploadDir.resolve(imageName).normalize();
+        return uploadDir.equals(filePath.getParent()) && Files.isRegularFile(filePath);
+    }
+
     public static Resource getImageData(String imageName) throws IOException {
-        Path filePath = Paths.get(uploadPath).resolve(imageName);
+        Path uploadDir = Paths.get(uploadPath).toAbsolutePath().normalize();
+        Path filePath = uploadDir.resolve(imageName).normalize();
+        if (!filePath.startsWith(uploadDir)) {
+            throw new IOException("Файл вне каталога загрузок: " + imageName);
+        }
         Resource resource = new UrlResource(filePath.toUri());
 
         if (resource.exists() || resource.isReadable()) {
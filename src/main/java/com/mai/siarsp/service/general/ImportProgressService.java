@@ -0,0 +1,93 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.dto.ImportProgress;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Прогресс длительных импортов файлов.
+ * <p>
+ * Страница генерирует идентификатор импорта, передаёт его вместе с файлом и, пока запрос загрузки
+ * выполняется, опрашивает состояние по тому же идентификатору. Состояние хранится в памяти
+ * и удаляется через {@link #RETENTION} после последнего обновления.
+ */
+@Service
+public class ImportProgressService {
+
+    private static final Duration RETENTION = Duration.ofMinutes(15);
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    /**
+     * Регистрирует импорт; при пустом или некорректном идентификаторе прогресс ведётся, но не публикуется.
+     */
+    public Tracker start(String importId) {
+        purgeExpired();
+        Tracker tracker = new Tracker();
+        if (importId != null && ID_PATTERN.matcher(importId).matches()) {
+            trackers.put(importId, tracker);
+        }
+        return tracker;
+    }
+
+    public Optional<ImportProgress> get(String importId) {
+        Tracker tracker = importId != null ? trackers.get(importId) : null;
+        return tracker != null ? Optional.of(tracker.snapshot()) : Optional.empty();
+    }
+
+    private void purgeExpired() {
+        Instant threshold = Instant.now().minus(RETENTION);
+        trackers.values().removeIf(tracker -> tracker.updatedAt.isBefore(threshold));
+    }
+
+    /**
+     * Изменяемое состояние одного импорта; пишет поток импорта, читают запросы опроса.
+     */
+    public static final class Tracker {
+
+        private volatile String stage = "Загрузка файла";
+        private volatile int processed;
+        private volatile int total;
+        private volatile boolean finished;
+        private volatile String error;
+        private volatile Instant updatedAt = Instant.now();
+
+        public void stage(String stage, int total) {
+            this.stage = stage;
+            this.total = total;
+            this.processed = 0;
+            touch();
+        }
+
+        public void advance(int count) {
+            processed += count;
+            touch();
+        }
+
+        public void finish() {
+            finished = true;
+            touch();
+        }
+
+        public void fail(String message) {
+            error = message;
+            finished = true;
+            touch();
+        }
+
+        private void touch() {
+            updatedAt = Instant.now();
+        }
+
+        private ImportProgress snapshot() {
+            return new ImportProgress(stage, processed, total, finished, error);
+        }
+    }
+}
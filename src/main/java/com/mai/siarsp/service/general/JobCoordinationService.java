@@ -0,0 +1,298 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.enumeration.JobRunStatus;
+import com.mai.siarsp.models.JobRun;
+import com.mai.siarsp.repo.JobRunRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Координация фоновых задач между узлами кластера через таблицу аренды {@code t_job_lease}.
+ * <p>
+ * Перед запуском узел захватывает аренду задачи на время ttl; пока задача выполняется, аренда
+ * продлевается heartbeat-ом. При завершении аренда удерживается ещё не меньше minHold от момента
+ * захвата — так узел, у которого cron сработал на несколько секунд позже, не повторит тот же запуск.
+ * Если продлить аренду не удалось, задача отменяется: поток прерывается, а порционные задачи
+ * останавливаются на ближайшей проверке {@link #checkLeaseHeld()}.
+ * Все сравнения времени выполняются по часам БД. Каждый запуск пишется в журнал {@code t_job_run}.
+ */
+@Service
+@Slf4j
+public class JobCoordinationService {
+
+    private static final String UPDATE_EXPIRED_LEASE_SQL = "UPDATE t_job_lease SET owner = ?, " +
+            "acquired_at = NOW(3), heartbeat_at = NOW(3), lease_until = DATE_ADD(NOW(3), INTERVAL ? SECOND) " +
+            "WHERE job_name = ? AND lease_until <= NOW(3)";
+
+    private static final String INSERT_LEASE_SQL = "INSERT IGNORE INTO t_job_lease " +
+            "(job_name, owner, acquired_at, heartbeat_at, lease_until) " +
+            "VALUES (?, ?, NOW(3), NOW(3), DATE_ADD(NOW(3), INTERVAL ? SECOND))";
+
+    private static final String HEARTBEAT_SQL = "UPDATE t_job_lease SET heartbeat_at = NOW(3), " +
+            "lease_until = DATE_ADD(NOW(3), INTERVAL ? SECOND) WHERE job_name = ? AND owner = ?";
+
+    private static final String RELEASE_SQL = "UPDATE t_job_lease " +
+            "SET lease_until = GREATEST(NOW(3), DATE_ADD(acquired_at, INTERVAL ? SECOND)) " +
+            "WHERE job_name = ? AND owner = ?";
+
+    /** Аренда задачи, выполняемой текущим потоком через runExclusively. */
+    private static final ThreadLocal<LeaseState> CURRENT_LEASE = new ThreadLocal<>();
+
+    /** Состояние аренды выполняемой задачи; поля меняются под монитором объекта. */
+    private static final class LeaseState {
+        private final Thread worker = Thread.currentThread();
+        private boolean lost;
+        private boolean finished;
+        /** Момент (System.nanoTime), до которого аренда заведомо действительна: отсчитывается от начала последнего успешного продления. */
+        private long validUntilNanos;
+    }
+
+    private final JdbcTemplate jdbc;
+    private final JobRunRepository jobRunRepository;
+    private final String nodeId;
+    private final ScheduledExecutorService heartbeatExecutor;
+
+    public JobCoordinationService(JdbcTemplate jdbc,
+                                  JobRunRepository jobRunRepository,
+                                  @Value("${siarsp.node-id:}") String configuredNodeId) {
+        this.jdbc = jdbc;
+        this.jobRunRepository = jobRunRepository;
+        this.nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                ? configuredNodeId
+                : resolveNodeId();
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Идентификатор узла для координации фоновых задач: {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Пытается захватить аренду задачи на ttl. true — аренда за этим узлом.
+     */
+    public boolean tryAcquire(String jobName, Duration ttl) {
+        long ttlSeconds = Math.max(1, ttl.toSeconds());
+        try {
+            if (jdbc.update(UPDATE_EXPIRED_LEASE_SQL, nodeId, ttlSeconds, jobName) == 1) {
+                return true;
+            }
+            return jdbc.update(INSERT_LEASE_SQL, jobName, nodeId, ttlSeconds) == 1;
+        } catch (DataAccessException e) {
+            log.error("Не удалось захватить аренду задачи '{}': {}", jobName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Продлевает аренду ещё на ttl. false — аренда потеряна (истекла и перехвачена другим узлом).
+     *
+     * @throws DataAccessException ошибка обращения к БД: потеря аренды из неё не следует
+     */
+    public boolean heartbeat(String jobName, Duration ttl) {
+        return jdbc.update(HEARTBEAT_SQL, Math.max(1, ttl.toSeconds()), jobName, nodeId) == 1;
+    }
+
+    /**
+     * Освобождает аренду, но не раньше чем через minHold после захвата.
+     */
+    public void release(String jobName, Duration minHold) {
+        try {
+            jdbc.update(RELEASE_SQL, Math.max(0, minHold.toSeconds()), jobName, nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Не удалось освободить аренду задачи '{}': {}", jobName, e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняет задачу, только если удалось захватить её аренду. Пока задача работает, аренда
+     * продлевается каждые ttl/3. Задача прерывается, только когда продление не нашло аренды этого узла
+     * или когда продлить её не удавалось из-за ошибок БД до истечения ttl; временная ошибка лишь
+     * откладывает продление до следующего раза. Запуск и его длительность фиксируются в журнале.
+     *
+     * @return true — задача выполнялась на этом узле (успешно или с ошибкой), false — пропущена
+     */
+    public boolean runExclusively(String jobName, Duration ttl, Duration minHold, Runnable task) {
+        long acquireNanos = System.nanoTime();
+        if (!tryAcquire(jobName, ttl)) {
+            log.info("Задача '{}' пропущена: аренда удерживается другим узлом", jobName);
+            return false;
+        }
+
+        JobRun run = jobRunRepository.save(new JobRun(jobName, nodeId));
+        LeaseState lease = new LeaseState();
+        lease.validUntilNanos = acquireNanos + ttl.toNanos();
+        long period = Math.max(1, ttl.toMillis() / 3);
+        ScheduledFuture<?> heartbeatFuture = heartbeatExecutor.scheduleAtFixedRate(() -> {
+            synchronized (lease) {
+                if (lease.finished || lease.lost) {
+                    return;
+                }
+                long beatNanos = System.nanoTime();
+                try {
+                    if (heartbeat(jobName, ttl)) {
+                        lease.validUntilNanos = beatNanos + ttl.toNanos();
+                        return;
+                    }
+                } catch (DataAccessException e) {
+                    if (beatNanos - lease.validUntilNanos < 0) {
+                        log.warn("Не удалось продлить аренду задачи '{}', повтор при следующем продлении: {}",
+                                jobName, e.getMessage());
+                        return;
+                    }
+                    log.error("Не удалось продлить аренду задачи '{}' до её истечения: {}", jobName, e.getMessage());
+                }
+                lease.lost = true;
+                lease.worker.interrupt();
+            }
+            log.warn("Аренда задачи '{}' потеряна узлом {} во время выполнения, задача отменяется", jobName, nodeId);
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        long startNanos = System.nanoTime();
+        CURRENT_LEASE.set(lease);
+        try {
+            task.run();
+            run.setStatus(JobRunStatus.SUCCESS);
+        } catch (Throwable e) {
+            log.error("Ошибка при выполнении задачи '{}': {}", jobName, e.getMessage(), e);
+            run.setStatus(JobRunStatus.FAILED);
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            run.setErrorMessage(message.length() > 1000 ? message.substring(0, 1000) : message);
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            CURRENT_LEASE.remove();
+            heartbeatFuture.cancel(false);
+            synchronized (lease) {
+                lease.finished = true;
+                if (lease.lost) {
+                    // Прерывание адресовано задаче, а не следующей работе этого потока
+                    Thread.interrupted();
+                }
+            }
+            release(jobName, minHold);
+            run.setFinishedAt(LocalDateTime.now());
+            run.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            jobRunRepository.save(run);
+        }
+
+        log.info("Задача '{}' завершена на узле {} за {} мс со статусом {}",
+                jobName, nodeId, run.getDurationMs(), run.getStatus());
+        return true;
+    }
+
+    /**
+     * Выполняет task под именованной блокировкой MySQL ({@code GET_LOCK}), ожидая её не дольше wait.
+     * В отличие от аренды, подходит для коротких частых операций над общим объектом (например, DDL
+     * одной таблицы): ничего не пишет в журнал и освобождается сразу. Блокировку держит отдельное
+     * соединение, сама работа может выполняться на любых других.
+     *
+     * @return false — блокировку не дождались, task не выполнялся
+     */
+    public boolean runWithNamedLock(String lockName, Duration wait, Runnable task) {
+        Boolean executed = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+                statement.setString(1, lockName);
+                statement.setLong(2, Math.max(0, wait.toSeconds()));
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                task.run();
+            } finally {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    statement.setString(1, lockName);
+                    statement.executeQuery().close();
+                }
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(executed);
+    }
+
+    /**
+     * Занята ли сейчас хотя бы одна из именованных блокировок ({@code IS_USED_LOCK}) — одним запросом.
+     */
+    public boolean isAnyNamedLockUsed(Collection<String> lockNames) {
+        if (lockNames.isEmpty()) {
+            return false;
+        }
+        Boolean used = jdbc.queryForObject("SELECT " +
+                String.join(" OR ", Collections.nCopies(lockNames.size(), "IS_USED_LOCK(?) IS NOT NULL")),
+                Boolean.class, lockNames.toArray());
+        return Boolean.TRUE.equals(used);
+    }
+
+    /**
+     * Проверка между порциями длинной задачи: если аренда потеряна, задача прекращается, чтобы
+     * не работать параллельно с новым владельцем аренды. Вне runExclusively ничего не делает.
+     *
+     * @throws CancellationException аренда задачи текущего потока потеряна
+     */
+    public static void checkLeaseHeld() {
+        LeaseState lease = CURRENT_LEASE.get();
+        if (lease == null) {
+            return;
+        }
+        synchronized (lease) {
+            if (lease.lost) {
+                throw new CancellationException("Аренда задачи потеряна, выполнение прекращено");
+            }
+        }
+    }
+
+    /**
+     * Был ли успешный запуск задачи (на любом узле) начиная с указанного момента.
+     */
+    public boolean hasSucceededSince(String jobName, LocalDateTime since) {
+        return jobRunRepository.existsByJobNameAndStatusAndStartedAtGreaterThanEqual(
+                jobName, JobRunStatus.SUCCESS, since);
+    }
+
+    public List<JobRun> getRecentRuns(String jobName) {
+        return jobRunRepository.findTop20ByJobNameOrderByStartedAtDesc(jobName);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+    }
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown-host";
+        }
+        return host + ":" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+}
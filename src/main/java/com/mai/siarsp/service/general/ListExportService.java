@@ -0,0 +1,161 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.enumeration.ExportType;
+import com.mai.siarsp.repo.ClientOrderRepository;
+import com.mai.siarsp.repo.ClientOrderRepository.OrderExportRow;
+import com.mai.siarsp.repo.DeliveryTaskRepository;
+import com.mai.siarsp.repo.DeliveryTaskRepository.DeliveryTaskExportRow;
+import com.mai.siarsp.repo.ProductRepository;
+import com.mai.siarsp.repo.ProductRepository.ProductExportRow;
+import com.mai.siarsp.repo.SupplyRepository;
+import com.mai.siarsp.repo.SupplyRepository.SupplyExportRow;
+import com.mai.siarsp.repo.WriteOffActRepository;
+import com.mai.siarsp.repo.WriteOffActRepository.WriteOffActExportRow;
+import com.mai.siarsp.service.general.XlsxExportService.XlsxColumn;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка списков (заказы, товары, поставки, акты списания, задачи доставки) в XLSX.
+ * <p>
+ * Для каждого списка ниже объявлен набор столбцов; строки читаются курсорными запросами
+ * репозиториев (streamExportRows) и сразу пишутся XlsxExportService в ответ — выборка целиком
+ * в памяти не собирается.
+ */
+@Service
+@Slf4j
+public class ListExportService {
+
+    private static final List<XlsxColumn<OrderExportRow>> ORDER_COLUMNS = List.of(
+            XlsxColumn.of("Номер заказа", 18, OrderExportRow::getOrderNumber),
+            XlsxColumn.of("Дата заказа", 17, OrderExportRow::getOrderDate),
+            XlsxColumn.of("Дата доставки", 14, OrderExportRow::getDeliveryDate),
+            XlsxColumn.of("Фактическая доставка", 14, OrderExportRow::getActualDeliveryDate),
+            XlsxColumn.of("Клиент", 40, OrderExportRow::getClientName),
+            XlsxColumn.of("ИНН", 14, OrderExportRow::getClientInn),
+            XlsxColumn.of("Статус", 22, row -> row.getStatus() != null ? row.getStatus().getDisplayName() : null),
+            XlsxColumn.of("Сумма, руб.", 14, OrderExportRow::getTotalAmount),
+            XlsxColumn.of("Ответственный", 28, OrderExportRow::getResponsibleName)
+    );
+
+    private static final List<XlsxColumn<ProductExportRow>> PRODUCT_COLUMNS = List.of(
+            XlsxColumn.of("Артикул", 16, ProductExportRow::getArticle),
+            XlsxColumn.of("Наименование", 40, ProductExportRow::getName),
+            XlsxColumn.of("Категория", 28, ProductExportRow::getCategoryName),
+            XlsxColumn.of("Тип склада", 20, row -> row.getWarehouseType() != null ? row.getWarehouseType().getDisplayName() : null),
+            XlsxColumn.of("На складе", 12, ProductExportRow::getStockQuantity),
+            XlsxColumn.of("Зарезервировано", 16, ProductExportRow::getReservedQuantity),
+            XlsxColumn.of("Ожидает размещения", 18, ProductExportRow::getQuantityForStock)
+    );
+
+    private static final List<XlsxColumn<SupplyExportRow>> SUPPLY_COLUMNS = List.of(
+            XlsxColumn.of("Поставка №", 12, SupplyExportRow::getDeliveryId),
+            XlsxColumn.of("Дата поставки", 14, SupplyExportRow::getDeliveryDate),
+            XlsxColumn.of("Поставщик", 36, SupplyExportRow::getSupplierName),
+            XlsxColumn.of("ИНН поставщика", 14, SupplyExportRow::getSupplierInn),
+            XlsxColumn.of("Артикул", 16, SupplyExportRow::getProductArticle),
+            XlsxColumn.of("Товар", 40, SupplyExportRow::getProductName),
+            XlsxColumn.of("Ед. изм.", 10, SupplyExportRow::getUnit),
+            XlsxColumn.of("Количество", 12, SupplyExportRow::getQuantity),
+            XlsxColumn.of("Цена закупки, руб.", 16, SupplyExportRow::getPurchasePrice),
+            XlsxColumn.of("Дата производства", 14, SupplyExportRow::getProductionDate),
+            XlsxColumn.of("Годен до", 14, SupplyExportRow::getExpirationDate),
+            XlsxColumn.of("Недостача", 12, SupplyExportRow::getDeficitQuantity),
+            XlsxColumn.of("Причина недостачи", 30, SupplyExportRow::getDeficitReason)
+    );
+
+    private static final List<XlsxColumn<WriteOffActExportRow>> WRITE_OFF_ACT_COLUMNS = List.of(
+            XlsxColumn.of("Номер акта", 18, WriteOffActExportRow::getActNumber),
+            XlsxColumn.of("Дата акта", 14, WriteOffActExportRow::getActDate),
+            XlsxColumn.of("Артикул", 16, WriteOffActExportRow::getProductArticle),
+            XlsxColumn.of("Товар", 40, WriteOffActExportRow::getProductName),
+            XlsxColumn.of("Причина", 22, row -> row.getReason() != null ? row.getReason().getDisplayName() : null),
+            XlsxColumn.of("Количество", 12, WriteOffActExportRow::getQuantity),
+            XlsxColumn.of("Сумма, руб.", 14, WriteOffActExportRow::getTotalCost),
+            XlsxColumn.of("Статус", 24, row -> row.getStatus() != null ? row.getStatus().getDisplayName() : null),
+            XlsxColumn.of("Ответственный", 28, WriteOffActExportRow::getResponsibleName),
+            XlsxColumn.of("Комментарий", 40, WriteOffActExportRow::getComment)
+    );
+
+    private static final List<XlsxColumn<DeliveryTaskExportRow>> DELIVERY_TASK_COLUMNS = List.of(
+            XlsxColumn.of("Задача №", 10, DeliveryTaskExportRow::getId),
+            XlsxColumn.of("Заказ", 18, DeliveryTaskExportRow::getOrderNumber),
+            XlsxColumn.of("Клиент", 36, DeliveryTaskExportRow::getClientName),
+            XlsxColumn.of("Адрес доставки", 40, DeliveryTaskExportRow::getDeliveryAddress),
+            XlsxColumn.of("Статус", 20, row -> row.getStatus() != null ? row.getStatus().getDisplayName() : null),
+            XlsxColumn.of("Плановое начало", 17, DeliveryTaskExportRow::getPlannedStartTime),
+            XlsxColumn.of("Фактическое начало", 17, DeliveryTaskExportRow::getActualStartTime),
+            XlsxColumn.of("Завершение", 17, DeliveryTaskExportRow::getActualEndTime),
+            XlsxColumn.of("Водитель", 28, DeliveryTaskExportRow::getDriverName),
+            XlsxColumn.of("Автомобиль", 14, DeliveryTaskExportRow::getVehicleNumber),
+            XlsxColumn.of("Номер ТТН", 16, DeliveryTaskExportRow::getTtnNumber),
+            XlsxColumn.of("Пробег на старте", 14, DeliveryTaskExportRow::getStartMileage),
+            XlsxColumn.of("Пробег на финише", 14, DeliveryTaskExportRow::getEndMileage)
+    );
+
+    private final XlsxExportService xlsxExportService;
+    private final ClientOrderRepository clientOrderRepository;
+    private final ProductRepository productRepository;
+    private final SupplyRepository supplyRepository;
+    private final WriteOffActRepository writeOffActRepository;
+    private final DeliveryTaskRepository deliveryTaskRepository;
+
+    public ListExportService(XlsxExportService xlsxExportService,
+                             ClientOrderRepository clientOrderRepository,
+                             ProductRepository productRepository,
+                             SupplyRepository supplyRepository,
+                             WriteOffActRepository writeOffActRepository,
+                             DeliveryTaskRepository deliveryTaskRepository) {
+        this.xlsxExportService = xlsxExportService;
+        this.clientOrderRepository = clientOrderRepository;
+        this.productRepository = productRepository;
+        this.supplyRepository = supplyRepository;
+        this.writeOffActRepository = writeOffActRepository;
+        this.deliveryTaskRepository = deliveryTaskRepository;
+    }
+
+    /**
+     * Пишет список в поток ответа. Транзакция только для чтения держит курсор открытым до конца выгрузки.
+     */
+    @Transactional(readOnly = true)
+    public void export(ExportType type, OutputStream outputStream) throws IOException {
+        switch (type) {
+            case ORDERS -> write(type, ORDER_COLUMNS, clientOrderRepository.streamExportRows(), outputStream);
+            case PRODUCTS -> write(type, PRODUCT_COLUMNS, productRepository.streamExportRows(), outputStream);
+            case SUPPLIES -> write(type, SUPPLY_COLUMNS, supplyRepository.streamExportRows(), outputStream);
+            case WRITE_OFF_ACTS -> write(type, WRITE_OFF_ACT_COLUMNS, writeOffActRepository.streamExportRows(), outputStream);
+            case DELIVERY_TASKS -> write(type, DELIVERY_TASK_COLUMNS, deliveryTaskRepository.streamExportRows(), outputStream);
+        }
+    }
+
+    /**
+     * Заголовки ответа для скачивания выгрузки: тип содержимого и имя файла вида {@code orders_2024-05-01.xlsx}.
+     */
+    public static HttpHeaders attachmentHeaders(ExportType type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(XlsxExportService.CONTENT_TYPE));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(type.getSlug() + "_" + LocalDate.now() + ".xlsx", StandardCharsets.UTF_8).build());
+        return headers;
+    }
+
+    private <T> void write(ExportType type, List<XlsxColumn<T>> columns, Stream<T> rows,
+                           OutputStream outputStream) throws IOException {
+        long startNanos = System.nanoTime();
+        long written = xlsxExportService.write(type.getDisplayName(), columns, rows, outputStream);
+        log.info("Выгрузка '{}' в XLSX: {} строк за {} мс", type.getDisplayName(), written,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+}
@@ -0,0 +1,441 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.dto.ProductCatalogImportResult;
+import com.mai.siarsp.dto.ProductCatalogImportResult.RowError;
+import com.mai.siarsp.enumeration.AttributeType;
+import com.mai.siarsp.enumeration.WarehouseType;
+import com.mai.siarsp.models.ProductAttribute;
+import com.mai.siarsp.models.ProductCategory;
+import com.mai.siarsp.repo.ProductAttributeRepository;
+import com.mai.siarsp.repo.ProductCategoryRepository;
+import com.mai.siarsp.repo.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Загрузка каталога товаров из xlsx: первая непустая строка листа — заголовок, далее по товару на строку.
+ * <p>
+ * Обязательные колонки: «Артикул», «Наименование», «Категория», «Тип склада»; необязательная —
+ * «Изображение» (имя файла в каталоге загрузок). Остальные колонки — названия атрибутов товара.
+ * Категория указывается названием или, если название неоднозначно, как «Название (Глобальная категория)».
+ * <p>
+ * Лист читается потоково ({@link XlsxStreamReader}), артикулы, категории и атрибуты проверяются
+ * по заранее загруженным картам без запросов на строку. Прошедшие проверку строки копятся
+ * в пакет из {@link #CHUNK_SIZE} товаров, который пишется в отдельной транзакции двумя пакетными
+ * INSERT — товары и значения их атрибутов. Память ограничена текущим пакетом и множеством артикулов.
+ */
+@Service
+@Slf4j
+public class ProductCatalogImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String COL_ARTICLE = "артикул";
+    private static final String COL_NAME = "наименование";
+    private static final String COL_CATEGORY = "категория";
+    private static final String COL_WAREHOUSE_TYPE = "тип склада";
+    private static final String COL_IMAGE = "изображение";
+    private static final List<String> REQUIRED_COLUMNS = List.of(COL_ARTICLE, COL_NAME, COL_CATEGORY, COL_WAREHOUSE_TYPE);
+
+    private static final String INSERT_PRODUCT_SQL = "INSERT INTO t_product " +
+            "(name, article, stock_quantity, quantity_for_stock, reserved_quantity, image, warehouse_type, category_id) " +
+            "VALUES (?, ?, 0, 0, 0, ?, ?, ?)";
+    private static final String INSERT_ATTRIBUTE_VALUE_SQL = "INSERT INTO t_product_attribute_value " +
+            "(value, product_id, attribute_id) VALUES (?, ?, ?)";
+
+    private final ProductRepository productRepository;
+    private final ProductCategoryRepository productCategoryRepository;
+    private final ProductAttributeRepository productAttributeRepository;
+    private final ProductReadModelService productReadModelService;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final ReferenceDataCache referenceDataCache;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductCatalogImportService(ProductRepository productRepository,
+                                       ProductCategoryRepository productCategoryRepository,
+                                       ProductAttributeRepository productAttributeRepository,
+                                       ProductReadModelService productReadModelService,
+                                       ProductFacetIndex productFacetIndex,
+                                       ProductSearchIndex productSearchIndex,
+                                       ReferenceDataCache referenceDataCache,
+                                       JdbcTemplate jdbc,
+                                       PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.productCategoryRepository = productCategoryRepository;
+        this.productAttributeRepository = productAttributeRepository;
+        this.productReadModelService = productReadModelService;
+        this.productFacetIndex = productFacetIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.referenceDataCache = referenceDataCache;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Загружает каталог. Ошибки строк попадают в отчёт; ошибки файла целиком (формат, заголовок)
+     * выбрасываются как IllegalArgumentException с текстом для пользователя.
+     */
+    public ProductCatalogImportResult importCatalog(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Файл не выбран или пуст.");
+        }
+        String originalName = file.getOriginalFilename();
+        if (originalName != null && !originalName.toLowerCase().endsWith(".xlsx")) {
+            throw new IllegalArgumentException("Поддерживается только формат .xlsx.");
+        }
+
+        long started = System.currentTimeMillis();
+        CatalogImport catalogImport = new CatalogImport(loadReferences());
+        Path temp = null;
+        try {
+            temp = Files.createTempFile("catalog-", ".xlsx");
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            XlsxStreamReader.read(temp, catalogImport::acceptRow);
+            catalogImport.flush();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IOException e) {
+            log.error("Не удалось прочитать файл каталога: {}", e.getMessage(), e);
+            throw new IllegalArgumentException("Не удалось прочитать файл. Проверьте, что это xlsx.");
+        } finally {
+            deleteQuietly(temp);
+        }
+        if (catalogImport.columns == null) {
+            throw new IllegalArgumentException("В файле не найдена строка заголовка.");
+        }
+
+        long duration = System.currentTimeMillis() - started;
+        log.info("Импорт каталога: строк {}, загружено {}, ошибок {} за {} мс.", catalogImport.totalRows,
+                catalogImport.importedCount, catalogImport.errorCount, duration);
+        return new ProductCatalogImportResult(catalogImport.totalRows, catalogImport.importedCount,
+                catalogImport.errorCount, catalogImport.errorCount > catalogImport.errors.size(), duration,
+                catalogImport.errors);
+    }
+
+    // ========== СПРАВОЧНИКИ ==========
+
+    private record CategoryRef(Long id, Set<Long> attributeIds) {
+    }
+
+    private record AttributeRef(Long id, String name, AttributeType dataType) {
+    }
+
+    /**
+     * Справочники для проверки строк. Названия приводятся к нижнему регистру; неоднозначное
+     * название категории хранится со значением null.
+     */
+    private record References(Set<String> articles,
+                              Map<String, CategoryRef> categoriesByName,
+                              Map<String, CategoryRef> categoriesByDisplayName,
+                              Map<String, AttributeRef> attributesByName) {
+    }
+
+    private References loadReferences() {
+        Set<String> articles = new HashSet<>();
+        for (String article : productRepository.findAllArticles()) {
+            articles.add(normalize(article));
+        }
+
+        Map<String, CategoryRef> byName = new HashMap<>();
+        Map<String, CategoryRef> byDisplayName = new HashMap<>();
+        for (ProductCategory category : productCategoryRepository.findAllWithAttributes()) {
+            Set<Long> attributeIds = new HashSet<>();
+            for (ProductAttribute attribute : category.getAttributes()) {
+                attributeIds.add(attribute.getId());
+            }
+            CategoryRef ref = new CategoryRef(category.getId(), attributeIds);
+            String name = normalize(category.getName());
+            byName.put(name, byName.containsKey(name) ? null : ref);
+            byDisplayName.put(normalize(category.getDisplayName()), ref);
+        }
+
+        Map<String, AttributeRef> attributes = new HashMap<>();
+        for (ProductAttribute attribute : productAttributeRepository.findAll()) {
+            attributes.put(normalize(attribute.getName()),
+                    new AttributeRef(attribute.getId(), attribute.getName(), attribute.getDataType()));
+        }
+        return new References(articles, byName, byDisplayName, attributes);
+    }
+
+    // ========== ОБРАБОТКА СТРОК ==========
+
+    private record PendingProduct(int rowNumber, String article, String name, String image,
+                                  WarehouseType warehouseType, Long categoryId, Map<Long, String> attributeValues) {
+    }
+
+    /**
+     * Состояние одного импорта: разметка колонок, текущий пакет и счётчики.
+     */
+    private final class CatalogImport {
+
+        private final References references;
+        private final List<PendingProduct> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final List<RowError> errors = new ArrayList<>();
+        private Map<String, Integer> columns;
+        private Map<Integer, AttributeRef> attributeColumns;
+        private int totalRows;
+        private int importedCount;
+        private int errorCount;
+
+        private CatalogImport(References references) {
+            this.references = references;
+        }
+
+        private void acceptRow(int rowNum, List<String> cells) {
+            if (cells.stream().allMatch(String::isBlank)) {
+                return;
+            }
+            if (columns == null) {
+                readHeader(cells);
+                return;
+            }
+            totalRows++;
+            int rowNumber = rowNum + 1;
+            String article = cell(cells, columns.get(COL_ARTICLE));
+            String error = validate(cells, article);
+            if (error != null) {
+                reportError(rowNumber, article, error);
+                return;
+            }
+            chunk.add(toPending(cells, rowNumber, article));
+            references.articles().add(normalize(article));
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        private void readHeader(List<String> cells) {
+            Map<String, Integer> found = new HashMap<>();
+            Map<Integer, AttributeRef> attributes = new LinkedHashMap<>();
+            List<String> unknown = new ArrayList<>();
+            for (int i = 0; i < cells.size(); i++) {
+                String header = normalize(cells.get(i));
+                if (header.isEmpty()) {
+                    continue;
+                }
+                if (REQUIRED_COLUMNS.contains(header) || COL_IMAGE.equals(header)) {
+                    found.put(header, i);
+                } else if (references.attributesByName().containsKey(header)) {
+                    attributes.put(i, references.attributesByName().get(header));
+                } else {
+                    unknown.add(cells.get(i).trim());
+                }
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(column -> !found.containsKey(column)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("В заголовке нет обязательных колонок: " + String.join(", ", missing) + ".");
+            }
+            if (!unknown.isEmpty()) {
+                throw new IllegalArgumentException("Колонки не соответствуют ни одному атрибуту товара: "
+                        + String.join(", ", unknown) + ".");
+            }
+            columns = found;
+            attributeColumns = attributes;
+        }
+
+        private String validate(List<String> cells, String article) {
+            if (article.isEmpty()) {
+                return "Не указан артикул.";
+            }
+            if (article.length() > 255) {
+                return "Артикул длиннее 255 символов.";
+            }
+            if (references.articles().contains(normalize(article))) {
+                return "Товар с таким артикулом уже существует.";
+            }
+            String name = cell(cells, columns.get(COL_NAME));
+            if (name.isEmpty()) {
+                return "Не указано наименование.";
+            }
+            if (name.length() > 255) {
+                return "Наименование длиннее 255 символов.";
+            }
+            Integer imageColumn = columns.get(COL_IMAGE);
+            String image = imageColumn != null ? cell(cells, imageColumn) : "";
+            if (!image.isEmpty() && !ImageService.isStoredImage(image)) {
+                return "Изображение «" + image + "» не найдено: укажите имя файла, уже загруженного на сервер.";
+            }
+            String categoryName = cell(cells, columns.get(COL_CATEGORY));
+            CategoryRef category = resolveCategory(categoryName);
+            if (category == null) {
+                return references.categoriesByName().containsKey(normalize(categoryName))
+                        ? "Категория «" + categoryName + "» неоднозначна, укажите «Название (Глобальная категория)»."
+                        : "Категория «" + categoryName + "» не найдена.";
+            }
+            if (resolveWarehouseType(cell(cells, columns.get(COL_WAREHOUSE_TYPE))) == null) {
+                return "Неизвестный тип склада «" + cell(cells, columns.get(COL_WAREHOUSE_TYPE)) + "».";
+            }
+            for (Map.Entry<Integer, AttributeRef> column : attributeColumns.entrySet()) {
+                String value = cell(cells, column.getKey());
+                if (value.isEmpty()) {
+                    continue;
+                }
+                AttributeRef attribute = column.getValue();
+                if (!category.attributeIds().contains(attribute.id())) {
+                    return "Атрибут «" + attribute.name() + "» не относится к категории «" + categoryName + "».";
+                }
+                if (value.length() > 500) {
+                    return "Значение атрибута «" + attribute.name() + "» длиннее 500 символов.";
+                }
+                if (!isValidValue(attribute.dataType(), value)) {
+                    return "Значение «" + value + "» атрибута «" + attribute.name() + "» не соответствует типу «"
+                            + attribute.dataType().getDisplayName() + "».";
+                }
+            }
+            return null;
+        }
+
+        private PendingProduct toPending(List<String> cells, int rowNumber, String article) {
+            Map<Long, String> values = new LinkedHashMap<>();
+            for (Map.Entry<Integer, AttributeRef> column : attributeColumns.entrySet()) {
+                String value = cell(cells, column.getKey());
+                if (!value.isEmpty()) {
+                    values.put(column.getValue().id(), value);
+                }
+            }
+            Integer imageColumn = columns.get(COL_IMAGE);
+            return new PendingProduct(rowNumber, article, cell(cells, columns.get(COL_NAME)),
+                    imageColumn != null ? cell(cells, imageColumn) : "",
+                    resolveWarehouseType(cell(cells, columns.get(COL_WAREHOUSE_TYPE))),
+                    resolveCategory(cell(cells, columns.get(COL_CATEGORY))).id(), values);
+        }
+
+        private CategoryRef resolveCategory(String categoryName) {
+            String key = normalize(categoryName);
+            CategoryRef ref = references.categoriesByDisplayName().get(key);
+            return ref != null ? ref : references.categoriesByName().get(key);
+        }
+
+        /**
+         * Записывает накопленный пакет. При ошибке БД пакет откатывается целиком, а его строки
+         * попадают в отчёт — остальная часть файла продолжает загружаться.
+         */
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+                importedCount += chunk.size();
+            } catch (DataAccessException e) {
+                log.warn("Не удалось записать пакет каталога из {} товаров: {}", chunk.size(), e.getMessage());
+                for (PendingProduct product : chunk) {
+                    reportError(product.rowNumber(), product.article(), "Ошибка записи в базу данных.");
+                }
+            }
+            chunk.clear();
+        }
+
+        private void reportError(int rowNumber, String article, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(rowNumber, article.isEmpty() ? null : article, message));
+            }
+        }
+    }
+
+    private void insertChunk(List<PendingProduct> products) {
+        List<Object[]> productRows = new ArrayList<>(products.size());
+        List<String> articles = new ArrayList<>(products.size());
+        for (PendingProduct product : products) {
+            productRows.add(new Object[]{product.name(), product.article(), product.image(),
+                    product.warehouseType().name(), product.categoryId()});
+            articles.add(product.article());
+        }
+        jdbc.batchUpdate(INSERT_PRODUCT_SQL, productRows);
+
+        Map<String, Long> ids = new HashMap<>(products.size() * 2);
+        for (ProductRepository.ArticleRef ref : productRepository.findRefsByArticleIn(articles)) {
+            ids.put(normalize(ref.getArticle()), ref.getId());
+        }
+        List<Object[]> valueRows = new ArrayList<>();
+        Map<Long, String[]> indexed = new HashMap<>(products.size() * 2);
+        for (PendingProduct product : products) {
+            Long productId = ids.get(normalize(product.article()));
+            indexed.put(productId, new String[]{product.name(), product.article()});
+            for (Map.Entry<Long, String> value : product.attributeValues().entrySet()) {
+                valueRows.add(new Object[]{value.getValue(), productId, value.getKey()});
+            }
+        }
+        if (!valueRows.isEmpty()) {
+            jdbc.batchUpdate(INSERT_ATTRIBUTE_VALUE_SQL, valueRows);
+        }
+        productReadModelService.markProductsChanged(ids.values());
+        productFacetIndex.markProductsChanged(ids.values());
+        productSearchIndex.productsSaved(indexed);
+        referenceDataCache.invalidateProducts(ids.values());
+    }
+
+    // ========== HELPERS ==========
+
+    private static WarehouseType resolveWarehouseType(String text) {
+        for (WarehouseType type : WarehouseType.values()) {
+            if (type.name().equalsIgnoreCase(text) || type.getDisplayName().equalsIgnoreCase(text)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValidValue(AttributeType type, String value) {
+        try {
+            switch (type) {
+                case NUMBER -> Double.parseDouble(value.replace(",", "."));
+                case DATE -> LocalDate.parse(value);
+                case TEXT -> {
+                }
+            }
+            return true;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String cell(List<String> cells, Integer column) {
+        if (column == null || column >= cells.size() || cells.get(column) == null) {
+            return "";
+        }
+        return cells.get(column).trim();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,680 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.component.StartupTask;
+import com.mai.siarsp.enumeration.AttributeType;
+import com.mai.siarsp.enumeration.WarehouseType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Фасетный отбор товаров по инвертированному индексу в памяти.
+ * <p>
+ * Фасеты — категория, тип склада и каждый атрибут товаров. Для каждого значения фасета хранится
+ * сжатое множество id товаров ({@link IdBitmap}): TEXT — по значению без учёта регистра, NUMBER — по
+ * интервалу шкалы 1–2–5 (…, 10–20, 20–50, 50–100, …), DATE — по месяцу. Шкала фиксирована, поэтому
+ * новое значение никогда не требует пересчёта соседних интервалов.
+ * <p>
+ * Отбор — пересечение фасетов, внутри фасета выбранные значения объединяются. Счётчик значения фасета
+ * считается с учётом отбора по всем остальным фасетам, то есть показывает, сколько товаров останется,
+ * если выбрать это значение. Всё вычисляется операциями над множествами без обращения к БД.
+ * <p>
+ * Индекс обновляется после коммита в отдельном потоке: изменённые товары переиндексируются точечно,
+ * изменённый атрибут — только свой фасет, изменённая категория — её товары. Полная сборка выполняется
+ * фоновой стартовой задачей, до её окончания {@link #query} возвращает ready = false.
+ * <p>
+ * Отметки об изменениях видит только этот узел, поэтому индекс также пересобирается по расписанию
+ * ({@code siarsp.facet-index.refresh-ms}, по умолчанию раз в 5 минут): так в него попадают товары,
+ * созданные, изменённые и удалённые на других узлах кластера. Чтобы до пересборки такие товары не
+ * пропадали из списка, запрос может ограничиваться id товаров, которые показывает страница: отбор и
+ * счётчики считаются только по ним, а id, которых ещё нет в индексе, возвращаются отдельно и
+ * переиндексируются точечно.
+ */
+@Service
+@Slf4j
+public class ProductFacetIndex {
+
+    public static final String CATEGORY = "category";
+    public static final String WAREHOUSE_TYPE = "warehouseType";
+    private static final String ATTRIBUTE_PREFIX = "attr";
+
+    private static final int REFRESH_CHUNK = 1000;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final int MAX_VALUES_PER_FACET = 30;
+    private static final int MAX_LABEL_LENGTH = 100;
+    public static final int MAX_IDS = 100_000;
+
+    /** Значение фасета с числом товаров при текущем отборе. */
+    public record FacetValueCount(String key, String label, int count, boolean selected) {}
+
+    /** Фасет с значениями, у которых при текущем отборе есть товары (и выбранными). */
+    public record FacetSummary(String key, String title, String unit, List<FacetValueCount> values) {}
+
+    /**
+     * Результат отбора.
+     *
+     * @param total        сколько товаров удовлетворяет отбору
+     * @param productIds   первые из них по возрастанию id
+     * @param unindexedIds переданные в запросе id, которых ещё нет в индексе: отбор к ним не применялся
+     */
+    public record FacetQueryResult(boolean ready, int total, List<Long> productIds, List<Long> unindexedIds,
+                                   List<FacetSummary> facets) {}
+
+    private record AttributeInfo(Long id, String name, String unit, AttributeType type) {}
+
+    /** Ключ значения фасета, подпись и порядок вывода для упорядоченных шкал. */
+    private record ValueKey(String key, String label, double order) {}
+
+    private static final class FacetValue {
+        final String key;
+        final String label;
+        final double order;
+        IdBitmap ids = new IdBitmap();
+
+        FacetValue(ValueKey valueKey) {
+            this.key = valueKey.key();
+            this.label = valueKey.label();
+            this.order = valueKey.order();
+        }
+    }
+
+    private static final class Facet {
+        final Map<String, FacetValue> values = new HashMap<>();
+
+        void add(ValueKey valueKey, int productId) {
+            values.computeIfAbsent(valueKey.key(), key -> new FacetValue(valueKey)).ids.add(productId);
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ExecutorService executor;
+
+    private final Set<Long> pendingProducts = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingCategories = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingAttributes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    /** Подряд неудачных проходов drain; меняется только в потоке drain. */
+    private int drainFailures;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    /** Запросы читают под read-блокировкой, поток обновления меняет множества под write-блокировкой. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IdBitmap all = new IdBitmap();
+    private Map<String, Facet> facets = new HashMap<>();
+    private Map<Long, AttributeInfo> attributes = Map.of();
+    private Map<Long, String> categoryNames = Map.of();
+    private volatile boolean ready;
+
+    public ProductFacetIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-facet-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public StartupTask productFacetIndexBuildTask() {
+        return new StartupTask("productFacetIndexBuild", 50, Duration.ofMinutes(30), this::rebuildAllAndWait);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ========== ОТМЕТКИ ОБ ИЗМЕНЕНИЯХ ==========
+
+    public void markProductChanged(Long productId) {
+        if (productId != null) {
+            markProductsChanged(List.of(productId));
+        }
+    }
+
+    /** Переиндексировать товары после коммита текущей транзакции (удалённые убираются из индекса). */
+    public void markProductsChanged(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        afterCommit(() -> pendingProducts.addAll(ids));
+    }
+
+    /** Название категории и её товары — после изменения категории или набора её атрибутов. */
+    public void markCategoryChanged(Long categoryId) {
+        if (categoryId != null) {
+            afterCommit(() -> pendingCategories.add(categoryId));
+        }
+    }
+
+    /** Фасет атрибута строится заново — после изменения, удаления атрибута или его значений. */
+    public void markAttributeChanged(Long attributeId) {
+        if (attributeId != null) {
+            afterCommit(() -> pendingAttributes.add(attributeId));
+        }
+    }
+
+    private void afterCommit(Runnable mark) {
+        Runnable action = () -> {
+            mark.run();
+            scheduleDrain();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Обрабатывает отметки, пока они есть. При ошибке необработанные id возвращаются в очереди отметок,
+     * и проход повторяется с экспоненциальной задержкой (до {@link #MAX_RETRY_DELAY}), а не ждёт
+     * пересборки по расписанию.
+     */
+    private void drain() {
+        long retryDelayMs = 0;
+        List<Long> attributes = List.of();
+        List<Long> categories = List.of();
+        List<Long> products = List.of();
+        int attributesDone = 0;
+        boolean categoriesDone = false;
+        int productsDone = 0;
+        try {
+            while (!pendingAttributes.isEmpty() || !pendingCategories.isEmpty() || !pendingProducts.isEmpty()) {
+                attributes = takeAll(pendingAttributes);
+                categories = List.of();
+                products = List.of();
+                attributesDone = 0;
+                categoriesDone = false;
+                productsDone = 0;
+                if (!attributes.isEmpty()) {
+                    Map<Long, AttributeInfo> loaded = loadAttributes();
+                    for (Long attributeId : attributes) {
+                        rebuildAttribute(attributeId, loaded);
+                        attributesDone++;
+                    }
+                }
+                categories = takeAll(pendingCategories);
+                if (!categories.isEmpty()) {
+                    Map<Long, String> names = loadCategoryNames();
+                    withWriteLock(() -> categoryNames = names);
+                    String idList = categories.stream().map(String::valueOf).collect(Collectors.joining(","));
+                    pendingProducts.addAll(jdbc.queryForList(
+                            "SELECT id FROM t_product WHERE category_id IN (" + idList + ")", Long.class));
+                }
+                categoriesDone = true;
+                products = takeAll(pendingProducts);
+                while (productsDone < products.size()) {
+                    int to = Math.min(productsDone + REFRESH_CHUNK, products.size());
+                    refreshProducts(products.subList(productsDone, to));
+                    productsDone = to;
+                }
+            }
+            drainFailures = 0;
+        } catch (RuntimeException e) {
+            pendingAttributes.addAll(attributes.subList(attributesDone, attributes.size()));
+            if (!categoriesDone) {
+                pendingCategories.addAll(categories);
+            }
+            pendingProducts.addAll(products.subList(productsDone, products.size()));
+            retryDelayMs = Math.min(MAX_RETRY_DELAY.toMillis(), RETRY_DELAY.toMillis() << Math.min(drainFailures, 10));
+            drainFailures++;
+            log.error("Ошибка обновления фасетного индекса товаров, повтор через {} мс: {}",
+                    retryDelayMs, e.getMessage(), e);
+        } finally {
+            if (retryDelayMs > 0) {
+                retryDrainLater(retryDelayMs);
+            } else {
+                drainScheduled.set(false);
+                if (!pendingAttributes.isEmpty() || !pendingCategories.isEmpty() || !pendingProducts.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+    }
+
+    /** Повторный проход после задержки; до него drainScheduled остаётся установленным. */
+    private void retryDrainLater(long delayMs) {
+        CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+            }
+        });
+    }
+
+    private static List<Long> takeAll(Set<Long> pending) {
+        List<Long> taken = new ArrayList<>(pending);
+        taken.forEach(pending::remove);
+        return taken;
+    }
+
+    // ========== ПОЛНАЯ СБОРКА ==========
+
+    private void rebuildAllAndWait() {
+        try {
+            executor.submit(this::rebuildAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось собрать фасетный индекс товаров", e.getCause());
+        }
+    }
+
+    /** Плановая пересборка: подхватывает изменения товаров, сделанные на других узлах. */
+    @Scheduled(fixedDelayString = "${siarsp.facet-index.refresh-ms:300000}",
+            initialDelayString = "${siarsp.facet-index.refresh-ms:300000}")
+    public void refresh() {
+        if (ready && rebuildScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    rebuildAll();
+                } catch (RuntimeException e) {
+                    log.error("Ошибка плановой пересборки фасетного индекса товаров: {}", e.getMessage(), e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void rebuildAll() {
+        long start = System.nanoTime();
+        // отметки, накопленные до сборки, ею же и покрываются
+        pendingProducts.clear();
+        pendingCategories.clear();
+        pendingAttributes.clear();
+
+        Map<Long, AttributeInfo> loadedAttributes = loadAttributes();
+        Map<Long, String> loadedCategoryNames = loadCategoryNames();
+        IdBitmap builtAll = new IdBitmap();
+        Map<String, Facet> built = new HashMap<>();
+        stream("SELECT id, category_id, warehouse_type FROM t_product", rs -> {
+            int productId = Math.toIntExact(rs.getLong(1));
+            builtAll.add(productId);
+            addProductFacets(built, productId, rs.getLong(2), rs.getString(3));
+        });
+        stream("SELECT product_id, attribute_id, value FROM t_product_attribute_value", rs ->
+                addAttributeValue(built, loadedAttributes.get(rs.getLong(2)),
+                        Math.toIntExact(rs.getLong(1)), rs.getString(3)));
+
+        withWriteLock(() -> {
+            all = builtAll;
+            facets = built;
+            attributes = loadedAttributes;
+            categoryNames = loadedCategoryNames;
+        });
+        ready = true;
+        log.info("Фасетный индекс товаров собран: товаров {}, фасетов {}, {} мс", builtAll.cardinality(),
+                built.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbc.query(connection -> {
+            var statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, handler);
+    }
+
+    private Map<Long, AttributeInfo> loadAttributes() {
+        Map<Long, AttributeInfo> loaded = new HashMap<>();
+        jdbc.query("SELECT id, name, unit, data_type FROM t_product_attribute", (RowCallbackHandler) rs -> {
+            long id = rs.getLong(1);
+            loaded.put(id, new AttributeInfo(id, rs.getString(2), rs.getString(3),
+                    AttributeType.valueOf(rs.getString(4))));
+        });
+        return Map.copyOf(loaded);
+    }
+
+    private Map<Long, String> loadCategoryNames() {
+        Map<Long, String> loaded = new HashMap<>();
+        jdbc.query("SELECT id, name FROM t_product_category",
+                (RowCallbackHandler) rs -> loaded.put(rs.getLong(1), rs.getString(2)));
+        return Map.copyOf(loaded);
+    }
+
+    // ========== ИНКРЕМЕНТАЛЬНОЕ ОБНОВЛЕНИЕ ==========
+
+    /**
+     * Убирает товары из всех множеств и добавляет заново по текущим данным; удалённых товаров в БД нет,
+     * и они просто не добавляются.
+     */
+    private void refreshProducts(List<Long> productIds) {
+        String idList = productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        List<Object[]> products = new ArrayList<>();
+        jdbc.query("SELECT id, category_id, warehouse_type FROM t_product WHERE id IN (" + idList + ")",
+                (RowCallbackHandler) rs -> products.add(new Object[]{
+                        Math.toIntExact(rs.getLong(1)), rs.getLong(2), rs.getString(3)}));
+        List<Object[]> values = new ArrayList<>();
+        jdbc.query("SELECT product_id, attribute_id, value FROM t_product_attribute_value " +
+                        "WHERE product_id IN (" + idList + ")",
+                (RowCallbackHandler) rs -> values.add(new Object[]{
+                        Math.toIntExact(rs.getLong(1)), rs.getLong(2), rs.getString(3)}));
+
+        IdBitmap changed = new IdBitmap();
+        productIds.forEach(id -> changed.add(Math.toIntExact(id)));
+        withWriteLock(() -> {
+            if (all.andCardinality(changed) > 0) {
+                all = all.andNot(changed);
+                for (Facet facet : facets.values()) {
+                    facet.values.values().removeIf(value -> {
+                        if (value.ids.andCardinality(changed) > 0) {
+                            value.ids = value.ids.andNot(changed);
+                        }
+                        return value.ids.isEmpty();
+                    });
+                }
+            }
+            for (Object[] product : products) {
+                all.add((Integer) product[0]);
+                addProductFacets(facets, (Integer) product[0], (Long) product[1], (String) product[2]);
+            }
+            for (Object[] value : values) {
+                addAttributeValue(facets, attributes.get((Long) value[1]), (Integer) value[0], (String) value[2]);
+            }
+        });
+    }
+
+    /** Строит фасет атрибута заново; удалённый атрибут убирается из индекса. */
+    private void rebuildAttribute(Long attributeId, Map<Long, AttributeInfo> loadedAttributes) {
+        AttributeInfo attribute = loadedAttributes.get(attributeId);
+        Facet facet = new Facet();
+        if (attribute != null) {
+            Map<String, Facet> target = new HashMap<>();
+            target.put(attributeKey(attributeId), facet);
+            jdbc.query("SELECT product_id, value FROM t_product_attribute_value WHERE attribute_id = ?",
+                    (RowCallbackHandler) rs -> addAttributeValue(target, attribute,
+                            Math.toIntExact(rs.getLong(1)), rs.getString(2)),
+                    attributeId);
+        }
+        withWriteLock(() -> {
+            attributes = loadedAttributes;
+            if (attribute != null) {
+                facets.put(attributeKey(attributeId), facet);
+            } else {
+                facets.remove(attributeKey(attributeId));
+            }
+        });
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== ЗНАЧЕНИЯ ФАСЕТОВ ==========
+
+    private static void addProductFacets(Map<String, Facet> target, int productId, long categoryId,
+                                         String warehouseType) {
+        target.computeIfAbsent(CATEGORY, key -> new Facet())
+                .add(new ValueKey(String.valueOf(categoryId), null, 0), productId);
+        if (warehouseType != null) {
+            WarehouseType type = WarehouseType.valueOf(warehouseType);
+            target.computeIfAbsent(WAREHOUSE_TYPE, key -> new Facet())
+                    .add(new ValueKey(type.name(), type.getDisplayName(), type.ordinal()), productId);
+        }
+    }
+
+    private static void addAttributeValue(Map<String, Facet> target, AttributeInfo attribute, int productId,
+                                          String value) {
+        if (attribute == null) {
+            return;
+        }
+        ValueKey valueKey = toValueKey(attribute.type(), value);
+        if (valueKey != null) {
+            target.computeIfAbsent(attributeKey(attribute.id()), key -> new Facet()).add(valueKey, productId);
+        }
+    }
+
+    private static String attributeKey(Long attributeId) {
+        return ATTRIBUTE_PREFIX + attributeId;
+    }
+
+    /** Ключ значения атрибута по тем же правилам приведения, что и в модели характеристик; null — не индексируется. */
+    private static ValueKey toValueKey(AttributeType type, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return switch (type) {
+                case NUMBER -> numberBucket(Double.parseDouble(trimmed.replace(",", ".")));
+                case DATE -> {
+                    YearMonth month = YearMonth.from(LocalDate.parse(trimmed));
+                    yield new ValueKey(month.toString(),
+                            String.format("%02d.%d", month.getMonthValue(), month.getYear()),
+                            month.getYear() * 12 + month.getMonthValue());
+                }
+                case TEXT -> new ValueKey(trimmed.toLowerCase(Locale.ROOT),
+                        trimmed.length() > MAX_LABEL_LENGTH ? trimmed.substring(0, MAX_LABEL_LENGTH) : trimmed, 0);
+            };
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Интервал [нижняя; верхняя) шкалы 1–2–5, в который попадает число. */
+    private static ValueKey numberBucket(double number) {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return null;
+        }
+        if (number <= 0) {
+            return new ValueKey("0", "≤ 0", -Double.MAX_VALUE);
+        }
+        double magnitude = Math.pow(10, Math.floor(Math.log10(number)));
+        double mantissa = number / magnitude;
+        int step = mantissa < 2 ? 1 : mantissa < 5 ? 2 : 5;
+        int next = step == 1 ? 2 : step == 2 ? 5 : 10;
+        String lower = formatBound(step * magnitude);
+        return new ValueKey(lower, lower + " – " + formatBound(next * magnitude), step * magnitude);
+    }
+
+    private static String formatBound(double bound) {
+        return new BigDecimal(bound).round(new MathContext(6)).stripTrailingZeros().toPlainString();
+    }
+
+    // ========== ЗАПРОСЫ ==========
+
+    /**
+     * Товары, удовлетворяющие отбору, и счётчики значений всех фасетов.
+     *
+     * @param selected ключ фасета ({@link #CATEGORY}, {@link #WAREHOUSE_TYPE} или attr&lt;id атрибута&gt;)
+     *                 → ключи выбранных значений
+     * @param limit    сколько id товаров вернуть (не более {@value #MAX_IDS})
+     */
+    public FacetQueryResult query(Map<String, List<String>> selected, int limit) {
+        return query(selected, limit, null);
+    }
+
+    /**
+     * То же, но только среди товаров candidates (например, строк, которые показывает страница).
+     * Id, которых нет в индексе, возвращаются в unindexedIds и ставятся на переиндексацию.
+     *
+     * @param candidates id товаров (не более {@value #MAX_IDS}); null — все товары индекса
+     */
+    public FacetQueryResult query(Map<String, List<String>> selected, int limit, Collection<Long> candidates) {
+        if (!ready) {
+            return new FacetQueryResult(false, 0, List.of(), List.of(), List.of());
+        }
+        List<Long> unindexed = new ArrayList<>();
+        FacetQueryResult result;
+        lock.readLock().lock();
+        try {
+            IdBitmap universe = all;
+            if (candidates != null) {
+                IdBitmap requested = new IdBitmap();
+                candidates.stream().limit(MAX_IDS)
+                        .filter(id -> id != null && id > 0 && id <= Integer.MAX_VALUE)
+                        .forEach(id -> requested.add(id.intValue()));
+                universe = all.and(requested);
+                requested.andNot(all).toList(MAX_IDS).forEach(unindexed::add);
+            }
+            result = query(selected, limit, universe, unindexed);
+        } finally {
+            lock.readLock().unlock();
+        }
+        markProductsChanged(unindexed);
+        return result;
+    }
+
+    /** Отбор среди товаров universe; вызывается под read-блокировкой. */
+    private FacetQueryResult query(Map<String, List<String>> selected, int limit, IdBitmap universe,
+                                   List<Long> unindexed) {
+        Map<String, IdBitmap> unions = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : selected.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            Facet facet = facets.get(entry.getKey());
+            IdBitmap union = new IdBitmap();
+            for (String key : entry.getValue()) {
+                FacetValue value = facet != null ? facet.values.get(key) : null;
+                if (value != null) {
+                    union = union.or(value.ids);
+                }
+            }
+            unions.put(entry.getKey(), union);
+        }
+        IdBitmap result = intersectExcept(unions, null, universe);
+
+        List<FacetSummary> summaries = new ArrayList<>();
+        for (String facetKey : facetOrder()) {
+            IdBitmap base = unions.containsKey(facetKey) ? intersectExcept(unions, facetKey, universe) : result;
+            FacetSummary summary = summarize(facetKey, facets.get(facetKey), base,
+                    selected.getOrDefault(facetKey, List.of()));
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return new FacetQueryResult(true, result.cardinality(),
+                result.toList(Math.min(Math.max(limit, 0), MAX_IDS)), unindexed, summaries);
+    }
+
+    /** Пересечение объединений всех фасетов, кроме excluded, с universe; без отбора — сам universe. */
+    private IdBitmap intersectExcept(Map<String, IdBitmap> unions, String excluded, IdBitmap universe) {
+        IdBitmap result = null;
+        for (Map.Entry<String, IdBitmap> entry : unions.entrySet()) {
+            if (!entry.getKey().equals(excluded)) {
+                result = result == null ? entry.getValue() : result.and(entry.getValue());
+            }
+        }
+        if (result == null) {
+            return universe;
+        }
+        return universe == all ? result : result.and(universe);
+    }
+
+    /** Категория, тип склада, затем атрибуты по названию. */
+    private List<String> facetOrder() {
+        List<String> order = new ArrayList<>(List.of(CATEGORY, WAREHOUSE_TYPE));
+        attributes.values().stream()
+                .sorted(Comparator.comparing(AttributeInfo::name))
+                .map(attribute -> attributeKey(attribute.id()))
+                .filter(facets::containsKey)
+                .forEach(order::add);
+        return order;
+    }
+
+    private FacetSummary summarize(String facetKey, Facet facet, IdBitmap base, List<String> selectedKeys) {
+        if (facet == null) {
+            return null;
+        }
+        AttributeInfo attribute = facetKey.startsWith(ATTRIBUTE_PREFIX)
+                ? attributes.get(Long.valueOf(facetKey.substring(ATTRIBUTE_PREFIX.length()))) : null;
+        boolean everything = base == all;
+        List<FacetValue> ordered = new ArrayList<>();
+        Map<FacetValue, Integer> counts = new HashMap<>();
+        for (FacetValue value : facet.values.values()) {
+            int count = everything ? value.ids.cardinality() : value.ids.andCardinality(base);
+            boolean isSelected = selectedKeys.contains(value.key);
+            if (count > 0 || isSelected) {
+                ordered.add(value);
+                counts.put(value, count);
+            }
+        }
+        if (ordered.isEmpty()) {
+            return null;
+        }
+        boolean scale = attribute != null && attribute.type() != AttributeType.TEXT
+                || WAREHOUSE_TYPE.equals(facetKey);
+        ordered.sort(scale
+                ? Comparator.comparingDouble((FacetValue value) -> value.order)
+                : Comparator.comparing((FacetValue value) -> counts.get(value)).reversed()
+                .thenComparing(value -> label(facetKey, value)));
+
+        List<FacetValueCount> values = new ArrayList<>();
+        for (FacetValue value : ordered) {
+            boolean isSelected = selectedKeys.contains(value.key);
+            if (values.size() < MAX_VALUES_PER_FACET || isSelected) {
+                values.add(new FacetValueCount(value.key, label(facetKey, value), counts.get(value), isSelected));
+            }
+        }
+        String title = switch (facetKey) {
+            case CATEGORY -> "Категория";
+            case WAREHOUSE_TYPE -> "Тип склада";
+            default -> attribute != null ? attribute.name() : facetKey;
+        };
+        return new FacetSummary(facetKey, title, attribute != null ? attribute.unit() : null, values);
+    }
+
+    private String label(String facetKey, FacetValue value) {
+        if (CATEGORY.equals(facetKey)) {
+            return categoryNames.getOrDefault(Long.valueOf(value.key), value.key);
+        }
+        return value.label;
+    }
+}
@@ -10,15 +10,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Агрегаты цен по товару для карточки товара:
- * — последняя/средняя закупочная цена (Supply),
- * — последняя/средняя продажная цена (OrderedProduct),
+ * — последняя/средняя закупочная цена (дневные агрегаты поступлений, см. DailyFactService),
+ * — последняя/средняя продажная цена (дневные агрегаты продаж),
  * — строки таблицы «Заказы товара» (RequestedProduct).
  */
 @Service
@@ -26,11 +25,14 @@ public class ProductPriceAggregateService {
 
     private final SupplyRepository supplyRepository;
     private final OrderedProductRepository orderedProductRepository;
+    private final DailyFactService dailyFactService;
 
     public ProductPriceAggregateService(SupplyRepository supplyRepository,
-                                        OrderedProductRepository orderedProductRepository) {
+                                        OrderedProductRepository orderedProductRepository,
+                                        DailyFactService dailyFactService) {
         this.supplyRepository = supplyRepository;
         this.orderedProductRepository = orderedProductRepository;
+        this.dailyFactService = dailyFactService;
     }
 
     // ========== DTO ==========
@@ -50,37 +52,18 @@ public class ProductPriceAggregateService {
 
     @Transactional(readOnly = true)
     public PurchasePriceSummary getPurchaseSummary(Long productId) {
-        List<Supply> supplies = supplyRepository.findByProductIdOrderByDelivery_DeliveryDateDesc(productId);
-        if (supplies.isEmpty()) {
-            return new PurchasePriceSummary(null, null, null, null, 0);
-        }
-        Supply last = supplies.get(0);
-        BigDecimal lastPrice = last.getPurchasePrice();
-        LocalDate lastDate = last.getDelivery() != null ? last.getDelivery().getDeliveryDate() : null;
-        String supplier = (last.getDelivery() != null && last.getDelivery().getSupplier() != null)
-                ? last.getDelivery().getSupplier().getName() : null;
-
-        BigDecimal avg = averagePrice(supplies.stream().map(Supply::getPurchasePrice).toList());
-        return new PurchasePriceSummary(lastPrice, lastDate, supplier, avg, supplies.size());
+        DailyFactService.PriceSummary summary = dailyFactService.getPurchaseSummary(productId);
+        return new PurchasePriceSummary(summary.lastPrice(), summary.lastDate(), summary.lastCounterparty(),
+                summary.avgPrice(), summary.sampleCount());
     }
 
     // ========== ПРОДАЖНАЯ ЦЕНА (только доставленные заказы) ==========
 
     @Transactional(readOnly = true)
     public SalePriceSummary getSaleSummary(Long productId) {
-        List<OrderedProduct> sales = getDeliveredOrders(productId);
-        if (sales.isEmpty()) {
-            return new SalePriceSummary(null, null, null, null, 0);
-        }
-        OrderedProduct last = sales.get(0);
-        BigDecimal lastPrice = last.getPrice();
-        LocalDate lastDate = (last.getClientOrder() != null && last.getClientOrder().getOrderDate() != null)
-                ? last.getClientOrder().getOrderDate().toLocalDate() : null;
-        String client = (last.getClientOrder() != null && last.getClientOrder().getClient() != null)
-                ? last.getClientOrder().getClient().getDisplayName() : null;
-
-        BigDecimal avg = averagePrice(sales.stream().map(OrderedProduct::getPrice).toList());
-        return new SalePriceSummary(lastPrice, lastDate, client, avg, sales.size());
+        DailyFactService.PriceSummary summary = dailyFactService.getSaleSummary(productId);
+        return new SalePriceSummary(summary.lastPrice(), summary.lastDate(), summary.lastCounterparty(),
+                summary.avgPrice(), summary.sampleCount());
     }
 
     /**
@@ -122,18 +105,4 @@ public class ProductPriceAggregateService {
         }
         return rows;
     }
-
-    // ========== ВСПОМОГАТЕЛЬНОЕ ==========
-
-    private BigDecimal averagePrice(List<BigDecimal> prices) {
-        BigDecimal sum = BigDecimal.ZERO;
-        int count = 0;
-        for (BigDecimal p : prices) {
-            if (p == null) continue;
-            sum = sum.add(p);
-            count++;
-        }
-        if (count == 0) return null;
-        return sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
-    }
 }
@@ -0,0 +1,764 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.component.StartupTask;
+import com.mai.siarsp.enumeration.AttributeType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Материализованная модель характеристик товаров: по одной широкой таблице на категорию товара.
+ * <p>
+ * Таблица {@code t_product_attrs_<id категории>} содержит строку на каждый товар категории и по столбцу
+ * {@code a_<id атрибута>} на каждый её атрибут с типом по {@link AttributeType}: NUMBER — DOUBLE,
+ * DATE — DATE, TEXT — TEXT. Значения приводятся к типу по тем же правилам, что и
+ * {@code ProductAttributeValue.getValue(Class)}; некорректное значение хранится как NULL.
+ * Индексы строятся только по столбцам NUMBER и DATE (не больше {@value #MAX_INDEXED_COLUMNS}), поэтому отбор
+ * по диапазону выполняется в SQL без приведения строк; TEXT хранится вне строки и не индексируется —
+ * так таблица укладывается в пределы MySQL на число индексов и размер строки при любом числе атрибутов.
+ * <p>
+ * Модель обновляется после коммита транзакций, изменивших товары и атрибуты:
+ * <ul>
+ *     <li>{@link #markProductsChanged} — строки перечисленных товаров пересчитываются из EAV;</li>
+ *     <li>{@link #markCategoriesChanged} — при изменении набора или типов атрибутов таблица категории
+ *     строится заново во временной таблице и подменяется атомарным RENAME.</li>
+ * </ul>
+ * DDL в MySQL неявно завершает транзакцию, поэтому вся работа выполняется в отдельном потоке после коммита,
+ * последовательно; изменения, пришедшие за время пересчёта, объединяются в один проход.
+ * Полная сборка выполняется фоновой стартовой задачей на одном узле кластера (аренда {@value #JOB_REBUILD});
+ * остальные узлы дожидаются её и перечитывают состав таблиц из схемы БД. До этого {@link #isReady()}
+ * возвращает false, и потребители используют прежнее чтение атрибутов через сущности. DDL таблицы
+ * категории выполняется под именованной блокировкой, а состав таблиц периодически перечитывается —
+ * так узел видит таблицы, перестроенные другим узлом.
+ */
+@Service
+@Slf4j
+public class ProductReadModelService {
+
+    private static final String TABLE_PREFIX = "t_product_attrs_";
+    private static final int TEXT_LENGTH = 500;
+    /** Индексов в таблице MySQL не больше 64, один занят первичным ключом. */
+    private static final int MAX_INDEXED_COLUMNS = 60;
+    private static final String JOB_REBUILD = "productReadModelRebuild";
+    private static final Duration JOB_LEASE_TTL = Duration.ofMinutes(2);
+    /** Сборка на другом узле не старше этого срока считается актуальной при старте. */
+    private static final Duration REBUILD_FRESHNESS = Duration.ofMinutes(30);
+    private static final Duration CATEGORY_LOCK_WAIT = Duration.ofMinutes(10);
+    private static final int BATCH_SIZE = 1000;
+    private static final int REFRESH_CHUNK = 500;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final Duration REBUILD_BUSY_RETRY_DELAY = Duration.ofSeconds(5);
+
+    /** Названия атрибутов габаритов упаковки (см), как в {@code Product.getPackageLength()} и соседних. */
+    public static final String PACKAGE_LENGTH = "Длина упаковки";
+    public static final String PACKAGE_WIDTH = "Ширина упаковки";
+    public static final String PACKAGE_HEIGHT = "Высота упаковки";
+    public static final List<String> PACKAGE_DIMENSIONS = List.of(PACKAGE_LENGTH, PACKAGE_WIDTH, PACKAGE_HEIGHT);
+
+    /** Столбец таблицы категории. */
+    public record Column(Long attributeId, String name, AttributeType type, String column) {}
+
+    /** Построенная таблица категории: столбцы по id атрибута. */
+    public record CategoryTable(Long categoryId, String table, Map<Long, Column> columns) {
+
+        Column byName(String name) {
+            for (Column column : columns.values()) {
+                if (column.name().equals(name)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Условие отбора по атрибуту: для NUMBER и DATE — границы диапазона включительно,
+     * для TEXT — значение без учёта регистра. Пустые части условия не учитываются.
+     */
+    public record AttributeFilter(Long attributeId, String value, String min, String max) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final JobCoordinationService jobCoordinationService;
+    private final ExecutorService executor;
+
+    private final Set<Long> pendingProducts = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingCategories = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    /** Подряд неудачных проходов drain; меняется только в потоке модели. */
+    private int drainFailures;
+
+    private volatile Map<Long, CategoryTable> tables = Map.of();
+    private volatile boolean ready;
+
+    public ProductReadModelService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                                   JobCoordinationService jobCoordinationService) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobCoordinationService = jobCoordinationService;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-read-model");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public StartupTask productReadModelRebuildTask() {
+        return new StartupTask(JOB_REBUILD, 30, Duration.ofMinutes(30), this::rebuildAllAndWait);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ========== ОТМЕТКИ ОБ ИЗМЕНЕНИЯХ ==========
+
+    public void markProductChanged(Long productId) {
+        if (productId != null) {
+            markProductsChanged(List.of(productId));
+        }
+    }
+
+    /** Пересчитать строки товаров после коммита текущей транзакции (удалённые товары убираются из модели). */
+    public void markProductsChanged(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        afterCommit(() -> {
+            pendingProducts.addAll(ids);
+            scheduleDrain();
+        });
+    }
+
+    public void markCategoryChanged(Long categoryId) {
+        if (categoryId != null) {
+            markCategoriesChanged(List.of(categoryId));
+        }
+    }
+
+    /** Перестроить таблицы категорий после коммита; таблица удалённой категории удаляется. */
+    public void markCategoriesChanged(Collection<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(categoryIds);
+        afterCommit(() -> {
+            pendingCategories.addAll(ids);
+            scheduleDrain();
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Обрабатывает накопленные отметки. При ошибке необработанные категории и товары возвращаются в очередь
+     * и проход повторяется с экспоненциальной задержкой (до {@link #MAX_RETRY_DELAY}); новые отметки за это
+     * время копятся и войдут в повтор.
+     */
+    private void drain() {
+        long retryDelayMs = 0;
+        List<Long> categories = List.of();
+        List<Long> products = List.of();
+        int categoriesDone = 0;
+        int productsDone = 0;
+        try {
+            drainLoop:
+            while (!pendingCategories.isEmpty() || !pendingProducts.isEmpty()) {
+                categories = takeAll(pendingCategories);
+                products = List.of();
+                categoriesDone = 0;
+                productsDone = 0;
+                for (Long categoryId : categories) {
+                    rebuildCategory(categoryId);
+                    categoriesDone++;
+                }
+                products = takeAll(pendingProducts);
+                while (productsDone < products.size()) {
+                    int to = Math.min(productsDone + REFRESH_CHUNK, products.size());
+                    if (!refreshProducts(products.subList(productsDone, to))) {
+                        // другой узел перестраивает таблицу категории — строки пересчитаем после RENAME
+                        pendingProducts.addAll(products.subList(productsDone, products.size()));
+                        productsDone = products.size();
+                        retryDelayMs = REBUILD_BUSY_RETRY_DELAY.toMillis();
+                        break drainLoop;
+                    }
+                    productsDone = to;
+                }
+            }
+            drainFailures = 0;
+        } catch (RuntimeException e) {
+            pendingCategories.addAll(categories.subList(categoriesDone, categories.size()));
+            pendingProducts.addAll(products.subList(productsDone, products.size()));
+            retryDelayMs = Math.min(MAX_RETRY_DELAY.toMillis(), RETRY_DELAY.toMillis() << Math.min(drainFailures, 10));
+            drainFailures++;
+            log.error("Ошибка обновления модели характеристик товаров, повтор через {} мс: {}",
+                    retryDelayMs, e.getMessage(), e);
+        } finally {
+            if (retryDelayMs > 0) {
+                retryDrainLater(retryDelayMs);
+            } else {
+                drainScheduled.set(false);
+                if (!pendingCategories.isEmpty() || !pendingProducts.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+    }
+
+    /** Повторный проход после задержки; до него drainScheduled остаётся установленным. */
+    private void retryDrainLater(long delayMs) {
+        CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+            }
+        });
+    }
+
+    private static List<Long> takeAll(Set<Long> pending) {
+        List<Long> taken = new ArrayList<>(pending);
+        taken.forEach(pending::remove);
+        return taken;
+    }
+
+    // ========== ПОЛНАЯ СБОРКА ==========
+
+    /**
+     * Собирает модель на одном узле: если свежая сборка уже есть или её выполняет другой узел,
+     * дожидается её и только перечитывает состав таблиц.
+     */
+    private void rebuildAllAndWait() {
+        LocalDateTime since = LocalDateTime.now().minus(REBUILD_FRESHNESS);
+        try {
+            while (true) {
+                if (jobCoordinationService.hasSucceededSince(JOB_REBUILD, since)) {
+                    runOnExecutor(this::reloadTables);
+                    log.info("Модель характеристик товаров собрана другим узлом, состав таблиц перечитан");
+                    break;
+                }
+                if (jobCoordinationService.runExclusively(JOB_REBUILD, JOB_LEASE_TTL, Duration.ZERO,
+                        () -> runOnExecutor(this::rebuildAll))) {
+                    break;
+                }
+                Thread.sleep(5000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!ready) {
+            throw new IllegalStateException("Не удалось собрать модель характеристик товаров");
+        }
+    }
+
+    private void runOnExecutor(Runnable task) {
+        try {
+            executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Сборка модели характеристик товаров прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось собрать модель характеристик товаров", e.getCause());
+        }
+    }
+
+    /** Периодически перечитывает состав таблиц: категории могли перестроить другие узлы. */
+    @Scheduled(fixedDelayString = "${siarsp.read-model.metadata-refresh-ms:60000}")
+    public void scheduleMetadataReload() {
+        if (ready) {
+            executor.execute(this::reloadTables);
+        }
+    }
+
+    /**
+     * Состав таблиц категорий по схеме БД: столбцы {@code a_<id>} с типом по типу столбца,
+     * названия атрибутов — из справочника. Временные {@code _new}/{@code _old} пропускаются.
+     */
+    private void reloadTables() {
+        try {
+            Map<Long, String> names = new HashMap<>();
+            jdbc.query("SELECT id, name FROM t_product_attribute",
+                    (RowCallbackHandler) rs -> names.put(rs.getLong(1), rs.getString(2)));
+            Map<Long, Map<Long, Column>> columnsByCategory = new HashMap<>();
+            jdbc.query("SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME LIKE 't\\_product\\_attrs\\_%' " +
+                            "ORDER BY TABLE_NAME, ORDINAL_POSITION",
+                    (RowCallbackHandler) rs -> {
+                        Long categoryId = parseId(rs.getString(1).substring(TABLE_PREFIX.length()));
+                        if (categoryId == null) {
+                            return;
+                        }
+                        Map<Long, Column> columns = columnsByCategory.computeIfAbsent(categoryId,
+                                key -> new LinkedHashMap<>());
+                        String column = rs.getString(2);
+                        Long attributeId = column.startsWith("a_") ? parseId(column.substring(2)) : null;
+                        if (attributeId != null) {
+                            AttributeType type = switch (rs.getString(3).toLowerCase()) {
+                                case "double" -> AttributeType.NUMBER;
+                                case "date" -> AttributeType.DATE;
+                                default -> AttributeType.TEXT;
+                            };
+                            columns.put(attributeId, new Column(attributeId, names.getOrDefault(attributeId, ""),
+                                    type, column));
+                        }
+                    });
+            Map<Long, CategoryTable> loaded = new HashMap<>();
+            columnsByCategory.forEach((categoryId, columns) -> loaded.put(categoryId,
+                    new CategoryTable(categoryId, tableName(categoryId), Map.copyOf(columns))));
+            tables = Map.copyOf(loaded);
+            ready = true;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось перечитать состав таблиц модели характеристик: {}", e.getMessage());
+        }
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void rebuildAll() {
+        long start = System.nanoTime();
+        List<Long> categoryIds = jdbc.queryForList("SELECT id FROM t_product_category", Long.class);
+        // отметки, накопленные до сборки, ею же и покрываются
+        pendingCategories.removeAll(categoryIds);
+        pendingProducts.clear();
+        for (Long categoryId : categoryIds) {
+            rebuildCategory(categoryId);
+        }
+
+        Set<String> expected = categoryIds.stream().map(ProductReadModelService::tableName).collect(Collectors.toSet());
+        for (String table : jdbc.queryForList("SHOW TABLES LIKE 't\\_product\\_attrs\\_%'", String.class)) {
+            // _new/_old — рабочие таблицы перестройки, их убирает rebuildCategory под блокировкой
+            if (parseId(table.substring(TABLE_PREFIX.length())) != null && !expected.contains(table)) {
+                jdbc.execute("DROP TABLE IF EXISTS " + table);
+            }
+        }
+        ready = true;
+        log.info("Модель характеристик товаров собрана: категорий {}, {} мс", categoryIds.size(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    /**
+     * Строит таблицу категории заново: создаёт {@code <таблица>_new}, заполняет её потоком строк EAV
+     * и подменяет рабочую таблицу одним RENAME, так что читатели не видят полупустую таблицу.
+     * Узлы кластера перестраивают одну и ту же таблицу по очереди — под именованной блокировкой.
+     */
+    private void rebuildCategory(Long categoryId) {
+        boolean rebuilt = jobCoordinationService.runWithNamedLock(lockName(categoryId),
+                CATEGORY_LOCK_WAIT, () -> rebuildCategoryLocked(categoryId));
+        if (!rebuilt) {
+            log.warn("Таблица {} занята другим узлом дольше {} мин, перестройка отложена",
+                    tableName(categoryId), CATEGORY_LOCK_WAIT.toMinutes());
+            pendingCategories.add(categoryId);
+        }
+    }
+
+    private void rebuildCategoryLocked(Long categoryId) {
+        String table = tableName(categoryId);
+        Integer exists = jdbc.queryForObject("SELECT COUNT(*) FROM t_product_category WHERE id = ?",
+                Integer.class, categoryId);
+        if (exists == null || exists == 0) {
+            jdbc.execute("DROP TABLE IF EXISTS " + table);
+            Map<Long, CategoryTable> updated = new HashMap<>(tables);
+            updated.remove(categoryId);
+            tables = Map.copyOf(updated);
+            return;
+        }
+
+        Map<Long, Column> columns = new LinkedHashMap<>();
+        jdbc.query("SELECT a.id, a.name, a.data_type FROM category_attribute ca " +
+                        "JOIN t_product_attribute a ON a.id = ca.attribute_id " +
+                        "WHERE ca.category_id = ? ORDER BY a.id",
+                (RowCallbackHandler) rs -> {
+                    long attributeId = rs.getLong(1);
+                    columns.put(attributeId, new Column(attributeId, rs.getString(2),
+                            AttributeType.valueOf(rs.getString(3)), "a_" + attributeId));
+                }, categoryId);
+        CategoryTable categoryTable = new CategoryTable(categoryId, table, Map.copyOf(columns));
+
+        String building = table + "_new";
+        jdbc.execute("DROP TABLE IF EXISTS " + building);
+        jdbc.execute(createTableSql(building, columns.values()));
+        int rows = fill(categoryTable, building);
+
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + table + " (product_id BIGINT NOT NULL PRIMARY KEY)");
+        jdbc.execute("DROP TABLE IF EXISTS " + table + "_old");
+        jdbc.execute("RENAME TABLE " + table + " TO " + table + "_old, " + building + " TO " + table);
+        jdbc.execute("DROP TABLE " + table + "_old");
+
+        Map<Long, CategoryTable> updated = new HashMap<>(tables);
+        updated.put(categoryId, categoryTable);
+        tables = Map.copyOf(updated);
+        log.debug("Таблица {} перестроена: атрибутов {}, товаров {}", table, columns.size(), rows);
+    }
+
+    private static String createTableSql(String table, Collection<Column> columns) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ").append(table)
+                .append(" (product_id BIGINT NOT NULL PRIMARY KEY");
+        for (Column column : columns) {
+            sql.append(", ").append(column.column()).append(' ').append(switch (column.type()) {
+                case NUMBER -> "DOUBLE";
+                case DATE -> "DATE";
+                case TEXT -> "TEXT";
+            }).append(" NULL");
+        }
+        int indexed = 0;
+        for (Column column : columns) {
+            if (column.type() == AttributeType.TEXT || indexed == MAX_INDEXED_COLUMNS) {
+                continue;
+            }
+            sql.append(", INDEX ix_").append(column.column()).append(" (").append(column.column()).append(')');
+            indexed++;
+        }
+        return sql.append(')').toString();
+    }
+
+    /** Заполняет таблицу товарами категории; строки EAV читаются курсором в порядке товаров. */
+    private int fill(CategoryTable categoryTable, String target) {
+        String insertSql = insertSql(target, categoryTable);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        RowAssembler assembler = new RowAssembler(categoryTable, row -> {
+            batch.add(row);
+            if (batch.size() >= BATCH_SIZE) {
+                jdbc.batchUpdate(insertSql, batch);
+                batch.clear();
+            }
+        });
+        jdbc.query(connection -> {
+            var statement = connection.prepareStatement(
+                    "SELECT p.id, v.attribute_id, v.value FROM t_product p " +
+                            "LEFT JOIN t_product_attribute_value v ON v.product_id = p.id " +
+                            "WHERE p.category_id = ? ORDER BY p.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setLong(1, categoryTable.categoryId());
+            return statement;
+        }, assembler);
+        assembler.finish();
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(insertSql, batch);
+        }
+        return assembler.rows;
+    }
+
+    // ========== ИНКРЕМЕНТАЛЬНОЕ ОБНОВЛЕНИЕ ==========
+
+    /**
+     * Пересчитывает строки товаров: удаляет их из всех таблиц (товар мог сменить категорию или быть удалён)
+     * и вставляет заново в таблицу текущей категории, в одной транзакции.
+     * <p>
+     * Пока другой узел перестраивает какую-либо таблицу под блокировкой категории, строки не пишутся:
+     * его {@code _new} могла заполниться до изменения товара, и запись в рабочую таблицу пропала бы при RENAME.
+     * Перестройка, начатая после проверки, читает EAV уже после коммита изменения и сама даёт верные строки.
+     *
+     * @return false — идёт перестройка на другом узле, ничего не записано
+     */
+    private boolean refreshProducts(List<Long> productIds) {
+        Map<Long, CategoryTable> current = tables;
+        String idList = productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+
+        Map<Long, List<Long>> productsByCategory = new HashMap<>();
+        jdbc.query("SELECT id, category_id FROM t_product WHERE id IN (" + idList + ")",
+                (RowCallbackHandler) rs -> productsByCategory
+                        .computeIfAbsent(rs.getLong(2), key -> new ArrayList<>()).add(rs.getLong(1)));
+        for (Long categoryId : productsByCategory.keySet()) {
+            if (!current.containsKey(categoryId)) {
+                // таблица категории ещё не построена — её сборка покроет и эти товары
+                pendingCategories.add(categoryId);
+            }
+        }
+        Set<String> lockNames = new HashSet<>();
+        current.keySet().forEach(categoryId -> lockNames.add(lockName(categoryId)));
+        productsByCategory.keySet().forEach(categoryId -> lockNames.add(lockName(categoryId)));
+        if (jobCoordinationService.isAnyNamedLockUsed(lockNames)) {
+            return false;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!current.isEmpty()) {
+                jdbc.batchUpdate(current.values().stream()
+                        .map(table -> "DELETE FROM " + table.table() + " WHERE product_id IN (" + idList + ")")
+                        .toArray(String[]::new));
+            }
+            for (Map.Entry<Long, List<Long>> entry : productsByCategory.entrySet()) {
+                CategoryTable categoryTable = current.get(entry.getKey());
+                if (categoryTable == null) {
+                    continue;
+                }
+                String categoryIds = entry.getValue().stream().map(String::valueOf).collect(Collectors.joining(","));
+                List<Object[]> rows = new ArrayList<>();
+                RowAssembler assembler = new RowAssembler(categoryTable, rows::add);
+                jdbc.query("SELECT p.id, v.attribute_id, v.value FROM t_product p " +
+                        "LEFT JOIN t_product_attribute_value v ON v.product_id = p.id " +
+                        "WHERE p.id IN (" + categoryIds + ") ORDER BY p.id", assembler);
+                assembler.finish();
+                jdbc.batchUpdate(insertSql(categoryTable.table(), categoryTable), rows);
+            }
+        });
+        return true;
+    }
+
+    private static String insertSql(String table, CategoryTable categoryTable) {
+        StringBuilder columns = new StringBuilder("product_id");
+        StringBuilder values = new StringBuilder("?");
+        for (Column column : categoryTable.columns().values()) {
+            columns.append(", ").append(column.column());
+            values.append(", ?");
+        }
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ")";
+    }
+
+    /**
+     * Собирает строки широкой таблицы из потока (товар, атрибут, значение), упорядоченного по товару.
+     */
+    private static final class RowAssembler implements RowCallbackHandler {
+
+        private final CategoryTable table;
+        private final Map<Long, Integer> positions = new HashMap<>();
+        private final Consumer<Object[]> sink;
+        private Object[] row;
+        private long productId = -1;
+        private int rows;
+
+        RowAssembler(CategoryTable table, Consumer<Object[]> sink) {
+            this.table = table;
+            this.sink = sink;
+            int position = 1;
+            for (Long attributeId : table.columns().keySet()) {
+                positions.put(attributeId, position++);
+            }
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong(1);
+            if (row == null || id != productId) {
+                finish();
+                productId = id;
+                row = new Object[positions.size() + 1];
+                row[0] = id;
+            }
+            long attributeId = rs.getLong(2);
+            if (rs.wasNull()) {
+                return;
+            }
+            Integer position = positions.get(attributeId);
+            if (position != null) {
+                row[position] = toTyped(table.columns().get(attributeId).type(), rs.getString(3));
+            }
+        }
+
+        void finish() {
+            if (row != null) {
+                sink.accept(row);
+                rows++;
+                row = null;
+            }
+        }
+    }
+
+    private static Object toTyped(AttributeType type, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return switch (type) {
+                case NUMBER -> Double.parseDouble(value.replace(",", ".").trim());
+                case DATE -> Date.valueOf(LocalDate.parse(value.trim()));
+                case TEXT -> value.length() > TEXT_LENGTH ? value.substring(0, TEXT_LENGTH) : value;
+            };
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // ========== ЧТЕНИЕ ==========
+
+    /**
+     * Товары категории, удовлетворяющие всем условиям. Пустой результат, если модель ещё не собрана
+     * или у категории нет таблицы; условия по атрибутам вне категории не выполняются ни для одного товара.
+     */
+    public List<Long> findProductIds(Long categoryId, List<AttributeFilter> filters) {
+        CategoryTable table = tables.get(categoryId);
+        if (table == null) {
+            return List.of();
+        }
+        StringBuilder sql = new StringBuilder("SELECT product_id FROM ").append(table.table()).append(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        for (AttributeFilter filter : filters) {
+            Column column = table.columns().get(filter.attributeId());
+            if (column == null) {
+                return List.of();
+            }
+            if (column.type() == AttributeType.TEXT) {
+                if (!isBlank(filter.value())) {
+                    sql.append(" AND ").append(column.column()).append(" = ?");
+                    args.add(filter.value().trim());
+                }
+                continue;
+            }
+            String exact = isBlank(filter.value()) ? null : filter.value();
+            appendBound(sql, args, column, ">=", exact != null ? exact : filter.min());
+            appendBound(sql, args, column, "<=", exact != null ? exact : filter.max());
+        }
+        sql.append(" ORDER BY product_id");
+        return jdbc.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    private static void appendBound(StringBuilder sql, List<Object> args, Column column, String operator, String bound) {
+        if (isBlank(bound)) {
+            return;
+        }
+        Object typed = toTyped(column.type(), bound);
+        if (typed == null) {
+            throw new IllegalArgumentException("Некорректное значение условия «" + bound + "» для атрибута «"
+                    + column.name() + "»");
+        }
+        sql.append(" AND ").append(column.column()).append(' ').append(operator).append(" ?");
+        args.add(typed);
+    }
+
+    /**
+     * Типизированные значения атрибутов с указанными названиями для всех товаров: id товара → название → значение
+     * (Double, LocalDate или String). Товары без значений в результат не попадают.
+     */
+    public Map<Long, Map<String, Object>> findAllValues(Collection<String> attributeNames) {
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        for (CategoryTable table : tables.values()) {
+            readValues(table, attributeNames, null, result);
+        }
+        return result;
+    }
+
+    /**
+     * То же для перечисленных товаров; {@code productCategories} — id товара → id его категории.
+     */
+    public Map<Long, Map<String, Object>> findValues(Map<Long, Long> productCategories,
+                                                     Collection<String> attributeNames) {
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        Map<Long, List<Long>> byCategory = new HashMap<>();
+        productCategories.forEach((productId, categoryId) ->
+                byCategory.computeIfAbsent(categoryId, key -> new ArrayList<>()).add(productId));
+        for (Map.Entry<Long, List<Long>> entry : byCategory.entrySet()) {
+            CategoryTable table = tables.get(entry.getKey());
+            if (table != null) {
+                readValues(table, attributeNames, entry.getValue(), result);
+            }
+        }
+        return result;
+    }
+
+    private void readValues(CategoryTable table, Collection<String> attributeNames, List<Long> productIds,
+                            Map<Long, Map<String, Object>> result) {
+        List<Column> columns = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String name : attributeNames) {
+            Column column = table.byName(name);
+            if (column != null && seen.add(name)) {
+                columns.add(column);
+            }
+        }
+        if (columns.isEmpty()) {
+            return;
+        }
+        String select = columns.stream().map(Column::column).collect(Collectors.joining(", "));
+        String sql = "SELECT product_id, " + select + " FROM " + table.table();
+        if (productIds != null) {
+            sql += " WHERE product_id IN (" + productIds.stream().map(String::valueOf)
+                    .collect(Collectors.joining(",")) + ")";
+        }
+        jdbc.query(sql, (RowCallbackHandler) rs -> {
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                Object value = switch (column.type()) {
+                    case NUMBER -> rs.getObject(i + 2, Double.class);
+                    case DATE -> rs.getObject(i + 2, LocalDate.class);
+                    case TEXT -> rs.getString(i + 2);
+                };
+                if (value != null) {
+                    values.put(column.name(), value);
+                }
+            }
+            if (!values.isEmpty()) {
+                result.put(rs.getLong(1), values);
+            }
+        });
+    }
+
+    private static String tableName(Long categoryId) {
+        return TABLE_PREFIX + categoryId;
+    }
+
+    /** Именованная блокировка перестройки таблицы категории. */
+    private static String lockName(Long categoryId) {
+        return "siarsp_" + tableName(categoryId);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,476 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.component.StartupTask;
+import com.mai.siarsp.dto.ProductSuggestion;
+import com.mai.siarsp.repo.ProductRepository;
+import com.mai.siarsp.repo.RequestForDeliveryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Поисковый индекс товаров в памяти для подсказок по названию и артикулу.
+ * <p>
+ * Название и артикул приводятся к нижнему регистру по правилам русского языка (ё = е) и режутся на слова;
+ * слово из букв и цифр дополнительно делится на буквенные и цифровые части, чтобы «ART-00123» находился
+ * и по «art», и по «001». Товар подходит, если каждое слово запроса — начало какого-либо его слова.
+ * <p>
+ * Основа индекса — неизменяемый снимок: товары, упорядоченные по названию (номер в этом порядке — id документа),
+ * отсортированный массив слов и для каждого слова — возрастающий список документов. Слова с нужным началом
+ * образуют непрерывный диапазон массива, их списки сливаются по возрастанию, поэтому первые K проверенных
+ * документов — сразу первые K по названию, без сортировки всех совпадений.
+ * <p>
+ * Создание, изменение и удаление товара после коммита попадают в небольшой слой изменений поверх снимка,
+ * который просматривается целиком; когда слой разрастается, снимок пересобирается в фоне из БД.
+ * Слой видит только изменения этого узла, поэтому снимок также пересобирается по расписанию
+ * ({@code siarsp.search-index.refresh-ms}, по умолчанию раз в 5 минут) — так в подсказки попадают
+ * товары, созданные, переименованные и удалённые на других узлах кластера.
+ * Полная сборка выполняется фоновой стартовой задачей, до её окончания поиск идёт запросом LIKE.
+ * <p>
+ * Остатки в индексе не хранятся: для K найденных товаров они читаются одним запросом по первичному ключу.
+ */
+@Service
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final Locale RU = Locale.forLanguageTag("ru");
+    private static final int MAX_LIMIT = 50;
+    private static final int OVERLAY_REBUILD_THRESHOLD = 2000;
+
+    /**
+     * Товар в индексе: слова хранятся строкой « слово1 слово2 » для проверки начала слова через contains
+     * с образцами вида « слово» (см. {@link #patterns}).
+     */
+    private record Doc(long productId, String name, String article, String sortKey, String words) {
+
+        boolean matches(String[] patterns) {
+            for (String pattern : patterns) {
+                if (!words.contains(pattern)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final Comparator<Doc> ORDER = Comparator.comparing(Doc::sortKey)
+            .thenComparingLong(Doc::productId);
+
+    private record Snapshot(Doc[] docs, String[] tokens, int[][] postings) {
+    }
+
+    /** Изменение поверх снимка: doc == null — товар удалён. */
+    private record Change(long seq, Doc doc) {
+    }
+
+    private record State(Snapshot snapshot, Map<Long, Change> overlay) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ProductRepository productRepository;
+    private final RequestForDeliveryRepository requestForDeliveryRepository;
+    private final ExecutorService executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private volatile State state = new State(null, Map.of());
+
+    public ProductSearchIndex(JdbcTemplate jdbc,
+                              ProductRepository productRepository,
+                              RequestForDeliveryRepository requestForDeliveryRepository) {
+        this.jdbc = jdbc;
+        this.productRepository = productRepository;
+        this.requestForDeliveryRepository = requestForDeliveryRepository;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public StartupTask productSearchIndexBuildTask() {
+        return new StartupTask("productSearchIndexBuild", 40, Duration.ofMinutes(10), this::rebuildAndWait);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return state.snapshot() != null;
+    }
+
+    // ========== ПОИСК ==========
+
+    /**
+     * Подсказки для поля выбора товара: первые {@code limit} совпадений по названию с текущими остатками.
+     */
+    public List<ProductSuggestion> suggest(String query, int limit) {
+        return describe(searchIds(query, Math.min(Math.max(limit, 1), MAX_LIMIT)));
+    }
+
+    /**
+     * Подсказки для известных товаров в заданном порядке — например, для строк уже оформленного заказа.
+     */
+    public List<ProductSuggestion> describe(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductRepository.SuggestionRow> rows = productRepository.findSuggestionRowsByIdIn(productIds)
+                .stream().collect(Collectors.toMap(ProductRepository.SuggestionRow::getId, Function.identity()));
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Double> avgDeliveryDays = new HashMap<>();
+        for (Object[] row : requestForDeliveryRepository.findAverageDeliveryDaysByProductIdIn(rows.keySet())) {
+            if (row[1] != null) {
+                avgDeliveryDays.put(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue());
+            }
+        }
+        List<ProductSuggestion> result = new ArrayList<>(rows.size());
+        for (Long id : new LinkedHashSet<>(productIds)) {
+            ProductRepository.SuggestionRow row = rows.get(id);
+            if (row != null) {
+                int available = Math.max(0, row.getStockQuantity() - row.getQuantityForStock() - row.getReservedQuantity());
+                result.add(new ProductSuggestion(row.getId(), row.getName(), row.getArticle(), available,
+                        row.getStockQuantity(), avgDeliveryDays.getOrDefault(id, 0.0)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Id первых {@code limit} товаров по названию, подходящих под запрос.
+     */
+    public List<Long> searchIds(String query, int limit) {
+        return searchIds(query, limit, productId -> true);
+    }
+
+    /**
+     * Id первых {@code limit} товаров по названию, подходящих под запрос и под filter. Фильтр применяется
+     * до ограничения limit — например, чтобы искать только среди товаров с остатком в буфере.
+     * Пока индекс не собран, фильтр применяется к первым limit совпадениям запроса LIKE.
+     */
+    public List<Long> searchIds(String query, int limit, LongPredicate filter) {
+        String[] words = queryWords(query);
+        if (words.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        State current = state;
+        if (current.snapshot() == null) {
+            return productRepository.findIdsByNameOrArticleContaining(query.trim(), PageRequest.of(0, limit))
+                    .stream().filter(filter::test).toList();
+        }
+
+        String[] patterns = patterns(words);
+        List<Doc> found = new ArrayList<>(Math.min(limit, 1024) * 2);
+        searchSnapshot(current, words, patterns, limit, filter, found);
+        for (Change change : current.overlay().values()) {
+            if (change.doc() != null && filter.test(change.doc().productId()) && change.doc().matches(patterns)) {
+                found.add(change.doc());
+            }
+        }
+        found.sort(ORDER);
+        List<Long> ids = new ArrayList<>(Math.min(limit, found.size()));
+        for (int i = 0; i < found.size() && ids.size() < limit; i++) {
+            ids.add(found.get(i).productId());
+        }
+        return ids;
+    }
+
+    /**
+     * Сливает списки документов всех слов снимка, начинающихся с самого избирательного слова запроса,
+     * и проверяет фильтр и остальные слова, пока не наберётся {@code limit} документов.
+     */
+    private static void searchSnapshot(State current, String[] words, String[] patterns, int limit,
+                                       LongPredicate filter, List<Doc> found) {
+        Snapshot snapshot = current.snapshot();
+        int bestFrom = 0;
+        int bestTo = 0;
+        long bestSize = Long.MAX_VALUE;
+        for (String word : words) {
+            int from = lowerBound(snapshot.tokens(), word);
+            int to = lowerBound(snapshot.tokens(), word + Character.MAX_VALUE);
+            long size = 0;
+            for (int i = from; i < to && size < bestSize; i++) {
+                size += snapshot.postings()[i].length;
+            }
+            if (size < bestSize) {
+                bestSize = size;
+                bestFrom = from;
+                bestTo = to;
+            }
+        }
+        if (bestSize == 0) {
+            return;
+        }
+
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, bestTo - bestFrom),
+                Comparator.comparingInt(cursor -> snapshot.postings()[cursor[0]][cursor[1]]));
+        for (int i = bestFrom; i < bestTo; i++) {
+            cursors.add(new int[]{i, 0});
+        }
+        int previous = -1;
+        int taken = 0;
+        while (!cursors.isEmpty() && taken < limit) {
+            int[] cursor = cursors.poll();
+            int[] postings = snapshot.postings()[cursor[0]];
+            int docId = postings[cursor[1]];
+            if (++cursor[1] < postings.length) {
+                cursors.add(cursor);
+            }
+            if (docId == previous) {
+                continue;
+            }
+            previous = docId;
+            Doc doc = snapshot.docs()[docId];
+            if (!current.overlay().containsKey(doc.productId()) && filter.test(doc.productId())
+                    && doc.matches(patterns)) {
+                found.add(doc);
+                taken++;
+            }
+        }
+    }
+
+    private static int lowerBound(String[] tokens, String key) {
+        int index = Arrays.binarySearch(tokens, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // ========== ИЗМЕНЕНИЯ ==========
+
+    /** Товар создан или изменён: после коммита попадает в слой изменений. */
+    public void productSaved(Long productId, String name, String article) {
+        afterCommit(() -> apply(List.of(toDoc(productId, name, article)), List.of()));
+    }
+
+    /** Пакет товаров создан (импорт каталога): id → {название, артикул}. */
+    public void productsSaved(Map<Long, String[]> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        List<Doc> docs = new ArrayList<>(products.size());
+        products.forEach((id, nameAndArticle) -> docs.add(toDoc(id, nameAndArticle[0], nameAndArticle[1])));
+        afterCommit(() -> apply(docs, List.of()));
+    }
+
+    public void productRemoved(Long productId) {
+        afterCommit(() -> apply(List.of(), List.of(productId)));
+    }
+
+    private synchronized void apply(List<Doc> saved, List<Long> removed) {
+        Map<Long, Change> overlay = new HashMap<>(state.overlay());
+        for (Doc doc : saved) {
+            overlay.put(doc.productId(), new Change(sequence.incrementAndGet(), doc));
+        }
+        for (Long id : removed) {
+            overlay.put(id, new Change(sequence.incrementAndGet(), null));
+        }
+        state = new State(state.snapshot(), overlay);
+        if (overlay.size() > OVERLAY_REBUILD_THRESHOLD) {
+            scheduleRebuild();
+        }
+    }
+
+    /** Плановая пересборка: подхватывает изменения товаров, сделанные на других узлах. */
+    @Scheduled(fixedDelayString = "${siarsp.search-index.refresh-ms:300000}",
+            initialDelayString = "${siarsp.search-index.refresh-ms:300000}")
+    public void refresh() {
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        if (state.snapshot() != null && rebuildScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.error("Не удалось пересобрать поисковый индекс товаров: {}", e.getMessage(), e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ========== СБОРКА ==========
+
+    private void rebuildAndWait() {
+        try {
+            executor.submit(this::rebuild).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось собрать поисковый индекс товаров", e.getCause());
+        }
+    }
+
+    /**
+     * Собирает снимок из БД. Изменения, пришедшие после начала чтения, остаются в слое поверх нового снимка.
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        long startSeq = sequence.get();
+
+        List<Doc> docs = new ArrayList<>();
+        jdbc.query(connection -> {
+            var statement = connection.prepareStatement("SELECT id, name, article FROM t_product",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, (RowCallbackHandler) rs -> docs.add(toDoc(rs.getLong(1), rs.getString(2), rs.getString(3))));
+        docs.sort(ORDER);
+        Snapshot snapshot = buildSnapshot(docs.toArray(Doc[]::new));
+
+        synchronized (this) {
+            Map<Long, Change> overlay = new HashMap<>();
+            state.overlay().forEach((id, change) -> {
+                if (change.seq() > startSeq) {
+                    overlay.put(id, change);
+                }
+            });
+            state = new State(snapshot, overlay);
+        }
+        log.info("Поисковый индекс товаров собран: товаров {}, слов {}, {} мс", snapshot.docs().length,
+                snapshot.tokens().length, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private static Snapshot buildSnapshot(Doc[] docs) {
+        Map<String, IntList> postings = new HashMap<>();
+        for (int docId = 0; docId < docs.length; docId++) {
+            for (String token : docs[docId].words().trim().split(" ")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                IntList list = postings.computeIfAbsent(token, key -> new IntList());
+                // слово может встретиться в товаре дважды (в названии и артикуле)
+                if (list.size == 0 || list.values[list.size - 1] != docId) {
+                    list.add(docId);
+                }
+            }
+        }
+        String[] tokens = postings.keySet().toArray(String[]::new);
+        Arrays.sort(tokens);
+        int[][] lists = new int[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            lists[i] = postings.get(tokens[i]).toArray();
+        }
+        return new Snapshot(docs, tokens, lists);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[2];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // ========== НОРМАЛИЗАЦИЯ ==========
+
+    private static Doc toDoc(long productId, String name, String article) {
+        String safeName = name != null ? name : "";
+        String safeArticle = article != null ? article : "";
+        Set<String> words = new LinkedHashSet<>();
+        addWords(fold(safeName), words);
+        addWords(fold(safeArticle), words);
+        return new Doc(productId, safeName, safeArticle, fold(safeName), " " + String.join(" ", words) + " ");
+    }
+
+    private static String[] queryWords(String query) {
+        if (query == null || query.isBlank()) {
+            return new String[0];
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : fold(query).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(String[]::new);
+    }
+
+    private static String[] patterns(String[] words) {
+        String[] patterns = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            patterns[i] = " " + words[i];
+        }
+        return patterns;
+    }
+
+    /** Слова текста; слово с буквами и цифрами добавляется целиком и по частям. */
+    private static void addWords(String folded, Set<String> words) {
+        for (String word : folded.split("[^\\p{L}\\p{Nd}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            words.add(word);
+            int partStart = 0;
+            for (int i = 1; i < word.length(); i++) {
+                if (Character.isDigit(word.charAt(i)) != Character.isDigit(word.charAt(i - 1))) {
+                    words.add(word.substring(partStart, i));
+                    partStart = i;
+                }
+            }
+            if (partStart > 0) {
+                words.add(word.substring(partStart));
+            }
+        }
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(RU).replace('ё', 'е');
+    }
+}
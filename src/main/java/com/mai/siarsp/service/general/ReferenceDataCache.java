@@ -0,0 +1,298 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.dto.ProductAttributeDTO;
+import com.mai.siarsp.dto.ProductCategoryDTO;
+import com.mai.siarsp.dto.ProductDTO;
+import com.mai.siarsp.mapper.ProductMapper;
+import com.mai.siarsp.models.Product;
+import com.mai.siarsp.models.Role;
+import com.mai.siarsp.models.Warehouse;
+import com.mai.siarsp.repo.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш справочных данных в памяти: карточки товаров, категории, характеристики, склады и роли.
+ * <p>
+ * Каждый вид данных — своя область с ограничением размера и временем жизни записей
+ * ({@code siarsp.cache.products.max-entries}, {@code siarsp.cache.ttl-minutes}). Записи сбрасывают
+ * сервисы, которые эти данные меняют: карточки — по id товара или категории, списки — целиком.
+ * Внутри транзакции сброс повторяется после её завершения, чтобы параллельное чтение не закэшировало
+ * состояние до коммита. Время жизни — страховка от изменений в обход сервисов.
+ * <p>
+ * Другие узлы кластера узнают о сбросе из t_cache_invalidation: событие пишется в транзакции изменения,
+ * а каждый узел раз в {@code siarsp.cache.invalidation-poll-ms} (по умолчанию 2 с) читает чужие события
+ * и сбрасывает у себя те же записи. Запрос перечитывает и недавние id до последнего увиденного: события
+ * фиксируются не строго по порядку id, а применённые повторно не применяются.
+ * <p>
+ * Остатки в карточку товара не входят: они меняются при каждой приёмке, резерве и отгрузке, поэтому
+ * {@link #getAllProducts()} читает их одним узким запросом и накладывает на закэшированные карточки.
+ */
+@Service
+@Slf4j
+public class ReferenceDataCache {
+
+    private static final String ALL = "all";
+    private static final int LOAD_CHUNK_SIZE = 1000;
+    /** Насколько id назад и секунд в прошлое перечитываются события, зафиксированные не по порядку id. */
+    private static final int LOOKBACK_IDS = 1000;
+    private static final int LOOKBACK_SECONDS = 60;
+    private static final int RETENTION_HOURS = 24;
+
+    private static final String REGION_PRODUCTS = "products";
+    private static final String REGION_PRODUCTS_OF_CATEGORIES = "productsOfCategories";
+    private static final String REGION_PRODUCT_CATEGORIES = "productCategories";
+    private static final String REGION_PRODUCT_ATTRIBUTES = "productAttributes";
+    private static final String REGION_WAREHOUSES = "warehouses";
+    private static final String REGION_ROLES = "roles";
+
+    private static final String INSERT_EVENT_SQL = "INSERT INTO t_cache_invalidation " +
+            "(region, key_list, node_id, created_at) VALUES (?, ?, ?, NOW(3))";
+    private static final String SELECT_EVENTS_SQL = "SELECT id, region, key_list FROM t_cache_invalidation " +
+            "WHERE id > ? AND created_at >= DATE_SUB(NOW(3), INTERVAL ? SECOND) AND node_id <> ? ORDER BY id";
+
+    /** Счётчики области кэша для /employee/admin/system/cacheStats. */
+    public record CacheStats(String region, int size, int maxEntries, long hits, long misses, double hitRate,
+                             long evictions, long expirations, long invalidations) {}
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbc;
+    private final String nodeId = UUID.randomUUID().toString();
+    /** Чужие события, уже применённые в окне перечитывания; меняется только потоком опроса. */
+    private final NavigableSet<Long> appliedEventIds = new TreeSet<>();
+    private final CacheRegion<Long, ProductDTO> products;
+    private final CacheRegion<String, List<ProductCategoryDTO>> productCategories;
+    private final CacheRegion<String, List<ProductAttributeDTO>> productAttributes;
+    private final CacheRegion<String, List<Warehouse>> warehouses;
+    private final CacheRegion<String, List<Role>> roles;
+
+    public ReferenceDataCache(ProductRepository productRepository,
+                              JdbcTemplate jdbc,
+                              @Value("${siarsp.cache.products.max-entries:200000}") int maxProducts,
+                              @Value("${siarsp.cache.ttl-minutes:30}") long ttlMinutes) {
+        this.productRepository = productRepository;
+        this.jdbc = jdbc;
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        this.products = new CacheRegion<>(REGION_PRODUCTS, maxProducts, ttl);
+        this.productCategories = new CacheRegion<>(REGION_PRODUCT_CATEGORIES, 1, ttl);
+        this.productAttributes = new CacheRegion<>(REGION_PRODUCT_ATTRIBUTES, 1, ttl);
+        this.warehouses = new CacheRegion<>(REGION_WAREHOUSES, 1, ttl);
+        this.roles = new CacheRegion<>(REGION_ROLES, 1, ttl);
+    }
+
+    /**
+     * Все товары с актуальными остатками. Вызывать внутри транзакции: недостающие карточки
+     * загружаются через сущности.
+     */
+    public List<ProductDTO> getAllProducts() {
+        List<ProductRepository.StockRow> stock = productRepository.findAllStockRows();
+        List<Long> ids = stock.stream().map(ProductRepository.StockRow::getId).toList();
+        Map<Long, ProductDTO> cards = products.getAll(ids, this::loadProductCards);
+
+        List<ProductDTO> result = new ArrayList<>(stock.size());
+        for (ProductRepository.StockRow row : stock) {
+            ProductDTO card = cards.get(row.getId());
+            if (card != null) {
+                result.add(withStock(card, row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Списки ниже загружает сервис-владелец; возвращаемый список общий и не изменяемый.
+     */
+    public List<ProductCategoryDTO> getProductCategories(Supplier<List<ProductCategoryDTO>> loader) {
+        return productCategories.get(ALL, () -> List.copyOf(loader.get()));
+    }
+
+    public List<ProductAttributeDTO> getProductAttributes(Supplier<List<ProductAttributeDTO>> loader) {
+        return productAttributes.get(ALL, () -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * @param loader должен возвращать отсоединённые копии без ленивых коллекций
+     */
+    public List<Warehouse> getWarehouses(Supplier<List<Warehouse>> loader) {
+        return warehouses.get(ALL, () -> List.copyOf(loader.get()));
+    }
+
+    public List<Role> getRoles(Supplier<List<Role>> loader) {
+        return roles.get(ALL, () -> List.copyOf(loader.get()));
+    }
+
+    public void invalidateProduct(Long productId) {
+        invalidate(REGION_PRODUCTS, List.of(productId), () -> products.invalidate(productId));
+    }
+
+    public void invalidateProducts(Collection<Long> productIds) {
+        List<Long> ids = List.copyOf(productIds);
+        invalidate(REGION_PRODUCTS, ids, () -> products.invalidateAll(ids));
+    }
+
+    /**
+     * Карточки товаров категорий — после изменения самой категории или набора её характеристик.
+     */
+    public void invalidateProductsOfCategories(Collection<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = Set.copyOf(categoryIds);
+        invalidate(REGION_PRODUCTS_OF_CATEGORIES, ids, () -> invalidateProductsOfCategoriesLocally(ids));
+    }
+
+    private void invalidateProductsOfCategoriesLocally(Set<Long> categoryIds) {
+        products.invalidateIf(card -> categoryIds.contains(card.getCategoryId()));
+    }
+
+    public void invalidateProductCategories() {
+        invalidate(REGION_PRODUCT_CATEGORIES, null, productCategories::clear);
+    }
+
+    public void invalidateProductAttributes() {
+        invalidate(REGION_PRODUCT_ATTRIBUTES, null, productAttributes::clear);
+    }
+
+    public void invalidateWarehouses() {
+        invalidate(REGION_WAREHOUSES, null, warehouses::clear);
+    }
+
+    public void invalidateRoles() {
+        invalidate(REGION_ROLES, null, roles::clear);
+    }
+
+    public List<CacheStats> getStats() {
+        return List.of(products.stats(), productCategories.stats(), productAttributes.stats(),
+                warehouses.stats(), roles.stats());
+    }
+
+    /**
+     * Сбрасывает записи на этом узле и пишет событие для остальных — в текущей транзакции, если она есть.
+     *
+     * @param keys id сбрасываемых записей; null — вся область
+     */
+    private void invalidate(String region, Collection<Long> keys, Runnable reset) {
+        reset.run();
+        String keyList = keys != null ? keys.stream().map(String::valueOf).collect(Collectors.joining(",")) : null;
+        jdbc.update(INSERT_EVENT_SQL, region, keyList, nodeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    reset.run();
+                }
+            });
+        }
+    }
+
+    // ========== СБРОСЫ С ДРУГИХ УЗЛОВ ==========
+
+    /**
+     * Применяет события сброса, записанные другими узлами. Окно перечитывания ограничено последними
+     * {@value #LOOKBACK_IDS} id и {@value #LOOKBACK_SECONDS} с, поэтому опрос без изменений читает
+     * лишь несколько строк по индексу.
+     */
+    @Scheduled(fixedDelayString = "${siarsp.cache.invalidation-poll-ms:2000}")
+    public void pollInvalidations() {
+        long from = appliedEventIds.isEmpty() ? 0 : Math.max(0, appliedEventIds.last() - LOOKBACK_IDS);
+        try {
+            jdbc.query(SELECT_EVENTS_SQL, (RowCallbackHandler) rs -> {
+                long id = rs.getLong(1);
+                if (appliedEventIds.add(id)) {
+                    applyRemote(rs.getString(2), rs.getString(3));
+                }
+            }, from, LOOKBACK_SECONDS, nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Не удалось прочитать события сброса кэша других узлов: {}", e.getMessage());
+            return;
+        }
+        if (!appliedEventIds.isEmpty()) {
+            appliedEventIds.headSet(appliedEventIds.last() - LOOKBACK_IDS, true).clear();
+        }
+    }
+
+    private void applyRemote(String region, String keyList) {
+        Set<Long> keys = new HashSet<>();
+        if (keyList != null && !keyList.isEmpty()) {
+            for (String key : keyList.split(",")) {
+                keys.add(Long.valueOf(key));
+            }
+        }
+        switch (region) {
+            case REGION_PRODUCTS -> products.invalidateAll(keys);
+            case REGION_PRODUCTS_OF_CATEGORIES -> invalidateProductsOfCategoriesLocally(keys);
+            case REGION_PRODUCT_CATEGORIES -> productCategories.clear();
+            case REGION_PRODUCT_ATTRIBUTES -> productAttributes.clear();
+            case REGION_WAREHOUSES -> warehouses.clear();
+            case REGION_ROLES -> roles.clear();
+            default -> log.warn("Неизвестная область кэша в событии сброса: {}", region);
+        }
+    }
+
+    /** Удаление старых событий сброса. Идемпотентно, поэтому выполняется на каждом узле без аренды. */
+    @Scheduled(cron = "0 45 3 * * ?")
+    public void purgeInvalidations() {
+        int deleted = jdbc.update("DELETE FROM t_cache_invalidation WHERE created_at < DATE_SUB(NOW(3), INTERVAL ? HOUR)",
+                RETENTION_HOURS);
+        log.info("Удалено событий сброса кэша: {}", deleted);
+    }
+
+    private Map<Long, ProductDTO> loadProductCards(List<Long> ids) {
+        Map<Long, ProductDTO> cards = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + LOAD_CHUNK_SIZE, ids.size()));
+            for (Product product : productRepository.findWithAttributeValuesByIdIn(chunk)) {
+                ProductDTO card = ProductMapper.INSTANCE.toDTO(product);
+                card.setAttributeValues(card.getAttributeValues() != null
+                        ? List.copyOf(card.getAttributeValues()) : List.of());
+                cards.put(product.getId(), card);
+            }
+        }
+        log.debug("В кэш каталога загружено {} карточек товаров", cards.size());
+        return cards;
+    }
+
+    /**
+     * Копия карточки с текущими остатками; доступное количество — как в Product#getAvailableQuantity.
+     */
+    private static ProductDTO withStock(ProductDTO card, ProductRepository.StockRow row) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(card.getId());
+        dto.setName(card.getName());
+        dto.setArticle(card.getArticle());
+        dto.setImage(card.getImage());
+        dto.setWarehouseType(card.getWarehouseType());
+        dto.setCategoryId(card.getCategoryId());
+        dto.setCategoryName(card.getCategoryName());
+        dto.setAttributeValues(card.getAttributeValues());
+        dto.setShelfLifeDays(card.getShelfLifeDays());
+        dto.setUnitOfMeasure(card.getUnitOfMeasure());
+        dto.setStockQuantity(row.getStockQuantity());
+        dto.setQuantityForStock(row.getQuantityForStock());
+        dto.setReservedQuantity(row.getReservedQuantity());
+        dto.setAvailableQuantity(Math.max(0,
+                row.getStockQuantity() - row.getQuantityForStock() - row.getReservedQuantity()));
+        return dto;
+    }
+}
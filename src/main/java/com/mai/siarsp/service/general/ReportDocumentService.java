@@ -1,41 +1,32 @@
 package com.mai.siarsp.service.general;
 
-import com.mai.siarsp.models.ClientOrder;
-import com.mai.siarsp.models.Delivery;
-import com.mai.siarsp.models.Product;
-import com.mai.siarsp.models.Supply;
+import com.mai.siarsp.enumeration.ReportType;
 import com.mai.siarsp.repo.ClientOrderRepository;
-import com.mai.siarsp.repo.DeliveryRepository;
 import com.mai.siarsp.repo.ProductRepository;
-import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
-import org.apache.poi.xwpf.usermodel.TableRowAlign;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
-import org.apache.poi.xwpf.usermodel.XWPFTable;
-import org.apache.poi.xwpf.usermodel.XWPFTableCell;
-import org.apache.poi.xwpf.usermodel.XWPFTableRow;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBorder;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTShd;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTblBorders;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBorder;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.STShd;
+import com.mai.siarsp.repo.SupplyRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Формирование отчетных документов для операционной и управленческой отчетности.
+ * <p>
+ * Строки отчётов выбираются запросами, ограниченными периодом, и читаются потоком через курсор
+ * (проекции без сущностей — контекст персистентности не растёт). Документ пишется во временный файл
+ * потоком ({@link ReportDocxWriter}): каждая строка сразу уходит в word/document.xml внутри ZIP, и
+ * дерево документа POI в памяти не строится. Кэшированием и выдачей файлов занимается ReportJobService.
  */
 
 @Service
@@ -50,356 +41,296 @@ public class ReportDocumentService {
 
     private final ClientOrderRepository clientOrderRepository;
     private final ProductRepository productRepository;
-    private final DeliveryRepository deliveryRepository;
-    private final ProductExpirationService productExpirationService;
+    private final SupplyRepository supplyRepository;
+    private final DailyFactService dailyFactService;
 
     public ReportDocumentService(ClientOrderRepository clientOrderRepository,
                                  ProductRepository productRepository,
-                                 DeliveryRepository deliveryRepository,
-                                 ProductExpirationService productExpirationService) {
+                                 SupplyRepository supplyRepository,
+                                 DailyFactService dailyFactService) {
         this.clientOrderRepository = clientOrderRepository;
         this.productRepository = productRepository;
-        this.deliveryRepository = deliveryRepository;
-        this.productExpirationService = productExpirationService;
+        this.supplyRepository = supplyRepository;
+        this.dailyFactService = dailyFactService;
     }
 
     @Transactional(readOnly = true)
-    public ReportFile generateOrdersReport(LocalDate startDate, LocalDate endDate) {
-        List<ClientOrder> orders = clientOrderRepository.findAllByOrderByOrderDateDesc().stream()
-                .filter(order -> {
-                    LocalDate orderDate = order.getOrderDate().toLocalDate();
-                    return !orderDate.isBefore(startDate) && !orderDate.isAfter(endDate);
-                })
-                .toList();
-
-        BigDecimal totalAmount = orders.stream()
-                .map(ClientOrder::getTotalAmount)
-                .filter(amount -> amount != null)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        try (XWPFDocument document = new XWPFDocument()) {
-            addTitle(document, "Отчёт по заказам");
-            addPeriod(document, startDate, endDate);
-
-            XWPFTable table = document.createTable(Math.max(orders.size() + 2, 2), 5);
-            formatTable(table);
-            formatHeaderRow(table, 0, "№ заказа", "Дата заказа", "Клиент", "Статус", "Сумма, руб.");
-            for (int i = 0; i < orders.size(); i++) {
-                ClientOrder order = orders.get(i);
-                boolean zebra = i % 2 == 1;
-                formatDataCell(table.getRow(i + 1).getCell(0), order.getOrderNumber(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(1), order.getOrderDate().toLocalDate().format(DATE_FORMATTER), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(2), order.getClient() != null ? order.getClient().getOrganizationName() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(3), order.getStatus() != null ? order.getStatus().getDisplayName() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(4), order.getTotalAmount() != null ? order.getTotalAmount().toString() : "0", zebra);
-            }
-
-            formatTotalRow(table, orders.size() + 1, 5, 0, "ИТОГО", 4, totalAmount.toString());
-
-            return new ReportFile(buildFileName("orders", startDate, endDate), toBytes(document));
-        } catch (IOException exception) {
-            throw new IllegalStateException("Не удалось сформировать отчёт по заказам", exception);
-        }
+    public GeneratedReport generate(ReportType type, LocalDate startDate, LocalDate endDate) {
+        return switch (type) {
+            case ORDERS -> generateOrdersReport(startDate, endDate);
+            case WAREHOUSE -> generateStockReport(startDate, endDate);
+            case STATISTICS -> generateStatisticsReport(startDate, endDate);
+            case EXPIRATION -> generateExpirationReport(startDate, endDate);
+            case SUPPLIES -> generateSuppliesReport(startDate, endDate);
+        };
     }
 
     @Transactional(readOnly = true)
-    public ReportFile generateStockReport(LocalDate startDate, LocalDate endDate) {
-        List<Product> products = productRepository.findAll().stream()
-                .sorted(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER))
-                .toList();
-
-        try (XWPFDocument document = new XWPFDocument()) {
-            addTitle(document, "Отчёт по товарам на складе");
-            addPeriod(document, startDate, endDate);
-
-            XWPFTable table = document.createTable(Math.max(products.size() + 1, 2), 6);
-            formatTable(table);
-            formatHeaderRow(table, 0, "Артикул", "Товар", "Категория", "Остаток", "Резерв", "Доступно");
-            for (int i = 0; i < products.size(); i++) {
-                Product product = products.get(i);
-                int availableQuantity = product.getStockQuantity() - product.getReservedQuantity();
-                boolean zebra = i % 2 == 1;
-                formatDataCell(table.getRow(i + 1).getCell(0), product.getArticle(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(1), product.getName(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(2), product.getCategory() != null ? product.getCategory().getName() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(3), String.valueOf(product.getStockQuantity()), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(4), String.valueOf(product.getReservedQuantity()), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(5), String.valueOf(Math.max(availableQuantity, 0)), zebra);
-            }
+    public GeneratedReport generateOrdersReport(LocalDate startDate, LocalDate endDate) {
+        return writeReport(buildFileName(ReportType.ORDERS, startDate, endDate), "Не удалось сформировать отчёт по заказам",
+                writer -> {
+                    addTitle(writer, "Отчёт по заказам");
+                    addPeriod(writer, startDate, endDate);
+
+                    writer.startTable();
+                    formatHeaderRow(writer, "№ заказа", "Дата заказа", "Клиент", "Статус", "Сумма, руб.");
+
+                    BigDecimal totalAmount = BigDecimal.ZERO;
+                    int index = 0;
+                    try (Stream<ClientOrderRepository.OrderReportRow> orders = clientOrderRepository.streamReportRows(
+                            periodStart(startDate), periodEnd(endDate))) {
+                        for (Iterator<ClientOrderRepository.OrderReportRow> iterator = orders.iterator(); iterator.hasNext(); index++) {
+                            ClientOrderRepository.OrderReportRow order = iterator.next();
+                            formatDataRow(writer, index % 2 == 1,
+                                    order.getOrderNumber(),
+                                    order.getOrderDate().toLocalDate().format(DATE_FORMATTER),
+                                    order.getClientName() != null ? order.getClientName() : "—",
+                                    order.getStatus() != null ? order.getStatus().getDisplayName() : "—",
+                                    order.getTotalAmount() != null ? order.getTotalAmount().toString() : "0");
+                            if (order.getTotalAmount() != null) {
+                                totalAmount = totalAmount.add(order.getTotalAmount());
+                            }
+                        }
+                    }
+
+                    formatTotalRow(writer, 5, 0, "ИТОГО", 4, totalAmount.toString());
+                    writer.endTable();
+                });
+    }
 
-            return new ReportFile(buildFileName("warehouse", startDate, endDate), toBytes(document));
-        } catch (IOException exception) {
-            throw new IllegalStateException("Не удалось сформировать отчёт по товарам", exception);
-        }
+    @Transactional(readOnly = true)
+    public GeneratedReport generateStockReport(LocalDate startDate, LocalDate endDate) {
+        return writeReport(buildFileName(ReportType.WAREHOUSE, startDate, endDate), "Не удалось сформировать отчёт по товарам",
+                writer -> {
+                    addTitle(writer, "Отчёт по товарам на складе");
+                    addPeriod(writer, startDate, endDate);
+
+                    writer.startTable();
+                    formatHeaderRow(writer, "Артикул", "Товар", "Категория", "Остаток", "Резерв", "Доступно");
+
+                    int index = 0;
+                    try (Stream<ProductRepository.StockReportRow> products = productRepository.streamStockReportRows()) {
+                        for (Iterator<ProductRepository.StockReportRow> iterator = products.iterator(); iterator.hasNext(); index++) {
+                            ProductRepository.StockReportRow product = iterator.next();
+                            int availableQuantity = product.getStockQuantity() - product.getReservedQuantity();
+                            formatDataRow(writer, index % 2 == 1,
+                                    product.getArticle(),
+                                    product.getName(),
+                                    product.getCategoryName() != null ? product.getCategoryName() : "—",
+                                    String.valueOf(product.getStockQuantity()),
+                                    String.valueOf(product.getReservedQuantity()),
+                                    String.valueOf(Math.max(availableQuantity, 0)));
+                        }
+                    }
+                    writer.endTable();
+                });
     }
 
+    /**
+     * Показатели продаж и закупок берутся из дневных агрегатов (DailyFactService): доставленные заказы
+     * по дате заказа и поставки по дате поставки.
+     */
     @Transactional(readOnly = true)
-    public ReportFile generateStatisticsReport(LocalDate startDate, LocalDate endDate) {
-        List<ClientOrder> orders = clientOrderRepository.findAllByOrderByOrderDateDesc().stream()
-                .filter(order -> {
-                    LocalDate orderDate = order.getOrderDate().toLocalDate();
-                    return !orderDate.isBefore(startDate) && !orderDate.isAfter(endDate);
-                })
-                .toList();
-        List<Product> products = productRepository.findAllWithAttributeValues();
-
-        BigDecimal totalRevenue = orders.stream()
-                .map(ClientOrder::getTotalAmount)
-                .filter(amount -> amount != null)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal averageOrderAmount = orders.isEmpty()
+    public GeneratedReport generateStatisticsReport(LocalDate startDate, LocalDate endDate) {
+        DailyFactService.SalesTotals totals = dailyFactService.getSalesTotals(startDate, endDate);
+        BigDecimal totalRevenue = totals.revenue();
+        BigDecimal averageOrderAmount = totals.orderCount() == 0
                 ? BigDecimal.ZERO
-                : totalRevenue.divide(BigDecimal.valueOf(orders.size()), 2, RoundingMode.HALF_UP);
-
-        int totalStock = products.stream().mapToInt(Product::getStockQuantity).sum();
-        long expiringProducts = products.stream()
-                .filter(product -> productExpirationService.getExpirationDate(product)
-                        .filter(expirationDate -> !expirationDate.isBefore(startDate) && !expirationDate.isAfter(endDate))
-                        .isPresent())
-                .count();
-
-        try (XWPFDocument document = new XWPFDocument()) {
-            addTitle(document, "Статистический отчёт");
-            addPeriod(document, startDate, endDate);
-
-            XWPFTable table = document.createTable(6, 2);
-            formatTable(table);
-            formatHeaderRow(table, 0, "Показатель", "Значение");
-            String[][] data = {
-                    {"Количество заказов за период", String.valueOf(orders.size())},
-                    {"Сумма заказов за период, руб.", totalRevenue.toString()},
-                    {"Средний чек, руб.", averageOrderAmount.toString()},
-                    {"Общий остаток товаров на складе", String.valueOf(totalStock)},
-                    {"Товаров с истечением срока в периоде", String.valueOf(expiringProducts)}
-            };
-            for (int i = 0; i < data.length; i++) {
-                boolean zebra = i % 2 == 1;
-                formatDataCell(table.getRow(i + 1).getCell(0), data[i][0], zebra);
-                formatDataCell(table.getRow(i + 1).getCell(1), data[i][1], zebra);
-            }
-
-            return new ReportFile(buildFileName("statistics", startDate, endDate), toBytes(document));
-        } catch (IOException exception) {
-            throw new IllegalStateException("Не удалось сформировать статистический отчёт", exception);
-        }
+                : totalRevenue.divide(BigDecimal.valueOf(totals.orderCount()), 2, RoundingMode.HALF_UP);
+        BigDecimal purchaseCost = dailyFactService.getPurchaseCost(startDate, endDate);
+
+        long totalStock = productRepository.sumStockQuantity();
+        long expiringProducts = supplyRepository.countProductsExpiringOnStock(startDate, endDate);
+
+        return writeReport(buildFileName(ReportType.STATISTICS, startDate, endDate), "Не удалось сформировать статистический отчёт",
+                writer -> {
+                    addTitle(writer, "Статистический отчёт");
+                    addPeriod(writer, startDate, endDate);
+
+                    writer.startTable();
+                    formatHeaderRow(writer, "Показатель", "Значение");
+                    String[][] data = {
+                            {"Доставлено заказов за период", String.valueOf(totals.orderCount())},
+                            {"Сумма доставленных заказов, руб.", totalRevenue.toString()},
+                            {"Средний чек, руб.", averageOrderAmount.toString()},
+                            {"Закупки за период, руб.", purchaseCost.toString()},
+                            {"Общий остаток товаров на складе", String.valueOf(totalStock)},
+                            {"Товаров с истечением срока в периоде", String.valueOf(expiringProducts)}
+                    };
+                    for (int i = 0; i < data.length; i++) {
+                        formatDataRow(writer, i % 2 == 1, data[i]);
+                    }
+                    writer.endTable();
+                });
     }
 
+    /**
+     * Партии на складе, срок годности которых истекает в периоде (по одной строке на партию).
+     */
     @Transactional(readOnly = true)
-    public ReportFile generateExpirationReport(LocalDate startDate, LocalDate endDate) {
-        List<ExpiringProductRow> products = productRepository.findAllWithAttributeValues().stream()
-                .map(product -> productExpirationService.getExpirationDate(product)
-                        .map(expirationDate -> new ExpiringProductRow(product, expirationDate))
-                        .orElse(null))
-                .filter(row -> row != null
-                        && !row.expirationDate().isBefore(startDate)
-                        && !row.expirationDate().isAfter(endDate))
-                .sorted(Comparator.comparing(ExpiringProductRow::expirationDate))
-                .toList();
-
-        try (XWPFDocument document = new XWPFDocument()) {
-            addTitle(document, "Отчёт по срокам годности");
-            addPeriod(document, startDate, endDate);
-
-            XWPFTable table = document.createTable(Math.max(products.size() + 1, 2), 4);
-            formatTable(table);
-            formatHeaderRow(table, 0, "Артикул", "Товар", "Остаток", "Срок годности");
-            for (int i = 0; i < products.size(); i++) {
-                ExpiringProductRow row = products.get(i);
-                boolean zebra = i % 2 == 1;
-                formatDataCell(table.getRow(i + 1).getCell(0), row.product().getArticle(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(1), row.product().getName(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(2), String.valueOf(row.product().getStockQuantity()), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(3), row.expirationDate().format(DATE_FORMATTER), zebra);
-            }
-
-            return new ReportFile(buildFileName("expiration", startDate, endDate), toBytes(document));
-        } catch (IOException exception) {
-            throw new IllegalStateException("Не удалось сформировать отчёт по срокам годности", exception);
-        }
+    public GeneratedReport generateExpirationReport(LocalDate startDate, LocalDate endDate) {
+        return writeReport(buildFileName(ReportType.EXPIRATION, startDate, endDate), "Не удалось сформировать отчёт по срокам годности",
+                writer -> {
+                    addTitle(writer, "Отчёт по срокам годности");
+                    addPeriod(writer, startDate, endDate);
+
+                    writer.startTable();
+                    formatHeaderRow(writer, "Артикул", "Товар", "Остаток", "Срок годности");
+
+                    int index = 0;
+                    try (Stream<SupplyRepository.ExpiringLotRow> lots = supplyRepository.streamExpiringOnStock(startDate, endDate)) {
+                        for (Iterator<SupplyRepository.ExpiringLotRow> iterator = lots.iterator(); iterator.hasNext(); index++) {
+                            SupplyRepository.ExpiringLotRow lot = iterator.next();
+                            formatDataRow(writer, index % 2 == 1,
+                                    lot.getArticle(),
+                                    lot.getName(),
+                                    String.valueOf(lot.getQuantity()),
+                                    lot.getExpirationDate().format(DATE_FORMATTER));
+                        }
+                    }
+                    writer.endTable();
+                });
     }
 
+    /**
+     * Итоги над таблицей берутся агрегирующим запросом по тем же условиям, что и строки: таблица
+     * пишется потоком, и вернуться к уже записанному абзацу нельзя.
+     */
     @Transactional(readOnly = true)
-    public ReportFile generateSuppliesReport(LocalDate startDate, LocalDate endDate) {
-        List<Delivery> deliveries = deliveryRepository.findAllByOrderByDeliveryDateDesc().stream()
-                .filter(delivery -> !delivery.getDeliveryDate().isBefore(startDate)
-                        && !delivery.getDeliveryDate().isAfter(endDate))
-                .toList();
-
-        List<SupplyRow> rows = new ArrayList<>();
-        for (Delivery delivery : deliveries) {
-            for (Supply supply : delivery.getSupplies()) {
-                rows.add(new SupplyRow(delivery, supply));
-            }
-        }
-
-        BigDecimal totalAmount = rows.stream()
-                .map(row -> row.supply().getTotalPrice())
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        try (XWPFDocument document = new XWPFDocument()) {
-            addTitle(document, "Отчёт о поставках");
-            addPeriod(document, startDate, endDate);
-            addSummaryLine(document, "Всего поставок: " + deliveries.size()
-                    + ", позиций: " + rows.size()
-                    + ", на сумму: " + totalAmount + " руб.");
-
-            XWPFTable table = document.createTable(Math.max(rows.size() + 2, 2), 11);
-            formatTable(table);
-            formatHeaderRow(table, 0,
-                    "№ поставки", "Дата", "Поставщик", "ИНН", "Товар",
-                    "Артикул", "Ед. изм.", "Кол-во", "Цена, руб.", "Сумма, руб.", "Дефицит");
-
-            for (int i = 0; i < rows.size(); i++) {
-                SupplyRow row = rows.get(i);
-                Delivery d = row.delivery();
-                Supply s = row.supply();
-                boolean zebra = i % 2 == 1;
-                formatDataCell(table.getRow(i + 1).getCell(0), String.valueOf(d.getId()), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(1), d.getDeliveryDate().format(DATE_FORMATTER), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(2), d.getSupplier() != null ? d.getSupplier().getName() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(3), d.getSupplier() != null ? d.getSupplier().getInn() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(4), s.getProduct() != null ? s.getProduct().getName() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(5), s.getProduct() != null ? s.getProduct().getArticle() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(6), s.getUnit() != null ? s.getUnit() : "—", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(7), String.valueOf(s.getQuantity()), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(8), s.getPurchasePrice() != null ? s.getPurchasePrice().toString() : "0", zebra);
-                formatDataCell(table.getRow(i + 1).getCell(9), s.getTotalPrice().toString(), zebra);
-                formatDataCell(table.getRow(i + 1).getCell(10), s.getDeficitQuantity() > 0
-                        ? s.getDeficitQuantity() + (s.getDeficitReason() != null ? " (" + s.getDeficitReason() + ")" : "")
-                        : "—", zebra);
-            }
-
-            formatTotalRow(table, rows.size() + 1, 11, 0, "ИТОГО", 9, totalAmount.toString());
-
-            return new ReportFile(buildFileName("supplies", startDate, endDate), toBytes(document));
-        } catch (IOException exception) {
-            throw new IllegalStateException("Не удалось сформировать отчёт о поставках", exception);
-        }
+    public GeneratedReport generateSuppliesReport(LocalDate startDate, LocalDate endDate) {
+        SupplyRepository.SupplyReportTotals totals = supplyRepository.summarizeSupplyReport(startDate, endDate);
+        BigDecimal summaryAmount = Objects.requireNonNullElse(totals.getTotalAmount(), BigDecimal.ZERO);
+
+        return writeReport(buildFileName(ReportType.SUPPLIES, startDate, endDate), "Не удалось сформировать отчёт о поставках",
+                writer -> {
+                    addTitle(writer, "Отчёт о поставках");
+                    addPeriod(writer, startDate, endDate);
+                    addSummaryLine(writer, "Всего поставок: " + totals.getDeliveryCount()
+                            + ", позиций: " + totals.getPositionCount()
+                            + ", на сумму: " + summaryAmount + " руб.");
+
+                    writer.startTable();
+                    formatHeaderRow(writer,
+                            "№ поставки", "Дата", "Поставщик", "ИНН", "Товар",
+                            "Артикул", "Ед. изм.", "Кол-во", "Цена, руб.", "Сумма, руб.", "Дефицит");
+
+                    BigDecimal totalAmount = BigDecimal.ZERO;
+                    int index = 0;
+                    try (Stream<SupplyRepository.SupplyReportRow> supplies = supplyRepository.streamSupplyReportRows(startDate, endDate)) {
+                        for (Iterator<SupplyRepository.SupplyReportRow> iterator = supplies.iterator(); iterator.hasNext(); index++) {
+                            SupplyRepository.SupplyReportRow s = iterator.next();
+                            BigDecimal purchasePrice = Objects.requireNonNullElse(s.getPurchasePrice(), BigDecimal.ZERO);
+                            BigDecimal rowTotal = purchasePrice.multiply(BigDecimal.valueOf(s.getQuantity()));
+                            totalAmount = totalAmount.add(rowTotal);
+
+                            formatDataRow(writer, index % 2 == 1,
+                                    String.valueOf(s.getDeliveryId()),
+                                    s.getDeliveryDate().format(DATE_FORMATTER),
+                                    s.getSupplierName() != null ? s.getSupplierName() : "—",
+                                    s.getSupplierInn() != null ? s.getSupplierInn() : "—",
+                                    s.getProductName(),
+                                    s.getProductArticle(),
+                                    s.getUnit() != null ? s.getUnit() : "—",
+                                    String.valueOf(s.getQuantity()),
+                                    purchasePrice.toString(),
+                                    rowTotal.toString(),
+                                    s.getDeficitQuantity() > 0
+                                            ? s.getDeficitQuantity() + (s.getDeficitReason() != null ? " (" + s.getDeficitReason() + ")" : "")
+                                            : "—");
+                        }
+                    }
+
+                    formatTotalRow(writer, 11, 0, "ИТОГО", 9, totalAmount.toString());
+                    writer.endTable();
+                });
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    private void addTitle(XWPFDocument document, String title) {
-        XWPFParagraph paragraph = document.createParagraph();
-        paragraph.setAlignment(ParagraphAlignment.CENTER);
-        XWPFRun run = paragraph.createRun();
-        run.setBold(true);
-        run.setFontSize(14);
-        run.setFontFamily(FONT_FAMILY);
-        run.setText(title);
-    }
-
-    private void addPeriod(XWPFDocument document, LocalDate startDate, LocalDate endDate) {
-        XWPFParagraph paragraph = document.createParagraph();
-        paragraph.setAlignment(ParagraphAlignment.CENTER);
-        paragraph.setSpacingAfter(200);
-        XWPFRun run = paragraph.createRun();
-        run.setFontSize(11);
-        run.setFontFamily(FONT_FAMILY);
-        run.setText("Период: " + startDate.format(DATE_FORMATTER) + " \u2013 " + endDate.format(DATE_FORMATTER));
+    /** Содержимое отчёта, записываемое в открытый документ. */
+    @FunctionalInterface
+    private interface ReportBody {
+        void write(ReportDocxWriter writer) throws IOException;
     }
 
-    private void addSummaryLine(XWPFDocument document, String text) {
-        XWPFParagraph paragraph = document.createParagraph();
-        paragraph.setSpacingAfter(100);
-        XWPFRun run = paragraph.createRun();
-        run.setFontSize(11);
-        run.setFontFamily(FONT_FAMILY);
-        run.setItalic(true);
-        run.setText(text);
-    }
-
-    private void formatTable(XWPFTable table) {
-        table.setTableAlignment(TableRowAlign.CENTER);
-        setTableBorders(table);
-    }
-
-    private void formatHeaderRow(XWPFTable table, int rowIndex, String... headers) {
-        XWPFTableRow row = table.getRow(rowIndex);
-        for (int i = 0; i < headers.length; i++) {
-            XWPFTableCell cell = row.getCell(i);
-            setCellText(cell, headers[i], FONT_SIZE_DATA, true);
-            setCellBackground(cell, COLOR_HEADER);
+    /**
+     * Пишет документ во временный файл потоком: строки попадают в ZIP по мере чтения курсора.
+     * При ошибке файл удаляется.
+     */
+    private GeneratedReport writeReport(String fileName, String errorMessage, ReportBody body) {
+        Path file;
+        try {
+            file = Files.createTempFile("siarsp-report-", ".docx");
+        } catch (IOException exception) {
+            throw new IllegalStateException(errorMessage, exception);
         }
-    }
-
-    private void formatDataCell(XWPFTableCell cell, String text, boolean zebra) {
-        setCellText(cell, text, FONT_SIZE_DATA, false);
-        if (zebra) {
-            setCellBackground(cell, COLOR_ZEBRA);
+        try {
+            try (ReportDocxWriter writer = ReportDocxWriter.create(file, FONT_FAMILY)) {
+                body.write(writer);
+            }
+            return new GeneratedReport(fileName, file);
+        } catch (IOException | RuntimeException exception) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException deleteException) {
+                exception.addSuppressed(deleteException);
+            }
+            if (exception instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(errorMessage, exception);
         }
     }
 
-    private void formatTotalRow(XWPFTable table, int rowIndex, int colCount,
-                                 int labelCellIndex, String label,
-                                 int valueCellIndex, String value) {
-        XWPFTableRow row = table.getRow(rowIndex);
-        for (int i = 0; i < colCount; i++) {
-            XWPFTableCell cell = row.getCell(i);
-            if (i == labelCellIndex) {
-                setCellText(cell, label, FONT_SIZE_DATA, true);
-            } else if (i == valueCellIndex) {
-                setCellText(cell, value, FONT_SIZE_DATA, true);
-            } else {
-                setCellText(cell, "", FONT_SIZE_DATA, false);
-            }
-            setCellBackground(cell, COLOR_TOTAL);
-        }
+    private void addTitle(ReportDocxWriter writer, String title) throws IOException {
+        writer.paragraph(title, true, -1, 14, true, false);
     }
 
-    private void setCellText(XWPFTableCell cell, String text, int fontSize, boolean bold) {
-        if (cell.getParagraphs().size() > 0) {
-            cell.removeParagraph(0);
-        }
-        XWPFParagraph paragraph = cell.addParagraph();
-        paragraph.setSpacingAfter(0);
-        paragraph.setSpacingBefore(0);
-        XWPFRun run = paragraph.createRun();
-        run.setText(text != null ? text : "");
-        run.setFontSize(fontSize);
-        run.setBold(bold);
-        run.setFontFamily(FONT_FAMILY);
+    private void addPeriod(ReportDocxWriter writer, LocalDate startDate, LocalDate endDate) throws IOException {
+        writer.paragraph("Период: " + startDate.format(DATE_FORMATTER) + " \u2013 " + endDate.format(DATE_FORMATTER),
+                true, 200, 11, false, false);
     }
 
-    private void setCellBackground(XWPFTableCell cell, String hexColor) {
-        CTShd shd = cell.getCTTc().addNewTcPr().addNewShd();
-        shd.setFill(hexColor);
-        shd.setVal(STShd.CLEAR);
+    private void addSummaryLine(ReportDocxWriter writer, String text) throws IOException {
+        writer.paragraph(text, false, 100, 11, false, true);
     }
 
-    private void setTableBorders(XWPFTable table) {
-        CTTblBorders borders = table.getCTTbl().getTblPr().addNewTblBorders();
-        setBorder(borders.addNewTop());
-        setBorder(borders.addNewBottom());
-        setBorder(borders.addNewLeft());
-        setBorder(borders.addNewRight());
-        setBorder(borders.addNewInsideH());
-        setBorder(borders.addNewInsideV());
+    private void formatHeaderRow(ReportDocxWriter writer, String... headers) throws IOException {
+        writer.row(COLOR_HEADER, true, FONT_SIZE_DATA, headers);
     }
 
-    private void setBorder(CTBorder border) {
-        border.setVal(STBorder.SINGLE);
-        border.setSz(BigInteger.valueOf(4));
-        border.setSpace(BigInteger.ZERO);
-        border.setColor("000000");
+    private void formatDataRow(ReportDocxWriter writer, boolean zebra, String... cells) throws IOException {
+        writer.row(zebra ? COLOR_ZEBRA : null, false, FONT_SIZE_DATA, cells);
     }
 
-    private byte[] toBytes(XWPFDocument document) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        document.write(outputStream);
-        return outputStream.toByteArray();
+    private void formatTotalRow(ReportDocxWriter writer, int colCount,
+                                int labelCellIndex, String label,
+                                int valueCellIndex, String value) throws IOException {
+        String[] cells = new String[colCount];
+        Arrays.fill(cells, "");
+        cells[labelCellIndex] = label;
+        cells[valueCellIndex] = value;
+        writer.row(COLOR_TOTAL, true, FONT_SIZE_DATA, cells);
     }
 
-    private String buildFileName(String reportType, LocalDate startDate, LocalDate endDate) {
-        return reportType + "_report_" + startDate + "_" + endDate + ".docx";
+    private static LocalDateTime periodStart(LocalDate startDate) {
+        return startDate.atStartOfDay();
     }
 
-    private record SupplyRow(Delivery delivery, Supply supply) {
+    private static LocalDateTime periodEnd(LocalDate endDate) {
+        return endDate.plusDays(1).atStartOfDay();
     }
 
-    private record ExpiringProductRow(Product product, LocalDate expirationDate) {
+    public static String buildFileName(ReportType reportType, LocalDate startDate, LocalDate endDate) {
+        return reportType.getSlug() + "_report_" + startDate + "_" + endDate + ".docx";
     }
 
     public record ReportFile(String fileName, byte[] content) {
     }
+
+    /**
+     * Отчёт, записанный во временный файл.
+     */
+    public record GeneratedReport(String fileName, Path file) {
+    }
 }
@@ -0,0 +1,221 @@
+package com.mai.siarsp.service.general;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Потоковая запись табличного отчёта DOCX: абзацы и строки таблиц пишутся в word/document.xml
+ * сразу в ZIP-файл, без дерева документа в памяти.
+ * <p>
+ * Остальные части пакета ([Content_Types].xml, связи, свойства, настройки) один раз берутся из пустого
+ * документа POI и пишутся как есть в исходном порядке; document.xml идёт последним. Разметка абзацев,
+ * ячеек, заливки и рамок та же, что давали вызовы XWPF в ReportDocumentService.
+ * <p>
+ * Класс не потокобезопасен; один экземпляр — один документ.
+ */
+final class ReportDocxWriter implements Closeable {
+
+    private static final String DOCUMENT_PART = "word/document.xml";
+
+    /** Части пустого документа и document.xml, разрезанный по содержимому тела. */
+    private record Skeleton(Map<String, byte[]> parts, String documentStart, String documentEnd) {}
+
+    private static volatile Skeleton skeleton;
+
+    private final String fontFamily;
+    private final ZipOutputStream zip;
+    private final Writer xml;
+
+    private ReportDocxWriter(Path file, String fontFamily) throws IOException {
+        this.fontFamily = escape(fontFamily);
+        Skeleton template = skeleton();
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        try {
+            for (Map.Entry<String, byte[]> part : template.parts().entrySet()) {
+                zip.putNextEntry(new ZipEntry(part.getKey()));
+                zip.write(part.getValue());
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(DOCUMENT_PART));
+            this.xml = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+            xml.write(template.documentStart());
+        } catch (IOException | RuntimeException exception) {
+            zip.close();
+            throw exception;
+        }
+    }
+
+    /** Открывает документ в файле file; шрифт применяется ко всему тексту. */
+    static ReportDocxWriter create(Path file, String fontFamily) throws IOException {
+        return new ReportDocxWriter(file, fontFamily);
+    }
+
+    /**
+     * Абзац из одного Run.
+     *
+     * @param spacingAfter интервал после абзаца в twips; отрицательный — не задаётся
+     */
+    void paragraph(String text, boolean centered, int spacingAfter, int fontSize, boolean bold,
+                   boolean italic) throws IOException {
+        xml.write("<w:p>");
+        if (centered || spacingAfter >= 0) {
+            xml.write("<w:pPr>");
+            if (spacingAfter >= 0) {
+                xml.write("<w:spacing w:after=\"" + spacingAfter + "\"/>");
+            }
+            if (centered) {
+                xml.write("<w:jc w:val=\"center\"/>");
+            }
+            xml.write("</w:pPr>");
+        }
+        run(text, fontSize, bold, italic);
+        xml.write("</w:p>");
+    }
+
+    /** Начало таблицы по центру страницы с одинарными рамками 1/2 pt. */
+    void startTable() throws IOException {
+        xml.write("<w:tbl><w:tblPr><w:tblW w:w=\"0\" w:type=\"auto\"/><w:jc w:val=\"center\"/><w:tblBorders>");
+        for (String side : new String[]{"top", "left", "bottom", "right", "insideH", "insideV"}) {
+            xml.write("<w:" + side + " w:val=\"single\" w:sz=\"4\" w:space=\"0\" w:color=\"000000\"/>");
+        }
+        xml.write("</w:tblBorders></w:tblPr>");
+    }
+
+    /**
+     * Строка таблицы.
+     *
+     * @param fill цвет заливки ячеек (RRGGBB) или null
+     */
+    void row(String fill, boolean bold, int fontSize, String... cells) throws IOException {
+        xml.write("<w:tr>");
+        for (String cell : cells) {
+            xml.write("<w:tc>");
+            if (fill != null) {
+                xml.write("<w:tcPr><w:shd w:val=\"clear\" w:fill=\"" + fill + "\"/></w:tcPr>");
+            }
+            xml.write("<w:p><w:pPr><w:spacing w:before=\"0\" w:after=\"0\"/></w:pPr>");
+            run(cell, fontSize, bold, false);
+            xml.write("</w:p></w:tc>");
+        }
+        xml.write("</w:tr>");
+    }
+
+    void endTable() throws IOException {
+        xml.write("</w:tbl>");
+    }
+
+    private void run(String text, int fontSize, boolean bold, boolean italic) throws IOException {
+        xml.write("<w:r><w:rPr><w:rFonts w:ascii=\"" + fontFamily + "\" w:hAnsi=\"" + fontFamily
+                + "\" w:cs=\"" + fontFamily + "\" w:eastAsia=\"" + fontFamily + "\"/>");
+        if (bold) {
+            xml.write("<w:b/>");
+        }
+        if (italic) {
+            xml.write("<w:i/>");
+        }
+        xml.write("<w:sz w:val=\"" + fontSize * 2 + "\"/></w:rPr><w:t xml:space=\"preserve\">");
+        xml.write(escape(text != null ? text : ""));
+        xml.write("</w:t></w:r>");
+    }
+
+    /** Завершает document.xml и архив. */
+    @Override
+    public void close() throws IOException {
+        try (zip) {
+            xml.write(skeleton().documentEnd());
+            xml.flush();
+            zip.closeEntry();
+        }
+    }
+
+    // ========== ЗАГОТОВКА ПАКЕТА ==========
+
+    private static Skeleton skeleton() throws IOException {
+        Skeleton current = skeleton;
+        if (current == null) {
+            synchronized (ReportDocxWriter.class) {
+                current = skeleton;
+                if (current == null) {
+                    current = buildSkeleton();
+                    skeleton = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Skeleton buildSkeleton() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createParagraph();
+            document.write(buffer);
+        }
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        String documentXml = null;
+        try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                byte[] content = input.readAllBytes();
+                if (entry.getName().equals(DOCUMENT_PART)) {
+                    documentXml = new String(content, StandardCharsets.UTF_8);
+                } else {
+                    parts.put(entry.getName(), content);
+                }
+            }
+        }
+        int bodyStart = documentXml != null ? documentXml.indexOf("<w:body>") : -1;
+        int bodyEnd = documentXml != null ? documentXml.lastIndexOf("</w:body>") : -1;
+        if (bodyStart < 0 || bodyEnd < bodyStart) {
+            throw new IllegalStateException("Не удалось разобрать заготовку документа DOCX");
+        }
+        // содержимое тела (пустой абзац) отбрасывается, sectPr, если есть, остаётся в конце
+        String body = documentXml.substring(bodyStart + "<w:body>".length(), bodyEnd);
+        int sectionStart = body.indexOf("<w:sectPr");
+        String section = sectionStart >= 0 ? body.substring(sectionStart) : "";
+        return new Skeleton(Collections.unmodifiableMap(parts),
+                documentXml.substring(0, bodyStart + "<w:body>".length()),
+                section + documentXml.substring(bodyEnd));
+    }
+
+    /** Экранирование текста XML; управляющие символы, недопустимые в XML 1.0, отбрасываются. */
+    private static String escape(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default -> c < 0x20 && c != '\t' && c != '\n' && c != '\r' ? "" : null;
+            };
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb != null ? sb.toString() : text;
+    }
+}
@@ -0,0 +1,314 @@
+package com.mai.siarsp.service.general;
+
+import com.mai.siarsp.enumeration.ReportJobState;
+import com.mai.siarsp.enumeration.ReportType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронное формирование отчётов с кэшем готовых файлов на диске.
+ * <p>
+ * Контроллер ставит задание ({@link #submit}), страница отчётов опрашивает его состояние и скачивает
+ * файл, когда он готов. Отчёты формирует ограниченный пул ({@code siarsp.reports.workers}) с очередью
+ * не длиннее {@code siarsp.reports.queue-capacity} — поток запроса не ждёт рендеринга.
+ * <p>
+ * Готовый файл хранится в {@code siarsp.reports.cache-dir} под ключом «тип + период + водяной знак».
+ * Водяной знак — отпечаток исходных строк периода (число строк и сумма CRC32 значимых столбцов),
+ * поэтому новые или изменённые данные внутри периода дают новый ключ и отчёт формируется заново,
+ * а повторный запрос того же отчёта по неизменным данным отдаётся из кэша. Одинаковые задания,
+ * поставленные одновременно, формируются один раз.
+ */
+@Service
+@Slf4j
+public class ReportJobService {
+
+    private static final Duration JOB_TTL = Duration.ofHours(2);
+
+    private static final Map<ReportType, String> WATERMARK_SQL = Map.of(
+            ReportType.ORDERS, "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', co.id, co.order_number, " +
+                    "co.order_date, co.status, co.total_amount, c.organization_name))), 0) " +
+                    "FROM t_client_order co LEFT JOIN t_client c ON c.id = co.client_id " +
+                    "WHERE co.order_date >= ? AND co.order_date < ?",
+            ReportType.WAREHOUSE, "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', p.id, p.article, p.name, " +
+                    "p.stock_quantity, p.quantity_for_stock, p.reserved_quantity, c.name))), 0) " +
+                    "FROM t_product p LEFT JOIN t_product_category c ON c.id = p.category_id",
+            ReportType.STATISTICS, "SELECT (SELECT COUNT(*) FROM t_order_daily_fact WHERE fact_date BETWEEN ? AND ?), " +
+                    "CRC32(CONCAT_WS('|', " +
+                    "(SELECT SUM(order_count) FROM t_order_daily_fact WHERE fact_date BETWEEN ? AND ?), " +
+                    "(SELECT SUM(revenue) FROM t_order_daily_fact WHERE fact_date BETWEEN ? AND ?), " +
+                    "(SELECT SUM(purchase_cost) FROM t_receipt_daily_fact WHERE fact_date BETWEEN ? AND ?), " +
+                    "(SELECT SUM(stock_quantity) FROM t_product), " +
+                    "(SELECT COUNT(DISTINCT s.product_id) FROM t_zone_product zp JOIN t_supply s ON s.id = zp.supply_id " +
+                    "WHERE zp.quantity > 0 AND s.expiration_date BETWEEN ? AND ?)))",
+            ReportType.EXPIRATION, "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', zp.id, zp.quantity, s.id, " +
+                    "s.expiration_date))), 0) " +
+                    "FROM t_zone_product zp JOIN t_supply s ON s.id = zp.supply_id " +
+                    "WHERE zp.quantity > 0 AND s.expiration_date BETWEEN ? AND ?",
+            ReportType.SUPPLIES, "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', s.id, s.quantity, s.purchase_price, " +
+                    "s.unit, s.deficit_quantity, s.deficit_reason, d.supplier_id))), 0) " +
+                    "FROM t_supply s JOIN t_delivery d ON d.id = s.delivery_id " +
+                    "WHERE d.delivery_date BETWEEN ? AND ?"
+    );
+
+    private final ReportDocumentService reportDocumentService;
+    private final JdbcTemplate jdbc;
+    private final Path cacheDir;
+    private final Duration cacheTtl;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    /** Формирующиеся сейчас отчёты по ключу кэша — общие для одинаковых заданий. */
+    private final Map<String, RenderTask> inFlight = new ConcurrentHashMap<>();
+
+    public ReportJobService(ReportDocumentService reportDocumentService,
+                            JdbcTemplate jdbc,
+                            @Value("${siarsp.reports.cache-dir:${java.io.tmpdir}/siarsp-reports}") String cacheDir,
+                            @Value("${siarsp.reports.cache-ttl-hours:168}") long cacheTtlHours,
+                            @Value("${siarsp.reports.workers:2}") int workers,
+                            @Value("${siarsp.reports.queue-capacity:20}") int queueCapacity) {
+        this.reportDocumentService = reportDocumentService;
+        this.jdbc = jdbc;
+        this.cacheDir = Paths.get(cacheDir);
+        this.cacheTtl = Duration.ofHours(cacheTtlHours);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "report-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(this.cacheDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог кэша отчётов " + cacheDir, e);
+        }
+    }
+
+    // ========== DTO ==========
+
+    /**
+     * Состояние задания для страницы отчётов.
+     */
+    public record JobStatus(String id, ReportType type, LocalDate startDate, LocalDate endDate,
+                            ReportJobState state, String stateName, boolean cached, String error,
+                            LocalDateTime submittedAt) {}
+
+    public record ReportArtifact(String fileName, Path file) {}
+
+    private record RenderTask(String cacheKey, CompletableFuture<Path> result, AtomicBoolean started) {
+    }
+
+    private record ReportJob(String id, Long ownerId, ReportType type, LocalDate startDate, LocalDate endDate,
+                             boolean cached, RenderTask task, LocalDateTime submittedAt) {
+    }
+
+    // ========== ЗАДАНИЯ ==========
+
+    /**
+     * Ставит отчёт в очередь. Если файл по текущему водяному знаку уже есть в кэше — задание сразу готово.
+     *
+     * @throws IllegalStateException очередь переполнена
+     */
+    public JobStatus submit(Long ownerId, ReportType type, LocalDate startDate, LocalDate endDate) {
+        String cacheKey = buildCacheKey(type, startDate, endDate);
+        Path artifact = cacheDir.resolve(cacheKey + ".docx");
+
+        RenderTask task;
+        boolean cached = Files.exists(artifact);
+        if (cached) {
+            task = new RenderTask(cacheKey, CompletableFuture.completedFuture(artifact), new AtomicBoolean(true));
+        } else {
+            task = inFlight.computeIfAbsent(cacheKey, key -> startRender(key, type, startDate, endDate, artifact));
+        }
+
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), ownerId, type, startDate, endDate,
+                cached, task, LocalDateTime.now());
+        jobs.put(job.id(), job);
+        log.info("Отчёт {} за {} – {} поставлен (задание {}, из кэша: {})", type, startDate, endDate, job.id(), cached);
+        return toStatus(job);
+    }
+
+    public Optional<JobStatus> getStatus(String jobId, Long ownerId) {
+        return findJob(jobId, ownerId).map(this::toStatus);
+    }
+
+    /**
+     * Готовый файл задания; пусто, если задание не найдено, чужое или ещё не завершено.
+     */
+    public Optional<ReportArtifact> getArtifact(String jobId, Long ownerId) {
+        return findJob(jobId, ownerId)
+                .filter(job -> job.task().result().isDone() && !job.task().result().isCompletedExceptionally())
+                .map(job -> new ReportArtifact(ReportDocumentService.buildFileName(job.type(), job.startDate(), job.endDate()),
+                        job.task().result().join()))
+                .filter(artifact -> Files.exists(artifact.file()));
+    }
+
+    private Optional<ReportJob> findJob(String jobId, Long ownerId) {
+        ReportJob job = jobs.get(jobId);
+        return job != null && job.ownerId().equals(ownerId) ? Optional.of(job) : Optional.empty();
+    }
+
+    private RenderTask startRender(String cacheKey, ReportType type, LocalDate startDate, LocalDate endDate, Path artifact) {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        AtomicBoolean started = new AtomicBoolean();
+        RenderTask task = new RenderTask(cacheKey, result, started);
+        try {
+            executor.execute(() -> {
+                started.set(true);
+                try {
+                    result.complete(render(type, startDate, endDate, artifact));
+                } catch (Exception e) {
+                    log.error("Не удалось сформировать отчёт {} за {} – {}: {}", type, startDate, endDate, e.getMessage(), e);
+                    result.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Очередь формирования отчётов переполнена, повторите позже");
+        }
+        return task;
+    }
+
+    private Path render(ReportType type, LocalDate startDate, LocalDate endDate, Path artifact) throws IOException {
+        long startNanos = System.nanoTime();
+        ReportDocumentService.GeneratedReport report = reportDocumentService.generate(type, startDate, endDate);
+        Path partial = artifact.resolveSibling(artifact.getFileName() + ".part");
+        try {
+            Files.move(report.file(), partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, artifact, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(report.file());
+            Files.deleteIfExists(partial);
+        }
+        deleteStaleArtifacts(type, startDate, endDate, artifact);
+        log.info("Отчёт {} за {} – {} сформирован за {} мс", type, startDate, endDate,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return artifact;
+    }
+
+    private JobStatus toStatus(ReportJob job) {
+        CompletableFuture<Path> result = job.task().result();
+        ReportJobState state;
+        String error = null;
+        if (result.isCompletedExceptionally()) {
+            state = ReportJobState.FAILED;
+            error = "Не удалось сформировать отчёт";
+        } else if (result.isDone()) {
+            state = ReportJobState.DONE;
+        } else {
+            state = job.task().started().get() ? ReportJobState.RUNNING : ReportJobState.QUEUED;
+        }
+        return new JobStatus(job.id(), job.type(), job.startDate(), job.endDate(), state, state.getDisplayName(),
+                job.cached(), error, job.submittedAt());
+    }
+
+    // ========== КЭШ ==========
+
+    private String buildCacheKey(ReportType type, LocalDate startDate, LocalDate endDate) {
+        return periodPrefix(type, startDate, endDate) + computeWatermark(type, startDate, endDate);
+    }
+
+    private static String periodPrefix(ReportType type, LocalDate startDate, LocalDate endDate) {
+        return type.getSlug() + "_" + startDate + "_" + endDate + "_";
+    }
+
+    private String computeWatermark(ReportType type, LocalDate startDate, LocalDate endDate) {
+        Object[] args = switch (type) {
+            case ORDERS -> new Object[]{Timestamp.valueOf(startDate.atStartOfDay()),
+                    Timestamp.valueOf(endDate.plusDays(1).atStartOfDay())};
+            case WAREHOUSE -> new Object[0];
+            case STATISTICS -> new Object[]{Date.valueOf(startDate), Date.valueOf(endDate),
+                    Date.valueOf(startDate), Date.valueOf(endDate), Date.valueOf(startDate), Date.valueOf(endDate),
+                    Date.valueOf(startDate), Date.valueOf(endDate), Date.valueOf(startDate), Date.valueOf(endDate)};
+            case EXPIRATION, SUPPLIES -> new Object[]{Date.valueOf(startDate), Date.valueOf(endDate)};
+        };
+        String fingerprint = jdbc.queryForObject(WATERMARK_SQL.get(type),
+                (rs, rowNum) -> rs.getString(1) + "|" + rs.getString(2), args);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * После формирования отчёта удаляет файлы того же типа и периода с прежними водяными знаками.
+     */
+    private void deleteStaleArtifacts(ReportType type, LocalDate startDate, LocalDate endDate, Path current) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, periodPrefix(type, startDate, endDate) + "*.docx")) {
+            for (Path file : stream) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось удалить устаревшие отчёты {}: {}", type, e.getMessage());
+        }
+    }
+
+    /**
+     * Удаление файлов кэша старше {@code siarsp.reports.cache-ttl-hours} и завершённых заданий старше {@link #JOB_TTL}.
+     */
+    @Scheduled(cron = "0 10 * * * ?")
+    public void purgeExpired() {
+        LocalDateTime jobThreshold = LocalDateTime.now().minus(JOB_TTL);
+        jobs.values().removeIf(job -> job.task().result().isDone() && job.submittedAt().isBefore(jobThreshold));
+
+        Instant fileThreshold = Instant.now().minus(cacheTtl);
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*.docx")) {
+            for (Path file : stream) {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.toInstant().isBefore(fileThreshold) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось очистить кэш отчётов: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("Удалено отчётов из кэша: {}", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,150 @@
+package com.mai.siarsp.service.general;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка таблиц в XLSX на SXSSFWorkbook.
+ * <p>
+ * В памяти держится только окно из {@link #ROW_WINDOW} последних строк, остальные сбрасываются во
+ * временный сжатый файл; общая таблица строк не используется. Вместе с курсорными запросами
+ * (fetch size Integer.MIN_VALUE) это даёт плоский профиль памяти независимо от числа строк.
+ * Когда строк больше, чем помещается на лист Excel, выгрузка продолжается на следующем листе.
+ * <p>
+ * Столбцы описываются декларативно через {@link XlsxColumn}; тип ячейки определяется по значению:
+ * числа, BigDecimal (денежный формат), LocalDate, LocalDateTime, остальное — строкой.
+ */
+@Service
+public class XlsxExportService {
+
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final int ROW_WINDOW = 200;
+    private static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int MAX_CELL_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+    /**
+     * Столбец выгрузки: заголовок, ширина в символах и функция получения значения из строки.
+     */
+    public record XlsxColumn<T>(String header, int width, Function<T, ?> value) {
+
+        public static <T> XlsxColumn<T> of(String header, int width, Function<T, ?> value) {
+            return new XlsxColumn<>(header, width, value);
+        }
+    }
+
+    /**
+     * Записывает строки в книгу XLSX и закрывает поток строк.
+     *
+     * @return число записанных строк данных
+     */
+    public <T> long write(String sheetName, List<XlsxColumn<T>> columns, Stream<T> rows,
+                          OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        long written = 0;
+        try (rows) {
+            Styles styles = new Styles(workbook);
+            int sheetNumber = 1;
+            Sheet sheet = createSheet(workbook, sheetName, sheetNumber, columns, styles);
+            int rowIndex = 1;
+
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                T source = iterator.next();
+                if (rowIndex == MAX_ROWS_PER_SHEET) {
+                    sheet = createSheet(workbook, sheetName, ++sheetNumber, columns, styles);
+                    rowIndex = 1;
+                }
+                Row row = sheet.createRow(rowIndex++);
+                for (int i = 0; i < columns.size(); i++) {
+                    writeCell(row.createCell(i), columns.get(i).value().apply(source), styles);
+                }
+                written++;
+            }
+            workbook.write(outputStream);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        return written;
+    }
+
+    private <T> Sheet createSheet(SXSSFWorkbook workbook, String sheetName, int sheetNumber,
+                                  List<XlsxColumn<T>> columns, Styles styles) {
+        Sheet sheet = workbook.createSheet(sheetNumber == 1 ? sheetName : sheetName + " (" + sheetNumber + ")");
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < columns.size(); i++) {
+            XlsxColumn<T> column = columns.get(i);
+            Cell cell = header.createCell(i);
+            cell.setCellValue(column.header());
+            cell.setCellStyle(styles.header);
+            sheet.setColumnWidth(i, Math.min(255, column.width()) * 256);
+        }
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    private void writeCell(Cell cell, Object value, Styles styles) {
+        switch (value) {
+            case null -> cell.setBlank();
+            case BigDecimal decimal -> {
+                cell.setCellValue(decimal.doubleValue());
+                cell.setCellStyle(styles.money);
+            }
+            case Number number -> cell.setCellValue(number.doubleValue());
+            case LocalDateTime dateTime -> {
+                cell.setCellValue(dateTime);
+                cell.setCellStyle(styles.dateTime);
+            }
+            case LocalDate date -> {
+                cell.setCellValue(date);
+                cell.setCellStyle(styles.date);
+            }
+            default -> {
+                String text = value.toString();
+                cell.setCellValue(text.length() > MAX_CELL_LENGTH ? text.substring(0, MAX_CELL_LENGTH) : text);
+            }
+        }
+    }
+
+    /** Стили создаются один раз на книгу — их число в XLSX ограничено. */
+    private static final class Styles {
+        private final CellStyle header;
+        private final CellStyle money;
+        private final CellStyle date;
+        private final CellStyle dateTime;
+
+        private Styles(SXSSFWorkbook workbook) {
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            header = workbook.createCellStyle();
+            header.setFont(bold);
+
+            money = workbook.createCellStyle();
+            money.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+            date = workbook.createCellStyle();
+            date.setDataFormat(workbook.createDataFormat().getFormat("dd.mm.yyyy"));
+
+            dateTime = workbook.createCellStyle();
+            dateTime.setDataFormat(workbook.createDataFormat().getFormat("dd.mm.yyyy hh:mm"));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Подсказки товаров в формах заказа клиента.
+ *
+ * Над списком .product-select каждой строки стоит поле поиска; по мере ввода список строки
+ * заполняется первыми совпадениями по названию или артикулу (/employee/general/products/typeahead),
+ * уже выбранный товар в нём сохраняется. Формат <option> совпадает с buildProductOptions() формы,
+ * поэтому подсказка доступного количества и дефицита работает как раньше.
+ *
+ * Форма объявляет массив productsData (товары, известные заранее) и функцию updateSelectOptions().
+ */
+(function () {
+    var LIMIT = 20;
+    var DELAY_MS = 200;
+    var timers = new WeakMap();
+
+    function escapeText(s) {
+        if (s == null) return '';
+        return String(s).replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;').replace(/"/g, '&quot;');
+    }
+
+    function optionHtml(p) {
+        var avgDel = p.avgDeliveryDays ? Math.round(p.avgDeliveryDays) : 0;
+        return '<option value="' + p.id + '" data-available="' + p.availableQuantity
+            + '" data-stock="' + p.stockQuantity
+            + '" data-avg-delivery="' + avgDel + '">'
+            + escapeText(p.name) + ' (' + escapeText(p.article) + ') — на складе: ' + p.stockQuantity + ' шт.'
+            + '</option>';
+    }
+
+    function search(input) {
+        var row = input.closest('.product-row');
+        var select = row ? row.querySelector('.product-select') : null;
+        var q = input.value.trim();
+        if (!select || q.length === 0) return;
+
+        fetch('/employee/general/products/typeahead?limit=' + LIMIT + '&q=' + encodeURIComponent(q))
+            .then(function (response) { return response.json(); })
+            .then(function (items) {
+                // ответ на устаревший запрос не показываем
+                if (input.value.trim() !== q) return;
+                var current = select.value;
+                var kept = current ? select.querySelector('option[value="' + current + '"]') : null;
+                var html = '<option value="">' + (items.length ? '-- Выберите --' : '-- Ничего не найдено --') + '</option>';
+                if (kept) html += kept.outerHTML;
+                for (var i = 0; i < items.length; i++) {
+                    if (String(items[i].id) !== current) html += optionHtml(items[i]);
+                }
+                select.innerHTML = html;
+                select.value = current;
+                updateSelectOptions();
+            })
+            .catch(function () { /* оставляем прежний список */ });
+    }
+
+    window.productTypeaheadInput = function (input) {
+        clearTimeout(timers.get(input));
+        timers.set(input, setTimeout(function () { search(input); }, DELAY_MS));
+    };
+
+    /**
+     * Загружает товары по id (например, найденные при импорте коммерческого предложения)
+     * в productsData, чтобы новые строки формы содержали их в списке.
+     */
+    window.loadProductsByIds = function (ids, callback) {
+        if (!ids.length) {
+            callback([]);
+            return;
+        }
+        fetch('/employee/general/products/typeahead/byIds?ids=' + ids.join(','))
+            .then(function (response) { return response.json(); })
+            .then(function (items) {
+                for (var i = 0; i < items.length; i++) {
+                    var known = productsData.some(function (p) { return p.id === items[i].id; });
+                    if (!known) productsData.push(items[i]);
+                }
+                callback(items);
+            })
+            .catch(function () {
+                alert('Не удалось загрузить товары из файла. Попробуйте ещё раз.');
+            });
+    };
+})();